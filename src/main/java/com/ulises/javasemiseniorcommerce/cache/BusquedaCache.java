@@ -0,0 +1,101 @@
+package com.ulises.javasemiseniorcommerce.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.ulises.javasemiseniorcommerce.event.ProductoEvent;
+import com.ulises.javasemiseniorcommerce.event.ProductosCreadosEvent;
+import com.ulises.javasemiseniorcommerce.search.ConsultaBusqueda;
+import com.ulises.javasemiseniorcommerce.search.ResultadoBusqueda;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache acotado de resultados de /producto/search: los IDs de la pagina y el total, por consulta normalizada,
+ * pagina y tamanio. Los productos de la pagina se siguen cargando en cada pedido, asi que el stock y los
+ * datos que devuelve una busqueda cacheada estan al dia.
+ * <p>
+ * Cada alta, modificacion o baja de un producto incrementa la version del catalogo, que forma parte de la clave:
+ * los resultados calculados con una version anterior ya no se encuentran y se descartan con el tiempo. Los cambios
+ * de stock no cambian que productos coinciden con una busqueda y no incrementan la version.
+ * <p>
+ * Los resultados menos usados se descartan al superar {@code commerce.cache.busqueda.max-size} y todos expiran a
+ * los {@code commerce.cache.busqueda.ttl}. Las metricas se publican como {@code cache.gets} y
+ * {@code cache.hit.ratio} con el tag {@code cache=busquedas}.
+ *
+ * @author ulide
+ */
+@Component
+public class BusquedaCache {
+
+    private final Cache<Clave, ResultadoBusqueda> cache;
+    private final AtomicLong versionCatalogo = new AtomicLong();
+
+    @Autowired
+    public BusquedaCache(@Value("${commerce.cache.busqueda.max-size:10000}") long maxSize,
+                         @Value("${commerce.cache.busqueda.ttl:10m}") Duration ttl,
+                         MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "busquedas");
+        Gauge.builder("cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .tag("cache", "busquedas")
+                .description("Proporcion de busquedas que se respondieron desde el cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Devuelve el resultado cacheado de la consulta, o lo calcula y lo cachea. Las consultas iguales que llegan
+     * mientras se calcula esperan ese mismo calculo.
+     *
+     * @param consulta Consulta ya normalizada.
+     * @param buscar   Calcula el resultado si no esta cacheado.
+     */
+    public ResultadoBusqueda obtener(ConsultaBusqueda consulta, int page, int size, Supplier<ResultadoBusqueda> buscar) {
+        // La version se lee antes de buscar: si el catalogo cambia durante la busqueda, el resultado queda
+        // guardado con la version anterior y nadie lo vuelve a leer
+        Clave clave = new Clave(consulta, page, size, versionCatalogo.get());
+        return cache.get(clave, ignorada -> buscar.get());
+    }
+
+    public long versionCatalogo() {
+        return versionCatalogo.get();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    // Despues de los indices en memoria: si la version cambiara antes de que se actualicen, una busqueda
+    // concurrente podria guardar un resultado viejo con la version nueva
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductoEvent(ProductoEvent event) {
+        if (event.getTipo() != ProductoEvent.Tipo.STOCK) {
+            versionCatalogo.incrementAndGet();
+        }
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductosCreados(ProductosCreadosEvent event) {
+        versionCatalogo.incrementAndGet();
+    }
+
+    private record Clave(ConsultaBusqueda consulta, int page, int size, long version) {
+    }
+}
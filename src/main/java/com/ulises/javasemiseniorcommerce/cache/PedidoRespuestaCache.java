@@ -0,0 +1,239 @@
+package com.ulises.javasemiseniorcommerce.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.ulises.javasemiseniorcommerce.event.PedidoEliminadoEvent;
+import com.ulises.javasemiseniorcommerce.event.ProductoEvent;
+import com.ulises.javasemiseniorcommerce.event.UsuarioEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.DigestUtils;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Cache de las respuestas de GET /pedido/{id}, /pedido/{id}/productos y /pedido/{id}/detalle ya serializadas
+ * a JSON, por ID de pedido. Un acierto se devuelve sin pasar por JPA ni por Jackson.
+ * <p>
+ * Un pedido no cambia despues de crearse, pero sus respuestas muestran el nombre y el precio actual de cada
+ * producto y el email del usuario. Cada respuesta se guarda con los productos y el usuario que muestra, y un indice
+ * inverso por producto y por usuario permite descartar solo las respuestas que cambian cuando se modifica o se da
+ * de baja un producto (la baja pone en null el producto de los detalles) o un usuario, o cuando se elimina el
+ * pedido. Asi una actualizacion masiva de precios descarta solo los pedidos con esos productos. Los cambios de
+ * stock no se muestran en los pedidos y no descartan respuestas.
+ * <p>
+ * Junto con el JSON se guarda su ETag, un hash MD5 del contenido: los pedidos no tienen version, y el hash cambia
+ * justo cuando cambia lo que muestra la respuesta.
+ * <p>
+ * Las respuestas se cachean en la primera lectura, no al crear el pedido: la fecha de creacion que se lee de la
+ * base de datos tiene menos precision que la que tiene el pedido en memoria.
+ * <p>
+ * El tamanio total de las respuestas se limita con {@code commerce.cache.pedidos.max-bytes} y todas expiran a
+ * los {@code commerce.cache.pedidos.ttl}. Las metricas se publican como {@code cache.gets} y
+ * {@code cache.hit.ratio} con el tag {@code cache=pedidos}.
+ *
+ * @author ulide
+ */
+@Component
+public class PedidoRespuestaCache {
+
+    /**
+     * Las respuestas de un pedido que se cachean.
+     */
+    public enum Vista {
+        PEDIDO,
+        PRODUCTOS,
+        DETALLE
+    }
+
+    /**
+     * Una respuesta ya serializada y su ETag.
+     */
+    public record Respuesta(byte[] json, String etag) {
+    }
+
+    /**
+     * El usuario y los productos que muestra una respuesta.
+     *
+     * @param usuarioId   Null si la respuesta no muestra datos del usuario.
+     * @param productoIds Los IDs null (productos eliminados) se ignoran.
+     */
+    public record Dependencias(Long usuarioId, Collection<Long> productoIds) {
+    }
+
+    private final Cache<Clave, Entrada> cache;
+    private final ObjectMapper objectMapper;
+    // Las respuestas cacheadas que muestran cada pedido, producto o usuario
+    private final Map<Origen, Set<Entrada>> indice = new ConcurrentHashMap<>();
+    // Generacion de la ultima invalidacion de cada pedido, producto o usuario, para no guardar una respuesta armada
+    // antes de un cambio en lo que muestra. Basta con recordarlas mientras dura una carga, asi que expiran con el TTL
+    private final Cache<Origen, Long> invalidaciones;
+    private final AtomicLong generacion = new AtomicLong();
+
+    @Autowired
+    public PedidoRespuestaCache(ObjectMapper objectMapper,
+                                @Value("${commerce.cache.pedidos.max-bytes:67108864}") long maxBytes,
+                                @Value("${commerce.cache.pedidos.ttl:1h}") Duration ttl,
+                                MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Clave clave, Entrada entrada) -> entrada.respuesta().json().length)
+                .expireAfterWrite(ttl)
+                // Las respuestas que salen del cache por cualquier motivo tambien salen del indice
+                .removalListener((Clave clave, Entrada entrada, RemovalCause causa) -> {
+                    if (entrada != null) {
+                        desindexar(entrada);
+                    }
+                })
+                .recordStats()
+                .build();
+        this.invalidaciones = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "pedidos");
+        Gauge.builder("cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .tag("cache", "pedidos")
+                .description("Proporcion de lecturas de pedidos que se respondieron desde el cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Devuelve la respuesta cacheada de la vista del pedido, o la arma y la cachea.
+     *
+     * @param pedidoId     ID del pedido.
+     * @param vista        Respuesta que se quiere.
+     * @param cargar       Arma la respuesta si no esta cacheada. Sus excepciones se propagan y no se cachean.
+     * @param dependencias El usuario y los productos que muestra la respuesta armada.
+     * @return JSON de la respuesta y su ETag.
+     */
+    public <T> Respuesta obtener(Long pedidoId, Vista vista, Supplier<T> cargar,
+                                 Function<? super T, Dependencias> dependencias) {
+        Clave clave = new Clave(pedidoId, vista);
+        Entrada cacheada = cache.getIfPresent(clave);
+        if (cacheada != null) {
+            return cacheada.respuesta();
+        }
+
+        long antes = generacion.get();
+        T cargada = cargar.get();
+        byte[] json = serializar(cargada);
+        Respuesta respuesta = new Respuesta(json, "\"" + DigestUtils.md5DigestAsHex(json) + "\"");
+        Entrada entrada = new Entrada(clave, respuesta, origenes(pedidoId, dependencias.apply(cargada)));
+        cache.put(clave, entrada);
+        entrada.origenes().forEach(origen -> indice.compute(origen, (o, entradas) -> {
+            Set<Entrada> conEntrada = entradas != null ? entradas : ConcurrentHashMap.newKeySet();
+            conEntrada.add(entrada);
+            return conEntrada;
+        }));
+        // Si lo que muestra cambio mientras se armaba, la respuesta se devuelve pero no se deja en el cache. Se
+        // revisa despues de indexarla: una invalidacion posterior ya la encuentra en el indice
+        for (Origen origen : entrada.origenes()) {
+            Long invalidado = invalidaciones.getIfPresent(origen);
+            if (invalidado != null && invalidado > antes) {
+                cache.asMap().remove(clave, entrada);
+                break;
+            }
+        }
+        // Si el cache la desalojo antes de indexarla, el listener no la encontro en el indice
+        if (cache.asMap().get(clave) != entrada) {
+            desindexar(entrada);
+        }
+        return respuesta;
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPedidoEliminado(PedidoEliminadoEvent event) {
+        invalidar(new Origen(Tipo.PEDIDO, event.getPedidoId()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductoEvent(ProductoEvent event) {
+        if (event.getTipo() == ProductoEvent.Tipo.ACTUALIZADO || event.getTipo() == ProductoEvent.Tipo.ELIMINADO) {
+            invalidar(new Origen(Tipo.PRODUCTO, event.getProductoId()));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUsuarioEvent(UsuarioEvent event) {
+        invalidar(new Origen(Tipo.USUARIO, event.getUsuarioId()));
+    }
+
+    // Primero se registra la invalidacion, para que una carga en curso no guarde su respuesta, y despues se
+    // descartan las respuestas indexadas
+    private void invalidar(Origen origen) {
+        invalidaciones.put(origen, generacion.incrementAndGet());
+        Set<Entrada> entradas = indice.remove(origen);
+        if (entradas != null) {
+            entradas.forEach(entrada -> cache.asMap().remove(entrada.clave(), entrada));
+        }
+    }
+
+    private void desindexar(Entrada entrada) {
+        entrada.origenes().forEach(origen -> indice.computeIfPresent(origen, (o, entradas) -> {
+            entradas.remove(entrada);
+            return entradas.isEmpty() ? null : entradas;
+        }));
+    }
+
+    private static Set<Origen> origenes(Long pedidoId, Dependencias dependencias) {
+        Set<Origen> origenes = new HashSet<>();
+        origenes.add(new Origen(Tipo.PEDIDO, pedidoId));
+        if (dependencias.usuarioId() != null) {
+            origenes.add(new Origen(Tipo.USUARIO, dependencias.usuarioId()));
+        }
+        dependencias.productoIds().stream()
+                .filter(Objects::nonNull)
+                .forEach(productoId -> origenes.add(new Origen(Tipo.PRODUCTO, productoId)));
+        return origenes;
+    }
+
+    private byte[] serializar(Object respuesta) {
+        try {
+            return objectMapper.writeValueAsBytes(respuesta);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record Clave(Long pedidoId, Vista vista) {
+    }
+
+    private enum Tipo {
+        PEDIDO,
+        PRODUCTO,
+        USUARIO
+    }
+
+    // Un pedido, producto o usuario que muestran las respuestas
+    private record Origen(Tipo tipo, Long id) {
+    }
+
+    // Dos entradas solo son iguales si comparten el arreglo del JSON, asi quitar una entrada vieja del indice no
+    // quita una nueva de la misma clave
+    private record Entrada(Clave clave, Respuesta respuesta, Set<Origen> origenes) {
+    }
+}
@@ -0,0 +1,111 @@
+package com.ulises.javasemiseniorcommerce.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+import com.ulises.javasemiseniorcommerce.event.ProductoEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache acotado de productos por ID, delante de ProductoRepository. Los productos menos usados se descartan
+ * al superar {@code commerce.cache.producto.max-size} y todos expiran a los {@code commerce.cache.producto.ttl}.
+ * Se invalida despues del commit de cada cambio de un producto (actualizacion, eliminacion o stock), y con la
+ * estrategia ledger tambien despues de que el libro de stock escribe los descuentos en la tabla.
+ * <p>
+ * Para no dejar en el cache un producto leido antes de una invalidacion, quien lo carga toma la
+ * {@link #generacion()} antes de leerlo y lo guarda con {@link #put(ProductoDto, long)}. Solo se descarta la carga
+ * si ese mismo producto se invalido mientras tanto: las invalidaciones de otros productos no la afectan.
+ * Las metricas de aciertos, fallos y descartes se publican como {@code cache.gets} y {@code cache.evictions}
+ * con el tag {@code cache=productos}.
+ *
+ * @author ulide
+ */
+@Component
+public class ProductoCache {
+
+    private final Cache<Long, ProductoDto> cache;
+    // Se incrementa con cada invalidacion, para no guardar productos leidos antes de un cambio
+    private final AtomicLong generacion = new AtomicLong();
+    // Generacion de la ultima invalidacion de cada producto. Dura lo mismo que un producto en el cache: una carga
+    // no tarda tanto y, si tardara, lo que guarde expira igual
+    private final Cache<Long, Long> invalidaciones;
+
+    @Autowired
+    public ProductoCache(@Value("${commerce.cache.producto.max-size:10000}") long maxSize,
+                         @Value("${commerce.cache.producto.ttl:10m}") Duration ttl,
+                         MeterRegistry meterRegistry) {
+        this(maxSize, ttl, Ticker.systemTicker());
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "productos");
+    }
+
+    ProductoCache(long maxSize, Duration ttl, Ticker ticker) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        this.invalidaciones = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * @param id ID del producto.
+     * @return El producto cacheado, o null si no esta en el cache.
+     */
+    public ProductoDto get(Long id) {
+        return cache.getIfPresent(id);
+    }
+
+    public void put(ProductoDto producto) {
+        cache.put(producto.getId(), producto);
+    }
+
+    /**
+     * Guarda un producto salvo que ese producto se haya invalidado desde que se empezo a leer.
+     *
+     * @param producto         Producto leido de la base de datos.
+     * @param generacionAntes  Valor de {@link #generacion()} tomado antes de leer el producto.
+     */
+    public void put(ProductoDto producto, long generacionAntes) {
+        cache.put(producto.getId(), producto);
+        // Se lee la invalidacion despues de guardar para cubrir una invalidacion entre la carga y el put
+        Long invalidado = invalidaciones.getIfPresent(producto.getId());
+        if (invalidado != null && invalidado > generacionAntes) {
+            cache.invalidate(producto.getId());
+        }
+    }
+
+    public long generacion() {
+        return generacion.get();
+    }
+
+    public void invalidate(Long id) {
+        invalidaciones.put(id, generacion.incrementAndGet());
+        cache.invalidate(id);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    // Se invalida despues del commit para que una lectura concurrente no vuelva a cachear el valor anterior
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductoEvent(ProductoEvent event) {
+        if (event.getTipo() != ProductoEvent.Tipo.CREADO) {
+            invalidate(event.getProductoId());
+        }
+    }
+}
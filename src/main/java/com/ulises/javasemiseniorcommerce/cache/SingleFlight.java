@@ -0,0 +1,57 @@
+package com.ulises.javasemiseniorcommerce.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Agrupa cargas concurrentes de una misma clave: el primer hilo ejecuta la carga y los que llegan
+ * mientras esta en curso esperan y reciben el mismo resultado (o la misma excepcion).
+ * Apenas termina la carga la clave se libera, por lo que no cachea resultados.
+ *
+ * @author ulide
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> enCurso = new ConcurrentHashMap<>();
+
+    /**
+     * @param clave Clave de la carga.
+     * @param carga Carga que se ejecuta si no hay otra en curso para la misma clave.
+     * @return El resultado de la carga.
+     */
+    public V ejecutar(K clave, Supplier<V> carga) {
+        CompletableFuture<V> propia = new CompletableFuture<>();
+        CompletableFuture<V> existente = enCurso.putIfAbsent(clave, propia);
+        if (existente != null) {
+            return esperar(existente);
+        }
+
+        try {
+            V valor = carga.get();
+            propia.complete(valor);
+            return valor;
+        } catch (RuntimeException | Error e) {
+            propia.completeExceptionally(e);
+            throw e;
+        } finally {
+            enCurso.remove(clave, propia);
+        }
+    }
+
+    private V esperar(CompletableFuture<V> carga) {
+        try {
+            return carga.join();
+        } catch (CompletionException e) {
+            // Se relanza la excepcion original para que todos los hilos vean lo mismo que el que hizo la carga
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
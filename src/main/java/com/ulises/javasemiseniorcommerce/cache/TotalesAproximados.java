@@ -0,0 +1,128 @@
+package com.ulises.javasemiseniorcommerce.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.ulises.javasemiseniorcommerce.dto.ConteoTotal;
+import com.ulises.javasemiseniorcommerce.repository.PedidoRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongSupplier;
+
+/**
+ * Totales aproximados de los listados paginados, para no hacer un COUNT en cada pagina.
+ * <p>
+ * El total se cuenta la primera vez que se pide un filtro y queda cacheado. Pasado
+ * {@code commerce.listados.total-aproximado.refresh}, la siguiente lectura devuelve el valor cacheado y
+ * vuelve a contar en segundo plano. Los filtros que no se piden durante diez intervalos de refresco se descartan.
+ * Las metricas se publican como {@code cache.gets} con el tag {@code cache=totales}.
+ *
+ * @author ulide
+ */
+@Component
+public class TotalesAproximados {
+
+    private final LoadingCache<Object, Long> totales;
+
+    @Autowired
+    public TotalesAproximados(ProductoRepository productoRepository,
+                              PedidoRepository pedidoRepository,
+                              @Value("${commerce.listados.total-aproximado.max-size:10000}") long maxSize,
+                              @Value("${commerce.listados.total-aproximado.refresh:30s}") Duration refresco,
+                              MeterRegistry meterRegistry) {
+        this(productoRepository, pedidoRepository, maxSize, refresco, Ticker.systemTicker(), ForkJoinPool.commonPool());
+        CaffeineCacheMetrics.monitor(meterRegistry, totales, "totales");
+    }
+
+    TotalesAproximados(ProductoRepository productoRepository, PedidoRepository pedidoRepository, long maxSize,
+                       Duration refresco, Ticker ticker, Executor executor) {
+        this.totales = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .refreshAfterWrite(refresco)
+                .expireAfterWrite(refresco.multipliedBy(10))
+                .ticker(ticker)
+                .executor(executor)
+                .recordStats()
+                .build(clave -> {
+                    if (clave instanceof FiltroProductos filtro) {
+                        return productoRepository.countProductosByPalabrasClave(
+                                filtro.palabrasClave(), filtro.precioMin(), filtro.precioMax());
+                    }
+                    return pedidoRepository.countByUsuarioEmail(((PedidosDeUsuario) clave).email());
+                });
+    }
+
+    /**
+     * Completa una pagina de productos leida sin COUNT segun el total pedido.
+     *
+     * @param pagina Pagina leida sin total.
+     * @param conteo APROXIMADO para agregarle el total cacheado del filtro, NINGUNO para dejarla sin total.
+     */
+    public <T> Slice<T> productos(Slice<T> pagina, ConteoTotal conteo, String palabrasClave,
+                                  Double precioMin, Double precioMax) {
+        return completar(pagina, conteo, () -> totales.get(new FiltroProductos(palabrasClave, precioMin, precioMax)));
+    }
+
+    /**
+     * Completa una pagina de pedidos de un usuario leida sin COUNT segun el total pedido.
+     *
+     * @param pagina Pagina leida sin total.
+     * @param conteo APROXIMADO para agregarle el total cacheado del usuario, NINGUNO para dejarla sin total.
+     * @param email  Email del usuario.
+     */
+    public <T> Slice<T> pedidosDeUsuario(Slice<T> pagina, ConteoTotal conteo, String email) {
+        return completar(pagina, conteo, () -> totales.get(new PedidosDeUsuario(email)));
+    }
+
+    /**
+     * Quita el total de una pagina que ya lo tenia (por ejemplo, la de un indice en memoria) si no se pidio.
+     */
+    public static <T> Slice<T> sinTotal(Page<T> pagina, ConteoTotal conteo) {
+        if (conteo != ConteoTotal.NINGUNO) {
+            return pagina;
+        }
+        return new SliceImpl<>(pagina.getContent(), pagina.getPageable(), pagina.hasNext());
+    }
+
+    public CacheStats stats() {
+        return totales.stats();
+    }
+
+    private static <T> Slice<T> completar(Slice<T> pagina, ConteoTotal conteo, LongSupplier aproximado) {
+        if (conteo != ConteoTotal.APROXIMADO) {
+            return pagina;
+        }
+        long vistos = pagina.getPageable().getOffset() + pagina.getNumberOfElements();
+        long total;
+        if (pagina.hasNext()) {
+            // El valor cacheado puede estar atrasado, pero nunca puede ser menor que lo que ya se vio
+            total = Math.max(aproximado.getAsLong(), vistos + 1);
+        } else if (pagina.hasContent() || pagina.isFirst()) {
+            // En la ultima pagina el total se conoce exacto
+            total = vistos;
+        } else {
+            // Una pagina vacia despues del final: el total no puede llegar hasta su inicio
+            total = Math.min(aproximado.getAsLong(), vistos);
+        }
+        return new PageImpl<>(pagina.getContent(), pagina.getPageable(), total);
+    }
+
+    private record FiltroProductos(String palabrasClave, Double precioMin, Double precioMax) {
+    }
+
+    private record PedidosDeUsuario(String email) {
+    }
+}
@@ -0,0 +1,12 @@
+package com.ulises.javasemiseniorcommerce.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * @author ulide
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
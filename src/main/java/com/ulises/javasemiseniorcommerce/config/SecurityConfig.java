@@ -1,6 +1,7 @@
 package com.ulises.javasemiseniorcommerce.config;
 
 import com.ulises.javasemiseniorcommerce.jwt.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -25,6 +26,9 @@ public class SecurityConfig {
         return http.csrf().disable()
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/auth/**").permitAll()
+                        // El despacho que cierra una respuesta asincrona (por ejemplo /producto/export) ya se
+                        // autorizo con la peticion original, que es la que trae el JWT
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .anyRequest().authenticated()
                 )
                 .sessionManagement(sessionManager -> sessionManager
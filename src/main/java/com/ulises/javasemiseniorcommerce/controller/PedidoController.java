@@ -1,19 +1,26 @@
 package com.ulises.javasemiseniorcommerce.controller;
 
+import com.ulises.javasemiseniorcommerce.cache.PedidoRespuestaCache;
 import com.ulises.javasemiseniorcommerce.dto.*;
 import com.ulises.javasemiseniorcommerce.service.PedidoService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.PositiveOrZero;
-import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -22,10 +29,19 @@ import java.util.List;
 @Tag(name = "Pedidos", description = "Endpoint para gestionar pedidos.")
 @RestController
 @RequestMapping("/pedido")
-@RequiredArgsConstructor
 public class PedidoController {
 
     private final PedidoService pedidoService;
+    private final PedidoRespuestaCache pedidoRespuestaCache;
+    // Cuanto tiempo puede reutilizar un cliente un pedido sin volver a consultarlo
+    private final Duration maxAgePedidos;
+
+    public PedidoController(PedidoService pedidoService, PedidoRespuestaCache pedidoRespuestaCache,
+                            @Value("${commerce.pedidos.cache-control.max-age:1h}") Duration maxAgePedidos) {
+        this.pedidoService = pedidoService;
+        this.pedidoRespuestaCache = pedidoRespuestaCache;
+        this.maxAgePedidos = maxAgePedidos;
+    }
 
     /**
      * Obtiene un pedido mediante su ID.
@@ -35,14 +51,19 @@ public class PedidoController {
      */
     @Operation(
             summary = "Obtener pedido",
-            description = "Devuelve la informacion de un pedido mediante un ID.",
+            description = "Devuelve la informacion de un pedido mediante un ID. La respuesta incluye un ETag: si se " +
+                    "envia en If-None-Match y el pedido no cambio, se responde 304 sin contenido.",
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Pedido encontrado exitosamente."),
+                    @ApiResponse(responseCode = "200", description = "Pedido encontrado exitosamente.",
+                            content = @Content(schema = @Schema(implementation = PedidoDto.class))),
+                    @ApiResponse(responseCode = "304", description = "El pedido no cambio desde el ETag indicado en If-None-Match."),
                     @ApiResponse(responseCode = "404", description = "Pedido no encontrado.")})
     @GetMapping("/{id}")
-    public ResponseEntity<PedidoDto> getPedidoById(@PathVariable Long id) {
-        PedidoDto pedido = pedidoService.getPedidoById(id);
-        return ResponseEntity.ok(pedido);
+    public ResponseEntity<byte[]> getPedidoById(@PathVariable Long id) {
+        return json(pedidoRespuestaCache.obtener(id, PedidoRespuestaCache.Vista.PEDIDO,
+                () -> pedidoService.getPedidoById(id),
+                pedido -> new PedidoRespuestaCache.Dependencias(pedido.getUsuarioId(),
+                        pedido.getDetalles().stream().map(DetalleDto::getProductoId).toList())));
     }
 
     /**
@@ -55,12 +76,14 @@ public class PedidoController {
             summary = "Obtener productos de pedido",
             description = "Devuelve los productos que contiene un pedido mediante la ID del pedido.",
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Productos encontrados."),
+                    @ApiResponse(responseCode = "200", description = "Productos encontrados.",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = ProductoCantidad.class)))),
                     @ApiResponse(responseCode = "404", description = "Pedido no encontrado.")})
     @GetMapping("/{id}/productos")
-    public ResponseEntity<List<ProductoCantidad>> listProductos(@PathVariable Long id) {
-        List<ProductoCantidad> productos = pedidoService.listProductos(id);
-        return ResponseEntity.ok(productos);
+    public ResponseEntity<byte[]> listProductos(@PathVariable Long id) {
+        return json(pedidoRespuestaCache.obtener(id, PedidoRespuestaCache.Vista.PRODUCTOS,
+                () -> pedidoService.listProductos(id),
+                productos -> new PedidoRespuestaCache.Dependencias(null, productoIds(productos))));
     }
 
     /**
@@ -73,12 +96,15 @@ public class PedidoController {
             summary = "Obtener detalle de pedido",
             description = "Devuelve el detalle del pedido (Productos, cantidad, precio de los productos y precio total).",
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Detalle del pedido encontrado exitosamente."),
+                    @ApiResponse(responseCode = "200", description = "Detalle del pedido encontrado exitosamente.",
+                            content = @Content(schema = @Schema(implementation = DetallePedidoResponse.class))),
                     @ApiResponse(responseCode = "404", description = "Pedido no encontrado.")})
     @GetMapping("/{id}/detalle")
-    public ResponseEntity<DetallePedidoResponse> getDetalle(@PathVariable Long id) {
-        DetallePedidoResponse pedido = pedidoService.getDetalleDePedido(id);
-        return ResponseEntity.ok(pedido);
+    public ResponseEntity<byte[]> getDetalle(@PathVariable Long id) {
+        return json(pedidoRespuestaCache.obtener(id, PedidoRespuestaCache.Vista.DETALLE,
+                () -> pedidoService.getDetalleDePedido(id),
+                detalle -> new PedidoRespuestaCache.Dependencias(detalle.getUsuarioId(),
+                        productoIds(detalle.getProductos()))));
     }
 
     /**
@@ -99,6 +125,26 @@ public class PedidoController {
         return ResponseEntity.status(HttpStatus.CREATED).body(pedido);
     }
 
+    /**
+     * Verifica si hay stock para un pedido sin crearlo.
+     *
+     * @param pedidoRequest Datos del pedido que se quiere verificar.
+     * @return Disponibilidad de cada linea del pedido.
+     */
+    @Operation(
+            summary = "Verificar disponibilidad",
+            description = "Indica si hay stock suficiente para cada linea del pedido y para el pedido completo, " +
+                    "sin crearlo ni reservar stock. Si un producto aparece en varias lineas, se compara con la " +
+                    "cantidad total pedida. El stock puede cambiar antes de crear el pedido.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Disponibilidad verificada."),
+                    @ApiResponse(responseCode = "400", description = "Argumentos invalidos.")})
+    @PostMapping("/disponibilidad")
+    public ResponseEntity<DisponibilidadResponse> verificarDisponibilidad(@Valid @RequestBody PedidoRequest pedidoRequest) {
+        DisponibilidadResponse disponibilidad = pedidoService.verificarDisponibilidad(pedidoRequest);
+        return ResponseEntity.ok(disponibilidad);
+    }
+
     /**
      * Elimina un pedido.
      *
@@ -119,17 +165,59 @@ public class PedidoController {
      * Obtiene todos los pedidos asociados a un email.
      *
      * @param email Email del usuario.
+     * @param total Total de pedidos: exact (por defecto), approximate o none.
      * @return Lista de pedidos.
      */
-    @Operation(summary = "Pedidos de usuario", description = "Devuelve todos los pedidos de un usuario registrado con el email proporcionado.")
+    @Operation(summary = "Pedidos de usuario", description = "Devuelve todos los pedidos de un usuario registrado con el email proporcionado. " +
+            "Con total=approximate el total de pedidos puede estar atrasado unos segundos; con total=none no se cuenta y " +
+            "solo se indica si hay otra pagina.")
     @ApiResponse(responseCode = "200", description = "Pedidos encontrados exitosamente.")
     @ApiResponse(responseCode = "404", description = "Usuario no encontrado.")
     @GetMapping("/usuario/{email}")
-    public ResponseEntity<Page<PedidoDto>> getPedidosByUsuario(
+    public ResponseEntity<Slice<PedidoDto>> getPedidosByUsuario(
             @PathVariable String email,
             @Valid @PositiveOrZero(message = "El numero de la pagina tiene que ser positivo.") @RequestParam(required = false, defaultValue = "0") int page,
+            @Valid @Positive(message = "El tamanio de la muestra tiene que ser mayor que cero.") @RequestParam(required = false, defaultValue = "5") int size,
+            @RequestParam(required = false, defaultValue = "exact") String total) {
+        Slice<PedidoDto> pedidos = pedidoService.getPedidosByMail(email, page, size, ConteoTotal.desde(total));
+        return ResponseEntity.ok(pedidos);
+    }
+
+    /**
+     * Obtiene los pedidos de un usuario paginados con cursor.
+     *
+     * @param email  Email del usuario.
+     * @param cursor Cursor de la pagina anterior, vacio para la primera pagina.
+     * @param size   Tamanio de la pagina.
+     * @return Pedidos de la pagina y cursor de la siguiente.
+     */
+    @Operation(summary = "Pedidos de usuario con cursor", description = "Devuelve los pedidos de un usuario ordenados por ID. " +
+            "Cada respuesta incluye el cursor para pedir la pagina siguiente, sin el total de pedidos. Es mas rapido que " +
+            "la paginacion por numero de pagina para recorrer muchas paginas.")
+    @ApiResponse(responseCode = "200", description = "Pedidos encontrados exitosamente.")
+    @ApiResponse(responseCode = "400", description = "Cursor invalido.")
+    @ApiResponse(responseCode = "404", description = "Usuario no encontrado.")
+    @GetMapping("/usuario/{email}/cursor")
+    public ResponseEntity<PaginaCursor<PedidoDto>> getPedidosByUsuarioConCursor(
+            @PathVariable String email,
+            @RequestParam(required = false) String cursor,
             @Valid @Positive(message = "El tamanio de la muestra tiene que ser mayor que cero.") @RequestParam(required = false, defaultValue = "5") int size) {
-        Page<PedidoDto> pedidos = pedidoService.getPedidosByMail(email, page, size);
+        PaginaCursor<PedidoDto> pedidos = pedidoService.getPedidosByMailConCursor(email, cursor, size);
         return ResponseEntity.ok(pedidos);
     }
+
+    private static List<Long> productoIds(List<ProductoCantidad> productos) {
+        return productos.stream().map(ProductoCantidad::getProductoId).toList();
+    }
+
+    // Las lecturas de un pedido devuelven el JSON ya serializado que guarda PedidoRespuestaCache. Con el ETag,
+    // Spring responde 304 sin cuerpo cuando coincide con If-None-Match. Es privada porque la respuesta requiere
+    // autenticacion y no debe guardarse en caches compartidos
+    private ResponseEntity<byte[]> json(PedidoRespuestaCache.Respuesta respuesta) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(respuesta.etag())
+                .cacheControl(CacheControl.maxAge(maxAgePedidos).cachePrivate())
+                .body(respuesta.json());
+    }
 }
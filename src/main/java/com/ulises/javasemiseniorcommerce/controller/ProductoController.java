@@ -1,19 +1,45 @@
 package com.ulises.javasemiseniorcommerce.controller;
 
+import com.ulises.javasemiseniorcommerce.dto.ActualizacionMasivaRequest;
+import com.ulises.javasemiseniorcommerce.dto.ConteoTotal;
+import com.ulises.javasemiseniorcommerce.dto.PaginaCursor;
 import com.ulises.javasemiseniorcommerce.dto.ProductoRequest;
 import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+import com.ulises.javasemiseniorcommerce.dto.ProductoPorIdDto;
+import com.ulises.javasemiseniorcommerce.dto.ProductosPorIdRequest;
+import com.ulises.javasemiseniorcommerce.dto.ResultadoActualizacionMasiva;
+import com.ulises.javasemiseniorcommerce.dto.ResultadoImportacion;
+import com.ulises.javasemiseniorcommerce.dto.SugerenciaDto;
+import com.ulises.javasemiseniorcommerce.importacion.FormatoImportacion;
+import com.ulises.javasemiseniorcommerce.search.ConsultaBusqueda;
+import com.ulises.javasemiseniorcommerce.search.OrdenBusqueda;
+import com.ulises.javasemiseniorcommerce.search.SugerenciasProductos;
+import com.ulises.javasemiseniorcommerce.service.ProductoActualizacionMasivaService;
+import com.ulises.javasemiseniorcommerce.service.ProductoExportService;
+import com.ulises.javasemiseniorcommerce.service.ProductoImportService;
 import com.ulises.javasemiseniorcommerce.service.ProductoService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.PositiveOrZero;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * @author ulide
@@ -25,6 +51,9 @@ import org.springframework.web.bind.annotation.*;
 public class ProductoController {
 
     private final ProductoService productoService;
+    private final ProductoImportService productoImportService;
+    private final ProductoActualizacionMasivaService productoActualizacionMasivaService;
+    private final ProductoExportService productoExportService;
 
     /**
      * Obtiene la informacion de un producto a traves de un ID
@@ -34,14 +63,65 @@ public class ProductoController {
      */
     @Operation(
             summary = "Obtener producto",
-            description = "Devuelve un producto mediante registrado con el ID proporcionado.",
+            description = "Devuelve un producto mediante registrado con el ID proporcionado. La respuesta incluye un " +
+                    "ETag con la version del producto: si se envia en If-None-Match y el producto no cambio, se " +
+                    "responde 304 sin contenido.",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Producto encontrado exitosamente."),
+                    @ApiResponse(responseCode = "304", description = "El producto no cambio desde el ETag indicado en If-None-Match."),
                     @ApiResponse(responseCode = "404", description = " no encontrado.")})
     @GetMapping("/{id}")
-    public ResponseEntity<ProductoDto> getProducto(@PathVariable Long id) {
+    public ResponseEntity<ProductoDto> getProducto(@PathVariable Long id, WebRequest request) {
+        // Con If-None-Match alcanza con la version de la base de datos para saber si el producto cambio, sin cargarlo
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                && request.checkNotModified(etag(productoService.getVersionProducto(id)))) {
+            return null;
+        }
+
         ProductoDto producto = productoService.getProductoById(id);
-        return ResponseEntity.ok(producto);
+        // El stock cambia seguido: el cliente puede guardar la respuesta, pero tiene que revalidarla cada vez
+        return ResponseEntity.ok()
+                .eTag(etag(producto.getVersion()))
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(producto);
+    }
+
+    /**
+     * Obtiene varios productos a traves de sus IDs, con una sola consulta
+     *
+     * @param ids IDs de los productos separados por coma
+     * @return Un resultado por cada ID, en el mismo orden
+     */
+    @Operation(
+            summary = "Obtener varios productos",
+            description = "Devuelve los productos con los IDs proporcionados (ids=1,2,3), en el mismo orden. Los IDs que no " +
+                    "corresponden a un producto se devuelven con encontrado=false. Se pueden pedir hasta " +
+                    ProductoService.MAX_PRODUCTOS_POR_ID + " productos por vez.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Productos encontrados."),
+                    @ApiResponse(responseCode = "400", description = "Demasiados IDs o IDs invalidos.")})
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<ProductoPorIdDto>> getProductosByIds(@RequestParam List<Long> ids) {
+        List<ProductoPorIdDto> productos = productoService.getProductosByIds(ids);
+        return ResponseEntity.ok(productos);
+    }
+
+    /**
+     * Obtiene varios productos a traves de sus IDs enviados en el cuerpo, para listas que no entran en la URL
+     *
+     * @param request IDs de los productos
+     * @return Un resultado por cada ID, en el mismo orden
+     */
+    @Operation(
+            summary = "Obtener varios productos (POST)",
+            description = "Igual que GET /producto?ids=..., con los IDs en el cuerpo de la peticion.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Productos encontrados."),
+                    @ApiResponse(responseCode = "400", description = "Demasiados IDs o IDs invalidos.")})
+    @PostMapping("/batch")
+    public ResponseEntity<List<ProductoPorIdDto>> getProductosByIds(@Valid @RequestBody ProductosPorIdRequest request) {
+        List<ProductoPorIdDto> productos = productoService.getProductosByIds(request.getIds());
+        return ResponseEntity.ok(productos);
     }
 
     /**
@@ -51,16 +131,43 @@ public class ProductoController {
      */
     @Operation(
             summary = "Obtener todos los productos",
-            description = "Devuelve todos los productos y su informacion.",
+            description = "Devuelve todos los productos y su informacion. Con precioMin y/o precioMax devuelve solo " +
+                    "los productos dentro del rango, ordenados por precio. Con total=approximate el total de productos " +
+                    "puede estar atrasado unos segundos; con total=none no se cuenta y solo se indica si hay otra pagina.",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Se encontraron x productos.")})
     @GetMapping
-    public ResponseEntity<Page<ProductoDto>> getAllProductos(
+    public ResponseEntity<Slice<ProductoDto>> getAllProductos(
             @Valid @RequestParam(required = false) Double precioMin,
             @Valid @RequestParam(required = false) Double precioMax,
             @Valid @RequestParam(defaultValue = "0") int page,
-            @Valid @RequestParam(defaultValue = "5") int size) {
-        Page<ProductoDto> productos = productoService.getAllProductos(precioMin, precioMax, page, size);
+            @Valid @RequestParam(defaultValue = "5") int size,
+            @RequestParam(required = false, defaultValue = "exact") String total) {
+        Slice<ProductoDto> productos = productoService.getAllProductos(precioMin, precioMax, page, size,
+                ConteoTotal.desde(total));
+        return ResponseEntity.ok(productos);
+    }
+
+    /**
+     * Obtiene todos los productos paginados con cursor
+     *
+     * @return Productos de la pagina y cursor de la siguiente
+     */
+    @Operation(
+            summary = "Obtener todos los productos con cursor",
+            description = "Devuelve los productos ordenados por ID, o por precio si se indica precioMin y/o precioMax. " +
+                    "Cada respuesta incluye el cursor para pedir la pagina siguiente, sin el total de productos. Es mas " +
+                    "rapido que la paginacion por numero de pagina para recorrer muchas paginas.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Productos encontrados."),
+                    @ApiResponse(responseCode = "400", description = "Cursor invalido.")})
+    @GetMapping("/cursor")
+    public ResponseEntity<PaginaCursor<ProductoDto>> getAllProductosConCursor(
+            @Valid @RequestParam(required = false) Double precioMin,
+            @Valid @RequestParam(required = false) Double precioMax,
+            @RequestParam(required = false) String cursor,
+            @Valid @Positive(message = "El tamanio de la muestra tiene que ser mayor que cero.") @RequestParam(required = false, defaultValue = "5") int size) {
+        PaginaCursor<ProductoDto> productos = productoService.getAllProductosConCursor(precioMin, precioMax, cursor, size);
         return ResponseEntity.ok(productos);
     }
 
@@ -82,6 +189,85 @@ public class ProductoController {
         return ResponseEntity.status(HttpStatus.CREATED).body(productoDto);
     }
 
+    /**
+     * Importa productos desde un archivo CSV o NDJSON
+     *
+     * @param contentType text/csv o application/x-ndjson
+     * @param archivo     Contenido del archivo, se lee a medida que llega
+     * @return Cantidad de productos importados y filas rechazadas con el motivo
+     */
+    @Operation(
+            summary = "Importar productos",
+            description = "Crea los productos de un archivo CSV (text/csv, con encabezado nombre,descripcion,precio,stockDisponible) " +
+                    "o NDJSON (application/x-ndjson, un producto en JSON por linea). Cada fila se valida igual que al crear " +
+                    "un producto; las filas invalidas se informan con su numero y el motivo, y no impiden importar el resto. " +
+                    "El archivo se procesa a medida que llega, sin importar su tamanio.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Importacion terminada, con el detalle de las filas rechazadas."),
+                    @ApiResponse(responseCode = "400", description = "Encabezado del CSV invalido."),
+                    @ApiResponse(responseCode = "415", description = "Formato no soportado.")})
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<ResultadoImportacion> importarProductos(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream archivo) {
+        ResultadoImportacion resultado = productoImportService.importar(archivo, FormatoImportacion.desde(contentType));
+        return ResponseEntity.ok(resultado);
+    }
+
+    /**
+     * Exporta todos los productos como NDJSON o CSV
+     *
+     * @param format         ndjson (por defecto) o csv
+     * @param acceptEncoding Si incluye gzip, la respuesta se comprime
+     * @return Archivo con todos los productos, escrito a medida que se leen
+     */
+    @Operation(
+            summary = "Exportar productos",
+            description = "Devuelve el catalogo completo ordenado por ID como NDJSON (un producto en JSON por linea) o CSV " +
+                    "(con encabezado id,nombre,descripcion,precio,stockDisponible, que se puede volver a importar). " +
+                    "Los productos se escriben a medida que se leen, sin importar la cantidad. Con Accept-Encoding: gzip " +
+                    "la respuesta se comprime.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Catalogo exportado."),
+                    @ApiResponse(responseCode = "400", description = "Formato invalido.")})
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportarProductos(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        FormatoImportacion formato = FormatoImportacion.desdeNombre(format);
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(formato.getTipo() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("productos." + formato.name().toLowerCase(Locale.ROOT)).build().toString())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            respuesta.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return respuesta.body(salida -> productoExportService.exportar(salida, formato, gzip));
+    }
+
+    /**
+     * Actualiza el precio y/o el stock de varios productos
+     *
+     * @param request Nuevo precio y/o stock de cada producto
+     * @return Cantidad de productos actualizados e IDs inexistentes
+     */
+    @Operation(
+            summary = "Actualizar precio y stock de varios productos",
+            description = "Aplica una lista de cambios {id, precio, stockDisponible}; los campos que no se indican no se " +
+                    "modifican. Los cambios se aplican en lotes sin leer los productos; los IDs que no existen se " +
+                    "informan en noEncontrados y no impiden aplicar el resto.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Cambios aplicados, con los IDs inexistentes."),
+                    @ApiResponse(responseCode = "400", description = "Argumentos invalidos.")})
+    @PatchMapping("/bulk")
+    public ResponseEntity<ResultadoActualizacionMasiva> actualizarProductos(
+            @Valid @RequestBody ActualizacionMasivaRequest request) {
+        return ResponseEntity.ok(productoActualizacionMasivaService.actualizar(request.getCambios()));
+    }
+
     /**
      * Actualiza un producto existente
      *
@@ -112,25 +298,106 @@ public class ProductoController {
      * @param precioMax     Precio maximo de producto.
      * @param page          Numero de pagina.
      * @param size          Tamanio de la muestra de la pagina.
+     * @param sort          Orden de los resultados: price (por defecto) o relevance.
+     * @param fuzzy         Si es true, tolera errores de tipeo en las palabras clave.
+     * @param total         Total de productos: exact (por defecto), approximate o none.
+     * @param priceFacet    Ancho de los rangos de precio para contar productos por rango, sin rangos si no se indica.
+     *                      Se agranda si el catalogo quedaria en mas de 100 rangos.
      * @return Productos encontrados en base a los filtros.
      */
     @Operation(
             summary = "Buscar productos",
-            description = "Busca productos mediante una palabra clave y precios de producto.",
+            description = "Busca productos mediante una palabra clave y precios de producto. Con sort=relevance los productos " +
+                    "se ordenan por relevancia (las coincidencias en el nombre pesan mas que en la descripcion); " +
+                    "por defecto se ordenan por precio. Con fuzzy=true cada palabra tambien coincide con palabras " +
+                    "parecidas (por ejemplo \"pantalom\" con \"pantalon\"). Con total=approximate el total de productos " +
+                    "puede estar atrasado unos segundos; con total=none no se cuenta y solo se indica si hay otra pagina. " +
+                    "Con priceFacet la respuesta incluye facetasPrecio: la cantidad de productos que coinciden con las " +
+                    "palabras clave por rango de precios de ese ancho, sin aplicar precioMin y precioMax; el total es exacto. " +
+                    "Si con ese ancho el catalogo tuviera mas de 100 rangos, se usa el menor multiplo del ancho que lo " +
+                    "deja en 100 o menos.",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Productos encontrados.")})
     @GetMapping("/search")
-    public ResponseEntity<Page<ProductoDto>> searchProductos(
+    public ResponseEntity<Slice<ProductoDto>> searchProductos(
             @Valid @RequestParam(required = false) String palabrasClave,
             @Valid @RequestParam(required = false) Double precioMin,
             @Valid @RequestParam(required = false) Double precioMax,
             @Valid @PositiveOrZero(message = "El numero de la pagina tiene que ser positivo.") @RequestParam(required = false, defaultValue = "0") int page,
-            @Valid @Positive(message = "El tamanio de la muestra tiene que ser mayor que cero.") @RequestParam(required = false, defaultValue = "5") int size) {
-        Page<ProductoDto> productos = productoService.getProductosBySearch(
-                palabrasClave, precioMin, precioMax, page, size);
+            @Valid @Positive(message = "El tamanio de la muestra tiene que ser mayor que cero.") @RequestParam(required = false, defaultValue = "5") int size,
+            @RequestParam(required = false, defaultValue = "price") String sort,
+            @RequestParam(required = false, defaultValue = "false") boolean fuzzy,
+            @RequestParam(required = false, defaultValue = "exact") String total,
+            @Valid @Positive(message = "El ancho de los rangos de precio tiene que ser mayor que cero.") @RequestParam(required = false) Double priceFacet) {
+        ConsultaBusqueda consulta = ConsultaBusqueda.builder()
+                .texto(palabrasClave)
+                .precioMin(precioMin)
+                .precioMax(precioMax)
+                .orden(OrdenBusqueda.desde(sort))
+                .difuso(fuzzy)
+                .anchoRangoPrecio(priceFacet)
+                .build();
+        Slice<ProductoDto> productos = productoService.getProductosBySearch(consulta, page, size,
+                ConteoTotal.desde(total));
+        return ResponseEntity.ok(productos);
+    }
+
+    /**
+     * Busca productos en base a filtros, paginados con cursor.
+     *
+     * @param cursor Cursor de la pagina anterior, vacio para la primera pagina.
+     * @return Productos de la pagina y cursor de la siguiente.
+     */
+    @Operation(
+            summary = "Buscar productos con cursor",
+            description = "Igual que /producto/search, pero cada respuesta incluye el cursor para pedir la pagina siguiente, " +
+                    "sin el total de productos. El cursor solo sirve con el mismo orden (sort).",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Productos encontrados."),
+                    @ApiResponse(responseCode = "400", description = "Cursor invalido.")})
+    @GetMapping("/search/cursor")
+    public ResponseEntity<PaginaCursor<ProductoDto>> searchProductosConCursor(
+            @Valid @RequestParam(required = false) String palabrasClave,
+            @Valid @RequestParam(required = false) Double precioMin,
+            @Valid @RequestParam(required = false) Double precioMax,
+            @RequestParam(required = false) String cursor,
+            @Valid @Positive(message = "El tamanio de la muestra tiene que ser mayor que cero.") @RequestParam(required = false, defaultValue = "5") int size,
+            @RequestParam(required = false, defaultValue = "price") String sort,
+            @RequestParam(required = false, defaultValue = "false") boolean fuzzy) {
+        ConsultaBusqueda consulta = ConsultaBusqueda.builder()
+                .texto(palabrasClave)
+                .precioMin(precioMin)
+                .precioMax(precioMax)
+                .orden(OrdenBusqueda.desde(sort))
+                .difuso(fuzzy)
+                .build();
+        PaginaCursor<ProductoDto> productos = productoService.getProductosBySearchConCursor(consulta, cursor, size);
         return ResponseEntity.ok(productos);
     }
 
+    /**
+     * Sugiere productos para completar una busqueda mientras se escribe.
+     *
+     * @param prefix Comienzo del nombre del producto.
+     * @param limit  Cantidad maxima de sugerencias.
+     * @return Productos cuyo nombre empieza con el prefijo, del mas vendido al menos vendido.
+     */
+    @Operation(
+            summary = "Sugerir productos",
+            description = "Devuelve los productos mas vendidos cuyo nombre empieza con el prefijo dado, sin distinguir " +
+                    "mayusculas ni acentos. Pensado para completar la busqueda mientras se escribe.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Sugerencias encontradas.")})
+    @GetMapping("/suggest")
+    public ResponseEntity<List<SugerenciaDto>> suggestProductos(
+            @RequestParam String prefix,
+            @Valid @Positive(message = "La cantidad de sugerencias tiene que ser mayor que cero.")
+            @Max(value = SugerenciasProductos.MAXIMO_SUGERENCIAS, message = "No se pueden pedir mas de 10 sugerencias.")
+            @RequestParam(required = false, defaultValue = "10") int limit) {
+        List<SugerenciaDto> sugerencias = productoService.getSugerencias(prefix, limit);
+        return ResponseEntity.ok(sugerencias);
+    }
+
     /**
      * Elimina un producto. En caso de estar referenciado (en un pedido por ejemplo), se actualizara el ID a null, el precio a 0.0 o null, y se dara un mensaje de no disponibilidad segun corresponda.
      *
@@ -146,4 +413,9 @@ public class ProductoController {
         productoService.deleteProducto(id);
         return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
     }
+
+    // ETag fuerte a partir de la version del producto, que cambia con cada modificacion de la fila
+    private static String etag(Long version) {
+        return "\"" + version + "\"";
+    }
 }
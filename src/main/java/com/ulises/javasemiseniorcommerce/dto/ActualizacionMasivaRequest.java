@@ -0,0 +1,30 @@
+package com.ulises.javasemiseniorcommerce.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * @author ulide
+ *
+ * Clase DTO para recibir los cambios de precio y stock de varios productos.
+ */
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Cambios de precio y/o stock de varios productos.")
+public class ActualizacionMasivaRequest {
+
+    @NotNull(message = "Lista de cambios obligatoria.")
+    @Size(min = 1, message = "Se debe indicar al menos un cambio.")
+    @Valid
+    List<ActualizacionProducto> cambios;
+}
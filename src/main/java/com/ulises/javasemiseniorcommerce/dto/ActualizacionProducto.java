@@ -0,0 +1,33 @@
+package com.ulises.javasemiseniorcommerce.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @author ulide
+ *
+ * Clase DTO para recibir el cambio de precio y/o stock de un producto. Se agrupan en una lista que se indexa
+ * en un ActualizacionMasivaRequest.
+ */
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Nuevo precio y/o stock de un producto. Los campos null no se modifican.")
+public class ActualizacionProducto {
+
+    @NotNull(message = "ID de producto obligatorio.")
+    @Positive(message = "El ID del producto debe ser mayor que cero.")
+    Long id;
+
+    @Positive(message = "El precio tiene que ser mayor que cero.")
+    Double precio;
+
+    @Positive(message = "El stock tiene que ser mayor que cero.")
+    Integer stockDisponible;
+}
@@ -0,0 +1,43 @@
+package com.ulises.javasemiseniorcommerce.dto;
+
+import java.util.Arrays;
+
+/**
+ * Como se calcula el total de elementos de un listado paginado, segun el parametro {@code total}.
+ *
+ * @author ulide
+ */
+public enum ConteoTotal {
+
+    // Un COUNT en cada pagina (lo de siempre)
+    EXACTO("exact"),
+    // Total cacheado por filtro y recalculado en segundo plano
+    APROXIMADO("approximate"),
+    // Sin total: la respuesta solo indica si hay una pagina siguiente
+    NINGUNO("none");
+
+    private final String parametro;
+
+    ConteoTotal(String parametro) {
+        this.parametro = parametro;
+    }
+
+    public String getParametro() {
+        return parametro;
+    }
+
+    /**
+     * @param parametro Valor del parametro {@code total}, puede ser null.
+     * @return El tipo de conteo correspondiente, o EXACTO si no se especifico.
+     */
+    public static ConteoTotal desde(String parametro) {
+        if (parametro == null || parametro.isBlank()) {
+            return EXACTO;
+        }
+        return Arrays.stream(values())
+                .filter(conteo -> conteo.parametro.equalsIgnoreCase(parametro.trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "Total invalido: " + parametro + ". Los valores posibles son exact, approximate y none."));
+    }
+}
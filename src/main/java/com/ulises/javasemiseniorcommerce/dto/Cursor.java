@@ -0,0 +1,53 @@
+package com.ulises.javasemiseniorcommerce.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * @author ulide
+ *
+ * Cursor de una pagina: el orden de la consulta y la clave e ID del ultimo elemento devuelto. Viaja al cliente como
+ * un texto opaco (Base64 URL) que el cliente devuelve para pedir la pagina siguiente, asi la consulta sigue desde ese
+ * elemento en lugar de saltar filas con OFFSET.
+ *
+ * @param orden Nombre del orden de la consulta ("id", "price", "relevance"). Un cursor solo sirve para su orden.
+ * @param clave Valor por el que se ordena del ultimo elemento (el ID, el precio o el puntaje).
+ * @param id    ID del ultimo elemento.
+ */
+public record Cursor(String orden, double clave, long id) {
+
+    // Orden por ID ascendente, el de los listados sin filtros
+    public static final String ORDEN_ID = "id";
+    private static final String SEPARADOR = ":";
+
+    /**
+     * @return El cursor como texto para el cliente.
+     */
+    public String codificar() {
+        String texto = orden + SEPARADOR + Long.toHexString(Double.doubleToLongBits(clave)) + SEPARADOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param texto         Cursor recibido del cliente, puede ser null o vacio para pedir la primera pagina.
+     * @param ordenEsperado Orden de la consulta actual.
+     * @return El cursor, o null si no se envio.
+     * @throws IllegalArgumentException Si el cursor no es valido o es de otro orden.
+     */
+    public static Cursor decodificar(String texto, String ordenEsperado) {
+        if (texto == null || texto.isBlank()) {
+            return null;
+        }
+        try {
+            String[] partes = new String(Base64.getUrlDecoder().decode(texto.trim()), StandardCharsets.UTF_8)
+                    .split(SEPARADOR);
+            if (partes.length == 3 && partes[0].equals(ordenEsperado)) {
+                return new Cursor(partes[0], Double.longBitsToDouble(Long.parseUnsignedLong(partes[1], 16)),
+                        Long.parseLong(partes[2]));
+            }
+        } catch (IllegalArgumentException e) {
+            // Base64 o numeros mal formados, se informa igual que un cursor de otro orden
+        }
+        throw new IllegalArgumentException("Cursor invalido. Los cursores solo sirven para la consulta que los devolvio.");
+    }
+}
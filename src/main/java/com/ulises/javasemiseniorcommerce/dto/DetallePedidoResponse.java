@@ -1,5 +1,6 @@
 package com.ulises.javasemiseniorcommerce.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
@@ -36,4 +37,8 @@ public class DetallePedidoResponse {
 
     @NotNull(message = "Fecha de creacion obligatoria.")
     LocalDateTime fechaDeCreacion;
+
+    // ID del usuario, para saber que respuestas cacheadas cambian con el. No forma parte del JSON
+    @JsonIgnore
+    Long usuarioId;
 }
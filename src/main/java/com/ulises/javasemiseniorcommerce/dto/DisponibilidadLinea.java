@@ -0,0 +1,22 @@
+package com.ulises.javasemiseniorcommerce.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * @author ulide
+ *
+ * Clase DTO con la disponibilidad de stock de una linea de un pedido. Se agrupan en una lista que se indexa
+ * en un DisponibilidadResponse.
+ */
+@Builder
+@Data
+@Schema(description = "Disponibilidad de una linea del pedido. stockDisponible es null si el producto no existe.")
+public class DisponibilidadLinea {
+    Long productoId;
+    Integer cantidad;
+    Integer stockDisponible;
+    boolean encontrado;
+    boolean disponible;
+}
@@ -0,0 +1,20 @@
+package com.ulises.javasemiseniorcommerce.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * @author ulide
+ *
+ * Clase DTO para devolver al cliente si un pedido se puede realizar con el stock actual.
+ */
+@Builder
+@Data
+@Schema(description = "Disponibilidad de stock de cada linea de un pedido. disponible es true si alcanza para todas.")
+public class DisponibilidadResponse {
+    boolean disponible;
+    List<DisponibilidadLinea> lineas;
+}
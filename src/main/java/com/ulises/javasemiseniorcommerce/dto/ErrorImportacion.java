@@ -0,0 +1,19 @@
+package com.ulises.javasemiseniorcommerce.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * @author ulide
+ *
+ * Clase DTO con el motivo por el que no se importo una fila. Se agrupan en una lista que se indexa
+ * en un ResultadoImportacion.
+ */
+@Builder
+@Data
+@Schema(description = "Fila rechazada de una importacion y el motivo.")
+public class ErrorImportacion {
+    long fila;
+    String mensaje;
+}
@@ -0,0 +1,19 @@
+package com.ulises.javasemiseniorcommerce.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * @author ulide
+ *
+ * Clase DTO con la cantidad de productos de una busqueda dentro de un rango de precios.
+ */
+@Builder
+@Data
+@Schema(description = "Cantidad de productos de la busqueda con precio desde (incluido) hasta (excluido).")
+public class FacetaPrecio {
+    Double desde;
+    Double hasta;
+    long cantidad;
+}
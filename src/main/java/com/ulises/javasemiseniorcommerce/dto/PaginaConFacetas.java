@@ -0,0 +1,24 @@
+package com.ulises.javasemiseniorcommerce.dto;
+
+import lombok.Getter;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**
+ * @author ulide
+ *
+ * Pagina de una busqueda con la cantidad de productos por rango de precios. Se serializa igual que Page,
+ * con el campo facetasPrecio agregado.
+ */
+@Getter
+public class PaginaConFacetas<T> extends PageImpl<T> {
+
+    private final List<FacetaPrecio> facetasPrecio;
+
+    public PaginaConFacetas(List<T> content, Pageable pageable, long total, List<FacetaPrecio> facetasPrecio) {
+        super(content, pageable, total);
+        this.facetasPrecio = facetasPrecio;
+    }
+}
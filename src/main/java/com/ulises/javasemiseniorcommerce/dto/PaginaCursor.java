@@ -0,0 +1,33 @@
+package com.ulises.javasemiseniorcommerce.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * @author ulide
+ *
+ * Pagina de una consulta paginada con cursor. A diferencia de Page no tiene el total de elementos (no hace
+ * falta un COUNT), solo si hay una pagina siguiente y el cursor para pedirla.
+ */
+@Builder
+@Data
+@Schema(description = "Pagina de resultados paginada con cursor, sin el total de elementos.")
+public class PaginaCursor<T> {
+    List<T> contenido;
+
+    @Schema(description = "Cursor para pedir la pagina siguiente (parametro cursor). Es null si no hay mas resultados.")
+    String siguienteCursor;
+
+    boolean haySiguiente;
+
+    public static <T> PaginaCursor<T> de(List<T> contenido, Cursor siguiente) {
+        return PaginaCursor.<T>builder()
+                .contenido(contenido)
+                .siguienteCursor(siguiente != null ? siguiente.codificar() : null)
+                .haySiguiente(siguiente != null)
+                .build();
+    }
+}
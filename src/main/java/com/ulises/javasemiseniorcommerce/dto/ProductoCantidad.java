@@ -1,5 +1,6 @@
 package com.ulises.javasemiseniorcommerce.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -28,4 +29,8 @@ public class ProductoCantidad {
     @NotNull(message = "Precio obligatorio.")
     @Positive(message = "El precio no puede ser menor o igual que cero.")
     Double precioUnidad;
+
+    // ID del producto, para saber que respuestas cacheadas cambian con el. Es null si se elimino y no forma parte del JSON
+    @JsonIgnore
+    Long productoId;
 }
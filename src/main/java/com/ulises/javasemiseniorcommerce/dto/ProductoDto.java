@@ -1,5 +1,6 @@
 package com.ulises.javasemiseniorcommerce.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.*;
 import lombok.Builder;
@@ -30,4 +31,8 @@ public class ProductoDto implements Serializable {
     @NotNull(message = "Stock obligatorio.")
     @Positive(message = "El stock tiene que ser mayor que cero.")
     Integer stockDisponible;
+
+    // Version de la fila, para el ETag de GET /producto/{id}. No forma parte del JSON
+    @JsonIgnore
+    Long version;
 }
\ No newline at end of file
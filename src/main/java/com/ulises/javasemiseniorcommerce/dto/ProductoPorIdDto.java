@@ -0,0 +1,19 @@
+package com.ulises.javasemiseniorcommerce.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * @author ulide
+ *
+ * Clase DTO con el resultado de buscar un producto dentro de una consulta de varios IDs.
+ */
+@Builder
+@Data
+@Schema(description = "Producto pedido por ID. Si no existe, encontrado es false y producto es null.")
+public class ProductoPorIdDto {
+    Long id;
+    boolean encontrado;
+    ProductoDto producto;
+}
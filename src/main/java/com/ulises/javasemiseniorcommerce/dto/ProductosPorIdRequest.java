@@ -0,0 +1,28 @@
+package com.ulises.javasemiseniorcommerce.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * @author ulide
+ *
+ * Clase DTO para recibir los IDs de los productos que se quieren obtener.
+ */
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "IDs de los productos que se quieren obtener.")
+public class ProductosPorIdRequest {
+
+    @NotNull(message = "Lista de IDs obligatoria.")
+    @Size(min = 1, message = "Se debe pedir al menos un producto.")
+    List<Long> ids;
+}
@@ -0,0 +1,20 @@
+package com.ulises.javasemiseniorcommerce.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * @author ulide
+ *
+ * Clase DTO con el resultado de una actualizacion masiva de precios y stock.
+ */
+@Builder
+@Data
+@Schema(description = "Cantidad de productos actualizados e IDs que no corresponden a ningun producto.")
+public class ResultadoActualizacionMasiva {
+    long actualizados;
+    List<Long> noEncontrados;
+}
@@ -0,0 +1,26 @@
+package com.ulises.javasemiseniorcommerce.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * @author ulide
+ *
+ * Clase DTO con el resultado de una importacion de productos.
+ */
+@Builder
+@Data
+@Schema(description = "Resultado de una importacion de productos. errores tiene las primeras filas rechazadas; " +
+        "erroresOmitidos es la cantidad de filas rechazadas que no se detallan.")
+public class ResultadoImportacion {
+    long filasLeidas;
+    long importadas;
+    long rechazadas;
+    long duracionMs;
+    double filasPorSegundo;
+    List<ErrorImportacion> errores;
+    long erroresOmitidos;
+}
@@ -0,0 +1,18 @@
+package com.ulises.javasemiseniorcommerce.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * @author ulide
+ *
+ * Clase DTO con un producto sugerido mientras se escribe una busqueda.
+ */
+@Builder
+@Data
+@Schema(description = "Producto sugerido para completar una busqueda.")
+public class SugerenciaDto {
+    Long id;
+    String nombre;
+}
@@ -0,0 +1,17 @@
+package com.ulises.javasemiseniorcommerce.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @author ulide
+ *
+ * Evento que se publica cuando se elimina un pedido. Los pedidos no cambian despues de crearse, asi que es lo
+ * unico que los caches de pedidos necesitan escuchar, despues del commit de la transaccion.
+ */
+@Getter
+@AllArgsConstructor
+public class PedidoEliminadoEvent {
+
+    private final Long pedidoId;
+}
@@ -0,0 +1,50 @@
+package com.ulises.javasemiseniorcommerce.event;
+
+import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @author ulide
+ *
+ * Evento que se publica cuando cambia un producto. Los caches e indices en memoria lo escuchan
+ * despues del commit de la transaccion para mantenerse sincronizados con la tabla productos.
+ */
+@Getter
+@AllArgsConstructor
+public class ProductoEvent {
+
+    public enum Tipo {
+        CREADO,
+        ACTUALIZADO,
+        ELIMINADO,
+        STOCK
+    }
+
+    private final Tipo tipo;
+    private final Long productoId;
+    // Datos del producto luego del cambio. Es null cuando se elimino o solo cambio el stock
+    private final ProductoDto producto;
+    // Unidades vendidas en un pedido, solo en los eventos STOCK que vienen de un pedido
+    private final int unidadesVendidas;
+
+    public static ProductoEvent creado(ProductoDto producto) {
+        return new ProductoEvent(Tipo.CREADO, producto.getId(), producto, 0);
+    }
+
+    public static ProductoEvent actualizado(ProductoDto producto) {
+        return new ProductoEvent(Tipo.ACTUALIZADO, producto.getId(), producto, 0);
+    }
+
+    public static ProductoEvent eliminado(Long productoId) {
+        return new ProductoEvent(Tipo.ELIMINADO, productoId, null, 0);
+    }
+
+    public static ProductoEvent stock(Long productoId) {
+        return new ProductoEvent(Tipo.STOCK, productoId, null, 0);
+    }
+
+    public static ProductoEvent venta(Long productoId, int unidadesVendidas) {
+        return new ProductoEvent(Tipo.STOCK, productoId, null, unidadesVendidas);
+    }
+}
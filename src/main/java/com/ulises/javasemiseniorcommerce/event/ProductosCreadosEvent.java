@@ -0,0 +1,21 @@
+package com.ulises.javasemiseniorcommerce.event;
+
+import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * @author ulide
+ *
+ * Evento que se publica cuando se crean muchos productos juntos, por ejemplo un lote de una importacion. Reemplaza
+ * a un {@link ProductoEvent} de alta por producto: los indices en memoria agregan todo el lote de una vez, despues
+ * del commit de la transaccion.
+ */
+@Getter
+@AllArgsConstructor
+public class ProductosCreadosEvent {
+
+    private final List<ProductoDto> productos;
+}
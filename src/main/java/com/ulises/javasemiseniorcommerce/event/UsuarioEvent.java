@@ -0,0 +1,31 @@
+package com.ulises.javasemiseniorcommerce.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @author ulide
+ *
+ * Evento que se publica cuando se modifica o se elimina un usuario. Las respuestas de pedidos incluyen el email
+ * del usuario y sus pedidos se eliminan junto con el, asi que los caches de pedidos lo escuchan despues del commit.
+ */
+@Getter
+@AllArgsConstructor
+public class UsuarioEvent {
+
+    public enum Tipo {
+        ACTUALIZADO,
+        ELIMINADO
+    }
+
+    private final Tipo tipo;
+    private final Long usuarioId;
+
+    public static UsuarioEvent actualizado(Long usuarioId) {
+        return new UsuarioEvent(Tipo.ACTUALIZADO, usuarioId);
+    }
+
+    public static UsuarioEvent eliminado(Long usuarioId) {
+        return new UsuarioEvent(Tipo.ELIMINADO, usuarioId);
+    }
+}
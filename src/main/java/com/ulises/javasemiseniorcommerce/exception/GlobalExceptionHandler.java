@@ -44,6 +44,13 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(response, response.getStatus());
     }
 
+    @ExceptionHandler(StockEnConflictoException.class)
+    public ResponseEntity<ExceptionResponse> stockEnConflictoExceptionHandler(StockEnConflictoException e) {
+        LOGGER.warn("StockEnConflictoExceptionHandler - Message: {}", e.getMessage());
+        ExceptionResponse response = new ExceptionResponse(HttpStatus.CONFLICT, e.getMessage());
+        return new ResponseEntity<>(response, response.getStatus());
+    }
+
     @ExceptionHandler(MethodArgumentTypeMismatchException.class)
     public ResponseEntity<ExceptionResponse> methodArgumentTypeMismatchExceptionHandler(MethodArgumentTypeMismatchException e) {
         LOGGER.warn("MethodArgumentTypeMismatchException - Message: {}", e.getMessage());
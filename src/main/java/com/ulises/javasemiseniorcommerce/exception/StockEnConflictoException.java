@@ -0,0 +1,10 @@
+package com.ulises.javasemiseniorcommerce.exception;
+
+/**
+ * @author ulide
+ */
+public class StockEnConflictoException extends RuntimeException {
+    public StockEnConflictoException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,110 @@
+package com.ulises.javasemiseniorcommerce.importacion;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Escribe productos de a uno en un archivo de exportacion, en el mismo formato que lee {@link LectorProductos}
+ * (con el ID como columna o campo adicional), sin acumularlos en memoria: solo se guarda un buffer de salida.
+ *
+ * @author ulide
+ */
+public abstract class EscritorProductos implements Closeable {
+
+    private static final int TAMANIO_BUFFER = 64 * 1024;
+
+    protected final Writer writer;
+
+    protected EscritorProductos(OutputStream salida) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANIO_BUFFER);
+    }
+
+    public static EscritorProductos de(FormatoImportacion formato, OutputStream salida, ObjectMapper objectMapper)
+            throws IOException {
+        return formato == FormatoImportacion.CSV ? new Csv(salida) : new Ndjson(salida, objectMapper);
+    }
+
+    public abstract void escribir(ProductoDto producto) throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private static final class Ndjson extends EscritorProductos {
+
+        private final JsonGenerator generator;
+        private final ObjectWriter objectWriter;
+
+        private Ndjson(OutputStream salida, ObjectMapper objectMapper) throws IOException {
+            super(salida);
+            this.generator = objectMapper.getFactory().createGenerator(writer);
+            // Las lineas se separan con \n, no con el espacio que Jackson pone entre valores
+            this.generator.setRootValueSeparator(null);
+            // Sin flush por producto: el buffer se vacia cuando se llena
+            this.objectWriter = objectMapper.writerFor(ProductoDto.class)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        }
+
+        @Override
+        public void escribir(ProductoDto producto) throws IOException {
+            objectWriter.writeValue(generator, producto);
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+            super.close();
+        }
+    }
+
+    private static final class Csv extends EscritorProductos {
+
+        private Csv(OutputStream salida) throws IOException {
+            super(salida);
+            writer.write("id,nombre,descripcion,precio,stockDisponible\r\n");
+        }
+
+        @Override
+        public void escribir(ProductoDto producto) throws IOException {
+            writer.write(String.valueOf(producto.getId()));
+            writer.write(',');
+            escribirCampo(producto.getNombre());
+            writer.write(',');
+            escribirCampo(producto.getDescripcion());
+            writer.write(',');
+            // Sin notacion cientifica, que algunas planillas no interpretan
+            writer.write(producto.getPrecio() != null ? BigDecimal.valueOf(producto.getPrecio()).toPlainString() : "");
+            writer.write(',');
+            writer.write(producto.getStockDisponible() != null ? String.valueOf(producto.getStockDisponible()) : "");
+            writer.write("\r\n");
+        }
+
+        // RFC 4180: entre comillas si tiene separadores, comillas o saltos de linea, con las comillas duplicadas
+        private void escribirCampo(String valor) throws IOException {
+            if (valor == null) {
+                return;
+            }
+            if (valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+                writer.write(valor);
+                return;
+            }
+            writer.write('"');
+            writer.write(valor.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+}
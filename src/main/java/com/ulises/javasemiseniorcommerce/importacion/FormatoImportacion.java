@@ -0,0 +1,57 @@
+package com.ulises.javasemiseniorcommerce.importacion;
+
+import org.springframework.http.MediaType;
+
+import java.util.Arrays;
+
+/**
+ * Formato del archivo de /producto/import, segun el Content-Type de la peticion, y de /producto/export, segun el
+ * parametro {@code format}.
+ *
+ * @author ulide
+ */
+public enum FormatoImportacion {
+
+    // Con encabezado: nombre,descripcion,precio,stockDisponible (la exportacion agrega id)
+    CSV("text/csv"),
+    // Un ProductoRequest en JSON por linea (la exportacion escribe ProductoDto)
+    NDJSON("application/x-ndjson");
+
+    private final String tipo;
+
+    FormatoImportacion(String tipo) {
+        this.tipo = tipo;
+    }
+
+    public String getTipo() {
+        return tipo;
+    }
+
+    /**
+     * @param contentType Content-Type de la peticion, puede incluir el charset.
+     * @return El formato correspondiente.
+     */
+    public static FormatoImportacion desde(String contentType) {
+        if (contentType == null || contentType.isBlank()) {
+            throw new IllegalArgumentException("Falta el Content-Type. Los valores posibles son text/csv y application/x-ndjson.");
+        }
+        MediaType mediaType = MediaType.parseMediaType(contentType);
+        return Arrays.stream(values())
+                .filter(formato -> MediaType.parseMediaType(formato.tipo).equalsTypeAndSubtype(mediaType))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "Formato invalido: " + contentType + ". Los valores posibles son text/csv y application/x-ndjson."));
+    }
+
+    /**
+     * @param nombre Nombre del formato (csv o ndjson), sin distinguir mayusculas.
+     * @return El formato correspondiente.
+     */
+    public static FormatoImportacion desdeNombre(String nombre) {
+        return Arrays.stream(values())
+                .filter(formato -> formato.name().equalsIgnoreCase(nombre == null ? "" : nombre.trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "Formato invalido: " + nombre + ". Los valores posibles son csv y ndjson."));
+    }
+}
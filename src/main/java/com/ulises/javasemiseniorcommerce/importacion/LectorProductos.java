@@ -0,0 +1,248 @@
+package com.ulises.javasemiseniorcommerce.importacion;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ulises.javasemiseniorcommerce.dto.ProductoRequest;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Lee los productos de un archivo de importacion de a una fila, sin cargar el archivo completo en memoria.
+ * Una fila que no se puede interpretar se devuelve con su error y la lectura sigue con la siguiente, tambien si
+ * supera los {@link #MAX_CARACTERES_REGISTRO} caracteres: se descarta hasta el siguiente salto de linea.
+ *
+ * @author ulide
+ */
+public abstract class LectorProductos implements Closeable {
+
+    /**
+     * Fila leida del archivo.
+     *
+     * @param numero   Numero de la fila: el registro del CSV sin contar el encabezado, o la linea del NDJSON.
+     * @param producto Producto leido, o null si la fila no se pudo interpretar.
+     * @param error    Motivo por el que no se pudo interpretar la fila, o null.
+     */
+    public record Fila(long numero, ProductoRequest producto, String error) {
+    }
+
+    // Un registro mas largo que esto es un archivo mal formado (por ejemplo, comillas sin cerrar)
+    public static final int MAX_CARACTERES_REGISTRO = 65536;
+
+    protected final BufferedReader reader;
+
+    protected LectorProductos(Reader reader) {
+        this.reader = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+    }
+
+    public static LectorProductos de(FormatoImportacion formato, Reader reader, ObjectMapper objectMapper) {
+        return formato == FormatoImportacion.CSV ? new Csv(reader) : new Ndjson(reader, objectMapper);
+    }
+
+    /**
+     * @return La siguiente fila, o null al llegar al final del archivo.
+     */
+    public abstract Fila siguiente() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    // Descarta lo que queda de la linea actual, incluido el salto de linea
+    protected void descartarLinea() throws IOException {
+        int c;
+        do {
+            c = reader.read();
+        } while (c != -1 && c != '\n');
+    }
+
+    protected static String mensajeDemasiadoLargo() {
+        return "La fila supera los " + MAX_CARACTERES_REGISTRO + " caracteres.";
+    }
+
+    private static final class Ndjson extends LectorProductos {
+
+        private final ObjectMapper objectMapper;
+        private long linea;
+
+        private Ndjson(Reader reader, ObjectMapper objectMapper) {
+            super(reader);
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        public Fila siguiente() throws IOException {
+            String texto;
+            do {
+                texto = leerLinea();
+                if (texto == null) {
+                    return null;
+                }
+                linea++;
+                if (texto.length() > MAX_CARACTERES_REGISTRO) {
+                    descartarLinea();
+                    return new Fila(linea, null, mensajeDemasiadoLargo());
+                }
+            } while (texto.isBlank());
+
+            try {
+                return new Fila(linea, objectMapper.readValue(texto, ProductoRequest.class), null);
+            } catch (JsonProcessingException e) {
+                return new Fila(linea, null, "JSON invalido: " + e.getOriginalMessage());
+            }
+        }
+
+        // Como readLine, pero deja de guardar la linea pasado el maximo: devuelve los primeros
+        // MAX_CARACTERES_REGISTRO + 1 caracteres y el resto queda sin leer
+        private String leerLinea() throws IOException {
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            StringBuilder texto = new StringBuilder();
+            while (c != -1 && c != '\n') {
+                texto.append((char) c);
+                if (texto.length() > MAX_CARACTERES_REGISTRO) {
+                    return texto.toString();
+                }
+                c = reader.read();
+            }
+            int largo = texto.length();
+            return largo > 0 && texto.charAt(largo - 1) == '\r' ? texto.substring(0, largo - 1) : texto.toString();
+        }
+    }
+
+    private static final class Csv extends LectorProductos {
+
+        private static final List<String> COLUMNAS = List.of("nombre", "descripcion", "precio", "stockdisponible");
+
+        // Posicion en el registro de cada una de las COLUMNAS
+        private int[] posiciones;
+        private int cantidadColumnas;
+        private long registro;
+        // El ultimo registro leido supero MAX_CARACTERES_REGISTRO y se descarto
+        private boolean demasiadoLargo;
+
+        private Csv(Reader reader) {
+            super(reader);
+        }
+
+        @Override
+        public Fila siguiente() throws IOException {
+            if (posiciones == null) {
+                leerEncabezado();
+            }
+
+            List<String> campos;
+            do {
+                campos = leerRegistro();
+                if (campos == null) {
+                    return null;
+                }
+            } while (campos.size() == 1 && campos.get(0).isBlank());
+            registro++;
+
+            if (demasiadoLargo) {
+                return new Fila(registro, null, mensajeDemasiadoLargo());
+            }
+            if (campos.size() != cantidadColumnas) {
+                return new Fila(registro, null, "Se esperaban " + cantidadColumnas + " columnas y hay " + campos.size() + ".");
+            }
+            try {
+                ProductoRequest producto = ProductoRequest.builder()
+                        .nombre(campos.get(posiciones[0]))
+                        .descripcion(campos.get(posiciones[1]))
+                        .precio(numero(campos.get(posiciones[2]), Double::valueOf))
+                        .stockDisponible(numero(campos.get(posiciones[3]), Integer::valueOf))
+                        .build();
+                return new Fila(registro, producto, null);
+            } catch (NumberFormatException e) {
+                return new Fila(registro, null, "El precio o el stock no son numeros validos.");
+            }
+        }
+
+        private void leerEncabezado() throws IOException {
+            List<String> encabezado = leerRegistro();
+            if (encabezado == null) {
+                throw new IllegalArgumentException("El CSV esta vacio, falta el encabezado.");
+            }
+            if (demasiadoLargo) {
+                throw new IllegalArgumentException("El encabezado del CSV supera los " + MAX_CARACTERES_REGISTRO
+                        + " caracteres.");
+            }
+            // Se ignora la marca de orden de bytes que agregan algunas planillas
+            encabezado.set(0, encabezado.get(0).replace("\uFEFF", ""));
+
+            List<String> nombres = encabezado.stream().map(nombre -> nombre.trim().toLowerCase(Locale.ROOT)).toList();
+            posiciones = new int[COLUMNAS.size()];
+            for (int i = 0; i < COLUMNAS.size(); i++) {
+                posiciones[i] = nombres.indexOf(COLUMNAS.get(i));
+                if (posiciones[i] < 0) {
+                    throw new IllegalArgumentException("Falta la columna " + COLUMNAS.get(i) + " en el encabezado del CSV. " +
+                            "Las columnas son nombre, descripcion, precio y stockDisponible.");
+                }
+            }
+            cantidadColumnas = encabezado.size();
+        }
+
+        // Lee un registro segun RFC 4180: los campos entre comillas pueden tener comas, saltos de linea y comillas dobles.
+        // Si el registro supera el maximo, se descarta hasta el siguiente salto de linea y se marca como demasiado largo
+        private List<String> leerRegistro() throws IOException {
+            demasiadoLargo = false;
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+
+            List<String> campos = new ArrayList<>();
+            StringBuilder campo = new StringBuilder();
+            boolean entreComillas = false;
+            int caracteres = 0;
+            while (c != -1) {
+                if (++caracteres > MAX_CARACTERES_REGISTRO) {
+                    if (c != '\n') {
+                        descartarLinea();
+                    }
+                    demasiadoLargo = true;
+                    return List.of();
+                }
+                if (entreComillas) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            campo.append('"');
+                        } else {
+                            entreComillas = false;
+                            reader.reset();
+                        }
+                    } else {
+                        campo.append((char) c);
+                    }
+                } else if (c == '"') {
+                    entreComillas = true;
+                } else if (c == ',') {
+                    campos.add(campo.toString());
+                    campo.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    campo.append((char) c);
+                }
+                c = reader.read();
+            }
+            campos.add(campo.toString());
+            return campos;
+        }
+
+        private static <T> T numero(String campo, Function<String, T> convertir) {
+            return campo.isBlank() ? null : convertir.apply(campo.trim());
+        }
+    }
+}
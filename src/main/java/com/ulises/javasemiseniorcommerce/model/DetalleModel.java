@@ -22,7 +22,10 @@ import org.springframework.context.annotation.Description;
         "uno a muchos: un pedido tiene muchos productos.")
 public class DetalleModel {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Con una secuencia los IDs se reservan de a bloques antes del INSERT, asi Hibernate puede insertar los
+    // detalles de un pedido en lote (con IDENTITY tiene que insertarlos de a uno para conocer cada ID)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "detalles_seq")
+    @SequenceGenerator(name = "detalles_seq", sequenceName = "detalles_seq", allocationSize = 100)
     private Long id;
 
     @ManyToOne
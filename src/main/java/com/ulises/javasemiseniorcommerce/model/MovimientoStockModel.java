@@ -0,0 +1,35 @@
+package com.ulises.javasemiseniorcommerce.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.context.annotation.Description;
+
+/**
+ * @author ulide
+ */
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+@Table(name = "movimientos_stock")
+@Description("Descuentos de stock reservados en el libro de stock en memoria que todavia no se aplicaron a la " +
+        "tabla productos. Se insertan en la transaccion del pedido y se borran en la misma transaccion que aplica " +
+        "el descuento, asi ningun descuento de un pedido confirmado se pierde ni se aplica dos veces.")
+public class MovimientoStockModel {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Solo los IDs, sin claves foraneas: el descuento se tiene que aplicar aunque el pedido se elimine antes,
+    // y no puede impedir que se elimine el producto
+    @Column(name = "pedido_id", nullable = false)
+    private Long pedidoId;
+
+    @Column(name = "producto_id", nullable = false)
+    private Long productoId;
+
+    @Column(nullable = false)
+    private Integer cantidad;
+}
@@ -29,4 +29,8 @@ public class ProductoModel {
 
     @Column(name = "stockDisponible", nullable = false)
     private Integer stockDisponible;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
 }
@@ -2,6 +2,22 @@ package com.ulises.javasemiseniorcommerce.repository;
 
 import com.ulises.javasemiseniorcommerce.model.DetalleModel;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
 
 public interface DetalleRepository extends JpaRepository<DetalleModel, Long> {
-}
\ No newline at end of file
+
+    /**
+     * Unidades vendidas de cada producto, sumando los detalles de todos los pedidos.
+     */
+    @Query("SELECT d.producto.id AS productoId, SUM(d.cantidad) AS vendidos FROM DetalleModel d " +
+            "WHERE d.producto IS NOT NULL GROUP BY d.producto.id")
+    List<VentasProducto> findVentasPorProducto();
+
+    interface VentasProducto {
+        Long getProductoId();
+
+        Long getVendidos();
+    }
+}
@@ -0,0 +1,30 @@
+package com.ulises.javasemiseniorcommerce.repository;
+
+import com.ulises.javasemiseniorcommerce.model.MovimientoStockModel;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface MovimientoStockRepository extends JpaRepository<MovimientoStockModel, Long> {
+
+    /**
+     * Unidades registradas y todavia no aplicadas de un producto.
+     */
+    @Query("SELECT COALESCE(SUM(m.cantidad), 0) FROM MovimientoStockModel m WHERE m.productoId = :productoId")
+    long sumarCantidadByProductoId(@Param("productoId") Long productoId);
+
+    /**
+     * Unidades registradas y todavia no aplicadas de cada producto.
+     */
+    @Query("SELECT m.productoId AS productoId, SUM(m.cantidad) AS cantidad FROM MovimientoStockModel m " +
+            "GROUP BY m.productoId")
+    List<PendienteProducto> sumarCantidadPorProducto();
+
+    interface PendienteProducto {
+        Long getProductoId();
+
+        Long getCantidad();
+    }
+}
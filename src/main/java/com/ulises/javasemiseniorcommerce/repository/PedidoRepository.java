@@ -3,8 +3,69 @@ package com.ulises.javasemiseniorcommerce.repository;
 import com.ulises.javasemiseniorcommerce.model.PedidoModel;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface PedidoRepository extends JpaRepository<PedidoModel, Long> {
-    Page<PedidoModel> findAllByUsuario_Id(Long usuarioId, Pageable pageable);
-}
\ No newline at end of file
+    // El pedido con su usuario, sus detalles y los productos de cada detalle en una sola consulta, para leerlo
+    // sin una consulta por detalle. LEFT JOIN porque el producto de un detalle queda en null si se elimina
+    @Query("SELECT p FROM PedidoModel p " +
+            "JOIN FETCH p.usuario " +
+            "LEFT JOIN FETCH p.detalles d " +
+            "LEFT JOIN FETCH d.producto " +
+            "WHERE p.id = :id")
+    Optional<PedidoModel> findConDetallesById(@Param("id") Long id);
+
+    // Las lineas de un pedido con solo los datos que se muestran, sin cargar entidades: una fila por detalle, con los
+    // datos del pedido repetidos. Un pedido sin detalles devuelve una fila sin datos de linea y uno inexistente ninguna.
+    // Con un record en lugar de una interfaz, Spring Data no envuelve cada fila en un proxy
+    @Query("SELECT new com.ulises.javasemiseniorcommerce.repository.PedidoRepository$LineaPedido(" +
+            "u.id, u.email, p.precio, p.fechaDeCreacion, pr.id, pr.nombre, d.cantidad, pr.precio) " +
+            "FROM PedidoModel p JOIN p.usuario u LEFT JOIN p.detalles d LEFT JOIN d.producto pr " +
+            "WHERE p.id = :id ORDER BY d.id")
+    List<LineaPedido> findLineasById(@Param("id") Long id);
+
+    // Los pedidos de una pagina con su usuario, sus detalles y sus productos en una sola consulta.
+    // Hibernate devuelve cada pedido una vez aunque el JOIN repita la fila por detalle
+    @Query("SELECT p FROM PedidoModel p " +
+            "JOIN FETCH p.usuario " +
+            "LEFT JOIN FETCH p.detalles d " +
+            "LEFT JOIN FETCH d.producto " +
+            "WHERE p.id IN :ids")
+    List<PedidoModel> findConDetallesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // IDs de los pedidos de un usuario ordenados, filtrando por el email en la misma consulta. Los pedidos
+    // de la pagina se cargan despues con findConDetallesByIdIn
+    @Query(value = "SELECT p.id FROM PedidoModel p WHERE p.usuario.email = :email ORDER BY p.id",
+            countQuery = "SELECT COUNT(p) FROM PedidoModel p WHERE p.usuario.email = :email")
+    Page<Long> findIdsByUsuarioEmail(@Param("email") String email, Pageable pageable);
+
+    // Igual que la anterior, pero sin COUNT: trae un pedido de mas para saber si hay otra pagina
+    @Query("SELECT p.id FROM PedidoModel p WHERE p.usuario.email = :email ORDER BY p.id")
+    Slice<Long> findSliceIdsByUsuarioEmail(@Param("email") String email, Pageable pageable);
+
+    @Query("SELECT COUNT(p) FROM PedidoModel p WHERE p.usuario.email = :email")
+    long countByUsuarioEmail(@Param("email") String email);
+
+    // IDs de los pedidos del usuario paginados con cursor: siguen despues del ultimo ID devuelto, sin OFFSET ni COUNT
+    @Query("SELECT p.id FROM PedidoModel p WHERE p.usuario.email = :email AND p.id > :desdeId ORDER BY p.id")
+    Slice<Long> findIdsByUsuarioEmailDesde(@Param("email") String email, @Param("desdeId") Long desdeId,
+                                           Pageable pageable);
+
+    /**
+     * @param productoId     Null si el producto se elimino.
+     * @param nombreProducto Null si el producto se elimino.
+     * @param cantidad       Null en la unica fila de un pedido sin detalles.
+     * @param precioUnidad   Null si el producto se elimino.
+     */
+    record LineaPedido(Long usuarioId, String username, Double precioTotal, LocalDateTime fechaDeCreacion,
+                       Long productoId, String nombreProducto, Integer cantidad, Double precioUnidad) {
+    }
+}
@@ -0,0 +1,138 @@
+package com.ulises.javasemiseniorcommerce.repository;
+
+import com.ulises.javasemiseniorcommerce.dto.ActualizacionProducto;
+import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+import com.ulises.javasemiseniorcommerce.dto.ProductoRequest;
+import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Operaciones masivas sobre productos con JDBC: con IDs IDENTITY Hibernate no puede agrupar los INSERT, actualizar
+ * con {@code save} obliga a cargar cada entidad y leer todo el catalogo con JPA lo deja en el contexto de persistencia.
+ * Cada metodo se usa dentro de la transaccion de quien lo llama.
+ * <p>
+ * La tabla y las columnas salen del mapeo de Hibernate, asi respetan la estrategia de nombres configurada.
+ *
+ * @author ulide
+ */
+@Repository
+public class ProductoBatchRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String columnaId;
+    private final String insertSql;
+    private final String updateSql;
+    private final String selectSql;
+
+    public ProductoBatchRepository(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+
+        AbstractEntityPersister persister = (AbstractEntityPersister) entityManagerFactory
+                .unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel()
+                .getEntityDescriptor(ProductoModel.class);
+        String tabla = persister.getTableName();
+        String nombre = persister.getPropertyColumnNames("nombre")[0];
+        String descripcion = persister.getPropertyColumnNames("descripcion")[0];
+        String precio = persister.getPropertyColumnNames("precio")[0];
+        String stock = persister.getPropertyColumnNames("stockDisponible")[0];
+        String version = persister.getPropertyColumnNames("version")[0];
+        this.columnaId = persister.getIdentifierColumnNames()[0];
+
+        this.selectSql = "SELECT " + columnaId + ", " + nombre + ", " + descripcion + ", " + precio + ", " + stock +
+                " FROM " + tabla + " ORDER BY " + columnaId;
+        this.insertSql = "INSERT INTO " + tabla + " (" + nombre + ", " + descripcion + ", " + precio + ", " + stock +
+                ", " + version + ") VALUES (?, ?, ?, ?, 0)";
+        // Un valor null deja la columna como estaba, asi todos los cambios usan la misma sentencia
+        this.updateSql = "UPDATE " + tabla + " SET " + precio + " = COALESCE(?, " + precio + "), " +
+                stock + " = COALESCE(?, " + stock + "), " + version + " = " + version + " + 1 WHERE " + columnaId + " = ?";
+    }
+
+    /**
+     * Inserta los productos en un solo lote.
+     *
+     * @return IDs generados, en el mismo orden que los productos.
+     */
+    public List<Long> insertar(List<ProductoRequest> productos) {
+        KeyHolder claves = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(insertSql, new String[]{columnaId}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ProductoRequest producto = productos.get(i);
+                        ps.setString(1, producto.getNombre());
+                        ps.setString(2, producto.getDescripcion());
+                        ps.setDouble(3, producto.getPrecio());
+                        ps.setInt(4, producto.getStockDisponible());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return productos.size();
+                    }
+                }, claves);
+
+        return claves.getKeyList().stream()
+                .map(clave -> ((Number) clave.values().iterator().next()).longValue())
+                .toList();
+    }
+
+    /**
+     * Actualiza el precio y/o el stock de los productos en un solo lote, sin leerlos.
+     *
+     * @return Filas modificadas por cada cambio, en el mismo orden: 0 si el producto no existe. Algunos drivers
+     * devuelven {@link java.sql.Statement#SUCCESS_NO_INFO} en lugar de la cantidad.
+     */
+    public int[] actualizarPrecioYStock(List<ActualizacionProducto> cambios) {
+        return jdbcTemplate.batchUpdate(updateSql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ActualizacionProducto cambio = cambios.get(i);
+                ps.setObject(1, cambio.getPrecio(), Types.DOUBLE);
+                ps.setObject(2, cambio.getStockDisponible(), Types.INTEGER);
+                ps.setLong(3, cambio.getId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return cambios.size();
+            }
+        });
+    }
+
+    /**
+     * Recorre todos los productos ordenados por ID con un cursor de solo avance, sin acumularlos en memoria.
+     * En PostgreSQL el cursor solo trae las filas de a {@code tamanioFetch} si hay una transaccion abierta.
+     *
+     * @param tamanioFetch Filas que se traen de la base en cada viaje.
+     * @param consumidor   Recibe cada producto. Un {@link java.io.UncheckedIOException} corta el recorrido.
+     */
+    public void recorrer(int tamanioFetch, Consumer<ProductoDto> consumidor) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(selectSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(tamanioFetch);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumidor.accept(ProductoDto.builder()
+                .id(rs.getLong(1))
+                .nombre(rs.getString(2))
+                .descripcion(rs.getString(3))
+                .precio(rs.getDouble(4))
+                .stockDisponible(rs.getInt(5))
+                .build()));
+    }
+}
@@ -1,12 +1,21 @@
 package com.ulises.javasemiseniorcommerce.repository;
 
 import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+import com.ulises.javasemiseniorcommerce.search.HistogramaPrecios;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 public interface ProductoRepository extends JpaRepository<ProductoModel, Long> {
     @Query("SELECT p FROM ProductoModel p " +
             "WHERE (:palabrasClave IS NULL OR " +
@@ -14,11 +23,179 @@ public interface ProductoRepository extends JpaRepository<ProductoModel, Long> {
             "LOWER(p.descripcion) LIKE CONCAT('%', :palabrasClave, '%')) " +
             "AND (:precioMin IS NULL OR p.precio >= :precioMin) " +
             "AND (:precioMax IS NULL OR p.precio <= :precioMax) " +
-            "ORDER BY p.precio")
+            "ORDER BY p.precio, p.id")
     Page<ProductoModel> searchProductosByPalabrasClave(
             @Param("palabrasClave") String palabrasClave,
             @Param("precioMin") Double precioMin,
             @Param("precioMax") Double precioMax,
             Pageable pageable
     );
-}
\ No newline at end of file
+
+    // Igual que la busqueda anterior, pero sin COUNT: trae un producto de mas para saber si hay otra pagina
+    @Query("SELECT p FROM ProductoModel p " +
+            "WHERE (:palabrasClave IS NULL OR " +
+            "LOWER(p.nombre) LIKE CONCAT('%', :palabrasClave, '%') OR " +
+            "LOWER(p.descripcion) LIKE CONCAT('%', :palabrasClave, '%')) " +
+            "AND (:precioMin IS NULL OR p.precio >= :precioMin) " +
+            "AND (:precioMax IS NULL OR p.precio <= :precioMax) " +
+            "ORDER BY p.precio, p.id")
+    Slice<ProductoModel> searchProductosByPalabrasClaveSinTotal(
+            @Param("palabrasClave") String palabrasClave,
+            @Param("precioMin") Double precioMin,
+            @Param("precioMax") Double precioMax,
+            Pageable pageable
+    );
+
+    // Total de la busqueda anterior, para los totales aproximados
+    @Query("SELECT COUNT(p) FROM ProductoModel p " +
+            "WHERE (:palabrasClave IS NULL OR " +
+            "LOWER(p.nombre) LIKE CONCAT('%', :palabrasClave, '%') OR " +
+            "LOWER(p.descripcion) LIKE CONCAT('%', :palabrasClave, '%')) " +
+            "AND (:precioMin IS NULL OR p.precio >= :precioMin) " +
+            "AND (:precioMax IS NULL OR p.precio <= :precioMax)")
+    long countProductosByPalabrasClave(
+            @Param("palabrasClave") String palabrasClave,
+            @Param("precioMin") Double precioMin,
+            @Param("precioMax") Double precioMax
+    );
+
+    // Cantidad de productos de la busqueda por rango de precios, sin los filtros de precio, y cuantos de cada rango
+    // pasan esos filtros. Reemplaza al COUNT de la busqueda cuando se piden los rangos de precio. El ancho se agranda
+    // en la misma consulta, con el menor y el mayor precio de todo el catalogo, igual que HistogramaPrecios.anchoAcotado
+    @Query("WITH extremos AS (SELECT MIN(q.precio) AS minimo, MAX(q.precio) AS maximo FROM ProductoModel q) " +
+            "SELECT FLOOR(p.precio / (:ancho * GREATEST(1, CEILING((e.maximo - e.minimo) / :ancho / " +
+            (HistogramaPrecios.MAXIMO_RANGOS - 1) + ")))) AS rango, " +
+            ":ancho * GREATEST(1, CEILING((e.maximo - e.minimo) / :ancho / " +
+            (HistogramaPrecios.MAXIMO_RANGOS - 1) + ")) AS ancho, COUNT(p) AS cantidad, " +
+            "SUM(CASE WHEN (:precioMin IS NULL OR p.precio >= :precioMin) " +
+            "AND (:precioMax IS NULL OR p.precio <= :precioMax) THEN 1 ELSE 0 END) AS enFiltro " +
+            "FROM ProductoModel p, extremos e " +
+            "WHERE p.precio IS NOT NULL AND (:palabrasClave IS NULL OR " +
+            "LOWER(p.nombre) LIKE CONCAT('%', :palabrasClave, '%') OR " +
+            "LOWER(p.descripcion) LIKE CONCAT('%', :palabrasClave, '%')) " +
+            "GROUP BY rango, ancho")
+    List<RangoPrecio> findRangosDePrecio(
+            @Param("palabrasClave") String palabrasClave,
+            @Param("precioMin") Double precioMin,
+            @Param("precioMax") Double precioMax,
+            @Param("ancho") Double ancho
+    );
+
+    // Listado sin filtros y sin COUNT
+    Slice<ProductoModel> findSliceBy(Pageable pageable);
+
+    // Igual que la primera busqueda, pero sigue despues del ultimo (precio, ID) devuelto en lugar de usar OFFSET,
+    // y sin COUNT (paginacion con cursor)
+    @Query("SELECT p FROM ProductoModel p " +
+            "WHERE (:palabrasClave IS NULL OR " +
+            "LOWER(p.nombre) LIKE CONCAT('%', :palabrasClave, '%') OR " +
+            "LOWER(p.descripcion) LIKE CONCAT('%', :palabrasClave, '%')) " +
+            "AND (:precioMin IS NULL OR p.precio >= :precioMin) " +
+            "AND (:precioMax IS NULL OR p.precio <= :precioMax) " +
+            "AND (p.precio > :desdePrecio OR (p.precio = :desdePrecio AND p.id > :desdeId)) " +
+            "ORDER BY p.precio, p.id")
+    Slice<ProductoModel> searchProductosByPalabrasClaveDesde(
+            @Param("palabrasClave") String palabrasClave,
+            @Param("precioMin") Double precioMin,
+            @Param("precioMax") Double precioMax,
+            @Param("desdePrecio") Double desdePrecio,
+            @Param("desdeId") Long desdeId,
+            Pageable pageable
+    );
+
+    // Listado sin filtros paginado con cursor: sigue despues del ultimo ID devuelto
+    Slice<ProductoModel> findByIdGreaterThanOrderById(Long id, Pageable pageable);
+
+    // Descuenta stock solo si alcanza, en una unica sentencia atomica. Devuelve la cantidad de filas afectadas.
+    @Modifying
+    @Query("UPDATE ProductoModel p SET p.stockDisponible = p.stockDisponible - :cantidad, p.version = p.version + 1 " +
+            "WHERE p.id = :id AND p.stockDisponible >= :cantidad")
+    int descontarStock(@Param("id") Long id, @Param("cantidad") Integer cantidad);
+
+    // Carga y bloquea (SELECT ... FOR UPDATE) los productos en orden de ID para evitar deadlocks
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM ProductoModel p WHERE p.id IN :ids ORDER BY p.id")
+    List<ProductoModel> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    // Actualiza el stock solo si la version no cambio desde la lectura. Devuelve la cantidad de filas afectadas.
+    @Modifying
+    @Query("UPDATE ProductoModel p SET p.stockDisponible = :stock, p.version = p.version + 1 " +
+            "WHERE p.id = :id AND p.version = :version")
+    int actualizarStockSiVersion(@Param("id") Long id, @Param("stock") Integer stock, @Param("version") Long version);
+
+    @Query("SELECT p.stockDisponible AS stockDisponible, p.version AS version FROM ProductoModel p WHERE p.id = :id")
+    StockVersion findStockVersionById(@Param("id") Long id);
+
+    // Solo la version, para responder GET condicionales sin cargar el producto
+    @Query("SELECT p.version FROM ProductoModel p WHERE p.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    // Aplica un descuento de stock ya reservado en el libro de stock en memoria. Si el stock se bajo por fuera del libro
+    // por debajo de lo reservado, queda en cero en lugar de negativo
+    @Modifying
+    @Query("UPDATE ProductoModel p SET p.stockDisponible = CASE WHEN p.stockDisponible > :descuento " +
+            "THEN p.stockDisponible - :descuento ELSE 0 END, p.version = p.version + 1 WHERE p.id = :id")
+    int aplicarDescuentoStock(@Param("id") Long id, @Param("descuento") Integer descuento);
+
+    @Query("SELECT p.id AS id, p.stockDisponible AS stockDisponible FROM ProductoModel p")
+    List<StockProducto> findAllStock();
+
+    // Solo el stock de los productos pedidos, sin cargar las entidades ni bloquear las filas
+    @Query("SELECT p.id AS id, p.stockDisponible AS stockDisponible FROM ProductoModel p WHERE p.id IN :ids")
+    List<StockProducto> findStockByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Carga por lotes ordenados por ID los datos que usa el indice de busqueda en memoria
+    @Query("SELECT p.id AS id, p.nombre AS nombre, p.descripcion AS descripcion, p.precio AS precio " +
+            "FROM ProductoModel p WHERE p.id > :desdeId ORDER BY p.id")
+    List<ProductoTexto> findTextosDesde(@Param("desdeId") Long desdeId, Pageable pageable);
+
+    // Los datos que usan los indices en memoria de los productos pedidos, sin cargar las entidades
+    @Query("SELECT p.id AS id, p.nombre AS nombre, p.descripcion AS descripcion, p.precio AS precio " +
+            "FROM ProductoModel p WHERE p.id IN :ids")
+    List<ProductoTexto> findTextosByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Carga por lotes ordenados por precio (y por ID a igual precio) los datos del indice de precios en memoria
+    @Query("SELECT p.id AS id, p.precio AS precio FROM ProductoModel p " +
+            "WHERE p.precio > :desdePrecio OR (p.precio = :desdePrecio AND p.id > :desdeId) ORDER BY p.precio, p.id")
+    List<ProductoPrecio> findPreciosDesde(@Param("desdePrecio") Double desdePrecio, @Param("desdeId") Long desdeId,
+                                          Pageable pageable);
+
+    interface StockProducto {
+        Long getId();
+
+        Integer getStockDisponible();
+    }
+
+    interface StockVersion {
+        Integer getStockDisponible();
+
+        Long getVersion();
+    }
+
+    interface ProductoTexto {
+        Long getId();
+
+        String getNombre();
+
+        String getDescripcion();
+
+        Double getPrecio();
+    }
+
+    interface ProductoPrecio {
+        Long getId();
+
+        Double getPrecio();
+    }
+
+    interface RangoPrecio {
+        Double getRango();
+
+        // Ancho de los rangos, ya acotado
+        Double getAncho();
+
+        Long getCantidad();
+
+        Long getEnFiltro();
+    }
+}
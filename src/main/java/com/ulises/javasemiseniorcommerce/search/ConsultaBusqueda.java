@@ -0,0 +1,44 @@
+package com.ulises.javasemiseniorcommerce.search;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Filtros y opciones de una busqueda de productos.
+ *
+ * @author ulide
+ */
+@Builder(toBuilder = true)
+@Data
+public class ConsultaBusqueda {
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+
+    // Palabras a buscar en el nombre y la descripcion
+    String texto;
+    Double precioMin;
+    Double precioMax;
+    @Builder.Default
+    OrdenBusqueda orden = OrdenBusqueda.PRECIO;
+    // Si es true, cada palabra tambien coincide con terminos parecidos (errores de tipeo)
+    boolean difuso;
+    // Si no es null, solo los resultados que van despues de esta posicion (paginacion con cursor)
+    PosicionBusqueda despuesDe;
+    // Si no es null, tambien se cuentan los productos por rangos de precio de este ancho, sin tener en cuenta
+    // los filtros de precio (para mostrar cuantos productos hay en los otros rangos)
+    Double anchoRangoPrecio;
+
+    /**
+     * @return La misma consulta con el texto en minusculas y un solo espacio entre palabras, para que las
+     * busquedas que solo difieren en eso den el mismo resultado y compartan el cache de resultados.
+     */
+    public ConsultaBusqueda normalizada() {
+        if (texto == null) {
+            return this;
+        }
+        String normalizado = ESPACIOS.matcher(texto.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+        return normalizado.equals(texto) ? this : toBuilder().texto(normalizado).build();
+    }
+}
@@ -0,0 +1,101 @@
+package com.ulises.javasemiseniorcommerce.search;
+
+import com.ulises.javasemiseniorcommerce.dto.FacetaPrecio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cuenta productos por rangos de precio de un mismo ancho: el rango {@code n} va de {@code n * ancho} (incluido)
+ * a {@code (n + 1) * ancho} (excluido). Solo guarda los rangos con algun producto. No es thread-safe.
+ * <p>
+ * Un ancho muy chico daria un rango por producto; con {@link #anchoAcotado} el ancho pedido se agranda a un
+ * multiplo suyo para que los precios del catalogo entren en {@link #MAXIMO_RANGOS} rangos como mucho.
+ *
+ * @author ulide
+ */
+public class HistogramaPrecios {
+
+    public static final int MAXIMO_RANGOS = 100;
+
+    private final double ancho;
+    // Posicion de cada rango en los arreglos de rangos y cantidades
+    private final LongIntMap posicionPorRango = new LongIntMap();
+    private long[] rangos = new long[16];
+    private long[] cantidades = new long[16];
+    private int cantidadRangos;
+
+    public HistogramaPrecios(double ancho) {
+        if (!(ancho > 0) || Double.isInfinite(ancho)) {
+            throw new IllegalArgumentException("El ancho de los rangos de precio tiene que ser mayor que cero.");
+        }
+        this.ancho = ancho;
+    }
+
+    /**
+     * @param ancho         Ancho pedido.
+     * @param precioMinimo  Menor precio del catalogo.
+     * @param precioMaximo  Mayor precio del catalogo.
+     * @return El ancho pedido, o el menor multiplo suyo con el que entre todo el catalogo en {@link #MAXIMO_RANGOS}
+     * rangos. Al ser un multiplo, los limites de los rangos siguen siendo multiplos del ancho pedido.
+     */
+    public static double anchoAcotado(double ancho, double precioMinimo, double precioMaximo) {
+        // Con (maximo - minimo) / ancho <= MAXIMO_RANGOS - 1 hay como mucho MAXIMO_RANGOS rangos
+        double rangos = (precioMaximo - precioMinimo) / ancho;
+        if (!(rangos > MAXIMO_RANGOS - 1)) {
+            return ancho;
+        }
+        return ancho * Math.ceil(rangos / (MAXIMO_RANGOS - 1));
+    }
+
+    public double getAncho() {
+        return ancho;
+    }
+
+    /**
+     * @return Numero del rango que contiene el precio.
+     */
+    public long rango(double precio) {
+        return (long) Math.floor(precio / ancho);
+    }
+
+    public void agregar(double precio) {
+        agregar(rango(precio), 1);
+    }
+
+    public void agregar(long rango, long cantidad) {
+        int posicion = posicionPorRango.get(rango);
+        if (posicion == LongIntMap.SIN_VALOR) {
+            if (cantidadRangos == rangos.length) {
+                rangos = Arrays.copyOf(rangos, cantidadRangos * 2);
+                cantidades = Arrays.copyOf(cantidades, cantidadRangos * 2);
+            }
+            posicion = cantidadRangos++;
+            rangos[posicion] = rango;
+            posicionPorRango.put(rango, posicion);
+        }
+        cantidades[posicion] += cantidad;
+    }
+
+    /**
+     * @return Los rangos con algun producto, de menor a mayor precio.
+     */
+    public List<FacetaPrecio> facetas() {
+        Integer[] orden = new Integer[cantidadRangos];
+        for (int i = 0; i < cantidadRangos; i++) {
+            orden[i] = i;
+        }
+        Arrays.sort(orden, (a, b) -> Long.compare(rangos[a], rangos[b]));
+
+        List<FacetaPrecio> facetas = new ArrayList<>(cantidadRangos);
+        for (int posicion : orden) {
+            facetas.add(FacetaPrecio.builder()
+                    .desde(rangos[posicion] * ancho)
+                    .hasta((rangos[posicion] + 1) * ancho)
+                    .cantidad(cantidades[posicion])
+                    .build());
+        }
+        return facetas;
+    }
+}
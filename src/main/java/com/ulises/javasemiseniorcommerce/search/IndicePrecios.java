@@ -0,0 +1,407 @@
+package com.ulises.javasemiseniorcommerce.search;
+
+import com.ulises.javasemiseniorcommerce.dto.FacetaPrecio;
+import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+import com.ulises.javasemiseniorcommerce.event.ProductoEvent;
+import com.ulises.javasemiseniorcommerce.event.ProductosCreadosEvent;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository.ProductoPrecio;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Indice en memoria de los productos ordenados por precio, para listar productos en un rango de precios
+ * sin recorrer la tabla.
+ * <p>
+ * Los IDs se guardan en un arreglo ordenado por precio (y por ID a igual precio), con los precios en un arreglo
+ * paralelo. Los limites de un rango se encuentran con dos busquedas binarias y la pagina es un tramo del arreglo.
+ * Las altas, modificaciones y bajas desplazan los arreglos desde la posicion del producto, sin reordenar.
+ * <p>
+ * Se construye al iniciar la aplicacion y se actualiza con los {@link ProductoEvent} luego de cada commit.
+ * Se habilita junto con el indice de busqueda ({@code commerce.search.indice.enabled}).
+ *
+ * @author ulide
+ */
+@Component
+public class IndicePrecios {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndicePrecios.class);
+    private static final int TAMANIO_LOTE = 5_000;
+
+    private final ProductoRepository productoRepository;
+    private final boolean habilitado;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Todo lo que sigue se lee con el lock de lectura y se modifica con el de escritura
+    private long[] ids = new long[1_024];
+    private double[] precios = new double[1_024];
+    private int cantidad;
+    // Precio actual de cada producto, para encontrar su posicion al actualizarlo o eliminarlo. Cada producto
+    // ocupa un lugar de precioPorLugar; los lugares de los productos eliminados se reutilizan
+    private final LongIntMap lugarPorId = new LongIntMap();
+    private double[] precioPorLugar = new double[1_024];
+    private int[] lugaresLibres = new int[64];
+    private int cantidadLibres;
+    private int lugaresUsados;
+    // IDs que cambiaron mientras se construia el indice, para que la construccion no los pise con datos viejos
+    private Set<Long> modificadosDuranteConstruccion;
+
+    private volatile boolean disponible;
+
+    public IndicePrecios(ProductoRepository productoRepository,
+                         @Value("${commerce.search.indice.enabled:true}") boolean habilitado) {
+        this.productoRepository = productoRepository;
+        this.habilitado = habilitado;
+    }
+
+    /**
+     * @return true si el indice esta habilitado y ya se construyo.
+     */
+    public boolean isDisponible() {
+        return disponible;
+    }
+
+    /**
+     * Carga los precios de todos los productos, por lotes ordenados por precio.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void construir() {
+        if (!habilitado) {
+            return;
+        }
+        long inicio = System.nanoTime();
+        escribir(() -> {
+            disponible = false;
+            cantidad = 0;
+            lugarPorId.clear();
+            cantidadLibres = 0;
+            lugaresUsados = 0;
+            modificadosDuranteConstruccion = new HashSet<>();
+        });
+
+        try {
+            double desdePrecio = -Double.MAX_VALUE;
+            long desdeId = 0;
+            List<ProductoPrecio> lote;
+            do {
+                lote = productoRepository.findPreciosDesde(desdePrecio, desdeId, PageRequest.of(0, TAMANIO_LOTE));
+                List<ProductoPrecio> productos = lote;
+                // Como los lotes vienen ordenados por precio, cada producto se agrega al final de los arreglos
+                escribir(() -> productos.stream()
+                        .filter(producto -> !modificadosDuranteConstruccion.contains(producto.getId()))
+                        .forEach(producto -> agregar(producto.getId(), producto.getPrecio())));
+                if (!lote.isEmpty()) {
+                    ProductoPrecio ultimo = lote.get(lote.size() - 1);
+                    desdePrecio = ultimo.getPrecio();
+                    desdeId = ultimo.getId();
+                }
+            } while (lote.size() == TAMANIO_LOTE);
+        } catch (RuntimeException e) {
+            // Sin indice los listados por precio siguen funcionando contra la base de datos
+            logger.error("No se pudo construir el indice de precios, se usara la base de datos.", e);
+            escribir(() -> modificadosDuranteConstruccion = null);
+            return;
+        }
+
+        escribir(() -> {
+            modificadosDuranteConstruccion = null;
+            disponible = true;
+        });
+        logger.info("Indice de precios construido con {} productos en {} ms",
+                cantidadProductos(), (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    /**
+     * Agrega un producto al indice, o actualiza su precio si ya estaba.
+     */
+    public void indexar(Long id, Double precio) {
+        escribir(() -> {
+            marcarModificado(id);
+            quitar(id);
+            agregar(id, precio);
+        });
+    }
+
+    /**
+     * Agrega varios productos de una vez, o actualiza su precio si ya estaban. Los nuevos se ordenan entre ellos y se
+     * intercalan con los del indice en una sola pasada, en lugar de correr los arreglos una vez por producto.
+     *
+     * @param productos Productos con IDs distintos.
+     */
+    public void indexarTodos(List<ProductoDto> productos) {
+        escribir(() -> {
+            long[] idsNuevos = new long[productos.size()];
+            double[] preciosNuevos = new double[productos.size()];
+            int nuevos = 0;
+            for (ProductoDto producto : productos) {
+                marcarModificado(producto.getId());
+                quitar(producto.getId());
+                if (producto.getPrecio() != null) {
+                    idsNuevos[nuevos] = producto.getId();
+                    preciosNuevos[nuevos++] = producto.getPrecio();
+                }
+            }
+            intercalar(idsNuevos, preciosNuevos, nuevos);
+        });
+    }
+
+    /**
+     * Quita un producto del indice.
+     */
+    public void eliminar(Long id) {
+        escribir(() -> {
+            marcarModificado(id);
+            quitar(id);
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductosCreados(ProductosCreadosEvent event) {
+        if (habilitado) {
+            indexarTodos(event.getProductos());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductoEvent(ProductoEvent event) {
+        if (!habilitado) {
+            return;
+        }
+        switch (event.getTipo()) {
+            case CREADO, ACTUALIZADO -> {
+                ProductoDto producto = event.getProducto();
+                indexar(producto.getId(), producto.getPrecio());
+            }
+            case ELIMINADO -> eliminar(event.getProductoId());
+            case STOCK -> {
+                // El stock no forma parte del indice
+            }
+        }
+    }
+
+    /**
+     * Busca los productos con precio dentro del rango, ordenados por precio (y por ID a igual precio).
+     *
+     * @param precioMin Precio minimo, incluido. Null para no limitar.
+     * @param precioMax Precio maximo, incluido. Null para no limitar.
+     */
+    public ResultadoBusqueda buscar(Double precioMin, Double precioMax, int page, int size) {
+        return buscar(precioMin, precioMax, null, (long) page * size, size, null);
+    }
+
+    /**
+     * Como {@link #buscar(Double, Double, int, int)}, y ademas cuenta los productos de todo el catalogo por rangos de
+     * precio del ancho dado, sin tener en cuenta el precio minimo y maximo. Cada rango cuesta una busqueda binaria.
+     *
+     * @param anchoRangoPrecio Ancho de los rangos de precio, o null para no contarlos.
+     */
+    public ResultadoBusqueda buscar(Double precioMin, Double precioMax, int page, int size, Double anchoRangoPrecio) {
+        return buscar(precioMin, precioMax, null, (long) page * size, size, anchoRangoPrecio);
+    }
+
+    /**
+     * Como {@link #buscar(Double, Double, int, int)}, pero la pagina empieza despues de la posicion dada
+     * (paginacion con cursor). La clave de la posicion es el precio.
+     */
+    public ResultadoBusqueda buscar(Double precioMin, Double precioMax, PosicionBusqueda despuesDe, int size) {
+        return buscar(precioMin, precioMax, despuesDe, 0, size, null);
+    }
+
+    private ResultadoBusqueda buscar(Double precioMin, Double precioMax, PosicionBusqueda despuesDe,
+                                     long salto, int size, Double anchoRangoPrecio) {
+        lock.readLock().lock();
+        try {
+            int desde = precioMin == null ? 0 : primeraPosicionDespues(precioMin, Long.MIN_VALUE);
+            int hasta = precioMax == null ? cantidad : primeraPosicionDespues(precioMax, Long.MAX_VALUE);
+            int total = Math.max(hasta - desde, 0);
+            if (despuesDe != null) {
+                desde = Math.max(desde, primeraPosicionDespues(despuesDe.clave(), despuesDe.id()));
+            }
+
+            List<FacetaPrecio> facetas = anchoRangoPrecio != null ? facetas(anchoRangoPrecio) : null;
+
+            long inicioPagina = desde + salto;
+            if (inicioPagina >= hasta) {
+                return new ResultadoBusqueda(List.of(), total, null, facetas);
+            }
+            int finPagina = (int) Math.min(hasta, inicioPagina + size);
+            List<Long> idsPagina = new ArrayList<>(finPagina - (int) inicioPagina);
+            for (int i = (int) inicioPagina; i < finPagina; i++) {
+                idsPagina.add(ids[i]);
+            }
+            PosicionBusqueda siguiente = finPagina < hasta
+                    ? new PosicionBusqueda(precios[finPagina - 1], ids[finPagina - 1])
+                    : null;
+            return new ResultadoBusqueda(idsPagina, total, siguiente, facetas);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Salta de un rango al siguiente con una busqueda binaria, sin recorrer los productos uno por uno
+    private List<FacetaPrecio> facetas(double ancho) {
+        HistogramaPrecios histograma = new HistogramaPrecios(ancho);
+        int posicion = 0;
+        while (posicion < cantidad) {
+            long rango = histograma.rango(precios[posicion]);
+            // Con el redondeo, el limite del rango podria quedar antes de la posicion actual
+            int siguiente = Math.max(primeraPosicionDespues((rango + 1) * ancho, Long.MIN_VALUE), posicion + 1);
+            histograma.agregar(rango, siguiente - posicion);
+            posicion = siguiente;
+        }
+        return histograma.facetas();
+    }
+
+    /**
+     * @param ancho Ancho de los rangos de precio pedido.
+     * @return El ancho acotado a los precios indexados (ver {@link HistogramaPrecios#anchoAcotado}).
+     */
+    public double anchoAcotado(double ancho) {
+        lock.readLock().lock();
+        try {
+            return cantidad == 0 ? ancho : HistogramaPrecios.anchoAcotado(ancho, precios[0], precios[cantidad - 1]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Cantidad de productos indexados.
+     */
+    public int cantidadProductos() {
+        lock.readLock().lock();
+        try {
+            return cantidad;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Primera posicion que va despues de (precio, id)
+    private int primeraPosicionDespues(double precio, long id) {
+        int desde = 0;
+        int hasta = cantidad;
+        while (desde < hasta) {
+            int medio = (desde + hasta) >>> 1;
+            int porPrecio = Double.compare(precios[medio], precio);
+            if (porPrecio < 0 || (porPrecio == 0 && ids[medio] <= id)) {
+                desde = medio + 1;
+            } else {
+                hasta = medio;
+            }
+        }
+        return desde;
+    }
+
+    private void agregar(long id, Double precio) {
+        if (precio == null) {
+            return;
+        }
+        if (cantidad == ids.length) {
+            ids = Arrays.copyOf(ids, cantidad * 2);
+            precios = Arrays.copyOf(precios, cantidad * 2);
+        }
+        int posicion = primeraPosicionDespues(precio, id);
+        System.arraycopy(ids, posicion, ids, posicion + 1, cantidad - posicion);
+        System.arraycopy(precios, posicion, precios, posicion + 1, cantidad - posicion);
+        ids[posicion] = id;
+        precios[posicion] = precio;
+        cantidad++;
+        ocuparLugar(id, precio);
+    }
+
+    // Ordena los productos nuevos por (precio, id) y los intercala desde el final con los del indice
+    private void intercalar(long[] idsNuevos, double[] preciosNuevos, int nuevos) {
+        Integer[] orden = new Integer[nuevos];
+        for (int i = 0; i < nuevos; i++) {
+            orden[i] = i;
+        }
+        Arrays.sort(orden, (a, b) -> {
+            int porPrecio = Double.compare(preciosNuevos[a], preciosNuevos[b]);
+            return porPrecio != 0 ? porPrecio : Long.compare(idsNuevos[a], idsNuevos[b]);
+        });
+
+        if (cantidad + nuevos > ids.length) {
+            int capacidad = Math.max(ids.length * 2, cantidad + nuevos);
+            ids = Arrays.copyOf(ids, capacidad);
+            precios = Arrays.copyOf(precios, capacidad);
+        }
+        int existente = cantidad - 1;
+        int escritura = cantidad + nuevos - 1;
+        for (int n = nuevos - 1; n >= 0; n--) {
+            int nuevo = orden[n];
+            while (existente >= 0 && vaDespues(precios[existente], ids[existente], preciosNuevos[nuevo], idsNuevos[nuevo])) {
+                ids[escritura] = ids[existente];
+                precios[escritura--] = precios[existente--];
+            }
+            ids[escritura] = idsNuevos[nuevo];
+            precios[escritura--] = preciosNuevos[nuevo];
+            ocuparLugar(idsNuevos[nuevo], preciosNuevos[nuevo]);
+        }
+        cantidad += nuevos;
+    }
+
+    private static boolean vaDespues(double precio, long id, double otroPrecio, long otroId) {
+        int porPrecio = Double.compare(precio, otroPrecio);
+        return porPrecio > 0 || (porPrecio == 0 && id > otroId);
+    }
+
+    private void ocuparLugar(long id, double precio) {
+        int lugar;
+        if (cantidadLibres > 0) {
+            lugar = lugaresLibres[--cantidadLibres];
+        } else {
+            if (lugaresUsados == precioPorLugar.length) {
+                precioPorLugar = Arrays.copyOf(precioPorLugar, lugaresUsados * 2);
+            }
+            lugar = lugaresUsados++;
+        }
+        precioPorLugar[lugar] = precio;
+        lugarPorId.put(id, lugar);
+    }
+
+    private void quitar(long id) {
+        int lugar = lugarPorId.remove(id);
+        if (lugar == LongIntMap.SIN_VALOR) {
+            return;
+        }
+        if (cantidadLibres == lugaresLibres.length) {
+            lugaresLibres = Arrays.copyOf(lugaresLibres, cantidadLibres * 2);
+        }
+        lugaresLibres[cantidadLibres++] = lugar;
+
+        // El producto es el ultimo de los que van antes o en (precio, id)
+        int posicion = primeraPosicionDespues(precioPorLugar[lugar], id) - 1;
+        System.arraycopy(ids, posicion + 1, ids, posicion, cantidad - posicion - 1);
+        System.arraycopy(precios, posicion + 1, precios, posicion, cantidad - posicion - 1);
+        cantidad--;
+    }
+
+    private void marcarModificado(Long id) {
+        if (modificadosDuranteConstruccion != null) {
+            modificadosDuranteConstruccion.add(id);
+        }
+    }
+
+    private void escribir(Runnable cambio) {
+        lock.writeLock().lock();
+        try {
+            cambio.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
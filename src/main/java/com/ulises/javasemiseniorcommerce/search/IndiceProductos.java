@@ -0,0 +1,514 @@
+package com.ulises.javasemiseniorcommerce.search;
+
+import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+import com.ulises.javasemiseniorcommerce.event.ProductoEvent;
+import com.ulises.javasemiseniorcommerce.event.ProductosCreadosEvent;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository.ProductoTexto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Indice invertido en memoria sobre el nombre y la descripcion de los productos, para buscar sin
+ * el {@code LIKE '%...%'} que recorre toda la tabla.
+ * <p>
+ * Cada producto indexado es un documento con un numero interno denso. Por cada termino se guarda la lista
+ * ordenada de documentos que lo contienen ({@link ListaPostings}); una busqueda intersecta las listas de todos
+ * sus terminos. Al actualizar un producto su documento anterior queda marcado como eliminado y se agrega uno
+ * nuevo al final, asi las listas siempre crecen por el final. Cuando los documentos eliminados superan a los
+ * vigentes se compacta el indice.
+ * <p>
+ * Los resultados se ordenan por precio o por relevancia (BM25F): cada termino suma segun cuantas veces aparece
+ * en el nombre y en la descripcion, normalizado por el largo de cada campo, con el nombre pesando mas. En los
+ * dos casos la pagina se elige con un heap acotado ({@link TopK}) sin ordenar todas las coincidencias.
+ * <p>
+ * Se construye al iniciar la aplicacion y despues se actualiza con los {@link ProductoEvent} luego de cada commit.
+ * Mientras no esta construido (o si {@code commerce.search.indice.enabled=false}) las busquedas van a la base de datos.
+ *
+ * @author ulide
+ */
+@Component
+public class IndiceProductos {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndiceProductos.class);
+    private static final int TAMANIO_LOTE = 5_000;
+    private static final int MINIMO_PARA_COMPACTAR = 1_024;
+    // Parametros de BM25F
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double PESO_NOMBRE = 3.0;
+    private static final double PESO_DESCRIPCION = 1.0;
+
+    private final ProductoRepository productoRepository;
+    private final boolean habilitado;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Todo lo que sigue se lee con el lock de lectura y se modifica con el de escritura
+    private final Map<String, ListaPostings> postings = new HashMap<>();
+    private final IndiceTrigramas trigramas = new IndiceTrigramas();
+    private final LongIntMap docPorId = new LongIntMap();
+    private final BitSet vigentes = new BitSet();
+    private long[] ids = new long[1_024];
+    private double[] precios = new double[1_024];
+    // Cantidad de terminos del nombre y la descripcion de cada documento, y sus sumas sobre los vigentes
+    private int[] largosNombre = new int[1_024];
+    private int[] largosDescripcion = new int[1_024];
+    private long sumaLargosNombre;
+    private long sumaLargosDescripcion;
+    private int cantidadDocs;
+    private int eliminados;
+    // IDs que cambiaron mientras se construia el indice, para que la construccion no los pise con datos viejos
+    private Set<Long> modificadosDuranteConstruccion;
+
+    private volatile boolean disponible;
+
+    public IndiceProductos(ProductoRepository productoRepository,
+                           @Value("${commerce.search.indice.enabled:true}") boolean habilitado) {
+        this.productoRepository = productoRepository;
+        this.habilitado = habilitado;
+    }
+
+    /**
+     * @return true si el indice esta habilitado y ya se construyo.
+     */
+    public boolean isDisponible() {
+        return disponible;
+    }
+
+    /**
+     * Carga todos los productos de la base de datos en el indice, por lotes ordenados por ID.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void construir() {
+        if (!habilitado) {
+            return;
+        }
+        long inicio = System.nanoTime();
+        escribir(() -> {
+            disponible = false;
+            postings.clear();
+            trigramas.clear();
+            docPorId.clear();
+            vigentes.clear();
+            cantidadDocs = 0;
+            eliminados = 0;
+            sumaLargosNombre = 0;
+            sumaLargosDescripcion = 0;
+            modificadosDuranteConstruccion = new HashSet<>();
+        });
+
+        try {
+            long desdeId = 0;
+            List<ProductoTexto> lote;
+            do {
+                lote = productoRepository.findTextosDesde(desdeId, PageRequest.of(0, TAMANIO_LOTE));
+                List<ProductoTexto> productos = lote;
+                escribir(() -> productos.stream()
+                        .filter(producto -> !modificadosDuranteConstruccion.contains(producto.getId()))
+                        .forEach(producto -> agregar(producto.getId(), producto.getNombre(),
+                                producto.getDescripcion(), producto.getPrecio())));
+                if (!lote.isEmpty()) {
+                    desdeId = lote.get(lote.size() - 1).getId();
+                }
+            } while (lote.size() == TAMANIO_LOTE);
+        } catch (RuntimeException e) {
+            // Sin indice las busquedas siguen funcionando contra la base de datos
+            logger.error("No se pudo construir el indice de busqueda, se usara la base de datos.", e);
+            escribir(() -> modificadosDuranteConstruccion = null);
+            return;
+        }
+
+        escribir(() -> {
+            modificadosDuranteConstruccion = null;
+            disponible = true;
+        });
+        logger.info("Indice de busqueda construido con {} productos en {} ms",
+                cantidadVigentes(), (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    /**
+     * Agrega un producto al indice, o lo reemplaza si ya estaba.
+     */
+    public void indexar(Long id, String nombre, String descripcion, Double precio) {
+        escribir(() -> {
+            marcarModificado(id);
+            agregar(id, nombre, descripcion, precio);
+        });
+    }
+
+    /**
+     * Quita un producto del indice.
+     */
+    public void eliminar(Long id) {
+        escribir(() -> {
+            marcarModificado(id);
+            quitar(id);
+            compactarSiHaceFalta();
+        });
+    }
+
+    /**
+     * Agrega varios productos con una sola toma del lock de escritura, o los reemplaza si ya estaban.
+     */
+    public void indexarTodos(List<ProductoDto> productos) {
+        escribir(() -> productos.forEach(producto -> {
+            marcarModificado(producto.getId());
+            agregar(producto.getId(), producto.getNombre(), producto.getDescripcion(), producto.getPrecio());
+        }));
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductosCreados(ProductosCreadosEvent event) {
+        if (habilitado) {
+            indexarTodos(event.getProductos());
+        }
+    }
+
+    // Antes que el cache de busquedas, que descarta los resultados cuando el indice ya tiene el cambio
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductoEvent(ProductoEvent event) {
+        if (!habilitado) {
+            return;
+        }
+        switch (event.getTipo()) {
+            case CREADO, ACTUALIZADO -> {
+                ProductoDto producto = event.getProducto();
+                indexar(producto.getId(), producto.getNombre(), producto.getDescripcion(), producto.getPrecio());
+            }
+            case ELIMINADO -> eliminar(event.getProductoId());
+            case STOCK -> {
+                // El stock no forma parte del indice
+            }
+        }
+    }
+
+    /**
+     * Busca los productos que contienen todos los terminos de la consulta en su nombre o descripcion,
+     * ordenados por precio (y por ID a igual precio).
+     */
+    public ResultadoBusqueda buscar(String consulta, Double precioMin, Double precioMax, int page, int size) {
+        return buscar(consulta, precioMin, precioMax, page, size, OrdenBusqueda.PRECIO);
+    }
+
+    public ResultadoBusqueda buscar(String consulta, Double precioMin, Double precioMax, int page, int size,
+                                    OrdenBusqueda orden) {
+        return buscar(ConsultaBusqueda.builder()
+                .texto(consulta)
+                .precioMin(precioMin)
+                .precioMax(precioMax)
+                .orden(orden)
+                .build(), page, size);
+    }
+
+    /**
+     * Busca los productos que contienen todos los terminos de la consulta en su nombre o descripcion.
+     * En una busqueda difusa cada termino tambien coincide con los terminos del indice a poca distancia de
+     * edicion (ver {@link IndiceTrigramas}).
+     *
+     * @param consulta Palabras a buscar, filtros de precio, orden (por precio ascendente o por relevancia
+     *                 descendente, a igualdad por ID), si la busqueda es difusa y desde que posicion seguir.
+     *                 Con orden por relevancia, si el catalogo cambia entre una pagina y la siguiente los puntajes
+     *                 pueden moverse un poco y algun producto repetirse u omitirse.
+     *                 Si pide rangos de precio, se cuentan en el mismo recorrido que arma la pagina.
+     * @param page     Numero de pagina.
+     * @param size     Tamanio de la pagina.
+     * @return IDs de la pagina pedida, cantidad total de coincidencias y, si se pidieron, los rangos de precio.
+     */
+    public ResultadoBusqueda buscar(ConsultaBusqueda consulta, int page, int size) {
+        HistogramaPrecios histograma = consulta.getAnchoRangoPrecio() != null
+                ? new HistogramaPrecios(consulta.getAnchoRangoPrecio())
+                : null;
+        Set<String> terminos = new LinkedHashSet<>(Tokenizador.tokenizar(consulta.getTexto()));
+        if (terminos.isEmpty()) {
+            return sinResultados(histograma);
+        }
+        Double precioMin = consulta.getPrecioMin();
+        Double precioMax = consulta.getPrecioMax();
+
+        lock.readLock().lock();
+        try {
+            ListaPostings[] listas = new ListaPostings[terminos.size()];
+            int i = 0;
+            for (String termino : terminos) {
+                listas[i] = consulta.isDifuso() ? postingsParecidos(termino) : postings.get(termino);
+                if (listas[i] == null) {
+                    return sinResultados(histograma);
+                }
+                i++;
+            }
+            // Se recorre la lista mas corta y se busca cada documento en las demas
+            Arrays.sort(listas, Comparator.comparingInt(ListaPostings::size));
+
+            boolean porRelevancia = consulta.getOrden() == OrdenBusqueda.RELEVANCIA;
+            Bm25 bm25 = porRelevancia ? new Bm25(listas) : null;
+            double minimo = precioMin != null ? precioMin : Double.NEGATIVE_INFINITY;
+            double maximo = precioMax != null ? precioMax : Double.POSITIVE_INFINITY;
+            PosicionBusqueda despuesDe = consulta.getDespuesDe();
+            // Solo hace falta conservar hasta el final de la pagina pedida
+            long desde = (long) page * size;
+            TopK mejores = new TopK((int) Math.min((long) (page + 1) * size, listas[0].size()), ids);
+
+            int total = 0;
+            // Coincidencias que van despues del cursor (todas si no hay cursor)
+            int posteriores = 0;
+            int[] posiciones = new int[listas.length];
+            recorrido:
+            for (int p = 0; p < listas[0].size(); p++) {
+                int doc = listas[0].get(p);
+                double precio = precios[doc];
+                boolean fueraDeRango = precio < minimo || precio > maximo;
+                // Los rangos de precio cuentan tambien las coincidencias fuera del filtro de precio
+                if ((fueraDeRango && histograma == null) || !vigentes.get(doc)) {
+                    continue;
+                }
+                for (int l = 1; l < listas.length; l++) {
+                    posiciones[l] = listas[l].avanzarHasta(posiciones[l], doc);
+                    if (posiciones[l] == listas[l].size()) {
+                        break recorrido;
+                    }
+                    if (listas[l].get(posiciones[l]) != doc) {
+                        continue recorrido;
+                    }
+                }
+                if (histograma != null) {
+                    histograma.agregar(precio);
+                    if (fueraDeRango) {
+                        continue;
+                    }
+                }
+                total++;
+                double clave = precio;
+                if (porRelevancia) {
+                    posiciones[0] = p;
+                    // Menor clave es mejor, por eso el puntaje va negado
+                    clave = -bm25.puntaje(listas, posiciones, doc);
+                }
+                if (despuesDe != null && !despuesDe.esAnteriorA(clave, ids[doc])) {
+                    continue;
+                }
+                posteriores++;
+                if (clave <= mejores.peorClave()) {
+                    mejores.ofrecer(clave, doc);
+                }
+            }
+
+            int[] pagina = mejores.ordenados();
+            double[] claves = mejores.clavesOrdenadas();
+            List<Long> idsPagina = new ArrayList<>();
+            for (long posicion = desde; posicion < pagina.length; posicion++) {
+                idsPagina.add(ids[pagina[(int) posicion]]);
+            }
+            PosicionBusqueda siguiente = null;
+            if (!idsPagina.isEmpty() && posteriores > pagina.length) {
+                int ultimo = pagina.length - 1;
+                siguiente = new PosicionBusqueda(claves[ultimo], ids[pagina[ultimo]]);
+            }
+            return new ResultadoBusqueda(idsPagina, total, siguiente,
+                    histograma != null ? histograma.facetas() : null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static ResultadoBusqueda sinResultados(HistogramaPrecios histograma) {
+        return new ResultadoBusqueda(List.of(), 0, null, histograma != null ? List.of() : null);
+    }
+
+    /**
+     * @return Cantidad de productos indexados.
+     */
+    public int cantidadVigentes() {
+        lock.readLock().lock();
+        try {
+            return docPorId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Union de los documentos de todos los terminos parecidos, o null si no hay ninguno
+    private ListaPostings postingsParecidos(String termino) {
+        List<IndiceTrigramas.Variante> variantes = trigramas.variantes(termino);
+        List<ListaPostings> listas = new ArrayList<>();
+        int[] distancias = new int[variantes.size()];
+        for (IndiceTrigramas.Variante variante : variantes) {
+            // El diccionario de trigramas conserva terminos que ya no tienen documentos
+            ListaPostings lista = postings.get(variante.termino());
+            if (lista != null) {
+                distancias[listas.size()] = variante.distancia();
+                listas.add(lista);
+            }
+        }
+        return listas.isEmpty() ? null : ListaPostings.unir(listas, distancias);
+    }
+
+    private void agregar(Long id, String nombre, String descripcion, Double precio) {
+        quitar(id);
+
+        int doc = cantidadDocs++;
+        if (doc == ids.length) {
+            ids = Arrays.copyOf(ids, doc * 2);
+            precios = Arrays.copyOf(precios, doc * 2);
+            largosNombre = Arrays.copyOf(largosNombre, doc * 2);
+            largosDescripcion = Arrays.copyOf(largosDescripcion, doc * 2);
+        }
+        List<String> terminosNombre = Tokenizador.tokenizar(nombre);
+        List<String> terminosDescripcion = Tokenizador.tokenizar(descripcion);
+        ids[doc] = id;
+        precios[doc] = precio != null ? precio : 0;
+        largosNombre[doc] = terminosNombre.size();
+        largosDescripcion[doc] = terminosDescripcion.size();
+        sumaLargosNombre += terminosNombre.size();
+        sumaLargosDescripcion += terminosDescripcion.size();
+        vigentes.set(doc);
+        docPorId.put(id, doc);
+
+        // Frecuencia de cada termino en el nombre (posicion 0) y en la descripcion (posicion 1)
+        Map<String, int[]> frecuencias = new HashMap<>();
+        terminosNombre.forEach(termino -> frecuencias.computeIfAbsent(termino, t -> new int[2])[0]++);
+        terminosDescripcion.forEach(termino -> frecuencias.computeIfAbsent(termino, t -> new int[2])[1]++);
+        frecuencias.forEach((termino, frecuencia) -> postings.computeIfAbsent(termino, t -> {
+                    trigramas.agregar(t);
+                    return new ListaPostings();
+                })
+                .agregar(doc, frecuencia[0], frecuencia[1]));
+        compactarSiHaceFalta();
+    }
+
+    private void quitar(Long id) {
+        int anterior = docPorId.remove(id);
+        if (anterior != LongIntMap.SIN_VALOR) {
+            vigentes.clear(anterior);
+            sumaLargosNombre -= largosNombre[anterior];
+            sumaLargosDescripcion -= largosDescripcion[anterior];
+            eliminados++;
+        }
+    }
+
+    private void marcarModificado(Long id) {
+        if (modificadosDuranteConstruccion != null) {
+            modificadosDuranteConstruccion.add(id);
+        }
+    }
+
+    private void compactarSiHaceFalta() {
+        if (eliminados < MINIMO_PARA_COMPACTAR || eliminados < cantidadDocs - eliminados) {
+            return;
+        }
+
+        // Los documentos vigentes se renumeran en el mismo orden, asi las listas siguen ordenadas
+        int[] nuevoDoc = new int[cantidadDocs];
+        int vigentesCompactados = 0;
+        for (int doc = 0; doc < cantidadDocs; doc++) {
+            if (vigentes.get(doc)) {
+                ids[vigentesCompactados] = ids[doc];
+                precios[vigentesCompactados] = precios[doc];
+                largosNombre[vigentesCompactados] = largosNombre[doc];
+                largosDescripcion[vigentesCompactados] = largosDescripcion[doc];
+                docPorId.put(ids[doc], vigentesCompactados);
+                nuevoDoc[doc] = vigentesCompactados++;
+            } else {
+                nuevoDoc[doc] = -1;
+            }
+        }
+
+        Iterator<ListaPostings> iterador = postings.values().iterator();
+        while (iterador.hasNext()) {
+            ListaPostings lista = iterador.next();
+            lista.renumerar(nuevoDoc);
+            if (lista.size() == 0) {
+                iterador.remove();
+            }
+        }
+
+        vigentes.clear();
+        vigentes.set(0, vigentesCompactados);
+        cantidadDocs = vigentesCompactados;
+        eliminados = 0;
+    }
+
+    private void escribir(Runnable cambio) {
+        lock.writeLock().lock();
+        try {
+            cambio.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Puntaje BM25F de una consulta. La frecuencia de cada termino combina la del nombre y la de la descripcion,
+     * cada una normalizada por el largo de su campo respecto del promedio y multiplicada por el peso del campo.
+     * El factor de cada largo de campo se calcula una vez por consulta en una tabla, para no dividir por documento.
+     * La frecuencia de documentos incluye los documentos eliminados que todavia no se compactaron.
+     */
+    private final class Bm25 {
+
+        private static final int LARGOS_EN_TABLA = 256;
+
+        private final double[] idf;
+        private final double promedioNombre;
+        private final double promedioDescripcion;
+        private final double[] factoresNombre = new double[LARGOS_EN_TABLA];
+        private final double[] factoresDescripcion = new double[LARGOS_EN_TABLA];
+
+        Bm25(ListaPostings[] listas) {
+            int vigentesActuales = Math.max(docPorId.size(), 1);
+            idf = new double[listas.length];
+            for (int i = 0; i < listas.length; i++) {
+                double frecuenciaDocs = Math.min(listas[i].size(), vigentesActuales);
+                idf[i] = Math.log(1 + (vigentesActuales - frecuenciaDocs + 0.5) / (frecuenciaDocs + 0.5));
+            }
+            promedioNombre = Math.max(1.0, (double) sumaLargosNombre / vigentesActuales);
+            promedioDescripcion = Math.max(1.0, (double) sumaLargosDescripcion / vigentesActuales);
+            for (int largo = 0; largo < LARGOS_EN_TABLA; largo++) {
+                factoresNombre[largo] = factor(PESO_NOMBRE, largo, promedioNombre);
+                factoresDescripcion[largo] = factor(PESO_DESCRIPCION, largo, promedioDescripcion);
+            }
+        }
+
+        double puntaje(ListaPostings[] listas, int[] posiciones, int doc) {
+            int largoNombre = largosNombre[doc];
+            int largoDescripcion = largosDescripcion[doc];
+            double factorNombre = largoNombre < LARGOS_EN_TABLA
+                    ? factoresNombre[largoNombre] : factor(PESO_NOMBRE, largoNombre, promedioNombre);
+            double factorDescripcion = largoDescripcion < LARGOS_EN_TABLA
+                    ? factoresDescripcion[largoDescripcion] : factor(PESO_DESCRIPCION, largoDescripcion, promedioDescripcion);
+            double puntaje = 0;
+            for (int i = 0; i < listas.length; i++) {
+                double frecuencia = listas[i].enNombre(posiciones[i]) * factorNombre
+                        + listas[i].enDescripcion(posiciones[i]) * factorDescripcion;
+                // Un termino parecido aporta la mitad por cada edicion de distancia al termino buscado
+                puntaje += idf[i] * frecuencia / (K1 + frecuencia) / (1 << listas[i].distancia(posiciones[i]));
+            }
+            return puntaje;
+        }
+
+        private static double factor(double peso, int largo, double promedio) {
+            return peso / (1 - B + B * largo / promedio);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.ulises.javasemiseniorcommerce.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indice de trigramas sobre el diccionario de terminos del indice de productos, para encontrar terminos
+ * parecidos a uno mal escrito ("pantalom" -> "pantalon"). Cada termino tiene un numero interno y cada trigrama
+ * guarda en un int[] los terminos que lo contienen. Los candidatos que comparten suficientes trigramas se
+ * confirman con la distancia de edicion (Levenshtein). No es thread-safe, lo protege el lock de {@link IndiceProductos}.
+ *
+ * @author ulide
+ */
+class IndiceTrigramas {
+
+    private static final int MAXIMO_VARIANTES = 16;
+
+    private final Map<String, Integer> idPorTermino = new HashMap<>();
+    private String[] terminos = new String[1_024];
+    private int cantidadTerminos;
+
+    private final LongIntMap listaPorTrigrama = new LongIntMap();
+    private int[][] listas = new int[1_024][];
+    private int[] tamanios = new int[1_024];
+    private int cantidadListas;
+
+    /**
+     * Termino del diccionario a cierta distancia de edicion de un termino buscado.
+     */
+    record Variante(String termino, int distancia) {
+    }
+
+    void agregar(String termino) {
+        if (idPorTermino.putIfAbsent(termino, cantidadTerminos) != null) {
+            return;
+        }
+        int id = cantidadTerminos++;
+        if (id == terminos.length) {
+            terminos = Arrays.copyOf(terminos, id * 2);
+        }
+        terminos[id] = termino;
+
+        for (long trigrama : trigramas(termino)) {
+            int lista = listaPorTrigrama.get(trigrama);
+            if (lista == LongIntMap.SIN_VALOR) {
+                lista = nuevaLista();
+                listaPorTrigrama.put(trigrama, lista);
+            }
+            // Los terminos se numeran en orden creciente, asi las listas quedan ordenadas
+            if (tamanios[lista] == listas[lista].length) {
+                listas[lista] = Arrays.copyOf(listas[lista], tamanios[lista] * 2);
+            }
+            listas[lista][tamanios[lista]++] = id;
+        }
+    }
+
+    void clear() {
+        idPorTermino.clear();
+        listaPorTrigrama.clear();
+        Arrays.fill(terminos, 0, cantidadTerminos, null);
+        Arrays.fill(listas, 0, cantidadListas, null);
+        cantidadTerminos = 0;
+        cantidadListas = 0;
+    }
+
+    /**
+     * @param termino Termino buscado, ya normalizado.
+     * @return Los terminos del diccionario a distancia tolerable (incluido el mismo termino si existe),
+     * de menor a mayor distancia.
+     */
+    List<Variante> variantes(String termino) {
+        int maximo = distanciaMaxima(termino.length());
+        List<Variante> variantes = new ArrayList<>();
+        if (maximo == 0) {
+            if (idPorTermino.containsKey(termino)) {
+                variantes.add(new Variante(termino, 0));
+            }
+            return variantes;
+        }
+
+        // Cada edicion cambia a lo sumo 3 trigramas, los que comparten menos no pueden estar a distancia tolerable
+        long[] trigramasBuscados = trigramas(termino);
+        int minimoComun = Math.max(1, trigramasBuscados.length - 3 * maximo);
+        // Trigramas en comun por termino, solo de los terminos que aparecen en alguna lista: no se reserva un
+        // contador por cada termino del diccionario en cada busqueda
+        LongIntMap comunes = new LongIntMap(64);
+        int[] tocados = new int[64];
+        int cantidadTocados = 0;
+        for (long trigrama : trigramasBuscados) {
+            int lista = listaPorTrigrama.get(trigrama);
+            if (lista == LongIntMap.SIN_VALOR) {
+                continue;
+            }
+            for (int i = 0; i < tamanios[lista]; i++) {
+                int id = listas[lista][i];
+                int anterior = comunes.get(id);
+                if (anterior == LongIntMap.SIN_VALOR) {
+                    if (cantidadTocados == tocados.length) {
+                        tocados = Arrays.copyOf(tocados, cantidadTocados * 2);
+                    }
+                    tocados[cantidadTocados++] = id;
+                    anterior = 0;
+                }
+                comunes.put(id, anterior + 1);
+            }
+        }
+
+        for (int i = 0; i < cantidadTocados; i++) {
+            int id = tocados[i];
+            String candidato = terminos[id];
+            if (comunes.get(id) < minimoComun || Math.abs(candidato.length() - termino.length()) > maximo) {
+                continue;
+            }
+            int distancia = levenshtein(termino, candidato, maximo);
+            if (distancia <= maximo) {
+                variantes.add(new Variante(candidato, distancia));
+            }
+        }
+        variantes.sort(Comparator.comparingInt(Variante::distancia).thenComparing(Variante::termino));
+        return variantes.size() > MAXIMO_VARIANTES ? variantes.subList(0, MAXIMO_VARIANTES) : variantes;
+    }
+
+    // Los terminos cortos no toleran errores, los medianos uno y los largos dos
+    static int distanciaMaxima(int largo) {
+        if (largo <= 3) {
+            return 0;
+        }
+        return largo <= 6 ? 1 : 2;
+    }
+
+    /**
+     * Distancia de Levenshtein con corte: si supera {@code maximo} devuelve {@code maximo + 1} sin terminar el calculo.
+     */
+    static int levenshtein(String a, String b, int maximo) {
+        int[] anterior = new int[b.length() + 1];
+        int[] actual = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            anterior[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            actual[0] = i;
+            int minimoFila = actual[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int sustitucion = anterior[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                actual[j] = Math.min(sustitucion, Math.min(anterior[j], actual[j - 1]) + 1);
+                minimoFila = Math.min(minimoFila, actual[j]);
+            }
+            if (minimoFila > maximo) {
+                return maximo + 1;
+            }
+            int[] auxiliar = anterior;
+            anterior = actual;
+            actual = auxiliar;
+        }
+        return Math.min(anterior[b.length()], maximo + 1);
+    }
+
+    // Trigramas distintos del termino con marcas de inicio y fin ("^pa", "pan", ..., "on$"), tres chars en un long
+    private static long[] trigramas(String termino) {
+        String conMarcas = '^' + termino + '$';
+        long[] trigramas = new long[conMarcas.length() - 2];
+        for (int i = 0; i < trigramas.length; i++) {
+            trigramas[i] = (long) conMarcas.charAt(i) << 32 | (long) conMarcas.charAt(i + 1) << 16 | conMarcas.charAt(i + 2);
+        }
+        return Arrays.stream(trigramas).distinct().toArray();
+    }
+
+    private int nuevaLista() {
+        if (cantidadListas == listas.length) {
+            listas = Arrays.copyOf(listas, cantidadListas * 2);
+            tamanios = Arrays.copyOf(tamanios, cantidadListas * 2);
+        }
+        listas[cantidadListas] = new int[4];
+        tamanios[cantidadListas] = 0;
+        return cantidadListas++;
+    }
+}
@@ -0,0 +1,144 @@
+package com.ulises.javasemiseniorcommerce.search;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Documentos (numeros internos del indice) que contienen un termino, en orden creciente
+ * y guardados en un int[] que crece a medida que se agregan. En un arreglo paralelo se guarda cuantas veces
+ * aparece el termino en el nombre (16 bits altos) y en la descripcion (16 bits bajos) de cada documento.
+ * Las listas que resultan de unir terminos parecidos guardan ademas la distancia de edicion del termino de
+ * cada documento al termino buscado.
+ *
+ * @author ulide
+ */
+class ListaPostings {
+
+    private static final int MAXIMA_FRECUENCIA = 0xFFFF;
+
+    private int[] docs = new int[4];
+    private int[] frecuencias = new int[4];
+    // Solo en las uniones de terminos parecidos, null en las listas del indice
+    private byte[] distancias;
+    private int cantidad;
+
+    // Los documentos se agregan siempre en orden creciente, por eso alcanza con agregar al final
+    void agregar(int doc, int enNombre, int enDescripcion) {
+        if (cantidad == docs.length) {
+            int capacidad = cantidad + (cantidad >> 1) + 1;
+            docs = Arrays.copyOf(docs, capacidad);
+            frecuencias = Arrays.copyOf(frecuencias, capacidad);
+            if (distancias != null) {
+                distancias = Arrays.copyOf(distancias, capacidad);
+            }
+        }
+        docs[cantidad] = doc;
+        frecuencias[cantidad++] = Math.min(enNombre, MAXIMA_FRECUENCIA) << 16
+                | Math.min(enDescripcion, MAXIMA_FRECUENCIA);
+    }
+
+    /**
+     * Une varias listas en una sola ordenada. Si un documento esta en mas de una lista se conservan las
+     * frecuencias y la distancia de la primera en la que aparece, por eso las listas se pasan de la mas a la
+     * menos relevante.
+     *
+     * @param listas     Listas de los terminos parecidos.
+     * @param distancias Distancia de edicion del termino de cada lista al termino buscado.
+     */
+    static ListaPostings unir(List<ListaPostings> listas, int[] distancias) {
+        if (listas.size() == 1 && distancias[0] == 0) {
+            return listas.get(0);
+        }
+        ListaPostings union = new ListaPostings();
+        union.distancias = new byte[union.docs.length];
+        int[] posiciones = new int[listas.size()];
+        while (true) {
+            int elegida = -1;
+            int menorDoc = Integer.MAX_VALUE;
+            for (int i = 0; i < listas.size(); i++) {
+                if (posiciones[i] < listas.get(i).size() && listas.get(i).get(posiciones[i]) < menorDoc) {
+                    menorDoc = listas.get(i).get(posiciones[i]);
+                    elegida = i;
+                }
+            }
+            if (elegida < 0) {
+                return union;
+            }
+            ListaPostings lista = listas.get(elegida);
+            union.agregar(menorDoc, lista.enNombre(posiciones[elegida]), lista.enDescripcion(posiciones[elegida]));
+            union.distancias[union.cantidad - 1] = (byte) distancias[elegida];
+            for (int i = 0; i < listas.size(); i++) {
+                if (posiciones[i] < listas.get(i).size() && listas.get(i).get(posiciones[i]) == menorDoc) {
+                    posiciones[i]++;
+                }
+            }
+        }
+    }
+
+    int get(int posicion) {
+        return docs[posicion];
+    }
+
+    int enNombre(int posicion) {
+        return frecuencias[posicion] >>> 16;
+    }
+
+    int enDescripcion(int posicion) {
+        return frecuencias[posicion] & MAXIMA_FRECUENCIA;
+    }
+
+    /**
+     * @return Distancia de edicion del termino del documento al termino buscado, 0 fuera de las busquedas difusas.
+     */
+    int distancia(int posicion) {
+        return distancias != null ? distancias[posicion] : 0;
+    }
+
+    int size() {
+        return cantidad;
+    }
+
+    /**
+     * Primera posicion desde {@code desde} cuyo documento es mayor o igual a {@code doc}, o size() si no hay.
+     * Avanza con saltos exponenciales y luego busqueda binaria, util para intersectar una lista corta con una larga.
+     */
+    int avanzarHasta(int desde, int doc) {
+        // Con listas de largo parecido el documento suele estar a pocas posiciones
+        int limite = Math.min(desde + 8, cantidad);
+        while (desde < limite) {
+            if (docs[desde] >= doc) {
+                return desde;
+            }
+            desde++;
+        }
+        int salto = 1;
+        int hasta = desde;
+        while (hasta < cantidad && docs[hasta] < doc) {
+            desde = hasta + 1;
+            hasta += salto;
+            salto <<= 1;
+        }
+        int posicion = Arrays.binarySearch(docs, desde, Math.min(hasta + 1, cantidad), doc);
+        return posicion >= 0 ? posicion : -posicion - 1;
+    }
+
+    /**
+     * Reescribe la lista con la numeracion nueva de los documentos, descartando los que quedaron en -1.
+     * La renumeracion tiene que ser creciente para que la lista siga ordenada.
+     */
+    void renumerar(int[] nuevoDoc) {
+        int escritos = 0;
+        for (int i = 0; i < cantidad; i++) {
+            int doc = nuevoDoc[docs[i]];
+            if (doc >= 0) {
+                docs[escritos] = doc;
+                frecuencias[escritos++] = frecuencias[i];
+            }
+        }
+        cantidad = escritos;
+        if (docs.length > 16 && cantidad < docs.length / 4) {
+            docs = Arrays.copyOf(docs, Math.max(4, cantidad * 2));
+            frecuencias = Arrays.copyOf(frecuencias, docs.length);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.ulises.javasemiseniorcommerce.search;
+
+import java.util.Arrays;
+
+/**
+ * Mapa long -> int con direccionamiento abierto sobre arreglos primitivos, para no crear un Long y
+ * un Integer por cada producto indexado. No es thread-safe.
+ *
+ * @author ulide
+ */
+public class LongIntMap {
+
+    public static final int SIN_VALOR = -1;
+
+    private long[] claves;
+    private int[] valores;
+    private boolean[] ocupados;
+    private int cantidad;
+
+    public LongIntMap() {
+        this(16);
+    }
+
+    public LongIntMap(int capacidadInicial) {
+        int capacidad = Integer.highestOneBit(Math.max(16, capacidadInicial * 2 - 1)) << 1;
+        claves = new long[capacidad];
+        valores = new int[capacidad];
+        ocupados = new boolean[capacidad];
+    }
+
+    /**
+     * @return El valor de la clave, o {@link #SIN_VALOR} si no esta.
+     */
+    public int get(long clave) {
+        int mascara = claves.length - 1;
+        for (int i = posicion(clave, mascara); ocupados[i]; i = (i + 1) & mascara) {
+            if (claves[i] == clave) {
+                return valores[i];
+            }
+        }
+        return SIN_VALOR;
+    }
+
+    public void put(long clave, int valor) {
+        if ((cantidad + 1) * 4 > claves.length * 3) {
+            redimensionar(claves.length * 2);
+        }
+        int mascara = claves.length - 1;
+        int i = posicion(clave, mascara);
+        while (ocupados[i]) {
+            if (claves[i] == clave) {
+                valores[i] = valor;
+                return;
+            }
+            i = (i + 1) & mascara;
+        }
+        ocupados[i] = true;
+        claves[i] = clave;
+        valores[i] = valor;
+        cantidad++;
+    }
+
+    /**
+     * @return El valor que tenia la clave, o {@link #SIN_VALOR} si no estaba.
+     */
+    public int remove(long clave) {
+        int mascara = claves.length - 1;
+        int i = posicion(clave, mascara);
+        while (ocupados[i] && claves[i] != clave) {
+            i = (i + 1) & mascara;
+        }
+        if (!ocupados[i]) {
+            return SIN_VALOR;
+        }
+        int valor = valores[i];
+
+        // Se corren hacia atras las claves siguientes del mismo grupo para no dejar huecos en las busquedas
+        int hueco = i;
+        for (int j = (i + 1) & mascara; ocupados[j]; j = (j + 1) & mascara) {
+            int ideal = posicion(claves[j], mascara);
+            if (((j - ideal) & mascara) >= ((j - hueco) & mascara)) {
+                claves[hueco] = claves[j];
+                valores[hueco] = valores[j];
+                hueco = j;
+            }
+        }
+        ocupados[hueco] = false;
+        cantidad--;
+        return valor;
+    }
+
+    public int size() {
+        return cantidad;
+    }
+
+    public void clear() {
+        Arrays.fill(ocupados, false);
+        cantidad = 0;
+    }
+
+    private void redimensionar(int capacidad) {
+        long[] clavesAnteriores = claves;
+        int[] valoresAnteriores = valores;
+        boolean[] ocupadosAnteriores = ocupados;
+        claves = new long[capacidad];
+        valores = new int[capacidad];
+        ocupados = new boolean[capacidad];
+        cantidad = 0;
+        for (int i = 0; i < clavesAnteriores.length; i++) {
+            if (ocupadosAnteriores[i]) {
+                put(clavesAnteriores[i], valoresAnteriores[i]);
+            }
+        }
+    }
+
+    private static int posicion(long clave, int mascara) {
+        long h = clave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mascara;
+    }
+}
@@ -0,0 +1,41 @@
+package com.ulises.javasemiseniorcommerce.search;
+
+import java.util.Arrays;
+
+/**
+ * Orden de los resultados de /producto/search, segun el parametro {@code sort}.
+ *
+ * @author ulide
+ */
+public enum OrdenBusqueda {
+
+    // Precio ascendente (el orden de siempre)
+    PRECIO("price"),
+    // Puntaje BM25 descendente
+    RELEVANCIA("relevance");
+
+    private final String parametro;
+
+    OrdenBusqueda(String parametro) {
+        this.parametro = parametro;
+    }
+
+    public String getParametro() {
+        return parametro;
+    }
+
+    /**
+     * @param parametro Valor del parametro {@code sort}, puede ser null.
+     * @return El orden correspondiente, o PRECIO si no se especifico.
+     */
+    public static OrdenBusqueda desde(String parametro) {
+        if (parametro == null || parametro.isBlank()) {
+            return PRECIO;
+        }
+        return Arrays.stream(values())
+                .filter(orden -> orden.parametro.equalsIgnoreCase(parametro.trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "Orden invalido: " + parametro + ". Los valores posibles son price y relevance."));
+    }
+}
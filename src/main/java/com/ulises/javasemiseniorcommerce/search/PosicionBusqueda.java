@@ -0,0 +1,20 @@
+package com.ulises.javasemiseniorcommerce.search;
+
+/**
+ * Lugar de un producto dentro de los resultados ordenados de una busqueda, para seguir desde ahi en la
+ * pagina siguiente (paginacion con cursor).
+ *
+ * @param clave Valor por el que se ordena: el precio, o el puntaje de relevancia negado.
+ * @param id    ID del producto, desempata a igual clave.
+ * @author ulide
+ */
+public record PosicionBusqueda(double clave, long id) {
+
+    /**
+     * @return true si un producto con la clave e ID dados va despues de esta posicion en los resultados.
+     */
+    public boolean esAnteriorA(double otraClave, long otroId) {
+        int porClave = Double.compare(otraClave, clave);
+        return porClave != 0 ? porClave > 0 : otroId > id;
+    }
+}
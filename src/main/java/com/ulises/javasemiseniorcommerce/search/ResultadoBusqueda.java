@@ -0,0 +1,30 @@
+package com.ulises.javasemiseniorcommerce.search;
+
+import com.ulises.javasemiseniorcommerce.dto.FacetaPrecio;
+
+import java.util.List;
+
+/**
+ * Pagina de resultados del indice de busqueda.
+ *
+ * @param ids       IDs de los productos de la pagina, en el orden en que se deben mostrar.
+ * @param total     Cantidad total de productos que coinciden con la busqueda.
+ * @param siguiente Posicion del ultimo producto de la pagina si hay mas resultados despues, o null si es la ultima.
+ * @param facetasPrecio Cantidad de productos por rango de precios, o null si no se pidio.
+ * @author ulide
+ */
+public record ResultadoBusqueda(List<Long> ids, long total, PosicionBusqueda siguiente,
+                                List<FacetaPrecio> facetasPrecio) {
+
+    public ResultadoBusqueda(List<Long> ids, long total) {
+        this(ids, total, null, null);
+    }
+
+    public ResultadoBusqueda(List<Long> ids, long total, PosicionBusqueda siguiente) {
+        this(ids, total, siguiente, null);
+    }
+
+    public static ResultadoBusqueda vacio() {
+        return new ResultadoBusqueda(List.of(), 0);
+    }
+}
@@ -0,0 +1,462 @@
+package com.ulises.javasemiseniorcommerce.search;
+
+import com.ulises.javasemiseniorcommerce.dto.SugerenciaDto;
+import com.ulises.javasemiseniorcommerce.event.ProductoEvent;
+import com.ulises.javasemiseniorcommerce.event.ProductosCreadosEvent;
+import com.ulises.javasemiseniorcommerce.repository.DetalleRepository;
+import com.ulises.javasemiseniorcommerce.repository.DetalleRepository.VentasProducto;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository.ProductoTexto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sugerencias de nombres de productos para completar una busqueda mientras se escribe, ordenadas por
+ * popularidad (unidades vendidas).
+ * <p>
+ * Los nombres normalizados se guardan ordenados en un arreglo, que funciona como un trie implicito: los nombres que
+ * empiezan con un prefijo ocupan un rango contiguo, que se encuentra con dos busquedas binarias. Para los prefijos
+ * que abarcan mas de {@link #UMBRAL_RECORRIDO} nombres (los nodos grandes del trie) las mejores sugerencias se
+ * calculan al construir; los rangos chicos se recorren en cada consulta.
+ * <p>
+ * El arbol es inmutable y se reemplaza entero. Los cambios de los {@link ProductoEvent} (altas, modificaciones,
+ * bajas y ventas) se acumulan y se aplican cada {@code commerce.search.sugerencias.refresh-interval-ms},
+ * mezclandolos con el arbol anterior sin volver a ordenar todo.
+ *
+ * @author ulide
+ */
+@Component
+public class SugerenciasProductos {
+
+    private static final Logger logger = LoggerFactory.getLogger(SugerenciasProductos.class);
+    public static final int MAXIMO_SUGERENCIAS = 10;
+    static final int UMBRAL_RECORRIDO = 256;
+    private static final int TAMANIO_LOTE = 5_000;
+
+    private final ProductoRepository productoRepository;
+    private final DetalleRepository detalleRepository;
+    private final boolean habilitado;
+
+    // Cambios desde el ultimo arbol. El nombre es null si el producto se elimino
+    private final Object sincronizacion = new Object();
+    private Map<Long, String> nombresPendientes = new HashMap<>();
+    private Map<Long, Long> ventasPendientes = new HashMap<>();
+
+    // Evita que dos reconstrucciones se pisen
+    private final Object reconstruccion = new Object();
+    private volatile Arbol arbol;
+
+    public SugerenciasProductos(ProductoRepository productoRepository, DetalleRepository detalleRepository,
+                                @Value("${commerce.search.sugerencias.enabled:true}") boolean habilitado) {
+        this.productoRepository = productoRepository;
+        this.detalleRepository = detalleRepository;
+        this.habilitado = habilitado;
+    }
+
+    /**
+     * @return true si las sugerencias estan habilitadas y ya se construyeron.
+     */
+    public boolean isDisponible() {
+        return arbol != null;
+    }
+
+    /**
+     * Carga los nombres de todos los productos y sus unidades vendidas.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void construir() {
+        if (!habilitado) {
+            return;
+        }
+        long inicio = System.nanoTime();
+        synchronized (sincronizacion) {
+            // Los nombres que lleguen desde ahora se aplican despues de construir, por si la carga lee datos viejos.
+            // Volver a aplicar un nombre que ya se leyo no cambia nada
+            nombresPendientes = new HashMap<>();
+        }
+
+        List<Entrada> entradas = new ArrayList<>();
+        try {
+            Map<Long, Long> vendidos = new HashMap<>();
+            for (VentasProducto ventas : detalleRepository.findVentasPorProducto()) {
+                vendidos.put(ventas.getProductoId(), ventas.getVendidos());
+            }
+            synchronized (sincronizacion) {
+                // Las ventas se suman: las que llegaron hasta aca ya estan en la consulta y se descartan para no
+                // contarlas dos veces. Solo se aplican las que lleguen despues de leerlas
+                ventasPendientes = new HashMap<>();
+            }
+            long desdeId = 0;
+            List<ProductoTexto> lote;
+            do {
+                lote = productoRepository.findTextosDesde(desdeId, PageRequest.of(0, TAMANIO_LOTE));
+                for (ProductoTexto producto : lote) {
+                    entradas.add(new Entrada(producto.getId(), producto.getNombre(),
+                            vendidos.getOrDefault(producto.getId(), 0L)));
+                }
+                if (!lote.isEmpty()) {
+                    desdeId = lote.get(lote.size() - 1).getId();
+                }
+            } while (lote.size() == TAMANIO_LOTE);
+        } catch (RuntimeException e) {
+            // Sin arbol el endpoint de sugerencias devuelve una lista vacia
+            logger.error("No se pudieron construir las sugerencias de productos.", e);
+            return;
+        }
+
+        entradas.sort(Entrada.ORDEN);
+        synchronized (reconstruccion) {
+            arbol = new Arbol(entradas);
+        }
+        aplicarCambios();
+        logger.info("Sugerencias de productos construidas con {} productos en {} ms",
+                entradas.size(), (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    /**
+     * Agrega un producto a las sugerencias, o cambia su nombre si ya estaba.
+     */
+    public void registrarProducto(Long id, String nombre) {
+        synchronized (sincronizacion) {
+            nombresPendientes.put(id, nombre);
+        }
+    }
+
+    /**
+     * Quita un producto de las sugerencias.
+     */
+    public void eliminar(Long id) {
+        synchronized (sincronizacion) {
+            nombresPendientes.put(id, null);
+        }
+    }
+
+    /**
+     * Suma unidades vendidas a la popularidad de un producto.
+     */
+    public void registrarVenta(Long id, long unidades) {
+        synchronized (sincronizacion) {
+            ventasPendientes.merge(id, unidades, Long::sum);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductosCreados(ProductosCreadosEvent event) {
+        if (!habilitado) {
+            return;
+        }
+        synchronized (sincronizacion) {
+            event.getProductos().forEach(producto -> nombresPendientes.put(producto.getId(), producto.getNombre()));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductoEvent(ProductoEvent event) {
+        if (!habilitado) {
+            return;
+        }
+        switch (event.getTipo()) {
+            case CREADO, ACTUALIZADO -> registrarProducto(event.getProductoId(), event.getProducto().getNombre());
+            case ELIMINADO -> eliminar(event.getProductoId());
+            case STOCK -> {
+                if (event.getUnidadesVendidas() > 0) {
+                    registrarVenta(event.getProductoId(), event.getUnidadesVendidas());
+                }
+            }
+        }
+    }
+
+    /**
+     * Aplica al arbol los cambios acumulados desde la ultima vez.
+     */
+    @Scheduled(fixedDelayString = "${commerce.search.sugerencias.refresh-interval-ms:2000}")
+    public void aplicarCambios() {
+        synchronized (reconstruccion) {
+            Arbol actual = arbol;
+            if (actual == null) {
+                return;
+            }
+            Map<Long, String> nombres;
+            Map<Long, Long> ventas;
+            synchronized (sincronizacion) {
+                if (nombresPendientes.isEmpty() && ventasPendientes.isEmpty()) {
+                    return;
+                }
+                nombres = nombresPendientes;
+                ventas = ventasPendientes;
+                nombresPendientes = new HashMap<>();
+                ventasPendientes = new HashMap<>();
+            }
+            arbol = actual.con(nombres, ventas);
+        }
+    }
+
+    /**
+     * @param prefijo Comienzo del nombre, sin distinguir mayusculas ni acentos.
+     * @param limite  Cantidad maxima de sugerencias, hasta {@link #MAXIMO_SUGERENCIAS}.
+     * @return Los productos mas vendidos cuyo nombre empieza con el prefijo, del mas vendido al menos vendido.
+     */
+    public List<SugerenciaDto> sugerir(String prefijo, int limite) {
+        Arbol actual = arbol;
+        if (actual == null || prefijo == null || limite <= 0) {
+            return List.of();
+        }
+        String clave = normalizarPrefijo(prefijo);
+        if (clave.isEmpty()) {
+            return List.of();
+        }
+
+        int[] mejores = actual.mejores(clave);
+        int cantidad = Math.min(Math.min(limite, MAXIMO_SUGERENCIAS), mejores.length);
+        List<SugerenciaDto> sugerencias = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            int posicion = mejores[i];
+            sugerencias.add(SugerenciaDto.builder()
+                    .id(actual.ids[posicion])
+                    .nombre(actual.nombres[posicion])
+                    .build());
+        }
+        return sugerencias;
+    }
+
+    // Los nombres se comparan con sus terminos separados por un espacio
+    static String normalizarNombre(String nombre) {
+        return String.join(" ", Tokenizador.tokenizar(nombre));
+    }
+
+    // Como los nombres, pero conservando el espacio final: "camisa " no sugiere "camisetas"
+    static String normalizarPrefijo(String prefijo) {
+        String clave = normalizarAscii(prefijo);
+        if (clave == null) {
+            clave = normalizarNombre(prefijo);
+        }
+        if (!clave.isEmpty() && !Character.isLetterOrDigit(prefijo.charAt(prefijo.length() - 1))
+                && clave.charAt(clave.length() - 1) != ' ') {
+            clave += " ";
+        }
+        return clave;
+    }
+
+    // Se llama en cada tecla: los prefijos ASCII (la gran mayoria) se normalizan sin expresiones regulares.
+    // Devuelve null si el prefijo tiene otros caracteres
+    private static String normalizarAscii(String prefijo) {
+        StringBuilder clave = new StringBuilder(prefijo.length());
+        boolean separador = false;
+        for (int i = 0; i < prefijo.length(); i++) {
+            char caracter = prefijo.charAt(i);
+            if (caracter >= 0x80) {
+                return null;
+            }
+            if (Character.isLetterOrDigit(caracter)) {
+                if (separador && clave.length() > 0) {
+                    clave.append(' ');
+                }
+                clave.append(Character.toLowerCase(caracter));
+                separador = false;
+            } else {
+                separador = true;
+            }
+        }
+        if (separador && clave.length() > 0) {
+            clave.append(' ');
+        }
+        return clave.toString();
+    }
+
+    private record Entrada(long id, String clave, String nombre, long vendidos) {
+
+        static final Comparator<Entrada> ORDEN = Comparator.comparing(Entrada::clave).thenComparingLong(Entrada::id);
+
+        Entrada(long id, String nombre, long vendidos) {
+            this(id, normalizarNombre(nombre), nombre, vendidos);
+        }
+    }
+
+    /**
+     * Nombres ordenados por clave (y por ID a igual clave), con las mejores sugerencias de los prefijos grandes.
+     */
+    private static final class Arbol {
+
+        private final String[] claves;
+        private final String[] nombres;
+        private final long[] ids;
+        private final long[] vendidos;
+        private final LongIntMap posicionPorId;
+        private final Map<String, int[]> mejoresPorPrefijo = new HashMap<>();
+
+        Arbol(List<Entrada> entradas) {
+            this(entradas.stream().map(Entrada::clave).toArray(String[]::new),
+                    entradas.stream().map(Entrada::nombre).toArray(String[]::new),
+                    entradas.stream().mapToLong(Entrada::id).toArray(),
+                    entradas.stream().mapToLong(Entrada::vendidos).toArray(), null);
+        }
+
+        // Si las claves no cambiaron, se reutilizan las posiciones del arbol anterior
+        private Arbol(String[] claves, String[] nombres, long[] ids, long[] vendidos, LongIntMap posicionPorId) {
+            this.claves = claves;
+            this.nombres = nombres;
+            this.ids = ids;
+            this.vendidos = vendidos;
+            if (posicionPorId == null) {
+                posicionPorId = new LongIntMap();
+                for (int i = 0; i < ids.length; i++) {
+                    posicionPorId.put(ids[i], i);
+                }
+            }
+            this.posicionPorId = posicionPorId;
+            if (claves.length > UMBRAL_RECORRIDO) {
+                precalcular(0, claves.length, 0);
+            }
+        }
+
+        /**
+         * Devuelve un arbol nuevo con los cambios aplicados. Los productos que cambiaron de nombre se ordenan
+         * aparte y se mezclan con el resto, que ya esta ordenado.
+         */
+        Arbol con(Map<Long, String> nombresNuevos, Map<Long, Long> ventas) {
+            if (nombresNuevos.isEmpty()) {
+                long[] vendidosNuevos = vendidos.clone();
+                ventas.forEach((id, unidades) -> {
+                    int posicion = posicionPorId.get(id);
+                    if (posicion != LongIntMap.SIN_VALOR) {
+                        vendidosNuevos[posicion] += unidades;
+                    }
+                });
+                return new Arbol(claves, nombres, ids, vendidosNuevos, posicionPorId);
+            }
+
+            List<Entrada> cambiadas = new ArrayList<>();
+            nombresNuevos.forEach((id, nombre) -> {
+                if (nombre != null) {
+                    int posicion = posicionPorId.get(id);
+                    long anteriores = posicion == LongIntMap.SIN_VALOR ? 0 : vendidos[posicion];
+                    cambiadas.add(new Entrada(id, nombre, anteriores + ventas.getOrDefault(id, 0L)));
+                }
+            });
+            cambiadas.sort(Entrada.ORDEN);
+
+            int conservadas = 0;
+            for (long id : ids) {
+                if (!nombresNuevos.containsKey(id)) {
+                    conservadas++;
+                }
+            }
+            int total = conservadas + cambiadas.size();
+            String[] clavesNuevas = new String[total];
+            String[] nombresMezclados = new String[total];
+            long[] idsNuevos = new long[total];
+            long[] vendidosNuevos = new long[total];
+
+            int anterior = 0;
+            int cambiada = 0;
+            for (int i = 0; i < total; i++) {
+                while (anterior < ids.length && nombresNuevos.containsKey(ids[anterior])) {
+                    anterior++;
+                }
+                boolean tomarCambiada = anterior == ids.length || (cambiada < cambiadas.size()
+                        && compararCon(cambiadas.get(cambiada), anterior) < 0);
+                if (tomarCambiada) {
+                    Entrada entrada = cambiadas.get(cambiada++);
+                    clavesNuevas[i] = entrada.clave();
+                    nombresMezclados[i] = entrada.nombre();
+                    idsNuevos[i] = entrada.id();
+                    vendidosNuevos[i] = entrada.vendidos();
+                } else {
+                    clavesNuevas[i] = claves[anterior];
+                    nombresMezclados[i] = nombres[anterior];
+                    idsNuevos[i] = ids[anterior];
+                    vendidosNuevos[i] = vendidos[anterior] + ventas.getOrDefault(ids[anterior], 0L);
+                    anterior++;
+                }
+            }
+            return new Arbol(clavesNuevas, nombresMezclados, idsNuevos, vendidosNuevos, null);
+        }
+
+        private int compararCon(Entrada entrada, int posicion) {
+            int porClave = entrada.clave().compareTo(claves[posicion]);
+            return porClave != 0 ? porClave : Long.compare(entrada.id(), ids[posicion]);
+        }
+
+        /**
+         * @return Las posiciones de las mejores sugerencias para el prefijo, de la mejor a la peor.
+         */
+        int[] mejores(String prefijo) {
+            int desde = primeraPosicion(prefijo, false);
+            int hasta = primeraPosicion(prefijo, true);
+            if (hasta - desde > UMBRAL_RECORRIDO) {
+                return mejoresPorPrefijo.get(prefijo);
+            }
+            return mejoresEntre(desde, hasta);
+        }
+
+        // Primera posicion cuya clave no es menor que el prefijo o, con despues = true, la primera despues de
+        // las que empiezan con el prefijo
+        private int primeraPosicion(String prefijo, boolean despues) {
+            int desde = 0;
+            int hasta = claves.length;
+            while (desde < hasta) {
+                int medio = (desde + hasta) >>> 1;
+                String clave = claves[medio];
+                if (clave.compareTo(prefijo) < 0 || (despues && clave.startsWith(prefijo))) {
+                    desde = medio + 1;
+                } else {
+                    hasta = medio;
+                }
+            }
+            return desde;
+        }
+
+        private int[] mejoresEntre(int desde, int hasta) {
+            TopK top = new TopK(MAXIMO_SUGERENCIAS, ids);
+            for (int i = desde; i < hasta; i++) {
+                top.ofrecer(-vendidos[i], i);
+            }
+            return top.ordenados();
+        }
+
+        /**
+         * Recorre los nodos del trie con mas de {@link #UMBRAL_RECORRIDO} claves. El rango [desde, hasta) son
+         * las claves que comparten sus primeros {@code largo} caracteres; se divide segun el caracter siguiente.
+         */
+        private void precalcular(int desde, int hasta, int largo) {
+            if (largo > 0) {
+                mejoresPorPrefijo.put(claves[desde].substring(0, largo), mejoresEntre(desde, hasta));
+            }
+            int inicio = desde;
+            // Las claves que terminan en este nodo quedan primeras
+            while (inicio < hasta && claves[inicio].length() == largo) {
+                inicio++;
+            }
+            while (inicio < hasta) {
+                char caracter = claves[inicio].charAt(largo);
+                int fin = inicio + 1;
+                while (fin < hasta && claves[fin].charAt(largo) == caracter) {
+                    fin++;
+                }
+                if (fin - inicio > UMBRAL_RECORRIDO) {
+                    precalcular(inicio, fin, largo + 1);
+                }
+                inicio = fin;
+            }
+        }
+    }
+
+    // Para los tests
+    int cantidadProductos() {
+        Arbol actual = arbol;
+        return actual == null ? 0 : actual.ids.length;
+    }
+}
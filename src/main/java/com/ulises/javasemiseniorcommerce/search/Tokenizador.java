@@ -0,0 +1,48 @@
+package com.ulises.javasemiseniorcommerce.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Separa textos en terminos para el indice de busqueda: minusculas, sin acentos
+ * ("Algodón" y "algodon" dan el mismo termino) y cortando en todo lo que no sea letra o numero.
+ *
+ * @author ulide
+ */
+public final class Tokenizador {
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private Tokenizador() {
+    }
+
+    /**
+     * @param texto Texto a normalizar.
+     * @return El texto en minusculas y sin acentos.
+     */
+    public static String normalizar(String texto) {
+        String sinAcentos = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return sinAcentos.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param texto Texto a separar, puede ser null.
+     * @return Los terminos del texto en el orden en que aparecen (con repetidos).
+     */
+    public static List<String> tokenizar(String texto) {
+        List<String> terminos = new ArrayList<>();
+        if (texto == null || texto.isBlank()) {
+            return terminos;
+        }
+        for (String termino : SEPARADORES.split(normalizar(texto))) {
+            if (!termino.isEmpty()) {
+                terminos.add(termino);
+            }
+        }
+        return terminos;
+    }
+}
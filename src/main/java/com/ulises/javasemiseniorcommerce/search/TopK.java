@@ -0,0 +1,121 @@
+package com.ulises.javasemiseniorcommerce.search;
+
+/**
+ * Conserva los k mejores documentos de un recorrido con un heap acotado a k elementos, en O(n log k) y sin
+ * guardar ni ordenar todas las coincidencias. Cada documento se ofrece con una clave (menor es mejor); a igual
+ * clave gana el de menor ID de producto.
+ * <p>
+ * Como la raiz es el peor de los k que se conservan, la mayoria de los documentos se descartan con una sola
+ * comparacion contra {@link #peorClave()}.
+ *
+ * @author ulide
+ */
+final class TopK {
+
+    private final int k;
+    private final long[] ids;
+    private final double[] claves;
+    private final int[] docs;
+    private int tamanio;
+    private double[] clavesOrdenadas = new double[0];
+
+    /**
+     * @param k   Cantidad de documentos a conservar.
+     * @param ids ID de producto de cada documento, para desempatar.
+     */
+    TopK(int k, long[] ids) {
+        this.k = k;
+        this.ids = ids;
+        this.claves = new double[Math.max(k, 0)];
+        this.docs = new int[Math.max(k, 0)];
+    }
+
+    /**
+     * @return La clave del peor documento conservado, o infinito si todavia no hay k.
+     */
+    double peorClave() {
+        return tamanio < k ? Double.POSITIVE_INFINITY : claves[0];
+    }
+
+    void ofrecer(double clave, int doc) {
+        if (tamanio < k) {
+            claves[tamanio] = clave;
+            docs[tamanio] = doc;
+            subir(tamanio++);
+        } else if (k > 0 && peor(claves[0], docs[0], clave, doc)) {
+            claves[0] = clave;
+            docs[0] = doc;
+            bajar(0, tamanio);
+        }
+    }
+
+    /**
+     * Vacia el heap.
+     *
+     * @return Los documentos conservados, del mejor al peor.
+     */
+    int[] ordenados() {
+        int[] resultado = new int[tamanio];
+        clavesOrdenadas = new double[tamanio];
+        for (int i = tamanio - 1; i >= 0; i--) {
+            resultado[i] = docs[0];
+            clavesOrdenadas[i] = claves[0];
+            claves[0] = claves[i];
+            docs[0] = docs[i];
+            bajar(0, i);
+        }
+        tamanio = 0;
+        return resultado;
+    }
+
+    /**
+     * @return Las claves de los documentos que devolvio el ultimo {@link #ordenados()}, en el mismo orden.
+     */
+    double[] clavesOrdenadas() {
+        return clavesOrdenadas;
+    }
+
+    // true si (claveA, docA) va despues que (claveB, docB)
+    private boolean peor(double claveA, int docA, double claveB, int docB) {
+        int porClave = Double.compare(claveA, claveB);
+        return porClave != 0 ? porClave > 0 : ids[docA] > ids[docB];
+    }
+
+    private void subir(int posicion) {
+        double clave = claves[posicion];
+        int doc = docs[posicion];
+        while (posicion > 0) {
+            int padre = (posicion - 1) >>> 1;
+            if (!peor(clave, doc, claves[padre], docs[padre])) {
+                break;
+            }
+            claves[posicion] = claves[padre];
+            docs[posicion] = docs[padre];
+            posicion = padre;
+        }
+        claves[posicion] = clave;
+        docs[posicion] = doc;
+    }
+
+    private void bajar(int posicion, int limite) {
+        double clave = claves[posicion];
+        int doc = docs[posicion];
+        while (true) {
+            int hijo = 2 * posicion + 1;
+            if (hijo >= limite) {
+                break;
+            }
+            if (hijo + 1 < limite && peor(claves[hijo + 1], docs[hijo + 1], claves[hijo], docs[hijo])) {
+                hijo++;
+            }
+            if (!peor(claves[hijo], docs[hijo], clave, doc)) {
+                break;
+            }
+            claves[posicion] = claves[hijo];
+            docs[posicion] = docs[hijo];
+            posicion = hijo;
+        }
+        claves[posicion] = clave;
+        docs[posicion] = doc;
+    }
+}
@@ -1,43 +1,70 @@
 package com.ulises.javasemiseniorcommerce.service;
 
+import com.ulises.javasemiseniorcommerce.cache.SingleFlight;
+import com.ulises.javasemiseniorcommerce.cache.TotalesAproximados;
 import com.ulises.javasemiseniorcommerce.dto.*;
+import com.ulises.javasemiseniorcommerce.event.PedidoEliminadoEvent;
+import com.ulises.javasemiseniorcommerce.event.ProductoEvent;
 import com.ulises.javasemiseniorcommerce.exception.PedidoSinProductosException;
-import com.ulises.javasemiseniorcommerce.exception.StockInsuficienteException;
 import com.ulises.javasemiseniorcommerce.exception.PedidoNotFoundException;
-import com.ulises.javasemiseniorcommerce.exception.ProductoNotFoundException;
 import com.ulises.javasemiseniorcommerce.exception.UserNotFoundException;
 import com.ulises.javasemiseniorcommerce.model.DetalleModel;
 import com.ulises.javasemiseniorcommerce.model.PedidoModel;
 import com.ulises.javasemiseniorcommerce.model.ProductoModel;
 import com.ulises.javasemiseniorcommerce.model.UsuarioModel;
 import com.ulises.javasemiseniorcommerce.repository.PedidoRepository;
-import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
 import com.ulises.javasemiseniorcommerce.repository.UsuarioRepository;
-import jakarta.transaction.Transactional;
-import lombok.AllArgsConstructor;
+import com.ulises.javasemiseniorcommerce.stock.StockReservationStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * @author ulide
  */
 @Service
-@AllArgsConstructor
 public class PedidoService {
 
     private final PedidoRepository pedidoRepository;
     private final UsuarioRepository usuarioRepository;
-    private final ProductoRepository productoRepository;
+    private final StockReservationStrategy stockReservationStrategy;
+    private final TotalesAproximados totalesAproximados;
+    private final ApplicationEventPublisher eventPublisher;
+    // Transaccion de solo lectura para la carga de un pedido, que no abarca la espera de las lecturas concurrentes
+    private final TransactionTemplate lectura;
+    private final SingleFlight<Long, PedidoDto> cargasEnCurso = new SingleFlight<>();
     private static final Logger logger = LoggerFactory.getLogger(PedidoService.class);
 
+    public PedidoService(PedidoRepository pedidoRepository,
+                         UsuarioRepository usuarioRepository,
+                         StockReservationStrategy stockReservationStrategy,
+                         TotalesAproximados totalesAproximados,
+                         ApplicationEventPublisher eventPublisher,
+                         PlatformTransactionManager transactionManager) {
+        this.pedidoRepository = pedidoRepository;
+        this.usuarioRepository = usuarioRepository;
+        this.stockReservationStrategy = stockReservationStrategy;
+        this.totalesAproximados = totalesAproximados;
+        this.eventPublisher = eventPublisher;
+        this.lectura = new TransactionTemplate(transactionManager);
+        this.lectura.setReadOnly(true);
+    }
+
     /**
      * Crea un pedido.
      *
@@ -61,100 +88,125 @@ public class PedidoService {
             throw new PedidoSinProductosException("El pedido debe contener al menos un producto.");
         }
 
+        // Se agrupan las cantidades por producto, ordenadas por ID para que pedidos concurrentes
+        // tomen los bloqueos de las filas en el mismo orden y no haya deadlocks
+        SortedMap<Long, Integer> cantidadPorProducto = agruparPorProducto(pedidoRequest);
+
+        // Se descuenta el stock segun la estrategia configurada (commerce.stock.strategy)
+        Map<Long, ProductoModel> productos = stockReservationStrategy.reservar(cantidadPorProducto);
+        // Se avisa del cambio de stock para que los caches de productos se invaliden luego del commit,
+        // con las unidades vendidas para la popularidad de las sugerencias
+        cantidadPorProducto.forEach((productoId, cantidad) ->
+                eventPublisher.publishEvent(ProductoEvent.venta(productoId, cantidad)));
+
         PedidoModel pedidoModel = PedidoModel.builder()
                 .usuario(usuario)
                 .fechaDeCreacion(LocalDateTime.now())
-                .precio(0.0)
                 .build();
-        pedidoRepository.save(pedidoModel);
 
         List<DetalleModel> detalles = pedidoRequest.getDetalles().stream()
-                .map(detalle -> {
-                    ProductoModel producto = productoRepository.findById(detalle.getProductoId())
-                            .orElseThrow(() -> {
-                                logger.warn("Producto no encontrado con ID: {}", detalle.getProductoId());
-                                // Excepcion por si el producto no existe
-                                return new ProductoNotFoundException("No se ha encontrado el producto");
-                            });
-
-                    if (producto.getStockDisponible() < detalle.getCantidad()) {
-                        logger.warn("Stock insuficiente para el producto: {}. El stock disponible es {}.",
-                                producto.getNombre(),
-                                producto.getStockDisponible());
-                        // Excepcion por si el stock del producto es insuficiente
-                        throw new StockInsuficienteException("Stock insuficiente para el producto: " + producto.getNombre());
-                    }
-
-                    // Se actualiza el valor del stock
-                    producto.setStockDisponible(producto.getStockDisponible() - detalle.getCantidad());
-                    productoRepository.save(producto);
-
-                    return DetalleModel.builder()
-                            .producto(producto)
-                            .cantidad(detalle.getCantidad())
-                            .pedido(pedidoModel)
-                            .build();
-
-                }).collect(Collectors.toList());
+                .map(detalle -> DetalleModel.builder()
+                        .producto(productos.get(detalle.getProductoId()))
+                        .cantidad(detalle.getCantidad())
+                        .pedido(pedidoModel)
+                        .build()
+                ).collect(Collectors.toList());
 
         Double precioTotal = detalles.stream()
                 .mapToDouble(detalle ->
                         detalle.getProducto().getPrecio() * detalle.getCantidad())
                 .sum();
 
+        // El pedido se guarda una sola vez, los detalles se insertan en cascada
         pedidoModel.setDetalles(detalles);
         pedidoModel.setPrecio(precioTotal);
         pedidoRepository.save(pedidoModel);
+        stockReservationStrategy.registrarPedido(pedidoModel, cantidadPorProducto);
 
         logger.info("Pedido creado exitosamente con ID: {}", pedidoModel.getId());
         return mapToDto(pedidoModel);
     }
 
     /**
-     * Obtiene los datos de un pedido en base a un ID.
+     * Verifica si un pedido se podria realizar con el stock actual, sin crearlo ni reservar stock.
+     * El stock se consulta segun la estrategia configurada con una sola consulta (o del libro de stock en memoria),
+     * sin bloquear filas ni abrir una transaccion de escritura. El resultado puede cambiar antes de crear el pedido.
+     *
+     * @param pedidoRequest Datos del pedido que se desea verificar (productos y cantidad)
+     * @return DisponibilidadResponse con la disponibilidad de cada linea, en el mismo orden. Si un producto aparece
+     * en varias lineas, se compara el stock con la cantidad total pedida de ese producto.
+     */
+    public DisponibilidadResponse verificarDisponibilidad(PedidoRequest pedidoRequest) {
+        logger.info("Verificando disponibilidad de stock para {} lineas", pedidoRequest.getDetalles().size());
+
+        if (pedidoRequest.getDetalles().isEmpty()) {
+            logger.warn("EL pedido no puede ser de cero productos");
+            // Excepcion por si no se agregan productos al pedido
+            throw new PedidoSinProductosException("El pedido debe contener al menos un producto.");
+        }
+
+        SortedMap<Long, Integer> cantidadPorProducto = agruparPorProducto(pedidoRequest);
+        Map<Long, Integer> stockPorProducto = stockReservationStrategy.consultarDisponible(cantidadPorProducto.keySet());
+
+        List<DisponibilidadLinea> lineas = pedidoRequest.getDetalles().stream()
+                .map(detalle -> {
+                    Integer stock = stockPorProducto.get(detalle.getProductoId());
+                    return DisponibilidadLinea.builder()
+                            .productoId(detalle.getProductoId())
+                            .cantidad(detalle.getCantidad())
+                            .stockDisponible(stock)
+                            .encontrado(stock != null)
+                            .disponible(stock != null && stock >= cantidadPorProducto.get(detalle.getProductoId()))
+                            .build();
+                })
+                .toList();
+
+        return DisponibilidadResponse.builder()
+                .disponible(lineas.stream().allMatch(DisponibilidadLinea::isDisponible))
+                .lineas(lineas)
+                .build();
+    }
+
+    /**
+     * Obtiene los datos de un pedido en base a un ID. Las lecturas concurrentes de un mismo pedido
+     * comparten una sola consulta a la base de datos. No es transaccional: solo la carga abre una transaccion,
+     * asi las lecturas que esperan el resultado no ocupan una conexion.
      *
      * @param id ID del pedido buscado.
      * @return PedidoDto con los datos del pedido.
      */
-    @Transactional
     public PedidoDto getPedidoById(Long id) {
         logger.info("Buscando pedido con ID: {}", id);
 
-        PedidoModel pedido = pedidoRepository.findById(id)
-                .orElseThrow(() -> {
-                    logger.warn("Pedido no encontrado con ID: {}", id);
-                    return new PedidoNotFoundException("Pedido no encontrado con ID: " + id);
-                });
-
-        logger.info("Pedido encontrado con ID: {}", id);
-        return mapToDto(pedido);
+        return cargasEnCurso.ejecutar(id, () -> lectura.execute(status -> {
+            PedidoModel pedido = pedidoRepository.findConDetallesById(id)
+                    .orElseThrow(() -> {
+                        logger.warn("Pedido no encontrado con ID: {}", id);
+                        return new PedidoNotFoundException("Pedido no encontrado con ID: " + id);
+                    });
 
+            logger.info("Pedido encontrado con ID: {}", id);
+            return mapToDto(pedido);
+        }));
     }
 
     /**
      * Obtiene la lista de productos que hay en un pedido en base a la ID del pedido.
+     * Se consultan solo el nombre, la cantidad y el precio de cada linea, sin cargar el pedido ni sus productos.
      *
      * @param id ID del pedido.
      * @return List<ProductoCantidad> Lista con los productos y cantidades del pedido.
      */
-    @Transactional
+    @Transactional(readOnly = true)
     public List<ProductoCantidad> listProductos(Long id) {
         logger.info("Listando productos del pedido con ID: {}", id);
-        PedidoModel pedido = pedidoRepository.findById(id)
-                // Excepcion por si el pedido no existe
-                .orElseThrow(() -> new PedidoNotFoundException("Pedido no encontrado con ID: " + id));
+        List<PedidoRepository.LineaPedido> lineas = pedidoRepository.findLineasById(id);
+        if (lineas.isEmpty()) {
+            // Excepcion por si el pedido no existe
+            throw new PedidoNotFoundException("Pedido no encontrado con ID: " + id);
+        }
 
-        List<ProductoCantidad> productos = pedido.getDetalles().stream()
-                .map(detalle -> ProductoCantidad.builder()
-                        .nombreProducto(detalle.getProducto() != null ?
-                                // En caso de que se haya eliminado el producto se escribe este mensaje de no disponibilidad
-                                detalle.getProducto().getNombre() : "Producto no disponible")
-                        .cantidad(detalle.getCantidad())
-                        .precioUnidad(detalle.getProducto() != null ?
-                                // En caso de que se haya eliminado el producto se pone el valor del precio en 0
-                                detalle.getProducto().getPrecio() : 0.0)
-                        .build()
-                ).toList();
+        List<ProductoCantidad> productos = mapToProductos(lineas);
 
         logger.info("Se encontraron {} productos en el pedido con ID: {}", productos.size(), id);
         return productos;
@@ -162,37 +214,29 @@ public class PedidoService {
 
     /**
      * Obtiene los detalles (productos, precio total y por unidad, usuario, fecha de creacion) de un pedido en base a la ID del pedido.
+     * Se consultan solo los datos de la respuesta, sin cargar el pedido ni sus productos.
      * @param id ID del pedido.
      * @return DetallePedidoResponse Datos del detalle del pedido buscado (productos, precio total y por unidad, usuario, fecha de creacion).
      */
-    @Transactional
+    @Transactional(readOnly = true)
     public DetallePedidoResponse getDetalleDePedido(Long id) {
         logger.info("Obteniendo detalles del pedido con ID: {}", id);
 
-        PedidoModel pedido = pedidoRepository.findById(id)
-                .orElseThrow(() -> {
-                    logger.warn("Pedido no encontrado con ID: {}", id);
-                    // Excepcion por si el pedido no existe
-                    return new PedidoNotFoundException("Pedido no encotrado con ID: " + id);
-                });
-
-        List<ProductoCantidad> productos = pedido.getDetalles().stream()
-                .map(detalle -> ProductoCantidad.builder()
-                        .nombreProducto(detalle.getProducto() != null ?
-                                // En caso de que se haya eliminado el producto se escribe este mensaje de no disponibilidad
-                                detalle.getProducto().getNombre() : "Producto no disponible")
-                        .cantidad(detalle.getCantidad())
-                        .precioUnidad(detalle.getProducto() != null ?
-                                // En caso de que se haya eliminado el producto se pone el valor del precio en 0
-                                detalle.getProducto().getPrecio() : 0.0)
-                        .build())
-                .toList();
+        List<PedidoRepository.LineaPedido> lineas = pedidoRepository.findLineasById(id);
+        if (lineas.isEmpty()) {
+            logger.warn("Pedido no encontrado con ID: {}", id);
+            // Excepcion por si el pedido no existe
+            throw new PedidoNotFoundException("Pedido no encotrado con ID: " + id);
+        }
 
+        // Los datos del pedido vienen repetidos en cada linea
+        PedidoRepository.LineaPedido pedido = lineas.get(0);
         return DetallePedidoResponse.builder()
-                .username(pedido.getUsuario().getUsername())
-                .productos(productos)
-                .precioTotal(pedido.getPrecio())
-                .fechaDeCreacion(LocalDateTime.now())
+                .username(pedido.username())
+                .productos(mapToProductos(lineas))
+                .precioTotal(pedido.precioTotal())
+                .fechaDeCreacion(pedido.fechaDeCreacion())
+                .usuarioId(pedido.usuarioId())
                 .build();
     }
 
@@ -204,30 +248,127 @@ public class PedidoService {
     public void deletePedido(Long id) {
         logger.info("Eliminando pedido con ID: {}", id);
 
-        pedidoRepository.findById(id).ifPresent(pedidoRepository::delete);
+        pedidoRepository.findById(id).ifPresent(pedido -> {
+            pedidoRepository.delete(pedido);
+            eventPublisher.publishEvent(new PedidoEliminadoEvent(id));
+        });
         logger.info("Pedido eliminado correctamente con ID: {}", id);
     }
 
     /**
      * Obtiene todos los pedidos de un usuario en base al correo electronico del usuario.
+     * La pagina se carga con dos consultas sin importar su tamanio (mas el COUNT del total): los IDs de los pedidos,
+     * filtrando por el email, y los pedidos con sus detalles y productos.
      * @param email Correo electronico del usuario.
      * @param page Numero de pagina.
      * @param size Tamanio de la muestra.
      * @return Page<PedidoDto> Pagina con los datos obtenidos.
      */
-    @Transactional
+    @Transactional(readOnly = true)
     public Page<PedidoDto> getPedidosByMail(String email, int page, int size) {
         logger.info("Buscando pedidos para el usuario con email: {}", email);
 
-        UsuarioModel usuario = usuarioRepository.findByEmail(email)
-                // Excepcion por si el usuario no existe
-                .orElseThrow(() -> new UserNotFoundException("Usuario no encontrado con email: " + email));
+        Page<Long> ids = pedidoRepository.findIdsByUsuarioEmail(email, PageRequest.of(page, size));
+        validarUsuario(email, ids);
+
+        Map<Long, PedidoDto> pedidos = cargarPedidos(ids.getContent());
+        return ids.map(pedidos::get);
+    }
 
-        Pageable pageable = PageRequest.of(page, size);
+    /**
+     * Como {@link #getPedidosByMail(String, int, int)}, pero con el total pedido: exacto (un COUNT por pagina),
+     * aproximado (cacheado por usuario) o ninguno (solo se indica si hay una pagina siguiente).
+     * @param email Correo electronico del usuario.
+     * @param page Numero de pagina.
+     * @param size Tamanio de la muestra.
+     * @param conteo Como se calcula el total.
+     * @return Slice<PedidoDto> Pagina con los pedidos; es un Page salvo que el total sea NINGUNO.
+     */
+    @Transactional(readOnly = true)
+    public Slice<PedidoDto> getPedidosByMail(String email, int page, int size, ConteoTotal conteo) {
+        if (conteo == ConteoTotal.EXACTO) {
+            return getPedidosByMail(email, page, size);
+        }
+        logger.info("Buscando pedidos sin total exacto para el usuario con email: {}", email);
 
-        Page<PedidoModel> pedidos = pedidoRepository.findAllByUsuario_Id(usuario.getId(), pageable);
+        Slice<Long> ids = pedidoRepository.findSliceIdsByUsuarioEmail(email, PageRequest.of(page, size));
+        validarUsuario(email, ids);
 
-        return pedidos.map(this::mapToDto);
+        Map<Long, PedidoDto> pedidos = cargarPedidos(ids.getContent());
+        return totalesAproximados.pedidosDeUsuario(ids.map(pedidos::get), conteo, email);
+    }
+
+    /**
+     * Obtiene los pedidos de un usuario ordenados por ID, paginados con cursor: cada pagina sigue despues del
+     * ultimo pedido de la anterior, sin OFFSET y sin contar el total.
+     *
+     * @param email  Email del usuario.
+     * @param cursor Cursor devuelto en la pagina anterior, o null para la primera pagina.
+     * @param size   Tamanio de la pagina.
+     * @return PaginaCursor<PedidoDto> Pedidos de la pagina y cursor de la siguiente.
+     */
+    @Transactional(readOnly = true)
+    public PaginaCursor<PedidoDto> getPedidosByMailConCursor(String email, String cursor, int size) {
+        logger.info("Buscando pedidos con cursor para el usuario con email: {}", email);
+
+        Cursor desde = Cursor.decodificar(cursor, Cursor.ORDEN_ID);
+        Slice<Long> ids = pedidoRepository.findIdsByUsuarioEmailDesde(
+                email, desde != null ? desde.id() : 0L, PageRequest.of(0, size));
+        validarUsuario(email, ids);
+
+        Map<Long, PedidoDto> pedidos = cargarPedidos(ids.getContent());
+        List<PedidoDto> contenido = ids.map(pedidos::get).getContent();
+        Cursor siguiente = null;
+        if (ids.hasNext()) {
+            Long ultimoId = contenido.get(contenido.size() - 1).getId();
+            siguiente = new Cursor(Cursor.ORDEN_ID, ultimoId, ultimoId);
+        }
+        return PaginaCursor.de(contenido, siguiente);
+    }
+
+    // Una pagina vacia puede ser de un usuario sin pedidos (o que ya los recorrio) o de un email que no existe:
+    // solo en ese caso se consulta el usuario
+    private void validarUsuario(String email, Slice<Long> ids) {
+        if (!ids.hasContent() && !usuarioRepository.existsByEmail(email)) {
+            // Excepcion por si el usuario no existe
+            throw new UserNotFoundException("Usuario no encontrado con email: " + email);
+        }
+    }
+
+    // Carga los pedidos de una pagina con sus detalles y productos en una sola consulta, indexados por ID
+    private Map<Long, PedidoDto> cargarPedidos(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return pedidoRepository.findConDetallesByIdIn(ids).stream()
+                .map(this::mapToDto)
+                .collect(Collectors.toMap(PedidoDto::getId, Function.identity()));
+    }
+
+    // Suma las cantidades pedidas de cada producto, ordenadas por ID de producto
+    private static SortedMap<Long, Integer> agruparPorProducto(PedidoRequest pedidoRequest) {
+        SortedMap<Long, Integer> cantidadPorProducto = new TreeMap<>();
+        pedidoRequest.getDetalles().forEach(detalle ->
+                cantidadPorProducto.merge(detalle.getProductoId(), detalle.getCantidad(), Integer::sum));
+        return cantidadPorProducto;
+    }
+
+    // Metodo para mapear las lineas de un pedido hacia ProductoCantidad
+    private static List<ProductoCantidad> mapToProductos(List<PedidoRepository.LineaPedido> lineas) {
+        return lineas.stream()
+                // La unica fila de un pedido sin detalles no tiene datos de linea
+                .filter(linea -> linea.cantidad() != null)
+                .map(linea -> ProductoCantidad.builder()
+                        .nombreProducto(linea.nombreProducto() != null ?
+                                // En caso de que se haya eliminado el producto se escribe este mensaje de no disponibilidad
+                                linea.nombreProducto() : "Producto no disponible")
+                        .cantidad(linea.cantidad())
+                        .precioUnidad(linea.precioUnidad() != null ?
+                                // En caso de que se haya eliminado el producto se pone el valor del precio en 0
+                                linea.precioUnidad() : 0.0)
+                        .productoId(linea.productoId())
+                        .build())
+                .toList();
     }
 
     // Metodo para mapear un PedidoModel hacia un PedidoDto
@@ -0,0 +1,146 @@
+package com.ulises.javasemiseniorcommerce.service;
+
+import com.ulises.javasemiseniorcommerce.dto.ActualizacionProducto;
+import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+import com.ulises.javasemiseniorcommerce.dto.ResultadoActualizacionMasiva;
+import com.ulises.javasemiseniorcommerce.event.ProductoEvent;
+import com.ulises.javasemiseniorcommerce.repository.ProductoBatchRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Statement;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Actualizacion masiva del precio y el stock de productos.
+ * <p>
+ * Los cambios se aplican con {@link ProductoBatchRepository} en lotes de
+ * {@code commerce.actualizacion-masiva.batch-size} UPDATE parciales, cada lote en su transaccion, sin cargar
+ * las entidades: cada UPDATE solo toca las columnas indicadas e incrementa la version, asi las modificaciones
+ * concurrentes con bloqueo optimista detectan el cambio.
+ * <p>
+ * Despues de cada lote se publica un {@link ProductoEvent} por producto, que se entrega luego del commit: de
+ * modificacion (con los datos releidos en una sola consulta) si cambio el precio, para que se actualicen el indice
+ * de precios y las busquedas cacheadas, o de stock si solo cambio el stock, que solo invalida el producto cacheado.
+ *
+ * @author ulide
+ */
+@Service
+public class ProductoActualizacionMasivaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductoActualizacionMasivaService.class);
+
+    private final ProductoBatchRepository productoBatchRepository;
+    private final ProductoRepository productoRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int tamanioLote;
+    private final int maxCambios;
+
+    public ProductoActualizacionMasivaService(ProductoBatchRepository productoBatchRepository,
+                                              ProductoRepository productoRepository,
+                                              PlatformTransactionManager transactionManager,
+                                              ApplicationEventPublisher eventPublisher,
+                                              @Value("${commerce.actualizacion-masiva.batch-size:500}") int tamanioLote,
+                                              @Value("${commerce.actualizacion-masiva.max-cambios:10000}") int maxCambios) {
+        if (tamanioLote <= 0) {
+            throw new IllegalArgumentException("El tamanio de lote de la actualizacion masiva tiene que ser mayor que cero.");
+        }
+        this.productoBatchRepository = productoBatchRepository;
+        this.productoRepository = productoRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.tamanioLote = tamanioLote;
+        this.maxCambios = maxCambios;
+    }
+
+    /**
+     * Aplica los cambios de precio y stock. Si un ID se repite, sus cambios se aplican en orden.
+     *
+     * @param cambios Nuevo precio y/o stock de cada producto; los campos null no se modifican.
+     * @return ResultadoActualizacionMasiva con la cantidad de productos actualizados y los IDs inexistentes.
+     */
+    public ResultadoActualizacionMasiva actualizar(List<ActualizacionProducto> cambios) {
+        validateCambios(cambios);
+        logger.info("Actualizando precio y stock de {} productos...", cambios.size());
+
+        long actualizados = 0;
+        Set<Long> noEncontrados = new LinkedHashSet<>();
+        for (int desde = 0; desde < cambios.size(); desde += tamanioLote) {
+            List<ActualizacionProducto> lote = cambios.subList(desde, Math.min(desde + tamanioLote, cambios.size()));
+            actualizados += transactionTemplate.execute(status -> actualizarLote(lote, noEncontrados));
+        }
+
+        logger.info("Actualizacion masiva terminada: {} cambios aplicados y {} productos inexistentes.",
+                actualizados, noEncontrados.size());
+        return ResultadoActualizacionMasiva.builder()
+                .actualizados(actualizados)
+                .noEncontrados(List.copyOf(noEncontrados))
+                .build();
+    }
+
+    // Aplica un lote y publica sus eventos, que se entregan despues del commit. Devuelve los cambios aplicados
+    private int actualizarLote(List<ActualizacionProducto> lote, Set<Long> noEncontrados) {
+        int[] filas = productoBatchRepository.actualizarPrecioYStock(lote);
+
+        int aplicados = 0;
+        Set<Long> conPrecio = new LinkedHashSet<>();
+        Set<Long> soloStock = new LinkedHashSet<>();
+        for (int i = 0; i < lote.size(); i++) {
+            // Sin la cantidad de filas, el producto se da por actualizado
+            ActualizacionProducto cambio = lote.get(i);
+            if (filas[i] > 0 || filas[i] == Statement.SUCCESS_NO_INFO) {
+                aplicados++;
+                (cambio.getPrecio() != null ? conPrecio : soloStock).add(cambio.getId());
+            } else {
+                noEncontrados.add(cambio.getId());
+            }
+        }
+        soloStock.removeAll(conPrecio);
+
+        if (!conPrecio.isEmpty()) {
+            productoRepository.findTextosByIdIn(conPrecio).forEach(producto ->
+                    eventPublisher.publishEvent(ProductoEvent.actualizado(ProductoDto.builder()
+                            .id(producto.getId())
+                            .nombre(producto.getNombre())
+                            .descripcion(producto.getDescripcion())
+                            .precio(producto.getPrecio())
+                            .build())));
+        }
+        soloStock.forEach(id -> eventPublisher.publishEvent(ProductoEvent.stock(id)));
+        return aplicados;
+    }
+
+    private void validateCambios(List<ActualizacionProducto> cambios) {
+        if (cambios == null || cambios.isEmpty()) {
+            throw new IllegalArgumentException("Se debe indicar al menos un cambio.");
+        }
+        if (cambios.size() > maxCambios) {
+            throw new IllegalArgumentException("No se pueden actualizar mas de " + maxCambios + " productos a la vez.");
+        }
+        for (ActualizacionProducto cambio : cambios) {
+            if (cambio == null || cambio.getId() == null) {
+                throw new IllegalArgumentException("ID de producto obligatorio.");
+            }
+            if (cambio.getPrecio() == null && cambio.getStockDisponible() == null) {
+                throw new IllegalArgumentException("El cambio del producto " + cambio.getId() +
+                        " tiene que indicar el precio o el stock.");
+            }
+            // Mismas reglas que al crear o actualizar un producto de a uno
+            if (cambio.getPrecio() != null && !ProductoService.precioValido(cambio.getPrecio())) {
+                throw new IllegalArgumentException(ProductoService.PRECIO_INVALIDO);
+            }
+            if (cambio.getStockDisponible() != null && !ProductoService.stockValido(cambio.getStockDisponible())) {
+                throw new IllegalArgumentException(ProductoService.STOCK_INVALIDO);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.ulises.javasemiseniorcommerce.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ulises.javasemiseniorcommerce.importacion.EscritorProductos;
+import com.ulises.javasemiseniorcommerce.importacion.FormatoImportacion;
+import com.ulises.javasemiseniorcommerce.repository.ProductoBatchRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exportacion del catalogo completo como CSV o NDJSON.
+ * <p>
+ * Los productos se leen ordenados por ID con un cursor JDBC de solo avance que trae
+ * {@code commerce.exportacion.fetch-size} filas por viaje, y cada uno se escribe en la salida apenas se lee: la memoria
+ * usada no depende del tamanio del catalogo. Toda la lectura ocurre en una transaccion de solo lectura, asi la
+ * exportacion es una foto consistente del catalogo aunque se modifique mientras se escribe.
+ * Los productos exportados se publican como {@code productos.exportacion.filas}.
+ *
+ * @author ulide
+ */
+@Service
+public class ProductoExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductoExportService.class);
+
+    private final ProductoBatchRepository productoBatchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int tamanioFetch;
+    private final Counter filasExportadas;
+
+    public ProductoExportService(ProductoBatchRepository productoBatchRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${commerce.exportacion.fetch-size:1000}") int tamanioFetch) {
+        if (tamanioFetch <= 0) {
+            throw new IllegalArgumentException("El fetch size de la exportacion tiene que ser mayor que cero.");
+        }
+        this.productoBatchRepository = productoBatchRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.tamanioFetch = tamanioFetch;
+        this.filasExportadas = Counter.builder("productos.exportacion.filas")
+                .description("Productos exportados")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Escribe todos los productos en la salida y la cierra.
+     *
+     * @param salida  Donde se escribe el archivo, por ejemplo el cuerpo de la respuesta.
+     * @param formato CSV o NDJSON.
+     * @param gzip    Si es true, la salida se comprime con gzip.
+     * @throws IOException Si no se pudo escribir, por ejemplo porque el cliente corto la conexion.
+     */
+    public void exportar(OutputStream salida, FormatoImportacion formato, boolean gzip) throws IOException {
+        logger.info("Exportando el catalogo en formato {}{}...", formato, gzip ? " con gzip" : "");
+        long inicio = System.nanoTime();
+        long[] exportados = {0};
+
+        try (EscritorProductos escritor = EscritorProductos.de(formato,
+                gzip ? new GZIPOutputStream(salida, 64 * 1024) : salida, objectMapper)) {
+            transactionTemplate.executeWithoutResult(status ->
+                    productoBatchRepository.recorrer(tamanioFetch, producto -> {
+                        try {
+                            escritor.escribir(producto);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        exportados[0]++;
+                        filasExportadas.increment();
+                    }));
+        } catch (UncheckedIOException e) {
+            logger.warn("Se interrumpio la exportacion despues de {} productos: {}", exportados[0], e.getMessage());
+            throw e.getCause();
+        }
+
+        logger.info("Exportacion terminada: {} productos en {} ms.", exportados[0],
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+    }
+}
@@ -0,0 +1,215 @@
+package com.ulises.javasemiseniorcommerce.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ulises.javasemiseniorcommerce.dto.ErrorImportacion;
+import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+import com.ulises.javasemiseniorcommerce.dto.ProductoRequest;
+import com.ulises.javasemiseniorcommerce.dto.ResultadoImportacion;
+import com.ulises.javasemiseniorcommerce.event.ProductosCreadosEvent;
+import com.ulises.javasemiseniorcommerce.importacion.FormatoImportacion;
+import com.ulises.javasemiseniorcommerce.importacion.LectorProductos;
+import com.ulises.javasemiseniorcommerce.repository.ProductoBatchRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Importacion masiva de productos desde un CSV o NDJSON.
+ * <p>
+ * El archivo se lee de a una fila a medida que llega, asi que la memoria usada no depende de su tamanio: solo se
+ * guardan las filas del lote en curso y los primeros {@code commerce.importacion.max-errores} errores.
+ * Cada fila se valida igual que al crear un producto. Las filas validas se insertan con
+ * {@link ProductoBatchRepository} en lotes de {@code commerce.importacion.batch-size} filas, cada lote en su
+ * transaccion. Si la base rechaza un lote, sus filas se informan como rechazadas y se sigue con el siguiente.
+ * <p>
+ * Por cada lote insertado se publica un {@link ProductosCreadosEvent} con sus productos, para que los indices en
+ * memoria y los caches agreguen el lote completo de una vez despues del commit. Las filas se publican como {@code productos.importacion.filas}
+ * (tag {@code resultado=importada|rechazada}) y la duracion de cada lote como {@code productos.importacion.lote}.
+ *
+ * @author ulide
+ */
+@Service
+public class ProductoImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductoImportService.class);
+
+    private final ProductoBatchRepository productoBatchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int tamanioLote;
+    private final int maxErrores;
+    private final Counter filasImportadas;
+    private final Counter filasRechazadas;
+    private final Timer tiempoLote;
+
+    public ProductoImportService(ProductoBatchRepository productoBatchRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 Validator validator,
+                                 ObjectMapper objectMapper,
+                                 ApplicationEventPublisher eventPublisher,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${commerce.importacion.batch-size:500}") int tamanioLote,
+                                 @Value("${commerce.importacion.max-errores:1000}") int maxErrores) {
+        if (tamanioLote <= 0) {
+            throw new IllegalArgumentException("El tamanio de lote de la importacion tiene que ser mayor que cero.");
+        }
+        this.productoBatchRepository = productoBatchRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.tamanioLote = tamanioLote;
+        this.maxErrores = maxErrores;
+
+        this.filasImportadas = Counter.builder("productos.importacion.filas")
+                .tag("resultado", "importada")
+                .description("Filas importadas")
+                .register(meterRegistry);
+        this.filasRechazadas = Counter.builder("productos.importacion.filas")
+                .tag("resultado", "rechazada")
+                .description("Filas rechazadas")
+                .register(meterRegistry);
+        this.tiempoLote = Timer.builder("productos.importacion.lote")
+                .description("Duracion de la insercion de cada lote de productos")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Importa los productos del archivo.
+     *
+     * @param archivo Contenido del archivo, se lee a medida que llega. Se espera UTF-8.
+     * @param formato CSV o NDJSON.
+     * @return ResultadoImportacion con la cantidad de filas importadas y rechazadas, los errores y la velocidad.
+     */
+    public ResultadoImportacion importar(InputStream archivo, FormatoImportacion formato) {
+        logger.info("Importando productos en formato {}...", formato);
+        long inicio = System.nanoTime();
+        Progreso progreso = new Progreso();
+        List<LectorProductos.Fila> lote = new ArrayList<>(tamanioLote);
+
+        try (LectorProductos lector = LectorProductos.de(formato,
+                new InputStreamReader(archivo, StandardCharsets.UTF_8), objectMapper)) {
+            LectorProductos.Fila fila;
+            while ((fila = lector.siguiente()) != null) {
+                progreso.leidas++;
+                String error = fila.error() != null ? fila.error() : validar(fila.producto());
+                if (error != null) {
+                    rechazar(progreso, fila.numero(), error);
+                    continue;
+                }
+
+                lote.add(fila);
+                if (lote.size() == tamanioLote) {
+                    insertar(lote, progreso);
+                    lote.clear();
+                }
+            }
+            if (!lote.isEmpty()) {
+                insertar(lote, progreso);
+            }
+        } catch (IOException e) {
+            logger.error("Se interrumpio la lectura del archivo despues de {} filas, {} ya se importaron.",
+                    progreso.leidas, progreso.importadas);
+            throw new UncheckedIOException("No se pudo leer el archivo de productos.", e);
+        }
+
+        long duracionNanos = System.nanoTime() - inicio;
+        double segundos = Math.max(duracionNanos, 1) / (double) TimeUnit.SECONDS.toNanos(1);
+        logger.info("Importacion terminada: {} productos importados y {} filas rechazadas.",
+                progreso.importadas, progreso.rechazadas);
+        return ResultadoImportacion.builder()
+                .filasLeidas(progreso.leidas)
+                .importadas(progreso.importadas)
+                .rechazadas(progreso.rechazadas)
+                .duracionMs(TimeUnit.NANOSECONDS.toMillis(duracionNanos))
+                .filasPorSegundo(progreso.leidas / segundos)
+                .errores(progreso.errores)
+                .erroresOmitidos(progreso.rechazadas - progreso.errores.size())
+                .build();
+    }
+
+    // Las mismas validaciones que al crear un producto: las anotaciones de ProductoRequest y validateData
+    private String validar(ProductoRequest producto) {
+        List<String> violaciones = validator.validate(producto).stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .toList();
+        if (!violaciones.isEmpty()) {
+            return String.join(" ", violaciones);
+        }
+        try {
+            ProductoService.validateData(producto);
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    private void insertar(List<LectorProductos.Fila> lote, Progreso progreso) {
+        try {
+            tiempoLote.record(() -> transactionTemplate.executeWithoutResult(status -> {
+                List<Long> ids = productoBatchRepository.insertar(
+                        lote.stream().map(LectorProductos.Fila::producto).toList());
+
+                // El evento se entrega despues del commit del lote
+                List<ProductoDto> productos = new ArrayList<>(lote.size());
+                for (int i = 0; i < lote.size(); i++) {
+                    productos.add(mapToDto(ids.get(i), lote.get(i).producto()));
+                }
+                eventPublisher.publishEvent(new ProductosCreadosEvent(productos));
+            }));
+            progreso.importadas += lote.size();
+            filasImportadas.increment(lote.size());
+        } catch (DataAccessException e) {
+            logger.warn("La base de datos rechazo un lote de {} productos: {}", lote.size(), e.getMessage());
+            lote.forEach(fila -> rechazar(progreso, fila.numero(),
+                    "La base de datos rechazo el lote de esta fila: " + e.getMostSpecificCause().getMessage()));
+        }
+    }
+
+    private void rechazar(Progreso progreso, long numero, String mensaje) {
+        progreso.rechazadas++;
+        filasRechazadas.increment();
+        if (progreso.errores.size() < maxErrores) {
+            progreso.errores.add(ErrorImportacion.builder().fila(numero).mensaje(mensaje).build());
+        }
+    }
+
+    private static ProductoDto mapToDto(Long id, ProductoRequest producto) {
+        return ProductoDto.builder()
+                .id(id)
+                .nombre(producto.getNombre())
+                .descripcion(producto.getDescripcion())
+                .precio(producto.getPrecio())
+                .stockDisponible(producto.getStockDisponible())
+                .build();
+    }
+
+    private static final class Progreso {
+        private long leidas;
+        private long importadas;
+        private long rechazadas;
+        private final List<ErrorImportacion> errores = new ArrayList<>();
+    }
+}
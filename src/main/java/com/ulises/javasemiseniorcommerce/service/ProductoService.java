@@ -1,19 +1,50 @@
 package com.ulises.javasemiseniorcommerce.service;
 
+import com.ulises.javasemiseniorcommerce.cache.BusquedaCache;
+import com.ulises.javasemiseniorcommerce.cache.ProductoCache;
+import com.ulises.javasemiseniorcommerce.cache.SingleFlight;
+import com.ulises.javasemiseniorcommerce.cache.TotalesAproximados;
+import com.ulises.javasemiseniorcommerce.dto.ConteoTotal;
+import com.ulises.javasemiseniorcommerce.dto.Cursor;
+import com.ulises.javasemiseniorcommerce.dto.PaginaConFacetas;
+import com.ulises.javasemiseniorcommerce.dto.PaginaCursor;
 import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+import com.ulises.javasemiseniorcommerce.dto.ProductoPorIdDto;
 import com.ulises.javasemiseniorcommerce.dto.ProductoRequest;
+import com.ulises.javasemiseniorcommerce.dto.SugerenciaDto;
+import com.ulises.javasemiseniorcommerce.event.ProductoEvent;
 import com.ulises.javasemiseniorcommerce.exception.ProductoNotFoundException;
 import com.ulises.javasemiseniorcommerce.model.ProductoModel;
 import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import com.ulises.javasemiseniorcommerce.search.ConsultaBusqueda;
+import com.ulises.javasemiseniorcommerce.search.HistogramaPrecios;
+import com.ulises.javasemiseniorcommerce.search.IndicePrecios;
+import com.ulises.javasemiseniorcommerce.search.IndiceProductos;
+import com.ulises.javasemiseniorcommerce.search.OrdenBusqueda;
+import com.ulises.javasemiseniorcommerce.search.PosicionBusqueda;
+import com.ulises.javasemiseniorcommerce.search.ResultadoBusqueda;
+import com.ulises.javasemiseniorcommerce.search.SugerenciasProductos;
 import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 /**
  * @author ulide
  */
@@ -22,6 +53,18 @@ import org.springframework.stereotype.Service;
 public class ProductoService {
 
     private final ProductoRepository productoRepository;
+    private final ProductoCache productoCache;
+    private final BusquedaCache busquedaCache;
+    private final IndiceProductos indiceProductos;
+    private final IndicePrecios indicePrecios;
+    private final SugerenciasProductos sugerenciasProductos;
+    private final TotalesAproximados totalesAproximados;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SingleFlight<Long, ProductoDto> cargasEnCurso = new SingleFlight<>();
+    // Limite de IDs por consulta de varios productos, para que una sola consulta no ocupe la conexion
+    public static final int MAX_PRODUCTOS_POR_ID = 100;
+    static final String PRECIO_INVALIDO = "El precio debe ser mayor que cero.";
+    static final String STOCK_INVALIDO = "El stock debe ser mayor que cero.";
     private static final Logger logger = LoggerFactory.getLogger(ProductoService.class);
 
     /**
@@ -44,17 +87,44 @@ public class ProductoService {
 
         productoRepository.save(producto);
         logger.info("Producto creado correctamente: {}", productoRequest.getNombre());
-        return mapToDto(producto);
+        ProductoDto productoDto = mapToDto(producto);
+        eventPublisher.publishEvent(ProductoEvent.creado(productoDto));
+        return productoDto;
     }
 
     /**
-     * Obtiene un produco por su ID
+     * Obtiene un produco por su ID. Se lee primero del cache de productos y solo se consulta
+     * la base de datos si el producto no esta cacheado. Las lecturas concurrentes de un mismo producto
+     * que no esta cacheado comparten una sola consulta.
      *
      * @param id ID del producto
      * @return productoDto con los datos del producto
      */
     public ProductoDto getProductoById(Long id) {
         logger.info("Buscando producto con ID: {}", id);
+        ProductoDto cacheado = productoCache.get(id);
+        if (cacheado != null) {
+            return cacheado;
+        }
+
+        return cargasEnCurso.ejecutar(id, () -> cargarProducto(id));
+    }
+
+    /**
+     * Obtiene la version actual de un producto, sin cargarlo entero. Se lee siempre de la base de datos: el
+     * cache puede tener una version vieja hasta que se invalida despues del commit o de escribir el stock.
+     *
+     * @param id ID del producto
+     * @return Version del producto en la base de datos
+     */
+    public Long getVersionProducto(Long id) {
+        return productoRepository.findVersionById(id)
+                .orElseThrow(() -> new ProductoNotFoundException("Producto no encontrado con ID: " + id));
+    }
+
+    // Carga el producto de la base de datos y lo deja en el cache antes de liberar la carga en curso
+    private ProductoDto cargarProducto(Long id) {
+        long generacion = productoCache.generacion();
         ProductoModel productoModel = productoRepository.findById(id)
                 .orElseThrow(() -> {
                     logger.warn("Producto no encontrado con ID: {}", id);
@@ -63,11 +133,55 @@ public class ProductoService {
                 });
 
         logger.info("Producto encontrado: {}", productoModel.getNombre());
-        return mapToDto(productoModel);
+        ProductoDto productoDto = mapToDto(productoModel);
+        productoCache.put(productoDto, generacion);
+        return productoDto;
+    }
+
+    /**
+     * Obtiene varios productos por su ID. Los productos cacheados se leen del cache y el resto se carga
+     * de la base de datos con una sola consulta, en lugar de una consulta por producto.
+     *
+     * @param ids IDs de los productos, como mucho {@link #MAX_PRODUCTOS_POR_ID}. Puede haber IDs repetidos.
+     * @return Un resultado por cada ID, en el mismo orden; los productos que no existen quedan con encontrado en false.
+     */
+    public List<ProductoPorIdDto> getProductosByIds(List<Long> ids) {
+        validateIds(ids);
+        logger.info("Buscando {} productos por ID", ids.size());
+
+        Map<Long, ProductoDto> productos = new HashMap<>();
+        List<Long> noCacheados = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            ProductoDto cacheado = productoCache.get(id);
+            if (cacheado != null) {
+                productos.put(id, cacheado);
+            } else {
+                noCacheados.add(id);
+            }
+        }
+
+        if (!noCacheados.isEmpty()) {
+            long generacion = productoCache.generacion();
+            for (ProductoModel productoModel : productoRepository.findAllById(noCacheados)) {
+                ProductoDto productoDto = mapToDto(productoModel);
+                productoCache.put(productoDto, generacion);
+                productos.put(productoDto.getId(), productoDto);
+            }
+        }
+
+        return ids.stream()
+                .map(id -> ProductoPorIdDto.builder()
+                        .id(id)
+                        .encontrado(productos.containsKey(id))
+                        .producto(productos.get(id))
+                        .build())
+                .toList();
     }
 
     /**
-     * Obtiene todos los productos
+     * Obtiene todos los productos. Si se indica un precio minimo o maximo, solo los productos dentro del rango,
+     * ordenados por precio. Con el indice de precios en memoria disponible, solo se cargan de la base de datos
+     * los productos de la pagina.
      *
      * @return Lista de productos
      */
@@ -78,7 +192,79 @@ public class ProductoService {
         validatePrecios(precioMin, precioMax);
 
         Pageable pageable = PageRequest.of(page, size);
-        return productoRepository.findAll(pageable).map(this::mapToDto);
+        if (precioMin == null && precioMax == null) {
+            return productoRepository.findAll(pageable).map(this::mapToDto);
+        }
+
+        if (indicePrecios.isDisponible()) {
+            ResultadoBusqueda resultado = indicePrecios.buscar(precioMin, precioMax, page, size);
+            return new PageImpl<>(cargarEnOrden(resultado.ids()), pageable, resultado.total());
+        }
+
+        // Sin palabras clave la consulta de busqueda solo filtra por precio
+        return productoRepository.searchProductosByPalabrasClave(null, precioMin, precioMax, pageable)
+                .map(this::mapToDto);
+    }
+
+    /**
+     * Como {@link #getAllProductos(Double, Double, int, int)}, pero con el total pedido: exacto (un COUNT por
+     * pagina), aproximado (cacheado por filtro) o ninguno (solo se indica si hay una pagina siguiente).
+     * El indice de precios ya conoce el total exacto sin consultar la base de datos, asi que con el indice
+     * solo cambia si el total se devuelve o no.
+     *
+     * @return Slice<ProductoDto> Pagina con los productos; es un Page salvo que el total sea NINGUNO.
+     */
+    public Slice<ProductoDto> getAllProductos(Double precioMin, Double precioMax, int page, int size,
+                                              ConteoTotal conteo) {
+        boolean sinPrecios = precioMin == null && precioMax == null;
+        if (conteo == ConteoTotal.EXACTO || (!sinPrecios && indicePrecios.isDisponible())) {
+            return TotalesAproximados.sinTotal(getAllProductos(precioMin, precioMax, page, size), conteo);
+        }
+        logger.info("Obteniendo todos los productos sin total exacto...");
+
+        // Se validan los valores de los filtros de precio
+        validatePrecios(precioMin, precioMax);
+
+        Pageable pageable = PageRequest.of(page, size);
+        Slice<ProductoModel> productos = sinPrecios
+                ? productoRepository.findSliceBy(pageable)
+                : productoRepository.searchProductosByPalabrasClaveSinTotal(null, precioMin, precioMax, pageable);
+        return totalesAproximados.productos(productos.map(this::mapToDto), conteo, null, precioMin, precioMax);
+    }
+
+    /**
+     * Obtiene todos los productos paginados con cursor: cada pagina sigue despues del ultimo producto de la anterior,
+     * sin OFFSET y sin contar el total. Sin filtros de precio se ordenan por ID; con algun precio, por precio.
+     *
+     * @param cursor Cursor devuelto en la pagina anterior, o null para la primera pagina.
+     * @param size   Tamanio de la pagina.
+     * @return PaginaCursor<ProductoDto> Productos de la pagina y cursor de la siguiente.
+     */
+    public PaginaCursor<ProductoDto> getAllProductosConCursor(Double precioMin, Double precioMax, String cursor, int size) {
+        logger.info("Obteniendo productos con cursor...");
+
+        // Se validan los valores de los filtros de precio
+        validatePrecios(precioMin, precioMax);
+
+        if (precioMin == null && precioMax == null) {
+            Cursor desde = Cursor.decodificar(cursor, Cursor.ORDEN_ID);
+            Slice<ProductoModel> productos = productoRepository.findByIdGreaterThanOrderById(
+                    desde != null ? desde.id() : 0L, PageRequest.of(0, size));
+            Cursor siguiente = null;
+            if (productos.hasNext()) {
+                Long ultimoId = productos.getContent().get(productos.getNumberOfElements() - 1).getId();
+                siguiente = new Cursor(Cursor.ORDEN_ID, ultimoId, ultimoId);
+            }
+            return PaginaCursor.de(productos.map(this::mapToDto).getContent(), siguiente);
+        }
+
+        if (indicePrecios.isDisponible()) {
+            Cursor desde = Cursor.decodificar(cursor, OrdenBusqueda.PRECIO.getParametro());
+            ResultadoBusqueda resultado = indicePrecios.buscar(precioMin, precioMax, posicionDe(desde), size);
+            return PaginaCursor.de(cargarEnOrden(resultado.ids()), cursorDe(OrdenBusqueda.PRECIO, resultado));
+        }
+
+        return buscarConCursorEnBase(null, precioMin, precioMax, cursor, size);
     }
 
     /**
@@ -106,9 +292,13 @@ public class ProductoService {
         productoModel.setPrecio(productoRequest.getPrecio());
         productoModel.setStockDisponible(productoRequest.getStockDisponible());
 
-        productoRepository.save(productoModel);
+        // Se hace flush para que Hibernate incremente la version antes de armar el DTO (y su ETag)
+        productoRepository.saveAndFlush(productoModel);
         logger.info("Producto actualizado correctamente: {}", productoModel.getNombre());
-        return mapToDto(productoModel);
+        ProductoDto productoDto = mapToDto(productoModel);
+        // El cache se invalida recien cuando la transaccion hace commit
+        eventPublisher.publishEvent(ProductoEvent.actualizado(productoDto));
+        return productoDto;
     }
 
     /**
@@ -122,7 +312,10 @@ public class ProductoService {
     public void deleteProducto(Long id) {
         logger.info("Eliminando producto con ID: {}", id);
 
-        productoRepository.findById(id).ifPresent(productoRepository::delete);
+        productoRepository.findById(id).ifPresent(producto -> {
+            productoRepository.delete(producto);
+            eventPublisher.publishEvent(ProductoEvent.eliminado(id));
+        });
         logger.info("Producto eliminado correctamente.");
     }
 
@@ -133,6 +326,7 @@ public class ProductoService {
                 .descripcion(producto.getDescripcion())
                 .precio(producto.getPrecio())
                 .stockDisponible(producto.getStockDisponible())
+                .version(producto.getVersion())
                 .build();
     }
 
@@ -147,42 +341,250 @@ public class ProductoService {
             throw new IllegalArgumentException("Los filtros de precio deben ser mayores que cero.");
     }
 
-    // Metodo para validar que los valores de precio y stock sean adecuados
-    private void validateData(ProductoRequest productoRequest) {
-        if (productoRequest.getPrecio() <= 0) {
+    // Metodo para validar la lista de IDs de una consulta de varios productos
+    private void validateIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty())
+            throw new IllegalArgumentException("Se debe pedir al menos un producto.");
+
+        if (ids.size() > MAX_PRODUCTOS_POR_ID)
+            throw new IllegalArgumentException("No se pueden pedir mas de " + MAX_PRODUCTOS_POR_ID + " productos por vez.");
+
+        if (ids.stream().anyMatch(Objects::isNull))
+            throw new IllegalArgumentException("Los IDs de los productos no pueden ser nulos.");
+    }
+
+    // Metodo para validar que los valores de precio y stock sean adecuados (tambien lo usa la importacion de productos)
+    static void validateData(ProductoRequest productoRequest) {
+        if (!precioValido(productoRequest.getPrecio())) {
             logger.warn("Precio invalido para el producto: {}. Precio recibido: {}", productoRequest.getNombre(), productoRequest.getPrecio());
-            throw new IllegalArgumentException("El precio debe ser mayor que cero.");
+            throw new IllegalArgumentException(PRECIO_INVALIDO);
         }
 
-        if (productoRequest.getStockDisponible() <= 0) {
+        if (!stockValido(productoRequest.getStockDisponible())) {
             logger.warn("Stock invalido para el producto: {}. Stock recibido: {}", productoRequest.getNombre(), productoRequest.getStockDisponible());
-            throw new IllegalArgumentException("El stock debe ser mayor o igual que cero.");
+            throw new IllegalArgumentException(STOCK_INVALIDO);
         }
     }
 
+    // Reglas de precio y stock de un producto, las mismas al crearlo, actualizarlo, importarlo o en la
+    // actualizacion masiva
+    static boolean precioValido(Double precio) {
+        return precio > 0;
+    }
+
+    static boolean stockValido(Integer stock) {
+        return stock > 0;
+    }
+
     /**
      * Busca productos en base a los filtros dados. En caso de no dar valor a los filtros, retorna todos los productos.
-     * @param nombreProducto Nombre del producto que se quiere buscar.
-     * @param precioMin Precio minimo del producto.
-     * @param precioMax Precio maximo del producto.
+     * Si el indice de busqueda en memoria esta disponible, la pagina sale del indice y solo se cargan de la base
+     * de datos los productos de esa pagina. El orden por relevancia y la busqueda difusa solo se aplican con el indice;
+     * la busqueda en la base de datos siempre es exacta y ordena por precio.
+     * Los IDs y el total de cada pagina se cachean hasta el proximo cambio del catalogo (ver {@link BusquedaCache}).
+     * Si la consulta indica un ancho de rango de precios, la pagina es un {@link PaginaConFacetas} con la cantidad
+     * de productos por rango, sin aplicar los filtros de precio de la consulta; en la base de datos esos rangos
+     * reemplazan al COUNT de la pagina. El ancho se agranda si hace falta para que el catalogo no tenga mas de
+     * {@link HistogramaPrecios#MAXIMO_RANGOS} rangos.
+     * @param consulta Palabras clave, precio minimo y maximo, orden, si la busqueda es difusa y el ancho de rango.
      * @param page Numero de pagina.
      * @param size Tamanio de la muestra de la pagina.
      * @return Page<ProductoDto> Pagina con los productos encontrados.
      */
-    public Page<ProductoDto> getProductosBySearch(String nombreProducto, Double precioMin, Double precioMax, int page, int size) {
+    public Page<ProductoDto> getProductosBySearch(ConsultaBusqueda consulta, int page, int size) {
+        ConsultaBusqueda normalizada = consulta.normalizada();
+        String nombreProducto = normalizada.getTexto();
+        Double precioMin = normalizada.getPrecioMin();
+        Double precioMax = normalizada.getPrecioMax();
 
         // Se validan los valores de los filtros de precio
         validatePrecios(precioMin, precioMax);
 
         // En caso de no especificar palabras clave para la busqueda, se llama al metodo getAllProductos
         // con los filtros de precio (si aplican) y los datos de page y size
-        if (nombreProducto == null || nombreProducto.isBlank()) {
+        boolean sinTexto = nombreProducto == null || nombreProducto.isBlank();
+        if (sinTexto && normalizada.getAnchoRangoPrecio() == null) {
             return getAllProductos(precioMin, precioMax, page, size);
         }
 
+        ResultadoBusqueda resultado = busquedaCache.obtener(normalizada, page, size,
+                () -> buscar(normalizada, page, size));
         Pageable pageable = PageRequest.of(page, size);
-        return productoRepository.
-                searchProductosByPalabrasClave(nombreProducto, precioMin, precioMax, pageable)
-                .map(this::mapToDto);
+        List<ProductoDto> productos = cargarEnOrden(resultado.ids());
+        if (resultado.facetasPrecio() != null) {
+            return new PaginaConFacetas<>(productos, pageable, resultado.total(), resultado.facetasPrecio());
+        }
+        return new PageImpl<>(productos, pageable, resultado.total());
+    }
+
+    // Busca los IDs de la pagina en los indices o, si no estan disponibles, en la base de datos
+    private ResultadoBusqueda buscar(ConsultaBusqueda pedida, int page, int size) {
+        ConsultaBusqueda consulta = conAnchoAcotado(pedida);
+        boolean sinTexto = consulta.getTexto() == null || consulta.getTexto().isBlank();
+        if (sinTexto && indicePrecios.isDisponible()) {
+            return indicePrecios.buscar(consulta.getPrecioMin(), consulta.getPrecioMax(), page, size,
+                    consulta.getAnchoRangoPrecio());
+        }
+        if (!sinTexto && indiceProductos.isDisponible()) {
+            return indiceProductos.buscar(consulta, page, size);
+        }
+
+        String palabrasClave = sinTexto ? null : consulta.getTexto();
+        if (consulta.getAnchoRangoPrecio() != null) {
+            return buscarConFacetasEnBase(palabrasClave, consulta, page, size);
+        }
+
+        Page<ProductoModel> productos = productoRepository.searchProductosByPalabrasClave(
+                consulta.getTexto(), consulta.getPrecioMin(), consulta.getPrecioMax(), PageRequest.of(page, size));
+        return new ResultadoBusqueda(productos.map(ProductoModel::getId).getContent(), productos.getTotalElements());
+    }
+
+    // Todos los caminos de busqueda acotan el ancho con los precios de todo el catalogo, asi dan los mismos rangos.
+    // Sin el indice de precios lo acota la misma consulta de los rangos, sin consultar antes el menor y mayor precio
+    private ConsultaBusqueda conAnchoAcotado(ConsultaBusqueda consulta) {
+        Double ancho = consulta.getAnchoRangoPrecio();
+        if (ancho == null || !indicePrecios.isDisponible()) {
+            return consulta;
+        }
+        double acotado = indicePrecios.anchoAcotado(ancho);
+        return acotado == ancho ? consulta : consulta.toBuilder().anchoRangoPrecio(acotado).build();
+    }
+
+    // La pagina sin COUNT y una sola consulta agrupada por rango de precios, de la que sale tambien el total
+    private ResultadoBusqueda buscarConFacetasEnBase(String palabrasClave, ConsultaBusqueda consulta, int page, int size) {
+        Slice<ProductoModel> productos = productoRepository.searchProductosByPalabrasClaveSinTotal(
+                palabrasClave, consulta.getPrecioMin(), consulta.getPrecioMax(), PageRequest.of(page, size));
+        List<ProductoRepository.RangoPrecio> rangos = productoRepository.findRangosDePrecio(
+                palabrasClave, consulta.getPrecioMin(), consulta.getPrecioMax(), consulta.getAnchoRangoPrecio());
+
+        // Todas las filas traen el mismo ancho acotado; sin filas no hay rangos y sirve el pedido
+        HistogramaPrecios histograma = new HistogramaPrecios(rangos.isEmpty()
+                ? consulta.getAnchoRangoPrecio() : rangos.get(0).getAncho());
+        long total = 0;
+        for (ProductoRepository.RangoPrecio rango : rangos) {
+            histograma.agregar(rango.getRango().longValue(), rango.getCantidad());
+            total += rango.getEnFiltro();
+        }
+        return new ResultadoBusqueda(productos.map(ProductoModel::getId).getContent(), total, null,
+                histograma.facetas());
+    }
+
+    /**
+     * Como {@link #getProductosBySearch(ConsultaBusqueda, int, int)}, pero con el total pedido: exacto (un COUNT
+     * por pagina), aproximado (cacheado por filtro) o ninguno (solo se indica si hay una pagina siguiente).
+     * Con el indice de busqueda el total exacto no cuesta una consulta, asi que solo cambia si se devuelve o no.
+     * @param consulta Palabras clave, precio minimo y maximo, orden y si la busqueda es difusa.
+     * @param page Numero de pagina.
+     * @param size Tamanio de la muestra de la pagina.
+     * @param conteo Como se calcula el total.
+     * @return Slice<ProductoDto> Pagina con los productos; es un Page salvo que el total sea NINGUNO.
+     */
+    public Slice<ProductoDto> getProductosBySearch(ConsultaBusqueda consulta, int page, int size, ConteoTotal conteo) {
+        // Los rangos de precio ya traen el total exacto sin un COUNT aparte
+        if (conteo == ConteoTotal.EXACTO || consulta.getAnchoRangoPrecio() != null) {
+            return getProductosBySearch(consulta, page, size);
+        }
+        ConsultaBusqueda normalizada = consulta.normalizada();
+        String nombreProducto = normalizada.getTexto();
+        Double precioMin = normalizada.getPrecioMin();
+        Double precioMax = normalizada.getPrecioMax();
+
+        // Se validan los valores de los filtros de precio
+        validatePrecios(precioMin, precioMax);
+
+        if (nombreProducto == null || nombreProducto.isBlank()) {
+            return getAllProductos(precioMin, precioMax, page, size, conteo);
+        }
+
+        if (indiceProductos.isDisponible()) {
+            return TotalesAproximados.sinTotal(getProductosBySearch(normalizada, page, size), conteo);
+        }
+
+        Slice<ProductoModel> productos = productoRepository.searchProductosByPalabrasClaveSinTotal(
+                nombreProducto, precioMin, precioMax, PageRequest.of(page, size));
+        return totalesAproximados.productos(productos.map(this::mapToDto), conteo,
+                nombreProducto, precioMin, precioMax);
+    }
+
+    /**
+     * Como {@link #getProductosBySearch(ConsultaBusqueda, int, int)}, pero paginado con cursor: sin OFFSET y sin
+     * contar el total. El cursor solo sirve para el orden con el que se obtuvo.
+     * @param consulta Palabras clave, precio minimo y maximo, orden y si la busqueda es difusa.
+     * @param cursor Cursor devuelto en la pagina anterior, o null para la primera pagina.
+     * @param size Tamanio de la muestra de la pagina.
+     * @return PaginaCursor<ProductoDto> Productos de la pagina y cursor de la siguiente.
+     */
+    public PaginaCursor<ProductoDto> getProductosBySearchConCursor(ConsultaBusqueda consulta, String cursor, int size) {
+        consulta = consulta.normalizada();
+        String nombreProducto = consulta.getTexto();
+        Double precioMin = consulta.getPrecioMin();
+        Double precioMax = consulta.getPrecioMax();
+
+        // Se validan los valores de los filtros de precio
+        validatePrecios(precioMin, precioMax);
+
+        if (nombreProducto == null || nombreProducto.isBlank()) {
+            return getAllProductosConCursor(precioMin, precioMax, cursor, size);
+        }
+
+        if (indiceProductos.isDisponible()) {
+            Cursor desde = Cursor.decodificar(cursor, consulta.getOrden().getParametro());
+            ResultadoBusqueda resultado = indiceProductos.buscar(
+                    consulta.toBuilder().despuesDe(posicionDe(desde)).build(), 0, size);
+            return PaginaCursor.de(cargarEnOrden(resultado.ids()), cursorDe(consulta.getOrden(), resultado));
+        }
+
+        return buscarConCursorEnBase(nombreProducto, precioMin, precioMax, cursor, size);
+    }
+
+    // En la base de datos la paginacion con cursor siempre es por precio
+    private PaginaCursor<ProductoDto> buscarConCursorEnBase(String palabrasClave, Double precioMin, Double precioMax,
+                                                            String cursor, int size) {
+        Cursor desde = Cursor.decodificar(cursor, OrdenBusqueda.PRECIO.getParametro());
+        Slice<ProductoModel> productos = productoRepository.searchProductosByPalabrasClaveDesde(
+                palabrasClave, precioMin, precioMax,
+                desde != null ? desde.clave() : -Double.MAX_VALUE, desde != null ? desde.id() : 0L,
+                PageRequest.of(0, size));
+        Cursor siguiente = null;
+        if (productos.hasNext()) {
+            ProductoModel ultimo = productos.getContent().get(productos.getNumberOfElements() - 1);
+            siguiente = new Cursor(OrdenBusqueda.PRECIO.getParametro(), ultimo.getPrecio(), ultimo.getId());
+        }
+        return PaginaCursor.de(productos.map(this::mapToDto).getContent(), siguiente);
+    }
+
+    private static PosicionBusqueda posicionDe(Cursor cursor) {
+        return cursor != null ? new PosicionBusqueda(cursor.clave(), cursor.id()) : null;
+    }
+
+    private static Cursor cursorDe(OrdenBusqueda orden, ResultadoBusqueda resultado) {
+        PosicionBusqueda siguiente = resultado.siguiente();
+        return siguiente != null ? new Cursor(orden.getParametro(), siguiente.clave(), siguiente.id()) : null;
+    }
+
+    /**
+     * Sugiere productos cuyo nombre empieza con el prefijo dado, para completar una busqueda mientras se escribe.
+     * Las sugerencias salen de memoria, sin consultar la base de datos, y se ordenan por unidades vendidas.
+     * @param prefijo Comienzo del nombre del producto.
+     * @param limite Cantidad maxima de sugerencias.
+     * @return List<SugerenciaDto> Productos sugeridos, del mas vendido al menos vendido.
+     */
+    public List<SugerenciaDto> getSugerencias(String prefijo, int limite) {
+        return sugerenciasProductos.sugerir(prefijo, limite);
+    }
+
+    // Carga los productos de una pagina de un indice respetando el orden de los IDs
+    private List<ProductoDto> cargarEnOrden(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, ProductoModel> productos = productoRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(ProductoModel::getId, Function.identity()));
+        return ids.stream()
+                .map(productos::get)
+                // Un producto eliminado despues de la busqueda ya no se muestra
+                .filter(Objects::nonNull)
+                .map(this::mapToDto)
+                .toList();
     }
 }
@@ -2,6 +2,7 @@ package com.ulises.javasemiseniorcommerce.service;
 
 import com.ulises.javasemiseniorcommerce.dto.UsuarioDto;
 import com.ulises.javasemiseniorcommerce.dto.UsuarioRequest;
+import com.ulises.javasemiseniorcommerce.event.UsuarioEvent;
 import com.ulises.javasemiseniorcommerce.exception.EmailAlreadyExistsException;
 import com.ulises.javasemiseniorcommerce.exception.UserNotFoundException;
 import com.ulises.javasemiseniorcommerce.model.UsuarioModel;
@@ -10,6 +11,7 @@ import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -23,6 +25,7 @@ import org.springframework.stereotype.Service;
 public class UsuarioService implements UserDetailsService {
 
     private final UsuarioRepository usuarioRepository;
+    private final ApplicationEventPublisher eventPublisher;
     private static final Logger logger = LoggerFactory.getLogger(UsuarioService.class);
 
     /**
@@ -58,6 +61,7 @@ public class UsuarioService implements UserDetailsService {
         usuarioModel.setHabilitado(usuarioRequest.isHabilitado());
 
         usuarioRepository.save(usuarioModel);
+        eventPublisher.publishEvent(UsuarioEvent.actualizado(usuarioModel.getId()));
         logger.info("Usuario actualizado correctamente.");
         return mapToDto(usuarioModel);
     }
@@ -71,7 +75,11 @@ public class UsuarioService implements UserDetailsService {
     public void deleteUsuario(String email) {
         logger.info("Eliminando usuario...");
 
-        usuarioRepository.findByEmail(email).ifPresent(usuarioRepository::delete);
+        // Los pedidos del usuario se eliminan en cascada en la base de datos
+        usuarioRepository.findByEmail(email).ifPresent(usuario -> {
+            usuarioRepository.delete(usuario);
+            eventPublisher.publishEvent(UsuarioEvent.eliminado(usuario.getId()));
+        });
         logger.info("Usuario eliminado correctamente.");
     }
 
@@ -0,0 +1,56 @@
+package com.ulises.javasemiseniorcommerce.stock;
+
+import com.ulises.javasemiseniorcommerce.exception.ProductoNotFoundException;
+import com.ulises.javasemiseniorcommerce.exception.StockInsuficienteException;
+import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Comportamiento comun a todas las estrategias de reserva de stock.
+ *
+ * @author ulide
+ */
+public abstract class AbstractStockReservationStrategy implements StockReservationStrategy {
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractStockReservationStrategy.class);
+
+    // Indexa los productos por ID y verifica que se hayan encontrado todos los pedidos
+    protected Map<Long, ProductoModel> indexarPorId(List<ProductoModel> productos, Collection<Long> productoIds) {
+        Map<Long, ProductoModel> productosPorId = productos.stream()
+                .collect(Collectors.toMap(ProductoModel::getId, Function.identity()));
+
+        productoIds.stream()
+                .filter(productoId -> !productosPorId.containsKey(productoId))
+                .findFirst()
+                .ifPresent(productoId -> {
+                    logger.warn("Producto no encontrado con ID: {}", productoId);
+                    // Excepcion por si el producto no existe
+                    throw new ProductoNotFoundException("No se ha encontrado el producto");
+                });
+
+        return productosPorId;
+    }
+
+    // Lee el stock de los productos de la tabla con una sola consulta, sin bloquear las filas
+    protected Map<Long, Integer> disponibleEnBase(ProductoRepository productoRepository, Collection<Long> productoIds) {
+        return productoRepository.findStockByIdIn(productoIds).stream()
+                .collect(Collectors.toMap(ProductoRepository.StockProducto::getId,
+                        ProductoRepository.StockProducto::getStockDisponible));
+    }
+
+    // Construye la excepcion para un producto sin stock suficiente
+    protected StockInsuficienteException stockInsuficiente(ProductoModel producto, Integer cantidad) {
+        logger.warn("Stock insuficiente para el producto: {}. La cantidad solicitada es {}.",
+                producto.getNombre(),
+                cantidad);
+        return new StockInsuficienteException("Stock insuficiente para el producto: " + producto.getNombre());
+    }
+}
@@ -0,0 +1,46 @@
+package com.ulises.javasemiseniorcommerce.stock;
+
+import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Descuenta el stock con un UPDATE condicional por producto ({@code stock >= cantidad}).
+ * No bloquea filas al leer y la cantidad de filas afectadas indica si alcanzo el stock.
+ * Es la estrategia por defecto.
+ *
+ * @author ulide
+ */
+@Component
+@AllArgsConstructor
+@ConditionalOnProperty(name = "commerce.stock.strategy", havingValue = "conditional", matchIfMissing = true)
+public class ConditionalStockReservation extends AbstractStockReservationStrategy {
+
+    private final ProductoRepository productoRepository;
+
+    @Override
+    public Map<Long, ProductoModel> reservar(SortedMap<Long, Integer> cantidadPorProducto) {
+        Map<Long, ProductoModel> productos = indexarPorId(
+                productoRepository.findAllById(cantidadPorProducto.keySet()), cantidadPorProducto.keySet());
+
+        // Si no alcanza el stock no se modifica ninguna fila y la transaccion se revierte
+        cantidadPorProducto.forEach((productoId, cantidad) -> {
+            if (productoRepository.descontarStock(productoId, cantidad) == 0) {
+                throw stockInsuficiente(productos.get(productoId), cantidad);
+            }
+        });
+
+        return productos;
+    }
+
+    @Override
+    public Map<Long, Integer> consultarDisponible(Collection<Long> productoIds) {
+        return disponibleEnBase(productoRepository, productoIds);
+    }
+}
@@ -0,0 +1,76 @@
+package com.ulises.javasemiseniorcommerce.stock;
+
+import com.ulises.javasemiseniorcommerce.model.PedidoModel;
+import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Reserva el stock en el {@link StockLedger} en memoria, sin bloquear ni escribir la fila del producto.
+ * Los descuentos se registran en {@code movimientos_stock} en la transaccion del pedido; si se revierte,
+ * el stock reservado se devuelve al libro.
+ * Pensada para ventas flash sobre pocos productos.
+ *
+ * @author ulide
+ */
+@Component
+@AllArgsConstructor
+@ConditionalOnProperty(name = "commerce.stock.strategy", havingValue = "ledger")
+public class LedgerStockReservation extends AbstractStockReservationStrategy {
+
+    private final ProductoRepository productoRepository;
+    private final StockLedger stockLedger;
+
+    @Override
+    public Map<Long, ProductoModel> reservar(SortedMap<Long, Integer> cantidadPorProducto) {
+        Map<Long, ProductoModel> productos = indexarPorId(
+                productoRepository.findAllById(cantidadPorProducto.keySet()), cantidadPorProducto.keySet());
+
+        Long sinStock = stockLedger.reservar(cantidadPorProducto);
+        if (sinStock != null) {
+            throw stockInsuficiente(productos.get(sinStock), cantidadPorProducto.get(sinStock));
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            SortedMap<Long, Integer> reservados = new TreeMap<>(cantidadPorProducto);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        stockLedger.liberar(reservados);
+                    }
+                }
+            });
+        }
+
+        return productos;
+    }
+
+    @Override
+    public void registrarPedido(PedidoModel pedido, SortedMap<Long, Integer> cantidadPorProducto) {
+        stockLedger.registrar(pedido.getId(), cantidadPorProducto);
+    }
+
+    // El libro tiene el stock al dia; la tabla solo se consulta por los productos que todavia no estan en el libro
+    @Override
+    public Map<Long, Integer> consultarDisponible(Collection<Long> productoIds) {
+        Map<Long, Integer> disponibles = stockLedger.getDisponibles(productoIds);
+        List<Long> fueraDelLibro = productoIds.stream()
+                .filter(productoId -> !disponibles.containsKey(productoId))
+                .toList();
+        if (!fueraDelLibro.isEmpty()) {
+            disponibles.putAll(disponibleEnBase(productoRepository, fueraDelLibro));
+        }
+        return disponibles;
+    }
+}
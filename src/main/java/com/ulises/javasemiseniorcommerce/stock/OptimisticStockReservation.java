@@ -0,0 +1,80 @@
+package com.ulises.javasemiseniorcommerce.stock;
+
+import com.ulises.javasemiseniorcommerce.exception.StockEnConflictoException;
+import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Descuenta el stock solo si la version del producto no cambio desde que se leyo ({@code @Version}).
+ * Si otro pedido lo modifico antes, vuelve a leer stock y version y reintenta,
+ * hasta {@code commerce.stock.optimistic.max-intentos} veces por producto.
+ *
+ * @author ulide
+ */
+@Component
+@ConditionalOnProperty(name = "commerce.stock.strategy", havingValue = "optimistic")
+public class OptimisticStockReservation extends AbstractStockReservationStrategy {
+
+    private static final Logger logger = LoggerFactory.getLogger(OptimisticStockReservation.class);
+
+    private final ProductoRepository productoRepository;
+    private final int maxIntentos;
+
+    public OptimisticStockReservation(ProductoRepository productoRepository,
+                                      @Value("${commerce.stock.optimistic.max-intentos:5}") int maxIntentos) {
+        this.productoRepository = productoRepository;
+        this.maxIntentos = maxIntentos;
+    }
+
+    @Override
+    public Map<Long, ProductoModel> reservar(SortedMap<Long, Integer> cantidadPorProducto) {
+        Map<Long, ProductoModel> productos = indexarPorId(
+                productoRepository.findAllById(cantidadPorProducto.keySet()), cantidadPorProducto.keySet());
+
+        cantidadPorProducto.forEach((productoId, cantidad) ->
+                reservarProducto(productos.get(productoId), cantidad));
+
+        return productos;
+    }
+
+    @Override
+    public Map<Long, Integer> consultarDisponible(Collection<Long> productoIds) {
+        return disponibleEnBase(productoRepository, productoIds);
+    }
+
+    private void reservarProducto(ProductoModel producto, Integer cantidad) {
+        int stock = producto.getStockDisponible();
+        long version = producto.getVersion();
+
+        for (int intento = 1; intento <= maxIntentos; intento++) {
+            if (stock < cantidad) {
+                throw stockInsuficiente(producto, cantidad);
+            }
+
+            if (productoRepository.actualizarStockSiVersion(producto.getId(), stock - cantidad, version) == 1) {
+                return;
+            }
+
+            // Otro pedido modifico el producto: se leen los valores actuales y se reintenta
+            logger.debug("Conflicto de version para el producto con ID: {}. Intento {} de {}.",
+                    producto.getId(), intento, maxIntentos);
+            ProductoRepository.StockVersion actual = productoRepository.findStockVersionById(producto.getId());
+            stock = actual.getStockDisponible();
+            version = actual.getVersion();
+        }
+
+        logger.warn("No se pudo reservar stock para el producto: {} despues de {} intentos.", producto.getNombre(), maxIntentos);
+        // Excepcion por si se agotan los reintentos
+        throw new StockEnConflictoException("No se pudo reservar stock para el producto: " + producto.getNombre()
+                + ". Intente nuevamente.");
+    }
+}
@@ -0,0 +1,47 @@
+package com.ulises.javasemiseniorcommerce.stock;
+
+import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Bloquea los productos con {@code SELECT ... FOR UPDATE} en una sola consulta ordenada por ID
+ * (asi dos pedidos concurrentes toman los bloqueos en el mismo orden y no hay deadlocks),
+ * verifica el stock en memoria y deja que Hibernate escriba los cambios en lote al hacer flush.
+ *
+ * @author ulide
+ */
+@Component
+@AllArgsConstructor
+@ConditionalOnProperty(name = "commerce.stock.strategy", havingValue = "pessimistic")
+public class PessimisticStockReservation extends AbstractStockReservationStrategy {
+
+    private final ProductoRepository productoRepository;
+
+    @Override
+    public Map<Long, ProductoModel> reservar(SortedMap<Long, Integer> cantidadPorProducto) {
+        Map<Long, ProductoModel> productos = indexarPorId(
+                productoRepository.findAllByIdForUpdate(cantidadPorProducto.keySet()), cantidadPorProducto.keySet());
+
+        cantidadPorProducto.forEach((productoId, cantidad) -> {
+            ProductoModel producto = productos.get(productoId);
+            if (producto.getStockDisponible() < cantidad) {
+                throw stockInsuficiente(producto, cantidad);
+            }
+            producto.setStockDisponible(producto.getStockDisponible() - cantidad);
+        });
+
+        return productos;
+    }
+
+    @Override
+    public Map<Long, Integer> consultarDisponible(Collection<Long> productoIds) {
+        return disponibleEnBase(productoRepository, productoIds);
+    }
+}
@@ -0,0 +1,417 @@
+package com.ulises.javasemiseniorcommerce.stock;
+
+import com.ulises.javasemiseniorcommerce.cache.ProductoCache;
+import com.ulises.javasemiseniorcommerce.event.ProductoEvent;
+import com.ulises.javasemiseniorcommerce.model.MovimientoStockModel;
+import com.ulises.javasemiseniorcommerce.repository.MovimientoStockRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Libro de stock en memoria, indexado por ID de producto. Permite reservar stock sin tocar la fila del producto:
+ * cada pedido registra sus descuentos en {@code movimientos_stock}, en su misma transaccion, y los descuentos se
+ * aplican periodicamente a {@code productos}.
+ * <p>
+ * Cada producto usa un unico {@link AtomicLong} que empaqueta el stock disponible (32 bits altos) y lo reservado
+ * que todavia no se aplico a la tabla (32 bits bajos), asi reservar, liberar y aplicar son un solo compare-and-set
+ * y nunca se ven los dos valores desincronizados.
+ * <p>
+ * El stock disponible de un producto es siempre el de la tabla menos lo pendiente. Al iniciar (y cada
+ * {@code commerce.stock.ledger.reconcile-interval-ms}) y despues de cada cambio de un producto se vuelve a leer
+ * la tabla. Como los descuentos de los pedidos confirmados estan en {@code movimientos_stock}, una caida no pierde
+ * ninguno: al volver a levantar se aplican los que quedaron y no se puede volver a vender ese stock.
+ *
+ * @author ulide
+ */
+@Component
+@ConditionalOnProperty(name = "commerce.stock.strategy", havingValue = "ledger")
+public class StockLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockLedger.class);
+
+    private final ProductoRepository productoRepository;
+    private final MovimientoStockRepository movimientoStockRepository;
+    private final ProductoCache productoCache;
+    private final PlatformTransactionManager transactionManager;
+    private final Map<Long, AtomicLong> contadores = new ConcurrentHashMap<>();
+
+    // Una sola escritura o reconciliacion a la vez. Las reservas y las lecturas de productos no lo toman
+    private final Object escritura = new Object();
+
+    // Protege el paso de un descuento del log a la tabla. Las lecturas de la tabla se hacen sin tomarlo y despues se
+    // verifica que ninguna escritura haya hecho commit en el medio: si no, podrian ver un descuento aplicado en la
+    // tabla y todavia pendiente en el libro (o al reves). Es impar mientras hay un commit en curso
+    private final Object sincronizacion = new Object();
+    private long escrituras;
+
+    public StockLedger(ProductoRepository productoRepository,
+                       MovimientoStockRepository movimientoStockRepository,
+                       ProductoCache productoCache,
+                       PlatformTransactionManager transactionManager) {
+        this.productoRepository = productoRepository;
+        this.movimientoStockRepository = movimientoStockRepository;
+        this.productoCache = productoCache;
+        this.transactionManager = transactionManager;
+    }
+
+    /**
+     * Reserva el stock de todos los productos o de ninguno.
+     *
+     * @param cantidadPorProducto Cantidad pedida de cada producto.
+     * @return ID del primer producto sin stock suficiente (o que no existe), o null si se reservo todo.
+     */
+    public Long reservar(SortedMap<Long, Integer> cantidadPorProducto) {
+        Map<Long, Integer> reservados = new HashMap<>();
+        for (Map.Entry<Long, Integer> linea : cantidadPorProducto.entrySet()) {
+            if (!reservar(linea.getKey(), linea.getValue())) {
+                // Se devuelve lo que ya se habia reservado de este pedido
+                reservados.forEach(this::liberar);
+                return linea.getKey();
+            }
+            reservados.put(linea.getKey(), linea.getValue());
+        }
+        return null;
+    }
+
+    /**
+     * Registra los descuentos de un pedido en {@code movimientos_stock}. Se llama dentro de la transaccion del
+     * pedido, asi los descuentos quedan guardados si y solo si el pedido hace commit.
+     *
+     * @param pedidoId            ID del pedido.
+     * @param cantidadPorProducto Cantidad reservada de cada producto.
+     */
+    public void registrar(Long pedidoId, Map<Long, Integer> cantidadPorProducto) {
+        movimientoStockRepository.saveAll(cantidadPorProducto.entrySet().stream()
+                .map(linea -> MovimientoStockModel.builder()
+                        .pedidoId(pedidoId)
+                        .productoId(linea.getKey())
+                        .cantidad(linea.getValue())
+                        .build())
+                .toList());
+    }
+
+    /**
+     * Devuelve stock reservado (por ejemplo si la transaccion del pedido se revirtio).
+     *
+     * @param cantidadPorProducto Cantidad a devolver de cada producto.
+     */
+    public void liberar(Map<Long, Integer> cantidadPorProducto) {
+        cantidadPorProducto.forEach(this::liberar);
+    }
+
+    /**
+     * Stock disponible de un producto segun el libro.
+     *
+     * @param productoId ID del producto.
+     * @return Stock disponible, 0 si el producto no existe.
+     */
+    public int getDisponible(Long productoId) {
+        AtomicLong contador = contador(productoId);
+        return contador != null ? disponible(contador.get()) : 0;
+    }
+
+    /**
+     * Stock disponible de los productos que ya estan en el libro, sin agregar los que faltan.
+     *
+     * @param productoIds IDs de los productos.
+     * @return Stock disponible indexado por ID, solo de los productos que estan en el libro.
+     */
+    public Map<Long, Integer> getDisponibles(Collection<Long> productoIds) {
+        Map<Long, Integer> disponibles = new HashMap<>();
+        for (Long productoId : productoIds) {
+            AtomicLong contador = contadores.get(productoId);
+            if (contador != null) {
+                disponibles.put(productoId, disponible(contador.get()));
+            }
+        }
+        return disponibles;
+    }
+
+    /**
+     * Aplica a la tabla productos los descuentos registrados en {@code movimientos_stock}, un solo descuento neto
+     * por producto, y borra los movimientos aplicados en la misma transaccion. Despues del commit invalida esos
+     * productos en el cache: el evento de la venta lo invalido antes de que el stock y la version cambiaran en la
+     * tabla, y una lectura en el medio pudo volver a cachear los valores anteriores.
+     * <p>
+     * El trabajo en la base se hace sin bloquear las reservas ni las lecturas de productos nuevos: solo esperan
+     * mientras el commit esta en curso, hasta que lo aplicado deja de estar pendiente en el libro.
+     */
+    @Scheduled(fixedDelayString = "${commerce.stock.ledger.flush-interval-ms:1000}")
+    public void escribirPendientes() {
+        synchronized (escritura) {
+            Map<Long, Integer> aplicados;
+            TransactionStatus transaccion = transactionManager.getTransaction(TransactionDefinition.withDefaults());
+            try {
+                aplicados = aplicarMovimientos();
+            } catch (RuntimeException e) {
+                transactionManager.rollback(transaccion);
+                // Los movimientos siguen en la tabla y se vuelven a intentar en la proxima escritura
+                logger.error("No se pudieron escribir los descuentos de stock pendientes.", e);
+                return;
+            }
+
+            empezarCommit();
+            try {
+                transactionManager.commit(transaccion);
+            } catch (RuntimeException e) {
+                terminarCommit(Map.of());
+                logger.error("No se pudieron escribir los descuentos de stock pendientes.", e);
+                return;
+            }
+            // Lo aplicado ya esta en la tabla y deja de estar pendiente
+            terminarCommit(aplicados);
+
+            aplicados.keySet().forEach(productoCache::invalidate);
+            if (!aplicados.isEmpty()) {
+                logger.debug("Se escribieron descuentos de stock para {} productos.", aplicados.size());
+            }
+        }
+    }
+
+    /**
+     * Vuelve a leer el stock de la tabla productos. Incorpora cambios hechos por fuera del libro
+     * (productos nuevos, eliminados o con stock actualizado) conservando lo reservado y todavia no aplicado.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${commerce.stock.ledger.reconcile-interval-ms:60000}",
+            fixedDelayString = "${commerce.stock.ledger.reconcile-interval-ms:60000}")
+    public void reconciliar() {
+        // Con la escritura tomada ningun descuento pasa del log a la tabla entre las dos lecturas
+        synchronized (escritura) {
+            escribirPendientes();
+
+            // Los productos que no estan en el libro no tienen reservas en curso: lo pendiente es lo que quedo en el
+            // log (por ejemplo, de antes de una caida)
+            Map<Long, Integer> enLog = movimientoStockRepository.sumarCantidadPorProducto().stream()
+                    .collect(Collectors.toMap(MovimientoStockRepository.PendienteProducto::getProductoId,
+                            pendiente -> pendiente.getCantidad().intValue()));
+
+            Set<Long> existentes = new HashSet<>();
+            productoRepository.findAllStock().forEach(stock -> {
+                existentes.add(stock.getId());
+                int pendiente = enLog.getOrDefault(stock.getId(), 0);
+                AtomicLong contador = contadores.putIfAbsent(stock.getId(),
+                        new AtomicLong(empaquetar(stock.getStockDisponible() - pendiente, pendiente)));
+                if (contador != null) {
+                    actualizarDisponible(contador, stock.getStockDisponible());
+                }
+            });
+
+            // Se quitan los productos eliminados, salvo que todavia tengan descuentos sin escribir
+            contadores.entrySet().removeIf(entrada ->
+                    !existentes.contains(entrada.getKey()) && pendiente(entrada.getValue().get()) == 0);
+            logger.info("Libro de stock reconciliado con {} productos.", existentes.size());
+        }
+    }
+
+    /**
+     * Vuelve a leer el stock de un producto que cambio por fuera del libro (PUT, actualizacion masiva o baja),
+     * sin esperar a la proxima reconciliacion. Las ventas no cambian la tabla y no hace falta releerla.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductoEvent(ProductoEvent event) {
+        switch (event.getTipo()) {
+            case ELIMINADO -> contadores.remove(event.getProductoId());
+            case ACTUALIZADO, STOCK -> {
+                if (event.getUnidadesVendidas() == 0) {
+                    releer(event.getProductoId());
+                }
+            }
+            case CREADO -> {
+                // Se agrega al libro con el primer pedido
+            }
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        escribirPendientes();
+    }
+
+    private void releer(Long productoId) {
+        if (!contadores.containsKey(productoId)) {
+            return;
+        }
+        leerSinEscrituras(() -> productoRepository.findStockVersionById(productoId), stock -> {
+            AtomicLong contador = contadores.get(productoId);
+            if (contador == null) {
+                return null;
+            }
+            if (stock == null) {
+                contadores.remove(productoId);
+            } else {
+                actualizarDisponible(contador, stock.getStockDisponible());
+            }
+            return null;
+        });
+    }
+
+    // Descuenta de la tabla lo registrado en el log y borra los movimientos, dentro de la transaccion de la escritura
+    private Map<Long, Integer> aplicarMovimientos() {
+        List<MovimientoStockModel> movimientos = movimientoStockRepository.findAll(Sort.by("id"));
+        if (movimientos.isEmpty()) {
+            return Map.of();
+        }
+        // Ordenados por ID de producto, en el mismo orden en que los pedidos toman los bloqueos
+        Map<Long, Integer> descuentos = movimientos.stream()
+                .collect(Collectors.toMap(MovimientoStockModel::getProductoId,
+                        MovimientoStockModel::getCantidad, Integer::sum, TreeMap::new));
+        descuentos.forEach(productoRepository::aplicarDescuentoStock);
+        movimientoStockRepository.deleteAllByIdInBatch(movimientos.stream()
+                .map(MovimientoStockModel::getId)
+                .toList());
+        return descuentos;
+    }
+
+    private void empezarCommit() {
+        synchronized (sincronizacion) {
+            escrituras++;
+        }
+    }
+
+    private void terminarCommit(Map<Long, Integer> aplicados) {
+        synchronized (sincronizacion) {
+            aplicados.forEach((productoId, cantidad) -> {
+                AtomicLong contador = contadores.get(productoId);
+                if (contador != null) {
+                    sumarPendiente(contador, -cantidad);
+                }
+            });
+            escrituras++;
+            sincronizacion.notifyAll();
+        }
+    }
+
+    // Lee de la base sin tomar el monitor y aplica lo leido con el monitor tomado, solo si ninguna escritura hizo
+    // commit mientras tanto. Si alguna lo hizo, vuelve a leer
+    private <T, R> R leerSinEscrituras(Supplier<T> lectura, Function<T, R> aplicar) {
+        while (true) {
+            long antes = esperarCommit();
+            T leido = lectura.get();
+            synchronized (sincronizacion) {
+                if (escrituras == antes) {
+                    return aplicar.apply(leido);
+                }
+            }
+        }
+    }
+
+    // Espera a que termine el commit en curso, si hay uno, y devuelve la cantidad de escrituras
+    private long esperarCommit() {
+        synchronized (sincronizacion) {
+            while (escrituras % 2 != 0) {
+                try {
+                    sincronizacion.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Se interrumpio la espera de la escritura de stock.", e);
+                }
+            }
+            return escrituras;
+        }
+    }
+
+    private boolean reservar(Long productoId, int cantidad) {
+        AtomicLong contador = contador(productoId);
+        if (contador == null) {
+            return false;
+        }
+        long actual;
+        long nuevo;
+        do {
+            actual = contador.get();
+            if (disponible(actual) < cantidad) {
+                return false;
+            }
+            nuevo = empaquetar(disponible(actual) - cantidad, pendiente(actual) + cantidad);
+        } while (!contador.compareAndSet(actual, nuevo));
+        return true;
+    }
+
+    private void liberar(Long productoId, Integer cantidad) {
+        // Si el producto se elimino mientras tanto, no hay nada que devolver
+        AtomicLong contador = contadores.get(productoId);
+        if (contador == null) {
+            return;
+        }
+        long actual;
+        long nuevo;
+        do {
+            actual = contador.get();
+            nuevo = empaquetar(disponible(actual) + cantidad, pendiente(actual) - cantidad);
+        } while (!contador.compareAndSet(actual, nuevo));
+    }
+
+    // El disponible pasa a ser el stock de la tabla menos lo que todavia no se aplico
+    private static void actualizarDisponible(AtomicLong contador, int stock) {
+        long actual;
+        do {
+            actual = contador.get();
+        } while (!contador.compareAndSet(actual, empaquetar(stock - pendiente(actual), pendiente(actual))));
+    }
+
+    private static void sumarPendiente(AtomicLong contador, int cantidad) {
+        long actual;
+        do {
+            actual = contador.get();
+        } while (!contador.compareAndSet(actual, empaquetar(disponible(actual), pendiente(actual) + cantidad)));
+    }
+
+    // Si el producto todavia no esta en el libro (por ejemplo, se creo despues de la ultima reconciliacion) se lee
+    // de la tabla, sin bloquear a los demas productos ni esperar el trabajo de una escritura en la base. Los productos
+    // que no existen no se agregan
+    private AtomicLong contador(Long productoId) {
+        AtomicLong contador = contadores.get(productoId);
+        if (contador != null) {
+            return contador;
+        }
+
+        return leerSinEscrituras(() -> {
+            ProductoRepository.StockVersion stock = productoRepository.findStockVersionById(productoId);
+            if (stock == null) {
+                return null;
+            }
+            int pendiente = (int) movimientoStockRepository.sumarCantidadByProductoId(productoId);
+            return empaquetar(stock.getStockDisponible() - pendiente, pendiente);
+        }, leido -> leido == null ? contadores.get(productoId)
+                : contadores.computeIfAbsent(productoId, id -> new AtomicLong(leido)));
+    }
+
+    private static long empaquetar(int disponible, int pendiente) {
+        return ((long) disponible << 32) | (pendiente & 0xFFFFFFFFL);
+    }
+
+    private static int disponible(long valor) {
+        return (int) (valor >> 32);
+    }
+
+    private static int pendiente(long valor) {
+        return (int) valor;
+    }
+}
@@ -0,0 +1,49 @@
+package com.ulises.javasemiseniorcommerce.stock;
+
+import com.ulises.javasemiseniorcommerce.exception.ProductoNotFoundException;
+import com.ulises.javasemiseniorcommerce.exception.StockInsuficienteException;
+import com.ulises.javasemiseniorcommerce.model.PedidoModel;
+import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Estrategia para descontar el stock de los productos de un pedido. Se elige con la propiedad
+ * {@code commerce.stock.strategy} (conditional, pessimistic, optimistic o ledger) y se ejecuta dentro
+ * de la transaccion de {@code PedidoService.createPedido}, por lo que si el pedido falla el stock se revierte.
+ *
+ * @author ulide
+ */
+public interface StockReservationStrategy {
+
+    /**
+     * Carga los productos pedidos y descuenta su stock.
+     *
+     * @param cantidadPorProducto Cantidad pedida de cada producto, ordenada por ID de producto.
+     * @return Productos pedidos indexados por ID.
+     * @throws ProductoNotFoundException Si alguno de los productos no existe.
+     * @throws StockInsuficienteException Si alguno de los productos no tiene stock suficiente.
+     */
+    Map<Long, ProductoModel> reservar(SortedMap<Long, Integer> cantidadPorProducto);
+
+    /**
+     * Se llama despues de guardar el pedido, en la misma transaccion. Las estrategias que descuentan el stock
+     * en la tabla durante {@link #reservar} no necesitan hacer nada mas.
+     *
+     * @param pedido              Pedido ya guardado.
+     * @param cantidadPorProducto Cantidad reservada de cada producto.
+     */
+    default void registrarPedido(PedidoModel pedido, SortedMap<Long, Integer> cantidadPorProducto) {
+    }
+
+    /**
+     * Consulta el stock disponible de los productos sin reservarlo, sin bloquear filas y sin abrir una
+     * transaccion de escritura.
+     *
+     * @param productoIds IDs de los productos.
+     * @return Stock disponible indexado por ID. Los productos que no existen no aparecen.
+     */
+    Map<Long, Integer> consultarDisponible(Collection<Long> productoIds);
+}
@@ -19,7 +19,8 @@ CREATE TABLE productos (
                            nombre VARCHAR(255) NOT NULL,
                            descripcion TEXT NOT NULL,
                            precio DECIMAL(10, 2) NOT NULL,
-                           stockDisponible INT NOT NULL
+                           stockDisponible INT NOT NULL,
+                           version BIGINT NOT NULL DEFAULT 0
 );
 
 -- Crear la tabla pedidos
@@ -31,9 +32,12 @@ CREATE TABLE pedidos (
                          FOREIGN KEY (usuario_id) REFERENCES usuarios(id) ON DELETE CASCADE
 );
 
+-- Crear la secuencia de los detalles: Hibernate reserva los IDs de a 100 (allocationSize de DetalleModel)
+CREATE SEQUENCE detalles_seq START WITH 1 INCREMENT BY 100;
+
 -- Crear la tabla detalles
 CREATE TABLE detalles (
-                          id SERIAL PRIMARY KEY,
+                          id INT PRIMARY KEY,
                           producto_id INT,
                           pedido_id INT NOT NULL,
                           cantidad INT NOT NULL,
@@ -41,6 +45,15 @@ CREATE TABLE detalles (
                           FOREIGN KEY (pedido_id) REFERENCES pedidos(id) ON DELETE CASCADE
 );
 
+-- Crear la tabla movimientos_stock: descuentos del libro de stock en memoria (commerce.stock.strategy=ledger)
+-- que todavia no se aplicaron a productos. Sin claves foraneas, el descuento se aplica aunque se borre el pedido
+CREATE TABLE movimientos_stock (
+                                   id SERIAL PRIMARY KEY,
+                                   pedido_id INT NOT NULL,
+                                   producto_id INT NOT NULL,
+                                   cantidad INT NOT NULL
+);
+
 -- Insertar productos
 INSERT INTO productos (precio, stockDisponible, descripcion, nombre)
 VALUES (15.50, 100, 'Remera de algodón', 'Remera'),
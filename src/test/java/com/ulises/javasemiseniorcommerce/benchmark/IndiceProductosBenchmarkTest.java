@@ -0,0 +1,136 @@
+package com.ulises.javasemiseniorcommerce.benchmark;
+
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import com.ulises.javasemiseniorcommerce.search.ConsultaBusqueda;
+import com.ulises.javasemiseniorcommerce.search.IndiceProductos;
+import com.ulises.javasemiseniorcommerce.search.OrdenBusqueda;
+import com.ulises.javasemiseniorcommerce.search.Tokenizador;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Mide las busquedas exactas y difusas del indice invertido y las compara contra un recorrido lineal de todos los productos (lo mismo que hace
+ * {@code LIKE '%...%'} en la base de datos) sobre un catalogo de 1.000.000 de productos.
+ * Se ejecuta con: mvn test -Pbenchmark
+ *
+ * @author ulide
+ */
+@Tag("benchmark")
+public class IndiceProductosBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndiceProductosBenchmarkTest.class);
+    private static final int PRODUCTOS = 1_000_000;
+    private static final int CONSULTAS = 2_000;
+    private static final String[] TIPOS = {"camisa", "pantalon", "remera", "buzo", "campera", "zapatilla", "media",
+            "gorra", "bufanda", "vestido", "pollera", "short", "chaleco", "saco", "sweater"};
+    private static final String[] MATERIALES = {"algodón", "lino", "lana", "seda", "cuero", "jean", "poliéster",
+            "nylon", "gamuza", "franela"};
+    private static final String[] COLORES = {"rojo", "verde", "azul", "negro", "blanco", "gris", "amarillo",
+            "violeta", "naranja", "marrón", "rosa", "celeste"};
+    private static final String[] CONSULTAS_BASE = {"camisa lino", "algodon", "pantalon azul", "campera cuero negro",
+            "buzo", "media lana gris", "vestido seda rosa", "zapatilla"};
+    private static final String[] CONSULTAS_CON_ERRORES = {"pantalom", "camiseta verd", "algodom", "zapatila",
+            "campera cuerp", "vestdo seda"};
+
+    @Test
+    @DisplayName("Benchmark: indice invertido vs recorrido lineal con 1M de productos")
+    void benchmarkBusqueda() {
+        Random random = new Random(7);
+        String[] textos = new String[PRODUCTOS];
+        double[] precios = new double[PRODUCTOS];
+        IndiceProductos indice = new IndiceProductos(mock(ProductoRepository.class), true);
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < PRODUCTOS; i++) {
+            String nombre = TIPOS[random.nextInt(TIPOS.length)] + " de " + MATERIALES[random.nextInt(MATERIALES.length)]
+                    + " modelo " + random.nextInt(50_000);
+            String descripcion = nombre + " color " + COLORES[random.nextInt(COLORES.length)]
+                    + " talle " + (random.nextInt(8) + 1);
+            textos[i] = Tokenizador.normalizar(nombre + " " + descripcion);
+            precios[i] = 100 + random.nextInt(100_000) / 10.0;
+            indice.indexar(i + 1L, nombre, descripcion, precios[i]);
+        }
+        logger.info("Indice construido con {} productos en {} ms", PRODUCTOS, (System.nanoTime() - inicio) / 1_000_000);
+
+        // Calentamiento
+        for (int i = 0; i < 200; i++) {
+            indice.buscar(CONSULTAS_BASE[i % CONSULTAS_BASE.length], null, null, 0, 20);
+        }
+
+        long[] latencias = new long[CONSULTAS];
+        for (int i = 0; i < CONSULTAS; i++) {
+            String consulta = CONSULTAS_BASE[i % CONSULTAS_BASE.length];
+            long t = System.nanoTime();
+            indice.buscar(consulta, null, 500.0, i % 5, 20);
+            latencias[i] = System.nanoTime() - t;
+        }
+        logger.info("Indice invertido (por precio): {}", percentiles(latencias));
+
+        long[] latenciasRelevancia = new long[CONSULTAS];
+        for (int i = 0; i < CONSULTAS; i++) {
+            String consulta = CONSULTAS_BASE[i % CONSULTAS_BASE.length];
+            long t = System.nanoTime();
+            indice.buscar(consulta, null, null, 0, 20, OrdenBusqueda.RELEVANCIA);
+            latenciasRelevancia[i] = System.nanoTime() - t;
+        }
+        logger.info("Indice invertido (por relevancia, top 20): {}", percentiles(latenciasRelevancia));
+
+        long[] latenciasDifusas = new long[CONSULTAS];
+        for (int i = 0; i < CONSULTAS; i++) {
+            ConsultaBusqueda consulta = ConsultaBusqueda.builder()
+                    .texto(CONSULTAS_CON_ERRORES[i % CONSULTAS_CON_ERRORES.length])
+                    .orden(OrdenBusqueda.RELEVANCIA)
+                    .difuso(true)
+                    .build();
+            long t = System.nanoTime();
+            indice.buscar(consulta, 0, 20);
+            latenciasDifusas[i] = System.nanoTime() - t;
+        }
+        logger.info("Indice invertido (difusa, por relevancia, top 20): {}", percentiles(latenciasDifusas));
+
+        // El recorrido lineal es mucho mas lento, se mide con menos consultas
+        long[] latenciasLineales = new long[CONSULTAS_BASE.length];
+        for (int i = 0; i < CONSULTAS_BASE.length; i++) {
+            String[] terminos = CONSULTAS_BASE[i].split(" ");
+            long t = System.nanoTime();
+            int coincidencias = 0;
+            for (int p = 0; p < PRODUCTOS; p++) {
+                if (precios[p] <= 500.0 && contieneTodos(textos[p], terminos)) {
+                    coincidencias++;
+                }
+            }
+            latenciasLineales[i] = System.nanoTime() - t;
+
+            // Los dos caminos tienen que encontrar lo mismo (el recorrido busca subcadenas, las consultas son palabras enteras)
+            assertEquals(coincidencias, indice.buscar(CONSULTAS_BASE[i], null, 500.0, 0, 20).total(), CONSULTAS_BASE[i]);
+        }
+        logger.info("Recorrido lineal: {}", percentiles(latenciasLineales));
+    }
+
+    private static boolean contieneTodos(String texto, String[] terminos) {
+        for (String termino : terminos) {
+            if (!texto.contains(termino)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String percentiles(long[] latencias) {
+        long[] ordenadas = latencias.clone();
+        Arrays.sort(ordenadas);
+        return String.format("p50=%.3f ms, p99=%.3f ms, max=%.3f ms",
+                ordenadas[ordenadas.length / 2] / 1e6,
+                ordenadas[(int) (ordenadas.length * 0.99)] / 1e6,
+                ordenadas[ordenadas.length - 1] / 1e6);
+    }
+}
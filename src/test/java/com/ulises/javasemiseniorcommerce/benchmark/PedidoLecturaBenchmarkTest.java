@@ -0,0 +1,146 @@
+package com.ulises.javasemiseniorcommerce.benchmark;
+
+import com.ulises.javasemiseniorcommerce.cache.TotalesAproximados;
+import com.ulises.javasemiseniorcommerce.dto.ProductoCantidad;
+import com.ulises.javasemiseniorcommerce.model.DetalleModel;
+import com.ulises.javasemiseniorcommerce.model.PedidoModel;
+import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+import com.ulises.javasemiseniorcommerce.model.UsuarioModel;
+import com.ulises.javasemiseniorcommerce.repository.PedidoRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import com.ulises.javasemiseniorcommerce.repository.UsuarioRepository;
+import com.ulises.javasemiseniorcommerce.service.PedidoService;
+import com.ulises.javasemiseniorcommerce.stock.StockReservationStrategy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Compara la memoria asignada al listar los productos de un pedido cargando las entidades en una transaccion de
+ * escritura (el camino anterior de listProductos) contra la proyeccion en una transaccion de solo lectura.
+ * Se ejecuta con: mvn test -Pbenchmark
+ *
+ * @author ulide
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class PedidoLecturaBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(PedidoLecturaBenchmarkTest.class);
+    private static final int LINEAS = 50;
+    private static final int CALENTAMIENTO = 500;
+    private static final int LECTURAS = 5_000;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    @DisplayName("Benchmark: entidades en transaccion de escritura vs proyeccion de solo lectura")
+    void benchmarkListarProductosDePedido() {
+        Long id = crearPedido();
+        PedidoService pedidoService = new PedidoService(pedidoRepository, usuarioRepository,
+                mock(StockReservationStrategy.class), mock(TotalesAproximados.class), evento -> { }, transactionManager);
+        TransactionTemplate escritura = new TransactionTemplate(transactionManager);
+        TransactionTemplate soloLectura = new TransactionTemplate(transactionManager);
+        soloLectura.setReadOnly(true);
+
+        Resultado entidades = ejecutar("entidades", () -> escritura.execute(status ->
+                pedidoRepository.findConDetallesById(id).orElseThrow().getDetalles().stream()
+                        .map(detalle -> ProductoCantidad.builder()
+                                .nombreProducto(detalle.getProducto().getNombre())
+                                .cantidad(detalle.getCantidad())
+                                .precioUnidad(detalle.getProducto().getPrecio())
+                                .build())
+                        .toList()));
+        Resultado proyeccion = ejecutar("proyeccion", () -> soloLectura.execute(status ->
+                pedidoService.listProductos(id)));
+
+        logger.info("{}", entidades);
+        logger.info("{}", proyeccion);
+
+        assertEquals(entidades.productos(), proyeccion.productos());
+        assertTrue(proyeccion.bytesPorLectura() < entidades.bytesPorLectura(),
+                "Bytes por lectura con proyeccion: " + proyeccion.bytesPorLectura());
+    }
+
+    private Resultado ejecutar(String nombre, Supplier<List<ProductoCantidad>> leer) {
+        List<ProductoCantidad> productos = null;
+        for (int i = 0; i < CALENTAMIENTO; i++) {
+            productos = leer.get();
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bytesInicio = threads.getCurrentThreadAllocatedBytes();
+        long inicio = System.nanoTime();
+        for (int i = 0; i < LECTURAS; i++) {
+            productos = leer.get();
+        }
+        long duracionNanos = System.nanoTime() - inicio;
+        long bytes = threads.getCurrentThreadAllocatedBytes() - bytesInicio;
+
+        return new Resultado(nombre, productos, bytes / LECTURAS, duracionNanos / 1_000.0 / LECTURAS);
+    }
+
+    private Long crearPedido() {
+        UsuarioModel usuario = usuarioRepository.save(UsuarioModel.builder()
+                .nombre("Usuario Benchmark")
+                .email("benchmark@mail.com")
+                .password("psswrd")
+                .habilitado(true)
+                .build());
+        List<ProductoModel> productos = productoRepository.saveAll(IntStream.rangeClosed(1, LINEAS)
+                .mapToObj(i -> ProductoModel.builder()
+                        .nombre("Producto Benchmark " + i)
+                        .descripcion("Producto para medir la lectura de pedidos")
+                        .precio(10.0 * i)
+                        .stockDisponible(100)
+                        .build())
+                .toList());
+
+        PedidoModel pedido = PedidoModel.builder()
+                .usuario(usuario)
+                .precio(0.0)
+                .fechaDeCreacion(LocalDateTime.now())
+                .build();
+        pedido.setDetalles(productos.stream()
+                .map(producto -> DetalleModel.builder().producto(producto).cantidad(2).pedido(pedido).build())
+                .toList());
+        return pedidoRepository.save(pedido).getId();
+    }
+
+    private record Resultado(String nombre, List<ProductoCantidad> productos, long bytesPorLectura,
+                             double microsPorLectura) {
+        @Override
+        public String toString() {
+            return String.format("%-11s %,9d bytes/lectura %,9.1f us/lectura", nombre, bytesPorLectura, microsPorLectura);
+        }
+    }
+}
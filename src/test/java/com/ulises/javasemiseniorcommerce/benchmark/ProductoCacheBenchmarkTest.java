@@ -0,0 +1,134 @@
+package com.ulises.javasemiseniorcommerce.benchmark;
+
+import com.ulises.javasemiseniorcommerce.cache.BusquedaCache;
+import com.ulises.javasemiseniorcommerce.cache.ProductoCache;
+import com.ulises.javasemiseniorcommerce.cache.TotalesAproximados;
+import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+import com.ulises.javasemiseniorcommerce.repository.DetalleRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import com.ulises.javasemiseniorcommerce.search.IndicePrecios;
+import com.ulises.javasemiseniorcommerce.search.IndiceProductos;
+import com.ulises.javasemiseniorcommerce.search.SugerenciasProductos;
+import com.ulises.javasemiseniorcommerce.service.ProductoService;
+import com.ulises.javasemiseniorcommerce.testUtils.TestDataFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Compara lecturas repetidas de productos por ID directo contra la base de datos y a traves
+ * del cache de ProductoService. Se ejecuta con: mvn test -Pbenchmark
+ *
+ * @author ulide
+ */
+@Tag("benchmark")
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ProductoCacheBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductoCacheBenchmarkTest.class);
+    private static final int PRODUCTOS = 500;
+    private static final int HILOS = 16;
+    private static final int LECTURAS_POR_HILO = 5_000;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    @DisplayName("Benchmark: lecturas de productos sin cache vs con cache")
+    void benchmarkLecturasDeProductos() throws Exception {
+        List<Long> ids = productoRepository.saveAll(TestDataFactory.crearProductosModel(PRODUCTOS).stream()
+                        .map(producto -> {
+                            producto.setId(null);
+                            producto.setVersion(null);
+                            return producto;
+                        }).toList())
+                .stream().map(ProductoModel::getId).toList();
+
+        ProductoService productoService = new ProductoService(productoRepository,
+                new ProductoCache(PRODUCTOS, Duration.ofMinutes(10), new SimpleMeterRegistry()),
+                new BusquedaCache(100, Duration.ofMinutes(10), new SimpleMeterRegistry()),
+                new IndiceProductos(productoRepository, false), new IndicePrecios(productoRepository, false),
+                new SugerenciasProductos(productoRepository, mock(DetalleRepository.class), false),
+                mock(TotalesAproximados.class), evento -> { });
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Resultado sinCache = ejecutar("sin cache", ids, estadisticas,
+                id -> productoRepository.findById(id).orElseThrow());
+        Resultado conCache = ejecutar("con cache", ids, estadisticas, productoService::getProductoById);
+
+        logger.info("{}", sinCache);
+        logger.info("{}", conCache);
+
+        // Con el cache cada producto se lee de la base de datos una vez, salvo fallos concurrentes sobre el mismo ID
+        assertTrue(conCache.consultas() <= PRODUCTOS + HILOS * 10L, "Consultas con cache: " + conCache.consultas());
+        assertTrue(conCache.consultas() * 10 < sinCache.consultas());
+    }
+
+    private Resultado ejecutar(String nombre, List<Long> ids, Statistics estadisticas, LongConsumer leer) throws Exception {
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        List<Future<?>> resultados = new ArrayList<>();
+
+        for (int i = 0; i < HILOS; i++) {
+            resultados.add(executor.submit(() -> {
+                largada.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < LECTURAS_POR_HILO; j++) {
+                    // El 80% de las lecturas va al 20% de los productos
+                    int indice = random.nextInt(100) < 80
+                            ? random.nextInt(ids.size() / 5)
+                            : random.nextInt(ids.size());
+                    leer.accept(ids.get(indice));
+                }
+                return null;
+            }));
+        }
+
+        estadisticas.clear();
+        long inicio = System.nanoTime();
+        largada.countDown();
+        for (Future<?> resultado : resultados) {
+            resultado.get();
+        }
+        long duracionNanos = System.nanoTime() - inicio;
+        executor.shutdown();
+
+        return new Resultado(nombre, estadisticas.getPrepareStatementCount(),
+                HILOS * LECTURAS_POR_HILO * 1_000_000_000.0 / duracionNanos);
+    }
+
+    private record Resultado(String nombre, long consultas, double lecturasPorSegundo) {
+        @Override
+        public String toString() {
+            return String.format("%s: %.0f lecturas/s, consultas a la base de datos=%d",
+                    nombre, lecturasPorSegundo, consultas);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.ulises.javasemiseniorcommerce.benchmark;
+
+import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compara el descuento de stock leer-verificar-escribir (el camino anterior de createPedido)
+ * contra el UPDATE condicional de ProductoRepository sobre un unico producto muy demandado.
+ * Se ejecuta con: mvn test -Pbenchmark
+ *
+ * @author ulide
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class StockDescuentoBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockDescuentoBenchmarkTest.class);
+    private static final int HILOS = 200;
+    private static final int INTENTOS_POR_HILO = 50;
+    private static final int STOCK_INICIAL = 5_000;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    @DisplayName("Benchmark: leer-verificar-escribir vs UPDATE condicional")
+    void benchmarkDescuentoDeStock() throws Exception {
+        TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+
+        Resultado leerVerificarEscribir = ejecutar("leer-verificar-escribir", id ->
+                Boolean.TRUE.equals(transaccion.execute(status -> {
+                    ProductoModel producto = productoRepository.findById(id).orElseThrow();
+                    if (producto.getStockDisponible() < 1) {
+                        return false;
+                    }
+                    producto.setStockDisponible(producto.getStockDisponible() - 1);
+                    productoRepository.save(producto);
+                    return true;
+                })));
+
+        Resultado condicional = ejecutar("update-condicional", id ->
+                Boolean.TRUE.equals(transaccion.execute(status ->
+                        productoRepository.descontarStock(id, 1) == 1)));
+
+        logger.info("{}", leerVerificarEscribir);
+        logger.info("{}", condicional);
+
+        // El UPDATE condicional nunca deberia perder actualizaciones
+        assertEquals(STOCK_INICIAL - condicional.vendidos(), condicional.stockFinal());
+    }
+
+    private Resultado ejecutar(String nombre, LongPredicate descontar) throws Exception {
+        Long productoId = productoRepository.save(ProductoModel.builder()
+                .nombre("Producto Benchmark")
+                .descripcion("Producto para medir el descuento de stock")
+                .precio(10.0)
+                .stockDisponible(STOCK_INICIAL)
+                .build()).getId();
+
+        AtomicInteger vendidos = new AtomicInteger();
+        AtomicInteger errores = new AtomicInteger();
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        List<Future<?>> resultados = new ArrayList<>();
+
+        for (int i = 0; i < HILOS; i++) {
+            resultados.add(executor.submit(() -> {
+                largada.await();
+                for (int j = 0; j < INTENTOS_POR_HILO; j++) {
+                    try {
+                        if (descontar.test(productoId)) {
+                            vendidos.incrementAndGet();
+                        }
+                    } catch (RuntimeException e) {
+                        // Timeouts de bloqueo o conflictos de escritura
+                        errores.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long inicio = System.nanoTime();
+        largada.countDown();
+        for (Future<?> resultado : resultados) {
+            resultado.get();
+        }
+        long duracionNanos = System.nanoTime() - inicio;
+        executor.shutdown();
+
+        int stockFinal = productoRepository.findById(productoId).orElseThrow().getStockDisponible();
+        return new Resultado(nombre, vendidos.get(), errores.get(), stockFinal,
+                HILOS * INTENTOS_POR_HILO * 1_000_000_000.0 / duracionNanos);
+    }
+
+    private record Resultado(String nombre, int vendidos, int errores, int stockFinal, double operacionesPorSegundo) {
+        @Override
+        public String toString() {
+            return String.format("%s: %.0f ops/s, vendidos=%d, errores=%d, stock final=%d, sobreventa=%d",
+                    nombre, operacionesPorSegundo, vendidos, errores, stockFinal,
+                    vendidos - (STOCK_INICIAL - stockFinal));
+        }
+    }
+}
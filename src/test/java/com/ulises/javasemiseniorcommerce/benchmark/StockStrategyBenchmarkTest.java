@@ -0,0 +1,205 @@
+package com.ulises.javasemiseniorcommerce.benchmark;
+
+import com.ulises.javasemiseniorcommerce.cache.ProductoCache;
+import com.ulises.javasemiseniorcommerce.cache.TotalesAproximados;
+import com.ulises.javasemiseniorcommerce.dto.DetalleRequest;
+import com.ulises.javasemiseniorcommerce.dto.PedidoRequest;
+import com.ulises.javasemiseniorcommerce.exception.StockEnConflictoException;
+import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+import com.ulises.javasemiseniorcommerce.model.UsuarioModel;
+import com.ulises.javasemiseniorcommerce.repository.MovimientoStockRepository;
+import com.ulises.javasemiseniorcommerce.repository.PedidoRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import com.ulises.javasemiseniorcommerce.repository.UsuarioRepository;
+import com.ulises.javasemiseniorcommerce.service.PedidoService;
+import com.ulises.javasemiseniorcommerce.stock.ConditionalStockReservation;
+import com.ulises.javasemiseniorcommerce.stock.LedgerStockReservation;
+import com.ulises.javasemiseniorcommerce.stock.OptimisticStockReservation;
+import com.ulises.javasemiseniorcommerce.stock.PessimisticStockReservation;
+import com.ulises.javasemiseniorcommerce.stock.StockLedger;
+import com.ulises.javasemiseniorcommerce.stock.StockReservationStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Mide pedidos por segundo y latencia p99 de cada estrategia de reserva de stock,
+ * con pedidos concentrados en pocos productos (hot-key) y repartidos en todo el catalogo (uniforme).
+ * Se ejecuta con: mvn test -Pbenchmark
+ *
+ * @author ulide
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class StockStrategyBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockStrategyBenchmarkTest.class);
+    private static final int HILOS = 32;
+    private static final int PEDIDOS_POR_HILO = 100;
+    private static final int LINEAS_POR_PEDIDO = 3;
+    private static final int PRODUCTOS = 500;
+    private static final int PRODUCTOS_CALIENTES = 3;
+    private static final double PROPORCION_CALIENTE = 0.8;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private MovimientoStockRepository movimientoStockRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private List<Long> productoIds;
+    private String email;
+
+    @BeforeEach
+    void prepararCatalogo() {
+        email = usuarioRepository.save(UsuarioModel.builder()
+                .nombre("Usuario Benchmark")
+                .email("benchmark@mail.com")
+                .password("psswrd")
+                .habilitado(true)
+                .build()).getEmail();
+        productoIds = productoRepository.saveAll(LongStream.range(0, PRODUCTOS)
+                        .mapToObj(i -> ProductoModel.builder()
+                                .nombre("Producto " + i)
+                                .descripcion("Producto de benchmark " + i)
+                                .precio(10.0)
+                                .stockDisponible(Integer.MAX_VALUE)
+                                .build())
+                        .toList())
+                .stream()
+                .map(ProductoModel::getId)
+                .toList();
+    }
+
+    @Test
+    @DisplayName("Benchmark: estrategias de reserva de stock con distribucion hot-key y uniforme")
+    void benchmarkEstrategias() throws Exception {
+        Map<String, StockReservationStrategy> estrategias = new LinkedHashMap<>();
+        estrategias.put("conditional", new ConditionalStockReservation(productoRepository));
+        estrategias.put("pessimistic", new PessimisticStockReservation(productoRepository));
+        estrategias.put("optimistic", new OptimisticStockReservation(productoRepository, 50));
+        estrategias.put("ledger", new LedgerStockReservation(productoRepository,
+                new StockLedger(productoRepository, movimientoStockRepository,
+                        new ProductoCache(PRODUCTOS, Duration.ofMinutes(10), new SimpleMeterRegistry()), transactionManager)));
+
+        Map<String, Supplier<Long>> distribuciones = new LinkedHashMap<>();
+        distribuciones.put("hot-key", this::productoCaliente);
+        distribuciones.put("uniforme", this::productoUniforme);
+
+        List<String> resultados = new ArrayList<>();
+        for (Map.Entry<String, Supplier<Long>> distribucion : distribuciones.entrySet()) {
+            for (Map.Entry<String, StockReservationStrategy> estrategia : estrategias.entrySet()) {
+                resultados.add(ejecutar(estrategia.getKey(), estrategia.getValue(),
+                        distribucion.getKey(), distribucion.getValue()));
+            }
+        }
+
+        logger.info("Resultados:\n{}", String.join("\n", resultados));
+    }
+
+    private String ejecutar(String nombre, StockReservationStrategy estrategia,
+                            String distribucion, Supplier<Long> elegirProducto) throws Exception {
+        PedidoService pedidoService = new PedidoService(pedidoRepository, usuarioRepository, estrategia,
+                mock(TotalesAproximados.class), evento -> { }, transactionManager);
+        TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+
+        long[][] latencias = new long[HILOS][PEDIDOS_POR_HILO];
+        AtomicInteger conflictos = new AtomicInteger();
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        List<Future<?>> futuros = new ArrayList<>();
+
+        for (int hilo = 0; hilo < HILOS; hilo++) {
+            long[] latenciasHilo = latencias[hilo];
+            futuros.add(executor.submit(() -> {
+                largada.await();
+                for (int i = 0; i < PEDIDOS_POR_HILO; i++) {
+                    PedidoRequest pedido = crearPedido(elegirProducto);
+                    long inicio = System.nanoTime();
+                    try {
+                        transaccion.executeWithoutResult(status -> pedidoService.createPedido(pedido));
+                    } catch (StockEnConflictoException e) {
+                        conflictos.incrementAndGet();
+                    }
+                    latenciasHilo[i] = System.nanoTime() - inicio;
+                }
+                return null;
+            }));
+        }
+
+        long inicio = System.nanoTime();
+        largada.countDown();
+        for (Future<?> futuro : futuros) {
+            futuro.get();
+        }
+        long duracionNanos = System.nanoTime() - inicio;
+        executor.shutdown();
+
+        long[] todas = Arrays.stream(latencias).flatMapToLong(Arrays::stream).sorted().toArray();
+        double p50 = todas[(int) (todas.length * 0.50)] / 1_000_000.0;
+        double p99 = todas[(int) (todas.length * 0.99)] / 1_000_000.0;
+        double pedidosPorSegundo = todas.length * 1_000_000_000.0 / duracionNanos;
+
+        return String.format("%-9s %-12s %8.0f pedidos/s  p50=%7.2f ms  p99=%7.2f ms  conflictos=%d",
+                distribucion, nombre, pedidosPorSegundo, p50, p99, conflictos.get());
+    }
+
+    private PedidoRequest crearPedido(Supplier<Long> elegirProducto) {
+        List<DetalleRequest> detalles = new ArrayList<>();
+        for (int i = 0; i < LINEAS_POR_PEDIDO; i++) {
+            detalles.add(DetalleRequest.builder()
+                    .productoId(elegirProducto.get())
+                    .cantidad(1)
+                    .build());
+        }
+        return PedidoRequest.builder().username(email).detalles(detalles).build();
+    }
+
+    private Long productoCaliente() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return random.nextDouble() < PROPORCION_CALIENTE
+                ? productoIds.get(random.nextInt(PRODUCTOS_CALIENTES))
+                : productoUniforme();
+    }
+
+    private Long productoUniforme() {
+        return productoIds.get(ThreadLocalRandom.current().nextInt(productoIds.size()));
+    }
+}
@@ -0,0 +1,113 @@
+package com.ulises.javasemiseniorcommerce.benchmark;
+
+import com.ulises.javasemiseniorcommerce.repository.DetalleRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import com.ulises.javasemiseniorcommerce.search.SugerenciasProductos;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Mide las sugerencias por prefijo sobre un catalogo de 1.000.000 de productos, con las consultas llegando a
+ * 10.000 por segundo. La latencia de cada consulta se cuenta desde el momento en que le tocaba llegar, asi una
+ * consulta lenta tambien suma la espera de las que vienen atras.
+ * Se ejecuta con: mvn test -Pbenchmark
+ *
+ * @author ulide
+ */
+@Tag("benchmark")
+public class SugerenciasProductosBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(SugerenciasProductosBenchmarkTest.class);
+    private static final int PRODUCTOS = 1_000_000;
+    private static final int CONSULTAS_POR_SEGUNDO = 10_000;
+    private static final int CONSULTAS = 100_000;
+    private static final String[] TIPOS = {"camisa", "pantalon", "remera", "buzo", "campera", "zapatilla", "media",
+            "gorra", "bufanda", "vestido", "pollera", "short", "chaleco", "saco", "sweater"};
+    private static final String[] MATERIALES = {"algodón", "lino", "lana", "seda", "cuero", "jean", "poliéster",
+            "nylon", "gamuza", "franela"};
+
+    @Test
+    @DisplayName("Benchmark: sugerencias por prefijo a 10.000 consultas por segundo con 1M de productos")
+    void benchmarkSugerencias() {
+        Random random = new Random(11);
+        String[] nombres = new String[PRODUCTOS];
+        SugerenciasProductos sugerencias = new SugerenciasProductos(mock(ProductoRepository.class),
+                mock(DetalleRepository.class), true);
+
+        // Se construye vacio y se cargan los productos como cambios pendientes
+        sugerencias.construir();
+        long inicio = System.nanoTime();
+        for (int i = 0; i < PRODUCTOS; i++) {
+            nombres[i] = TIPOS[random.nextInt(TIPOS.length)] + " de " + MATERIALES[random.nextInt(MATERIALES.length)]
+                    + " modelo " + random.nextInt(50_000);
+            sugerencias.registrarProducto(i + 1L, nombres[i]);
+            // Pocos productos venden mucho
+            sugerencias.registrarVenta(i + 1L, (long) (Math.pow(random.nextDouble(), 4) * 1_000));
+        }
+        sugerencias.aplicarCambios();
+        logger.info("Sugerencias construidas con {} productos en {} ms", PRODUCTOS,
+                (System.nanoTime() - inicio) / 1_000_000);
+
+        // Un cambio chico sobre el catalogo ya construido
+        inicio = System.nanoTime();
+        for (int i = 0; i < 1_000; i++) {
+            sugerencias.registrarProducto(PRODUCTOS + 1L + i, "camisa de seda modelo " + i);
+            sugerencias.registrarVenta(random.nextInt(PRODUCTOS) + 1L, 5);
+        }
+        sugerencias.aplicarCambios();
+        logger.info("1.000 cambios aplicados en {} ms", (System.nanoTime() - inicio) / 1_000_000);
+
+        // Prefijos de 1 a 20 caracteres de nombres existentes, como los que se mandan al tipear
+        String[] prefijos = new String[CONSULTAS];
+        for (int i = 0; i < CONSULTAS; i++) {
+            String nombre = nombres[random.nextInt(PRODUCTOS)];
+            prefijos[i] = nombre.substring(0, 1 + random.nextInt(Math.min(20, nombre.length())));
+        }
+
+        // Calentamiento
+        for (int i = 0; i < 20_000; i++) {
+            sugerencias.sugerir(prefijos[i], 10);
+        }
+
+        long intervalo = 1_000_000_000L / CONSULTAS_POR_SEGUNDO;
+        long[] latencias = new long[CONSULTAS];
+        int vacias = 0;
+        long comienzo = System.nanoTime();
+        for (int i = 0; i < CONSULTAS; i++) {
+            long programada = comienzo + i * intervalo;
+            while (System.nanoTime() < programada) {
+                LockSupport.parkNanos(programada - System.nanoTime() > 50_000 ? 20_000 : 0);
+            }
+            if (sugerencias.sugerir(prefijos[i], 10).isEmpty()) {
+                vacias++;
+            }
+            latencias[i] = System.nanoTime() - programada;
+        }
+        double segundos = (System.nanoTime() - comienzo) / 1e9;
+        logger.info("Sugerencias: {} consultas/s, {}", Math.round(CONSULTAS / segundos), percentiles(latencias));
+
+        assertTrue(vacias == 0, "Todos los prefijos vienen de nombres existentes");
+        assertFalse(sugerencias.sugerir("cam", 10).isEmpty());
+    }
+
+    private static String percentiles(long[] latencias) {
+        long[] ordenadas = latencias.clone();
+        Arrays.sort(ordenadas);
+        return String.format("p50=%.3f ms, p99=%.3f ms, p999=%.3f ms, max=%.3f ms",
+                ordenadas[ordenadas.length / 2] / 1e6,
+                ordenadas[(int) (ordenadas.length * 0.99)] / 1e6,
+                ordenadas[(int) (ordenadas.length * 0.999)] / 1e6,
+                ordenadas[ordenadas.length - 1] / 1e6);
+    }
+}
@@ -0,0 +1,106 @@
+package com.ulises.javasemiseniorcommerce.cache;
+
+import com.ulises.javasemiseniorcommerce.event.ProductoEvent;
+import com.ulises.javasemiseniorcommerce.search.ConsultaBusqueda;
+import com.ulises.javasemiseniorcommerce.search.OrdenBusqueda;
+import com.ulises.javasemiseniorcommerce.search.ResultadoBusqueda;
+import com.ulises.javasemiseniorcommerce.testUtils.TestDataFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author ulide
+ */
+public class BusquedaCacheTest {
+
+    private SimpleMeterRegistry registry;
+    private BusquedaCache cache;
+    private AtomicInteger busquedas;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        cache = new BusquedaCache(100, Duration.ofMinutes(10), registry);
+        busquedas = new AtomicInteger();
+    }
+
+    @Test
+    @DisplayName("Deberia cachear por consulta normalizada, pagina y tamanio")
+    void testClave() {
+        ConsultaBusqueda consulta = ConsultaBusqueda.builder().texto(" Camisa  de LINO").precioMax(500.0).build();
+
+        obtener(consulta.normalizada(), 0);
+        obtener(ConsultaBusqueda.builder().texto("camisa de lino").precioMax(500.0).build().normalizada(), 0);
+        assertEquals(1, busquedas.get());
+
+        obtener(consulta.normalizada(), 1);
+        obtener(consulta.toBuilder().orden(OrdenBusqueda.RELEVANCIA).build().normalizada(), 0);
+        obtener(consulta.toBuilder().precioMax(400.0).build().normalizada(), 0);
+        assertEquals(4, busquedas.get());
+        assertEquals(1, cache.stats().hitCount());
+    }
+
+    @Test
+    @DisplayName("Deberia volver a buscar luego de un cambio del catalogo, pero no de un cambio de stock")
+    void testVersionCatalogo() {
+        ConsultaBusqueda consulta = ConsultaBusqueda.builder().texto("camisa").build();
+        obtener(consulta, 0);
+
+        cache.onProductoEvent(ProductoEvent.venta(1L, 3));
+        cache.onProductoEvent(ProductoEvent.stock(1L));
+        obtener(consulta, 0);
+        assertEquals(1, busquedas.get());
+
+        cache.onProductoEvent(ProductoEvent.actualizado(TestDataFactory.crearProductoDto()));
+        obtener(consulta, 0);
+        cache.onProductoEvent(ProductoEvent.creado(TestDataFactory.crearProductoDto()));
+        obtener(consulta, 0);
+        cache.onProductoEvent(ProductoEvent.eliminado(1L));
+        obtener(consulta, 0);
+        assertEquals(4, busquedas.get());
+        assertEquals(3, cache.versionCatalogo());
+    }
+
+    @Test
+    @DisplayName("Un resultado calculado mientras cambiaba el catalogo no deberia volver a usarse")
+    void testCambioDuranteLaBusqueda() {
+        ConsultaBusqueda consulta = ConsultaBusqueda.builder().texto("camisa").build();
+        cache.obtener(consulta, 0, 5, () -> {
+            busquedas.incrementAndGet();
+            cache.onProductoEvent(ProductoEvent.eliminado(1L));
+            return new ResultadoBusqueda(List.of(1L), 1);
+        });
+
+        assertEquals(List.of(), obtener(consulta, 0).ids());
+        assertEquals(2, busquedas.get());
+    }
+
+    @Test
+    @DisplayName("Deberia publicar aciertos, fallos y la proporcion de aciertos")
+    void testMetricas() {
+        ConsultaBusqueda consulta = ConsultaBusqueda.builder().texto("camisa").build();
+        obtener(consulta, 0);
+        obtener(consulta, 0);
+        obtener(consulta, 0);
+        obtener(consulta, 1);
+
+        assertEquals(2.0, registry.get("cache.gets").tag("cache", "busquedas").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(0.5, registry.get("cache.hit.ratio").tag("cache", "busquedas").gauge().value());
+    }
+
+    private ResultadoBusqueda obtener(ConsultaBusqueda consulta, int page) {
+        return cache.obtener(consulta, page, 5, () -> {
+            busquedas.incrementAndGet();
+            return new ResultadoBusqueda(List.of(), 0);
+        });
+    }
+}
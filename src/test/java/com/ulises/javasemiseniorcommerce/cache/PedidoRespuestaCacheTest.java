@@ -0,0 +1,187 @@
+package com.ulises.javasemiseniorcommerce.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ulises.javasemiseniorcommerce.cache.PedidoRespuestaCache.Dependencias;
+import com.ulises.javasemiseniorcommerce.cache.PedidoRespuestaCache.Respuesta;
+import com.ulises.javasemiseniorcommerce.cache.PedidoRespuestaCache.Vista;
+import com.ulises.javasemiseniorcommerce.dto.ProductoCantidad;
+import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+import com.ulises.javasemiseniorcommerce.event.PedidoEliminadoEvent;
+import com.ulises.javasemiseniorcommerce.event.ProductoEvent;
+import com.ulises.javasemiseniorcommerce.event.UsuarioEvent;
+import com.ulises.javasemiseniorcommerce.exception.PedidoNotFoundException;
+import com.ulises.javasemiseniorcommerce.testUtils.TestDataFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author ulide
+ */
+public class PedidoRespuestaCacheTest {
+
+    private SimpleMeterRegistry registry;
+    private PedidoRespuestaCache cache;
+    private AtomicInteger cargas;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        cache = new PedidoRespuestaCache(new ObjectMapper(), 1024 * 1024, Duration.ofMinutes(10), registry);
+        cargas = new AtomicInteger();
+    }
+
+    @Test
+    @DisplayName("Deberia serializar una sola vez por pedido y vista y devolver el mismo JSON")
+    void testAcierto() {
+        Respuesta primera = obtener(1L, Vista.PRODUCTOS);
+        Respuesta segunda = obtener(1L, Vista.PRODUCTOS);
+        obtener(1L, Vista.DETALLE);
+        obtener(2L, Vista.PRODUCTOS);
+
+        assertSame(primera, segunda);
+        assertEquals("[{\"nombreProducto\":\"Camisa\",\"cantidad\":2,\"precioUnidad\":100.0}]",
+                new String(primera.json(), StandardCharsets.UTF_8));
+        assertEquals(3, cargas.get());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "pedidos").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("El ETag deberia depender solo del contenido de la respuesta")
+    void testEtag() {
+        Respuesta pedido = obtener(1L, Vista.PRODUCTOS);
+        Respuesta otroPedido = obtener(2L, Vista.PRODUCTOS);
+        Respuesta vacio = cache.obtener(3L, Vista.PRODUCTOS, List::of, productos -> new Dependencias(null, List.of()));
+
+        assertTrue(pedido.etag().matches("\"[0-9a-f]{32}\""));
+        assertEquals(pedido.etag(), otroPedido.etag());
+        assertNotEquals(pedido.etag(), vacio.etag());
+    }
+
+    @Test
+    @DisplayName("Eliminar un pedido deberia descartar solo sus respuestas")
+    void testPedidoEliminado() {
+        obtener(1L, Vista.PEDIDO);
+        obtener(1L, Vista.DETALLE);
+        obtener(2L, Vista.PEDIDO);
+
+        cache.onPedidoEliminado(new PedidoEliminadoEvent(1L));
+        obtener(1L, Vista.PEDIDO);
+        obtener(1L, Vista.DETALLE);
+        obtener(2L, Vista.PEDIDO);
+
+        assertEquals(5, cargas.get());
+    }
+
+    @Test
+    @DisplayName("Los cambios de productos y usuarios deberian descartar las respuestas que los muestran, pero no los cambios de stock")
+    void testCambiosQueSeMuestranEnLosPedidos() {
+        obtener(1L, Vista.PEDIDO);
+        cache.onProductoEvent(ProductoEvent.venta(1L, 2));
+        cache.onProductoEvent(ProductoEvent.stock(1L));
+        cache.onProductoEvent(ProductoEvent.creado(TestDataFactory.crearProductoDto()));
+        obtener(1L, Vista.PEDIDO);
+        assertEquals(1, cargas.get());
+
+        cache.onProductoEvent(ProductoEvent.actualizado(TestDataFactory.crearProductoDto()));
+        obtener(1L, Vista.PEDIDO);
+        cache.onProductoEvent(ProductoEvent.eliminado(1L));
+        obtener(1L, Vista.PEDIDO);
+        cache.onUsuarioEvent(UsuarioEvent.actualizado(1L));
+        obtener(1L, Vista.PEDIDO);
+        cache.onUsuarioEvent(UsuarioEvent.eliminado(1L));
+        obtener(1L, Vista.PEDIDO);
+        assertEquals(5, cargas.get());
+    }
+
+    @Test
+    @DisplayName("Un cambio de un producto o de un usuario deberia descartar solo las respuestas que lo muestran")
+    void testCambiosDescartanSoloLosPedidosAfectados() {
+        obtener(1L, Vista.PEDIDO, 1L, 1L, 2L);
+        obtener(1L, Vista.PRODUCTOS, null, 1L, 2L);
+        obtener(2L, Vista.PEDIDO, 2L, 2L, 3L);
+        obtener(3L, Vista.PEDIDO, 2L, 4L);
+        assertEquals(4, cargas.get());
+
+        // Una actualizacion masiva publica un evento por producto
+        cache.onProductoEvent(ProductoEvent.actualizado(TestDataFactory.crearProductoDto()));
+        cache.onProductoEvent(ProductoEvent.eliminado(1L));
+        obtener(1L, Vista.PEDIDO, 1L, 1L, 2L);
+        obtener(1L, Vista.PRODUCTOS, null, 1L, 2L);
+        obtener(2L, Vista.PEDIDO, 2L, 2L, 3L);
+        obtener(3L, Vista.PEDIDO, 2L, 4L);
+        assertEquals(6, cargas.get());
+
+        // La vista de productos no muestra el usuario
+        cache.onUsuarioEvent(UsuarioEvent.actualizado(1L));
+        obtener(1L, Vista.PEDIDO, 1L, 1L, 2L);
+        obtener(1L, Vista.PRODUCTOS, null, 1L, 2L);
+        obtener(2L, Vista.PEDIDO, 2L, 2L, 3L);
+        assertEquals(7, cargas.get());
+
+        cache.onProductoEvent(ProductoEvent.actualizado(ProductoDto.builder().id(3L).build()));
+        cache.onUsuarioEvent(UsuarioEvent.eliminado(2L));
+        obtener(1L, Vista.PEDIDO, 1L, 1L, 2L);
+        obtener(2L, Vista.PEDIDO, 2L, 2L, 3L);
+        obtener(3L, Vista.PEDIDO, 2L, 4L);
+        assertEquals(9, cargas.get());
+    }
+
+    @Test
+    @DisplayName("Una respuesta armada mientras cambiaba uno de sus productos no deberia quedar en el cache")
+    void testCambioDuranteLaCarga() {
+        cache.obtener(1L, Vista.PRODUCTOS, () -> {
+            cargas.incrementAndGet();
+            cache.onProductoEvent(ProductoEvent.eliminado(1L));
+            return List.of();
+        }, productos -> new Dependencias(null, List.of(1L)));
+
+        obtener(1L, Vista.PRODUCTOS);
+        assertEquals(2, cargas.get());
+    }
+
+    @Test
+    @DisplayName("Un cambio de otro producto durante la carga no deberia impedir cachear la respuesta")
+    void testCambioDeOtroProductoDuranteLaCarga() {
+        cache.obtener(1L, Vista.PRODUCTOS, () -> {
+            cargas.incrementAndGet();
+            cache.onProductoEvent(ProductoEvent.eliminado(2L));
+            return List.of();
+        }, productos -> new Dependencias(null, List.of(1L)));
+
+        obtener(1L, Vista.PRODUCTOS);
+        assertEquals(1, cargas.get());
+    }
+
+    @Test
+    @DisplayName("Un pedido que no existe no deberia quedar en el cache")
+    void testPedidoNoEncontrado() {
+        assertThrows(PedidoNotFoundException.class, () -> cache.obtener(1L, Vista.PEDIDO, () -> {
+            throw new PedidoNotFoundException("Pedido no encontrado.");
+        }, pedido -> new Dependencias(null, List.of())));
+
+        obtener(1L, Vista.PEDIDO);
+        assertEquals(1, cargas.get());
+    }
+
+    // Una respuesta del usuario 1 con el producto 1
+    private Respuesta obtener(Long pedidoId, Vista vista) {
+        return obtener(pedidoId, vista, 1L, 1L);
+    }
+
+    private Respuesta obtener(Long pedidoId, Vista vista, Long usuarioId, Long... productoIds) {
+        return cache.obtener(pedidoId, vista, () -> {
+            cargas.incrementAndGet();
+            return List.of(ProductoCantidad.builder().nombreProducto("Camisa").cantidad(2).precioUnidad(100.0).build());
+        }, productos -> new Dependencias(usuarioId, List.of(productoIds)));
+    }
+}
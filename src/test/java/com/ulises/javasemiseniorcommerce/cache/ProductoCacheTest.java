@@ -0,0 +1,108 @@
+package com.ulises.javasemiseniorcommerce.cache;
+
+import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+import com.ulises.javasemiseniorcommerce.event.ProductoEvent;
+import com.ulises.javasemiseniorcommerce.testUtils.TestDataFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author ulide
+ */
+public class ProductoCacheTest {
+
+    @Test
+    @DisplayName("Deberia registrar aciertos y fallos del cache")
+    void testAciertosYFallos() {
+        ProductoCache cache = new ProductoCache(100, Duration.ofMinutes(10), new SimpleMeterRegistry());
+        ProductoDto producto = TestDataFactory.crearProductoDto();
+
+        assertNull(cache.get(producto.getId()));
+        cache.put(producto);
+        assertSame(producto, cache.get(producto.getId()));
+
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+
+    @Test
+    @DisplayName("Deberia publicar las metricas del cache en el MeterRegistry")
+    void testMetricas() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ProductoCache cache = new ProductoCache(100, Duration.ofMinutes(10), registry);
+        cache.get(1L);
+
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "productos").tag("result", "miss")
+                .functionCounter().count());
+        assertNotNull(registry.get("cache.evictions").tag("cache", "productos").functionCounter());
+    }
+
+    @Test
+    @DisplayName("Deberia expirar los productos luego del TTL")
+    void testExpiracion() {
+        AtomicLong nanos = new AtomicLong();
+        ProductoCache cache = new ProductoCache(100, Duration.ofMinutes(10), nanos::get);
+        ProductoDto producto = TestDataFactory.crearProductoDto();
+        cache.put(producto);
+
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(11));
+
+        assertNull(cache.get(producto.getId()));
+    }
+
+    @Test
+    @DisplayName("Deberia invalidar el producto ante un cambio y no ante una creacion")
+    void testInvalidacionPorEvento() {
+        ProductoCache cache = new ProductoCache(100, Duration.ofMinutes(10), new SimpleMeterRegistry());
+        ProductoDto producto = TestDataFactory.crearProductoDto();
+        cache.put(producto);
+
+        cache.onProductoEvent(ProductoEvent.creado(producto));
+        assertNotNull(cache.get(producto.getId()));
+
+        for (ProductoEvent evento : new ProductoEvent[]{
+                ProductoEvent.actualizado(producto),
+                ProductoEvent.stock(producto.getId()),
+                ProductoEvent.eliminado(producto.getId())}) {
+            cache.put(producto);
+            cache.onProductoEvent(evento);
+            assertNull(cache.get(producto.getId()), "No se invalido con el evento " + evento.getTipo());
+        }
+    }
+
+    @Test
+    @DisplayName("Un producto leido antes de una invalidacion no deberia quedar en el cache")
+    void testInvalidacionDuranteLaCarga() {
+        ProductoCache cache = new ProductoCache(100, Duration.ofMinutes(10), new SimpleMeterRegistry());
+        ProductoDto producto = TestDataFactory.crearProductoDto();
+
+        long antes = cache.generacion();
+        cache.onProductoEvent(ProductoEvent.venta(producto.getId(), 1));
+        cache.put(producto, antes);
+        assertNull(cache.get(producto.getId()));
+
+        cache.put(producto, cache.generacion());
+        assertSame(producto, cache.get(producto.getId()));
+    }
+
+    @Test
+    @DisplayName("La invalidacion de un producto no deberia descartar la carga de otro")
+    void testInvalidacionDeOtroProductoDuranteLaCarga() {
+        ProductoCache cache = new ProductoCache(100, Duration.ofMinutes(10), new SimpleMeterRegistry());
+        ProductoDto producto = TestDataFactory.crearProductoDto();
+
+        long antes = cache.generacion();
+        cache.onProductoEvent(ProductoEvent.venta(producto.getId() + 1, 1));
+        cache.invalidate(producto.getId() + 2);
+        cache.put(producto, antes);
+
+        assertSame(producto, cache.get(producto.getId()));
+    }
+}
@@ -0,0 +1,114 @@
+package com.ulises.javasemiseniorcommerce.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author ulide
+ */
+public class SingleFlightTest {
+
+    private static final int HILOS = 32;
+
+    @Test
+    @DisplayName("Deberia ejecutar una sola carga para llamadas concurrentes de la misma clave")
+    void testCargaCompartida() throws Exception {
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>();
+        AtomicInteger cargas = new AtomicInteger();
+
+        List<Future<String>> resultados = ejecutarEnParalelo(() -> singleFlight.ejecutar(1L, () -> {
+            cargas.incrementAndGet();
+            esperar();
+            return "valor";
+        }));
+
+        for (Future<String> resultado : resultados) {
+            assertEquals("valor", resultado.get());
+        }
+        assertEquals(1, cargas.get());
+    }
+
+    @Test
+    @DisplayName("Deberia propagar la excepcion de la carga a todos los hilos que esperaban")
+    void testExcepcionCompartida() throws Exception {
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>();
+        AtomicInteger cargas = new AtomicInteger();
+
+        List<Future<String>> resultados = ejecutarEnParalelo(() -> singleFlight.ejecutar(1L, () -> {
+            cargas.incrementAndGet();
+            esperar();
+            throw new IllegalStateException("Fallo la carga");
+        }));
+
+        for (Future<String> resultado : resultados) {
+            ExecutionException exception = assertThrows(ExecutionException.class, resultado::get);
+            assertInstanceOf(IllegalStateException.class, exception.getCause());
+            assertEquals("Fallo la carga", exception.getCause().getMessage());
+        }
+        assertEquals(1, cargas.get());
+    }
+
+    @Test
+    @DisplayName("Deberia liberar la clave al terminar la carga")
+    void testClaveLiberada() {
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>();
+        AtomicInteger cargas = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> singleFlight.ejecutar(1L, () -> {
+            throw new IllegalStateException();
+        }));
+        singleFlight.ejecutar(1L, () -> "valor " + cargas.incrementAndGet());
+        String resultado = singleFlight.ejecutar(1L, () -> "valor " + cargas.incrementAndGet());
+
+        assertEquals("valor 2", resultado);
+    }
+
+    @Test
+    @DisplayName("Deberia ejecutar cargas independientes para claves distintas")
+    void testClavesDistintas() {
+        SingleFlight<Long, Long> singleFlight = new SingleFlight<>();
+
+        Long resultado = singleFlight.ejecutar(1L, () -> singleFlight.ejecutar(2L, () -> 2L) + 1);
+
+        assertEquals(3L, resultado);
+    }
+
+    // Larga todas las llamadas a la vez y espera que terminen
+    private <T> List<Future<T>> ejecutarEnParalelo(Callable<T> llamada) throws InterruptedException {
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        List<Future<T>> resultados = new ArrayList<>();
+        for (int i = 0; i < HILOS; i++) {
+            resultados.add(executor.submit(() -> {
+                largada.await();
+                return llamada.call();
+            }));
+        }
+        largada.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        return resultados;
+    }
+
+    // Mantiene la carga en curso el tiempo suficiente para que lleguen los demas hilos
+    private static void esperar() {
+        try {
+            Thread.sleep(300);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.ulises.javasemiseniorcommerce.cache;
+
+import com.ulises.javasemiseniorcommerce.dto.ConteoTotal;
+import com.ulises.javasemiseniorcommerce.repository.PedidoRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author ulide
+ */
+public class TotalesAproximadosTest {
+
+    private ProductoRepository productoRepository;
+    private PedidoRepository pedidoRepository;
+    private AtomicLong nanos;
+    private List<Runnable> refrescos;
+    private TotalesAproximados totales;
+
+    @BeforeEach
+    void setUp() {
+        productoRepository = mock(ProductoRepository.class);
+        pedidoRepository = mock(PedidoRepository.class);
+        nanos = new AtomicLong();
+        // Los refrescos en segundo plano quedan encolados hasta que el test los ejecuta
+        refrescos = new ArrayList<>();
+        totales = new TotalesAproximados(productoRepository, pedidoRepository, 100, Duration.ofSeconds(30),
+                nanos::get, refrescos::add);
+    }
+
+    @Test
+    @DisplayName("Sin total no deberia contar y la pagina deberia quedar como Slice")
+    void testSinTotal() {
+        Slice<String> pagina = pagina(0, true, "a", "b");
+
+        Slice<String> resultado = totales.productos(pagina, ConteoTotal.NINGUNO, "camisa", null, null);
+
+        assertSame(pagina, resultado);
+        assertFalse(resultado instanceof Page);
+        verifyNoInteractions(productoRepository);
+    }
+
+    @Test
+    @DisplayName("Deberia contar una sola vez por filtro y usar el total exacto en la ultima pagina")
+    void testTotalCacheadoPorFiltro() {
+        when(productoRepository.countProductosByPalabrasClave("camisa", null, 500.0)).thenReturn(40L);
+
+        Page<String> primera = (Page<String>) totales.productos(pagina(0, true, "a", "b"), ConteoTotal.APROXIMADO,
+                "camisa", null, 500.0);
+        Page<String> segunda = (Page<String>) totales.productos(pagina(1, true, "c", "d"), ConteoTotal.APROXIMADO,
+                "camisa", null, 500.0);
+        Page<String> ultima = (Page<String>) totales.productos(pagina(2, false, "e"), ConteoTotal.APROXIMADO,
+                "camisa", null, 500.0);
+
+        assertEquals(40, primera.getTotalElements());
+        assertEquals(40, segunda.getTotalElements());
+        assertEquals(5, ultima.getTotalElements());
+        assertTrue(ultima.isLast());
+        verify(productoRepository, times(1)).countProductosByPalabrasClave("camisa", null, 500.0);
+        assertEquals(1, totales.stats().hitCount());
+    }
+
+    @Test
+    @DisplayName("Pasado el intervalo deberia devolver el total cacheado y volver a contar en segundo plano")
+    void testRefresco() {
+        String email = "test@mail.com";
+        when(pedidoRepository.countByUsuarioEmail(email)).thenReturn(10L, 12L);
+        assertEquals(10, ((Page<String>) totales.pedidosDeUsuario(pagina(0, true, "a"), ConteoTotal.APROXIMADO, email))
+                .getTotalElements());
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(31));
+
+        assertEquals(10, ((Page<String>) totales.pedidosDeUsuario(pagina(0, true, "a"), ConteoTotal.APROXIMADO, email))
+                .getTotalElements());
+        verify(pedidoRepository, times(1)).countByUsuarioEmail(email);
+        List.copyOf(refrescos).forEach(Runnable::run);
+        assertEquals(12, ((Page<String>) totales.pedidosDeUsuario(pagina(0, true, "a"), ConteoTotal.APROXIMADO, email))
+                .getTotalElements());
+        verify(pedidoRepository, times(2)).countByUsuarioEmail(email);
+    }
+
+    @Test
+    @DisplayName("Un total atrasado no deberia ser menor que los elementos ya vistos")
+    void testTotalAtrasado() {
+        when(productoRepository.countProductosByPalabrasClave(null, null, null)).thenReturn(3L);
+
+        Page<String> pagina = (Page<String>) totales.productos(pagina(2, true, "e", "f"), ConteoTotal.APROXIMADO,
+                null, null, null);
+
+        assertEquals(7, pagina.getTotalElements());
+        assertTrue(pagina.hasNext());
+    }
+
+    private static Slice<String> pagina(int numero, boolean haySiguiente, String... elementos) {
+        return new SliceImpl<>(List.of(elementos), PageRequest.of(numero, 2), haySiguiente);
+    }
+}
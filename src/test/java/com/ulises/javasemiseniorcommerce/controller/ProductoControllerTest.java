@@ -0,0 +1,97 @@
+package com.ulises.javasemiseniorcommerce.controller;
+
+import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+import com.ulises.javasemiseniorcommerce.service.ProductoActualizacionMasivaService;
+import com.ulises.javasemiseniorcommerce.service.ProductoExportService;
+import com.ulises.javasemiseniorcommerce.service.ProductoImportService;
+import com.ulises.javasemiseniorcommerce.service.ProductoService;
+import com.ulises.javasemiseniorcommerce.testUtils.TestDataFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Verifica el ETag de GET /producto/{id} sin levantar el contexto de Spring.
+ *
+ * @author ulide
+ */
+@ExtendWith(MockitoExtension.class)
+public class ProductoControllerTest {
+
+    @Mock
+    private ProductoService productoService;
+
+    @Mock
+    private ProductoImportService productoImportService;
+
+    @Mock
+    private ProductoActualizacionMasivaService productoActualizacionMasivaService;
+
+    @Mock
+    private ProductoExportService productoExportService;
+
+    @InjectMocks
+    private ProductoController productoController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(productoController).build();
+    }
+
+    @Test
+    @DisplayName("Con un If-None-Match vigente deberia responder 304 consultando solo la version del producto")
+    void testGetProductoNoModificado() throws Exception {
+        when(productoService.getVersionProducto(1L)).thenReturn(3L);
+
+        mockMvc.perform(get("/producto/1").header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(content().bytes(new byte[0]));
+
+        verify(productoService).getVersionProducto(1L);
+        verify(productoService, never()).getProductoById(anyLong());
+    }
+
+    @Test
+    @DisplayName("Con un If-None-Match viejo deberia devolver el producto con el ETag de su version")
+    void testGetProductoModificado() throws Exception {
+        ProductoDto producto = TestDataFactory.crearProductoDto();
+        producto.setVersion(4L);
+        when(productoService.getVersionProducto(1L)).thenReturn(4L);
+        when(productoService.getProductoById(1L)).thenReturn(producto);
+
+        mockMvc.perform(get("/producto/1").header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+                .andExpect(jsonPath("$.id").value(1))
+                .andExpect(jsonPath("$.version").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Sin If-None-Match deberia cargar el producto sin consultar antes su version")
+    void testGetProductoSinIfNoneMatch() throws Exception {
+        ProductoDto producto = TestDataFactory.crearProductoDto();
+        producto.setVersion(4L);
+        when(productoService.getProductoById(1L)).thenReturn(producto);
+
+        mockMvc.perform(get("/producto/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+
+        verify(productoService, never()).getVersionProducto(anyLong());
+    }
+}
@@ -0,0 +1,203 @@
+package com.ulises.javasemiseniorcommerce.search;
+
+import com.ulises.javasemiseniorcommerce.dto.FacetaPrecio;
+import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+import com.ulises.javasemiseniorcommerce.event.ProductoEvent;
+import com.ulises.javasemiseniorcommerce.event.ProductosCreadosEvent;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository.ProductoPrecio;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author ulide
+ */
+public class IndicePreciosTest {
+
+    private ProductoRepository productoRepository;
+    private IndicePrecios indice;
+
+    @BeforeEach
+    void setUp() {
+        productoRepository = mock(ProductoRepository.class);
+        indice = new IndicePrecios(productoRepository, true);
+        indice.indexar(1L, 300.0);
+        indice.indexar(2L, 500.0);
+        indice.indexar(3L, 200.0);
+        indice.indexar(4L, 300.0);
+    }
+
+    @Test
+    @DisplayName("Deberia filtrar por rango de precios incluyendo los limites, ordenado por precio y por ID")
+    void testRango() {
+        assertEquals(List.of(3L, 1L, 4L, 2L), indice.buscar(null, null, 0, 10).ids());
+        assertEquals(List.of(1L, 4L, 2L), indice.buscar(300.0, null, 0, 10).ids());
+        assertEquals(List.of(3L, 1L, 4L), indice.buscar(null, 300.0, 0, 10).ids());
+        assertEquals(List.of(1L, 4L), indice.buscar(250.0, 499.99, 0, 10).ids());
+        assertTrue(indice.buscar(600.0, null, 0, 10).ids().isEmpty());
+        assertEquals(0, indice.buscar(350.0, 400.0, 0, 10).total());
+    }
+
+    @Test
+    @DisplayName("Deberia paginar el rango con el total de productos que coinciden")
+    void testPaginas() {
+        ResultadoBusqueda segundaPagina = indice.buscar(200.0, 500.0, 1, 3);
+        assertEquals(List.of(2L), segundaPagina.ids());
+        assertEquals(4, segundaPagina.total());
+
+        ResultadoBusqueda fueraDeRango = indice.buscar(200.0, 500.0, 7, 3);
+        assertTrue(fueraDeRango.ids().isEmpty());
+        assertEquals(4, fueraDeRango.total());
+    }
+
+    @Test
+    @DisplayName("Deberia contar los productos por rango de precios sin aplicar el precio minimo y maximo")
+    void testFacetas() {
+        indice.indexar(5L, 399.99);
+
+        ResultadoBusqueda resultado = indice.buscar(300.0, 450.0, 0, 2, 100.0);
+
+        assertEquals(List.of(1L, 4L), resultado.ids());
+        assertEquals(3, resultado.total());
+        assertEquals(List.of(faceta(200.0, 300.0, 1), faceta(300.0, 400.0, 3), faceta(500.0, 600.0, 1)),
+                resultado.facetasPrecio());
+        assertNull(indice.buscar(300.0, 450.0, 0, 2).facetasPrecio());
+        assertEquals(resultado.facetasPrecio(), indice.buscar(600.0, null, 0, 2, 100.0).facetasPrecio());
+    }
+
+    @Test
+    @DisplayName("Un ancho muy chico deberia agrandarse a un multiplo que deje el catalogo en 100 rangos o menos")
+    void testAnchoAcotado() {
+        assertEquals(100.0, indice.anchoAcotado(100.0));
+        // De 200 a 500 con ancho 1 habria 301 rangos
+        assertEquals(4.0, indice.anchoAcotado(1.0));
+        for (double ancho : new double[]{1.0, 0.01, 1e-9}) {
+            double acotado = indice.anchoAcotado(ancho);
+            assertTrue(indice.buscar(null, null, 0, 1, acotado).facetasPrecio().size()
+                    <= HistogramaPrecios.MAXIMO_RANGOS);
+            assertEquals(Math.rint(acotado / ancho), acotado / ancho, 1e-6);
+        }
+        assertEquals(0.5, new IndicePrecios(productoRepository, true).anchoAcotado(0.5));
+    }
+
+    @Test
+    @DisplayName("Deberia intercalar un lote de productos con los del indice en orden de precio y de ID")
+    void testIndexarTodos() {
+        indice.onProductosCreados(new ProductosCreadosEvent(List.of(
+                producto(9L, 300.0), producto(5L, 100.0), producto(6L, 600.0), producto(2L, 250.0),
+                producto(7L, null), producto(8L, 300.0))));
+
+        assertEquals(List.of(5L, 3L, 2L, 1L, 4L, 8L, 9L, 6L), indice.buscar(null, null, 0, 10).ids());
+        assertEquals(List.of(1L, 4L, 8L, 9L), indice.buscar(300.0, 300.0, 0, 10).ids());
+        indice.eliminar(9L);
+        indice.indexar(10L, 300.0);
+        assertEquals(List.of(1L, 4L, 8L, 10L), indice.buscar(300.0, 300.0, 0, 10).ids());
+        assertEquals(8, indice.cantidadProductos());
+    }
+
+    @Test
+    @DisplayName("Deberia mantenerse al dia con las altas, cambios de precio y bajas")
+    void testEventos() {
+        indice.onProductoEvent(ProductoEvent.creado(producto(5L, 250.0)));
+        indice.onProductoEvent(ProductoEvent.actualizado(producto(2L, 100.0)));
+        indice.onProductoEvent(ProductoEvent.eliminado(1L));
+        indice.onProductoEvent(ProductoEvent.venta(3L, 2));
+
+        assertEquals(List.of(2L, 3L, 5L, 4L), indice.buscar(null, null, 0, 10).ids());
+        assertEquals(List.of(5L, 4L), indice.buscar(250.0, null, 0, 10).ids());
+        assertEquals(4, indice.cantidadProductos());
+    }
+
+    @Test
+    @DisplayName("Deberia dar los mismos resultados que filtrar todos los productos luego de muchos cambios")
+    void testCambiosAleatorios() {
+        Random random = new Random(5);
+        Map<Long, Double> precios = new HashMap<>(Map.of(1L, 300.0, 2L, 500.0, 3L, 200.0, 4L, 300.0));
+        for (int i = 0; i < 5_000; i++) {
+            long id = random.nextInt(2_000);
+            if (random.nextInt(4) == 0) {
+                precios.remove(id);
+                indice.eliminar(id);
+            } else {
+                double precio = random.nextInt(1_000) / 2.0;
+                precios.put(id, precio);
+                indice.indexar(id, precio);
+            }
+        }
+
+        for (int i = 0; i < 50; i++) {
+            double min = random.nextInt(500);
+            double max = min + random.nextInt(100);
+            List<Long> esperados = precios.entrySet().stream()
+                    .filter(entrada -> entrada.getValue() >= min && entrada.getValue() <= max)
+                    .sorted(Map.Entry.<Long, Double>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+                    .map(Map.Entry::getKey)
+                    .toList();
+            ResultadoBusqueda resultado = indice.buscar(min, max, 0, Integer.MAX_VALUE);
+            assertEquals(esperados, resultado.ids());
+            assertEquals(esperados.size(), resultado.total());
+        }
+        assertEquals(precios.size(), indice.cantidadProductos());
+    }
+
+    @Test
+    @DisplayName("Deberia construirse desde la base de datos por lotes ordenados por precio")
+    void testConstruir() {
+        List<ProductoPrecio> productos = new ArrayList<>(List.of(precio(7L, 50.0), precio(6L, 80.0), precio(8L, 80.0)));
+        productos.sort(Comparator.comparing(ProductoPrecio::getPrecio));
+        when(productoRepository.findPreciosDesde(eq(-Double.MAX_VALUE), eq(0L), any())).thenReturn(productos);
+        when(productoRepository.findPreciosDesde(eq(80.0), anyLong(), any())).thenReturn(List.of());
+        IndicePrecios construido = new IndicePrecios(productoRepository, true);
+
+        assertFalse(construido.isDisponible());
+        construido.construir();
+
+        assertTrue(construido.isDisponible());
+        assertEquals(List.of(7L, 6L, 8L), construido.buscar(null, 100.0, 0, 10).ids());
+    }
+
+    @Test
+    @DisplayName("No deberia construirse si esta deshabilitado")
+    void testDeshabilitado() {
+        IndicePrecios deshabilitado = new IndicePrecios(productoRepository, false);
+        deshabilitado.construir();
+
+        assertFalse(deshabilitado.isDisponible());
+        verify(productoRepository, never())
+                .findPreciosDesde(anyDouble(), anyLong(), any());
+    }
+
+    private static FacetaPrecio faceta(double desde, double hasta, long cantidad) {
+        return FacetaPrecio.builder().desde(desde).hasta(hasta).cantidad(cantidad).build();
+    }
+
+    private static ProductoDto producto(Long id, Double precio) {
+        return ProductoDto.builder().id(id).nombre("Producto " + id).descripcion("Descripcion").precio(precio)
+                .stockDisponible(1).build();
+    }
+
+    private static ProductoPrecio precio(Long id, Double precio) {
+        ProductoPrecio producto = mock(ProductoPrecio.class);
+        when(producto.getId()).thenReturn(id);
+        when(producto.getPrecio()).thenReturn(precio);
+        return producto;
+    }
+}
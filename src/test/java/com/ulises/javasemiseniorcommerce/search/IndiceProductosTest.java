@@ -0,0 +1,191 @@
+package com.ulises.javasemiseniorcommerce.search;
+
+import com.ulises.javasemiseniorcommerce.dto.FacetaPrecio;
+import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+import com.ulises.javasemiseniorcommerce.event.ProductoEvent;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository.ProductoTexto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author ulide
+ */
+public class IndiceProductosTest {
+
+    private ProductoRepository productoRepository;
+    private IndiceProductos indice;
+
+    @BeforeEach
+    void setUp() {
+        productoRepository = mock(ProductoRepository.class);
+        indice = new IndiceProductos(productoRepository, true);
+        indice.indexar(1L, "Camisa de Algodón", "Camisa blanca de manga larga", 300.0);
+        indice.indexar(2L, "Pantalón de lino", "Pantalon verde, tela de algodon y lino", 500.0);
+        indice.indexar(3L, "Camisa de lino", "Camisa verde", 200.0);
+    }
+
+    @Test
+    @DisplayName("Deberia encontrar productos sin importar acentos ni mayusculas")
+    void testAcentosYMayusculas() {
+        assertEquals(List.of(1L, 2L), indice.buscar("ALGODÓN", null, null, 0, 10).ids());
+        assertEquals(List.of(2L), indice.buscar("pantalon", null, null, 0, 10).ids());
+    }
+
+    @Test
+    @DisplayName("Deberia exigir todas las palabras de la consulta")
+    void testTodasLasPalabras() {
+        assertEquals(List.of(3L, 2L), indice.buscar("lino verde", null, null, 0, 10).ids());
+        assertEquals(List.of(3L), indice.buscar("camisa lino", null, null, 0, 10).ids());
+        assertTrue(indice.buscar("camisa inexistente", null, null, 0, 10).ids().isEmpty());
+        assertTrue(indice.buscar("  !! ", null, null, 0, 10).ids().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Deberia ordenar por precio, filtrar por rango y paginar con el total de coincidencias")
+    void testPrecioYPaginas() {
+        assertEquals(List.of(3L, 1L), indice.buscar("camisa", null, null, 0, 10).ids());
+        assertEquals(List.of(1L), indice.buscar("camisa", 250.0, 400.0, 0, 10).ids());
+
+        ResultadoBusqueda segundaPagina = indice.buscar("de", null, null, 1, 2);
+        assertEquals(List.of(2L), segundaPagina.ids());
+        assertEquals(3, segundaPagina.total());
+        assertTrue(indice.buscar("de", null, null, 5, 2).ids().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Deberia contar por rango de precios todas las coincidencias, sin aplicar el filtro de precio")
+    void testFacetas() {
+        ConsultaBusqueda consulta = ConsultaBusqueda.builder().texto("camisa").precioMax(250.0)
+                .anchoRangoPrecio(250.0).build();
+
+        ResultadoBusqueda resultado = indice.buscar(consulta, 0, 10);
+
+        assertEquals(List.of(3L), resultado.ids());
+        assertEquals(1, resultado.total());
+        assertEquals(List.of(
+                        FacetaPrecio.builder().desde(0.0).hasta(250.0).cantidad(1).build(),
+                        FacetaPrecio.builder().desde(250.0).hasta(500.0).cantidad(1).build()),
+                resultado.facetasPrecio());
+        assertEquals(List.of(), indice.buscar(consulta.toBuilder().texto("inexistente").build(), 0, 10)
+                .facetasPrecio());
+    }
+
+    @Test
+    @DisplayName("Deberia ordenar por relevancia, pesando mas las coincidencias en el nombre")
+    void testRelevancia() {
+        indice.indexar(4L, "Mochila", "Mochila con bolsillo de lino, ideal para llevar una camisa verde", 100.0);
+
+        // Por precio la mochila sale primero; por relevancia, la que tiene "camisa" y "verde" en el nombre
+        assertEquals(List.of(4L, 3L), indice.buscar("camisa verde", null, null, 0, 10).ids());
+        indice.indexar(5L, "Camisa verde", "Camisa de algodon", 800.0);
+        assertEquals(List.of(5L, 3L, 4L),
+                indice.buscar("camisa verde", null, null, 0, 10, OrdenBusqueda.RELEVANCIA).ids());
+        assertEquals(List.of(4L),
+                indice.buscar("camisa verde", null, null, 1, 2, OrdenBusqueda.RELEVANCIA).ids());
+    }
+
+    @Test
+    @DisplayName("Deberia tolerar errores de tipeo en la busqueda difusa")
+    void testBusquedaDifusa() {
+        ConsultaBusqueda.ConsultaBusquedaBuilder consulta = ConsultaBusqueda.builder().difuso(true);
+
+        assertTrue(indice.buscar("pantalom", null, null, 0, 10).ids().isEmpty());
+        assertEquals(List.of(2L), indice.buscar(consulta.texto("pantalom").build(), 0, 10).ids());
+        assertEquals(List.of(3L, 2L), indice.buscar(consulta.texto("lino verd").build(), 0, 10).ids());
+        assertEquals(List.of(3L, 1L), indice.buscar(consulta.texto("camiseta").build(), 0, 10).ids());
+        assertTrue(indice.buscar(consulta.texto("zapatilla").build(), 0, 10).ids().isEmpty());
+    }
+
+    @Test
+    @DisplayName("En la busqueda difusa un termino exacto deberia puntuar mas que uno parecido")
+    void testBusquedaDifusaPorRelevancia() {
+        indice.indexar(4L, "Remeras azul", "Talle unico", 100.0);
+        indice.indexar(5L, "Remera azul", "Talle unico", 100.0);
+
+        assertEquals(List.of(5L, 4L), indice.buscar(ConsultaBusqueda.builder()
+                .texto("remera")
+                .difuso(true)
+                .orden(OrdenBusqueda.RELEVANCIA)
+                .build(), 0, 10).ids());
+    }
+
+    @Test
+    @DisplayName("Deberia rechazar un orden desconocido")
+    void testOrdenInvalido() {
+        assertEquals(OrdenBusqueda.PRECIO, OrdenBusqueda.desde(null));
+        assertEquals(OrdenBusqueda.RELEVANCIA, OrdenBusqueda.desde("Relevance"));
+        assertThrows(IllegalArgumentException.class, () -> OrdenBusqueda.desde("nombre"));
+    }
+
+    @Test
+    @DisplayName("Deberia mantenerse actualizado con los eventos de productos")
+    void testEventos() {
+        indice.onProductoEvent(ProductoEvent.actualizado(ProductoDto.builder()
+                .id(1L).nombre("Remera de algodon").descripcion("Remera roja").precio(150.0).build()));
+        indice.onProductoEvent(ProductoEvent.eliminado(2L));
+        indice.onProductoEvent(ProductoEvent.creado(ProductoDto.builder()
+                .id(4L).nombre("Buzo").descripcion("Buzo de algodon").precio(900.0).build()));
+
+        assertEquals(List.of(1L, 4L), indice.buscar("algodon", null, null, 0, 10).ids());
+        assertTrue(indice.buscar("manga", null, null, 0, 10).ids().isEmpty());
+        assertEquals(List.of(3L), indice.buscar("camisa", null, null, 0, 10).ids());
+    }
+
+    @Test
+    @DisplayName("Deberia seguir respondiendo bien despues de compactar los documentos eliminados")
+    void testCompactacion() {
+        for (int i = 0; i < 3_000; i++) {
+            indice.indexar(3L, "Camisa de lino", "Camisa verde version " + i, 200.0 + i);
+        }
+
+        assertEquals(3, indice.cantidadVigentes());
+        assertEquals(List.of(1L, 3L), indice.buscar("camisa", null, null, 0, 10).ids());
+        assertEquals(List.of(3L), indice.buscar("version 2999", null, null, 0, 10).ids());
+        assertTrue(indice.buscar("version 5", null, null, 0, 10).ids().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Deberia construirse desde la base de datos por lotes")
+    void testConstruir() {
+        List<ProductoTexto> lote = LongStream.rangeClosed(10, 12).mapToObj(id -> texto(id, "Producto " + id)).toList();
+        when(productoRepository.findTextosDesde(eq(0L), any())).thenReturn(lote);
+
+        assertFalse(new IndiceProductos(productoRepository, false).isDisponible());
+        IndiceProductos construido = new IndiceProductos(productoRepository, true);
+        construido.construir();
+
+        assertTrue(construido.isDisponible());
+        assertEquals(List.of(10L, 11L, 12L), construido.buscar("producto", null, null, 0, 10).ids());
+    }
+
+    private static ProductoTexto texto(Long id, String nombre) {
+        return new ProductoTexto() {
+            public Long getId() {
+                return id;
+            }
+
+            public String getNombre() {
+                return nombre;
+            }
+
+            public String getDescripcion() {
+                return "Descripcion";
+            }
+
+            public Double getPrecio() {
+                return 100.0;
+            }
+        };
+    }
+}
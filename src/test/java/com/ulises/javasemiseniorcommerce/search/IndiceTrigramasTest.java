@@ -0,0 +1,40 @@
+package com.ulises.javasemiseniorcommerce.search;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author ulide
+ */
+public class IndiceTrigramasTest {
+
+    @Test
+    @DisplayName("Deberia calcular la distancia de edicion cortando al superar el maximo")
+    void testLevenshtein() {
+        assertEquals(0, IndiceTrigramas.levenshtein("pantalon", "pantalon", 2));
+        assertEquals(1, IndiceTrigramas.levenshtein("pantalom", "pantalon", 2));
+        assertEquals(2, IndiceTrigramas.levenshtein("camiseta", "camisa", 2));
+        assertEquals(3, IndiceTrigramas.levenshtein("zapato", "campera", 2));
+    }
+
+    @Test
+    @DisplayName("Deberia encontrar terminos parecidos, de menor a mayor distancia")
+    void testVariantes() {
+        IndiceTrigramas trigramas = new IndiceTrigramas();
+        List.of("pantalon", "pantalones", "camisa", "verde", "verdes", "lino", "limo", "de").forEach(trigramas::agregar);
+        trigramas.agregar("verde");
+
+        assertEquals(List.of(new IndiceTrigramas.Variante("pantalon", 1)), trigramas.variantes("pantalom"));
+        assertEquals(List.of(new IndiceTrigramas.Variante("verde", 1)), trigramas.variantes("verd"));
+        assertEquals(List.of(new IndiceTrigramas.Variante("verde", 0), new IndiceTrigramas.Variante("verdes", 1)),
+                trigramas.variantes("verde"));
+        assertEquals(List.of(new IndiceTrigramas.Variante("camisa", 2)), trigramas.variantes("camiseta"));
+        // Los terminos cortos no toleran errores
+        assertTrue(trigramas.variantes("da").isEmpty());
+        assertEquals(List.of(new IndiceTrigramas.Variante("de", 0)), trigramas.variantes("de"));
+    }
+}
@@ -0,0 +1,40 @@
+package com.ulises.javasemiseniorcommerce.search;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author ulide
+ */
+public class LongIntMapTest {
+
+    @Test
+    @DisplayName("Deberia comportarse igual que un HashMap ante altas, cambios y bajas al azar")
+    void testContraHashMap() {
+        LongIntMap mapa = new LongIntMap();
+        Map<Long, Integer> esperado = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            long clave = random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(esperado.getOrDefault(clave, LongIntMap.SIN_VALOR), mapa.remove(clave));
+                esperado.remove(clave);
+            } else {
+                mapa.put(clave, i);
+                esperado.put(clave, i);
+            }
+        }
+
+        assertEquals(esperado.size(), mapa.size());
+        for (long clave = 0; clave < 5_000; clave++) {
+            assertEquals(esperado.getOrDefault(clave, LongIntMap.SIN_VALOR), mapa.get(clave));
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.ulises.javasemiseniorcommerce.search;
+
+import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+import com.ulises.javasemiseniorcommerce.dto.SugerenciaDto;
+import com.ulises.javasemiseniorcommerce.event.ProductoEvent;
+import com.ulises.javasemiseniorcommerce.repository.DetalleRepository;
+import com.ulises.javasemiseniorcommerce.repository.DetalleRepository.VentasProducto;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository.ProductoTexto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author ulide
+ */
+public class SugerenciasProductosTest {
+
+    private ProductoRepository productoRepository;
+    private DetalleRepository detalleRepository;
+    private SugerenciasProductos sugerencias;
+
+    @BeforeEach
+    void setUp() {
+        productoRepository = mock(ProductoRepository.class);
+        detalleRepository = mock(DetalleRepository.class);
+        sugerencias = new SugerenciasProductos(productoRepository, detalleRepository, true);
+        List<ProductoTexto> textos = List.of(
+                texto(1L, "Camisa de Algodón"),
+                texto(2L, "Camiseta deportiva"),
+                texto(3L, "Camisa de lino"),
+                texto(4L, "Pantalón de lino"));
+        List<VentasProducto> ventas = List.of(ventas(3L, 40L), ventas(2L, 15L));
+        when(productoRepository.findTextosDesde(eq(0L), any())).thenReturn(textos);
+        when(detalleRepository.findVentasPorProducto()).thenReturn(ventas);
+        sugerencias.construir();
+    }
+
+    @Test
+    @DisplayName("Deberia sugerir los productos que empiezan con el prefijo, ordenados por unidades vendidas")
+    void testPrefijoYPopularidad() {
+        assertTrue(sugerencias.isDisponible());
+        assertEquals(List.of(3L, 2L, 1L), ids(sugerencias.sugerir("cam", 10)));
+        assertEquals(List.of(3L, 2L), ids(sugerencias.sugerir("CAM", 2)));
+        assertEquals("Camisa de lino", sugerencias.sugerir("camisa", 10).get(0).getNombre());
+        assertEquals(List.of(4L), ids(sugerencias.sugerir("Pantalon", 10)));
+        // Con el espacio final la palabra tiene que estar completa
+        assertEquals(List.of(3L, 1L), ids(sugerencias.sugerir("camisa ", 10)));
+        assertEquals(List.of(1L), ids(sugerencias.sugerir("camisa de algo", 10)));
+        assertTrue(sugerencias.sugerir("zapatilla", 10).isEmpty());
+        assertTrue(sugerencias.sugerir("  ", 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Deberia aplicar altas, cambios de nombre, bajas y ventas luego de aplicar los cambios pendientes")
+    void testEventos() {
+        sugerencias.onProductoEvent(ProductoEvent.creado(producto(5L, "Campera de cuero")));
+        sugerencias.onProductoEvent(ProductoEvent.actualizado(producto(4L, "Camisa de seda")));
+        sugerencias.onProductoEvent(ProductoEvent.eliminado(3L));
+        sugerencias.onProductoEvent(ProductoEvent.venta(1L, 20));
+        sugerencias.onProductoEvent(ProductoEvent.venta(5L, 100));
+        sugerencias.onProductoEvent(ProductoEvent.stock(2L));
+
+        // Hasta que se aplican, se siguen viendo las sugerencias anteriores
+        assertEquals(List.of(3L, 2L, 1L), ids(sugerencias.sugerir("cam", 10)));
+
+        sugerencias.aplicarCambios();
+        assertEquals(List.of(5L, 1L, 2L, 4L), ids(sugerencias.sugerir("cam", 10)));
+        assertEquals(List.of(4L), ids(sugerencias.sugerir("camisa de s", 10)));
+        assertTrue(sugerencias.sugerir("pantalon", 10).isEmpty());
+        assertEquals(4, sugerencias.cantidadProductos());
+    }
+
+    @Test
+    @DisplayName("Una venta que llega mientras se leen las ventas no deberia contarse dos veces al reconstruir")
+    void testVentaDuranteLaConstruccion() {
+        // La venta de 30 unidades del producto 2 ya esta en la consulta cuando llega su evento
+        when(detalleRepository.findVentasPorProducto()).thenAnswer(invocation -> {
+            sugerencias.registrarVenta(2L, 30);
+            return List.of(ventas(3L, 60L), ventas(2L, 45L));
+        });
+
+        sugerencias.construir();
+        sugerencias.registrarVenta(1L, 50);
+        sugerencias.aplicarCambios();
+
+        assertEquals(List.of(3L, 1L, 2L), ids(sugerencias.sugerir("cam", 10)));
+    }
+
+    @Test
+    @DisplayName("Deberia dar los mismos resultados que un recorrido de todos los nombres en un catalogo grande")
+    void testCatalogoGrande() {
+        String[] tipos = {"camisa", "camiseta", "campera", "pantalon", "buzo"};
+        String[] materiales = {"algodon", "lino", "lana"};
+        Random random = new Random(3);
+        Map<Long, String> nombres = new HashMap<>(Map.of(1L, "Camisa de Algodón", 2L, "Camiseta deportiva",
+                3L, "Camisa de lino", 4L, "Pantalón de lino"));
+        Map<Long, Long> vendidos = new HashMap<>(Map.of(3L, 40L, 2L, 15L));
+        for (long id = 10; id < 5_000; id++) {
+            String nombre = tipos[random.nextInt(tipos.length)] + " de " + materiales[random.nextInt(materiales.length)]
+                    + " " + random.nextInt(500);
+            nombres.put(id, nombre);
+            sugerencias.registrarProducto(id, nombre);
+            long unidades = random.nextInt(50);
+            vendidos.put(id, unidades);
+            sugerencias.registrarVenta(id, unidades);
+        }
+        sugerencias.aplicarCambios();
+        comparar(nombres, vendidos);
+
+        // Cambios chicos sobre el catalogo ya construido
+        for (long id = 10; id < 200; id++) {
+            if (id % 3 == 0) {
+                nombres.remove(id);
+                sugerencias.eliminar(id);
+            } else {
+                String nombre = "camisa de seda " + id;
+                nombres.put(id, nombre);
+                sugerencias.registrarProducto(id, nombre);
+            }
+        }
+        for (long id = 4_000; id < 4_100; id++) {
+            vendidos.merge(id, 1_000L, Long::sum);
+            sugerencias.registrarVenta(id, 1_000L);
+        }
+        sugerencias.aplicarCambios();
+        comparar(nombres, vendidos);
+    }
+
+    @Test
+    @DisplayName("No deberia sugerir nada si esta deshabilitado")
+    void testDeshabilitado() {
+        SugerenciasProductos deshabilitadas = new SugerenciasProductos(productoRepository, detalleRepository, false);
+        deshabilitadas.construir();
+
+        assertFalse(deshabilitadas.isDisponible());
+        assertTrue(deshabilitadas.sugerir("cam", 10).isEmpty());
+    }
+
+    // Compara contra un recorrido de todos los nombres, con prefijos de rangos grandes y chicos
+    private void comparar(Map<Long, String> nombres, Map<Long, Long> vendidos) {
+        List<String> prefijos = List.of("c", "ca", "cam", "camis", "camisa ", "camisa de l", "pantalon de lana 4",
+                "buzo de algodon 12", "campera de lino 7", "camiseta de lana 49");
+        for (String prefijo : prefijos) {
+            List<Long> esperados = nombres.entrySet().stream()
+                    .filter(entrada -> SugerenciasProductos.normalizarNombre(entrada.getValue()).startsWith(prefijo))
+                    .map(Map.Entry::getKey)
+                    .sorted(Comparator.<Long>comparingLong(id -> -vendidos.getOrDefault(id, 0L))
+                            .thenComparing(Comparator.naturalOrder()))
+                    .limit(SugerenciasProductos.MAXIMO_SUGERENCIAS)
+                    .toList();
+            assertEquals(esperados, ids(sugerencias.sugerir(prefijo, 10)), prefijo);
+        }
+    }
+
+    private static List<Long> ids(List<SugerenciaDto> sugerencias) {
+        return sugerencias.stream().map(SugerenciaDto::getId).toList();
+    }
+
+    private static ProductoDto producto(Long id, String nombre) {
+        return ProductoDto.builder().id(id).nombre(nombre).descripcion("Descripcion").precio(100.0).stockDisponible(1)
+                .build();
+    }
+
+    private static ProductoTexto texto(Long id, String nombre) {
+        ProductoTexto texto = mock(ProductoTexto.class);
+        when(texto.getId()).thenReturn(id);
+        when(texto.getNombre()).thenReturn(nombre);
+        return texto;
+    }
+
+    private static VentasProducto ventas(Long productoId, Long vendidos) {
+        VentasProducto ventas = mock(VentasProducto.class);
+        when(ventas.getProductoId()).thenReturn(productoId);
+        when(ventas.getVendidos()).thenReturn(vendidos);
+        return ventas;
+    }
+}
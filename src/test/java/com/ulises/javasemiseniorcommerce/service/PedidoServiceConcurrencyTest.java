@@ -0,0 +1,201 @@
+package com.ulises.javasemiseniorcommerce.service;
+
+import com.ulises.javasemiseniorcommerce.cache.ProductoCache;
+import com.ulises.javasemiseniorcommerce.cache.TotalesAproximados;
+import com.ulises.javasemiseniorcommerce.dto.DetalleRequest;
+import com.ulises.javasemiseniorcommerce.dto.PedidoRequest;
+import com.ulises.javasemiseniorcommerce.exception.StockInsuficienteException;
+import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+import com.ulises.javasemiseniorcommerce.model.UsuarioModel;
+import com.ulises.javasemiseniorcommerce.repository.PedidoRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import com.ulises.javasemiseniorcommerce.repository.UsuarioRepository;
+import com.ulises.javasemiseniorcommerce.stock.ConditionalStockReservation;
+import com.ulises.javasemiseniorcommerce.stock.LedgerStockReservation;
+import com.ulises.javasemiseniorcommerce.stock.OptimisticStockReservation;
+import com.ulises.javasemiseniorcommerce.stock.PessimisticStockReservation;
+import com.ulises.javasemiseniorcommerce.stock.StockLedger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Crea pedidos concurrentes sobre un mismo producto contra una base H2, con cada
+ * estrategia de reserva de stock, y verifica que nunca se vende mas stock del disponible.
+ *
+ * @author ulide
+ */
+@DataJpaTest
+@Import({PedidoService.class,
+        ConditionalStockReservation.class,
+        PessimisticStockReservation.class,
+        OptimisticStockReservation.class,
+        LedgerStockReservation.class,
+        StockLedger.class,
+        ProductoCache.class,
+        TotalesAproximados.class,
+        SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class PedidoServiceConcurrencyTest {
+
+    private static final int HILOS = 300;
+    private static final int STOCK_INICIAL = 100;
+
+    @Nested
+    @DisplayName("Estrategia UPDATE condicional")
+    @TestPropertySource(properties = "commerce.stock.strategy=conditional")
+    class ConditionalTests extends EscenarioConcurrente {
+    }
+
+    @Nested
+    @DisplayName("Estrategia bloqueo pesimista")
+    @TestPropertySource(properties = "commerce.stock.strategy=pessimistic")
+    class PessimisticTests extends EscenarioConcurrente {
+    }
+
+    @Nested
+    @DisplayName("Estrategia bloqueo optimista")
+    @TestPropertySource(properties = {
+            "commerce.stock.strategy=optimistic",
+            // Con 300 hilos sobre una sola fila hay muchos conflictos, se permiten reintentos de sobra
+            "commerce.stock.optimistic.max-intentos=1000"})
+    class OptimisticTests extends EscenarioConcurrente {
+    }
+
+    @Nested
+    @DisplayName("Estrategia libro de stock en memoria")
+    @TestPropertySource(properties = "commerce.stock.strategy=ledger")
+    class LedgerTests extends EscenarioConcurrente {
+
+        @Autowired
+        private StockLedger stockLedger;
+
+        @Autowired
+        private ProductoRepository productoRepository;
+
+        // Las reservas del libro se escriben en la tabla de forma periodica, aca se fuerza la escritura
+        @Override
+        void antesDeVerificar() {
+            stockLedger.escribirPendientes();
+        }
+
+        @Test
+        @DisplayName("Si el stock se bajo por fuera del libro por debajo de lo reservado, la tabla no deberia quedar negativa")
+        void testStockBajadoPorDebajoDeLoReservado() {
+            // Preparacion: se reservan 8 unidades y, antes de escribirlas, el stock se cambia a 3
+            ProductoModel producto = productoRepository.save(ProductoModel.builder()
+                    .nombre("Producto con reservas")
+                    .descripcion("Producto con reservas sin escribir")
+                    .precio(10.0)
+                    .stockDisponible(10)
+                    .build());
+            SortedMap<Long, Integer> reserva = new TreeMap<>(Map.of(producto.getId(), 8));
+            assertNull(stockLedger.reservar(reserva));
+            stockLedger.registrar(1L, reserva);
+            producto.setStockDisponible(3);
+            productoRepository.save(producto);
+
+            // Ejecucion
+            stockLedger.escribirPendientes();
+
+            // Verificacion
+            assertEquals(0, productoRepository.findById(producto.getId()).orElseThrow().getStockDisponible());
+        }
+    }
+
+    abstract class EscenarioConcurrente {
+
+        @Autowired
+        private PedidoService pedidoService;
+
+        @Autowired
+        private PedidoRepository pedidoRepository;
+
+        @Autowired
+        private ProductoRepository productoRepository;
+
+        @Autowired
+        private UsuarioRepository usuarioRepository;
+
+        @Test
+        @DisplayName("Pedidos concurrentes sobre el mismo producto no deberian sobrevender")
+        void testCreatePedidoConcurrenteSinSobreventa() throws Exception {
+            // Preparacion
+            UsuarioModel usuario = usuarioRepository.save(UsuarioModel.builder()
+                    .nombre("Usuario Concurrente")
+                    .email("concurrente@mail.com")
+                    .password("psswrd")
+                    .habilitado(true)
+                    .build());
+            ProductoModel producto = productoRepository.save(ProductoModel.builder()
+                    .nombre("Producto Concurrente")
+                    .descripcion("Producto con mucha demanda")
+                    .precio(10.0)
+                    .stockDisponible(STOCK_INICIAL)
+                    .build());
+            PedidoRequest pedidoRequest = PedidoRequest.builder()
+                    .username(usuario.getEmail())
+                    .detalles(List.of(DetalleRequest.builder()
+                            .productoId(producto.getId())
+                            .cantidad(1)
+                            .build()))
+                    .build();
+
+            AtomicInteger exitosos = new AtomicInteger();
+            AtomicInteger sinStock = new AtomicInteger();
+            CountDownLatch largada = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+
+            // Ejecucion
+            List<Future<?>> resultados = new ArrayList<>();
+            for (int i = 0; i < HILOS; i++) {
+                resultados.add(executor.submit(() -> {
+                    largada.await();
+                    try {
+                        pedidoService.createPedido(pedidoRequest);
+                        exitosos.incrementAndGet();
+                    } catch (StockInsuficienteException e) {
+                        sinStock.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> resultado : resultados) {
+                resultado.get();
+            }
+            executor.shutdown();
+            antesDeVerificar();
+
+            // Verificacion
+            assertEquals(STOCK_INICIAL, exitosos.get());
+            assertEquals(HILOS - STOCK_INICIAL, sinStock.get());
+            assertEquals(0, productoRepository.findById(producto.getId()).orElseThrow().getStockDisponible());
+            assertEquals(STOCK_INICIAL, pedidoRepository.count());
+        }
+
+        void antesDeVerificar() {
+        }
+    }
+}
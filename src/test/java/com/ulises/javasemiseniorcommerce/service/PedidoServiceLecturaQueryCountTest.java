@@ -0,0 +1,197 @@
+package com.ulises.javasemiseniorcommerce.service;
+
+import com.ulises.javasemiseniorcommerce.cache.TotalesAproximados;
+import com.ulises.javasemiseniorcommerce.dto.ConteoTotal;
+import com.ulises.javasemiseniorcommerce.dto.DetallePedidoResponse;
+import com.ulises.javasemiseniorcommerce.dto.PaginaCursor;
+import com.ulises.javasemiseniorcommerce.dto.PedidoDto;
+import com.ulises.javasemiseniorcommerce.dto.ProductoCantidad;
+import com.ulises.javasemiseniorcommerce.exception.UserNotFoundException;
+import com.ulises.javasemiseniorcommerce.model.DetalleModel;
+import com.ulises.javasemiseniorcommerce.model.PedidoModel;
+import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+import com.ulises.javasemiseniorcommerce.model.UsuarioModel;
+import com.ulises.javasemiseniorcommerce.repository.PedidoRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import com.ulises.javasemiseniorcommerce.repository.UsuarioRepository;
+import com.ulises.javasemiseniorcommerce.stock.StockReservationStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Verifica contra una base H2 que leer un pedido (el pedido, sus productos o su detalle) es una sola consulta sin
+ * importar la cantidad de lineas, y una pagina del historial de un usuario son dos (mas el COUNT del total) sin
+ * importar la cantidad de pedidos: el usuario, los detalles y sus productos se traen con los pedidos en lugar de
+ * cargarse de a uno al recorrerlos.
+ *
+ * @author ulide
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class PedidoServiceLecturaQueryCountTest {
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private PedidoService pedidoService;
+    private TransactionTemplate transactionTemplate;
+    private Statistics estadisticas;
+
+    @BeforeEach
+    void setUp() {
+        pedidoService = new PedidoService(pedidoRepository, usuarioRepository, mock(StockReservationStrategy.class),
+                new TotalesAproximados(productoRepository, pedidoRepository, 100, Duration.ofSeconds(30),
+                        new SimpleMeterRegistry()), evento -> { }, transactionManager);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pedidoRepository.deleteAll();
+        productoRepository.deleteAll();
+        usuarioRepository.deleteAll();
+    }
+
+    @ParameterizedTest(name = "Pedido con {0} lineas")
+    @ValueSource(ints = {1, 50})
+    @DisplayName("Leer un pedido deberia ser una sola consulta sin importar la cantidad de lineas")
+    void testLecturasDePedidoUnaSolaConsulta(int lineas) {
+        Long id = crearPedidos(crearUsuario("test@mail.com"), crearProductos(lineas), 1).get(0);
+
+        PedidoDto pedido = contarConsultas(() -> pedidoService.getPedidoById(id));
+        assertEquals(lineas, pedido.getDetalles().size());
+        assertEquals("test@mail.com", pedido.getUsername());
+
+        List<ProductoCantidad> productos = contarConsultas(() -> pedidoService.listProductos(id));
+        assertEquals(lineas, productos.size());
+        assertEquals("Producto 1", productos.get(0).getNombreProducto());
+
+        DetallePedidoResponse detalle = contarConsultas(() -> pedidoService.getDetalleDePedido(id));
+        assertEquals(lineas, detalle.getProductos().size());
+        assertEquals(productos, detalle.getProductos());
+        assertEquals("test@mail.com", detalle.getUsername());
+        // La fecha es la de creacion del pedido, no la de la consulta
+        assertEquals(pedido.getFechaDeCreacion(), detalle.getFechaDeCreacion());
+    }
+
+    @Test
+    @DisplayName("Una pagina del historial de un usuario con 1000 pedidos deberia cargarse con dos consultas")
+    void testHistorialDePedidosConsultasConstantes() {
+        List<ProductoModel> productos = crearProductos(3);
+        List<Long> ids = crearPedidos(crearUsuario("test@mail.com"), productos, 1000);
+        crearPedidos(crearUsuario("otro@mail.com"), productos, 5);
+
+        // IDs de la pagina, COUNT del total y pedidos con sus detalles
+        Page<PedidoDto> pagina = (Page<PedidoDto>) contarConsultas(3,
+                () -> pedidoService.getPedidosByMail("test@mail.com", 10, 20, ConteoTotal.EXACTO));
+        assertEquals(1000, pagina.getTotalElements());
+        assertEquals(ids.subList(200, 220), pagina.getContent().stream().map(PedidoDto::getId).toList());
+        assertTrue(pagina.getContent().stream().allMatch(pedido -> pedido.getDetalles().size() == 3
+                && pedido.getUsername().equals("test@mail.com")));
+
+        Slice<PedidoDto> sinTotal = contarConsultas(2,
+                () -> pedidoService.getPedidosByMail("test@mail.com", 49, 20, ConteoTotal.NINGUNO));
+        assertEquals(ids.subList(980, 1000), sinTotal.getContent().stream().map(PedidoDto::getId).toList());
+        assertFalse(sinTotal.hasNext());
+
+        PaginaCursor<PedidoDto> primera = contarConsultas(2,
+                () -> pedidoService.getPedidosByMailConCursor("test@mail.com", null, 20));
+        PaginaCursor<PedidoDto> segunda = contarConsultas(2,
+                () -> pedidoService.getPedidosByMailConCursor("test@mail.com", primera.getSiguienteCursor(), 20));
+        assertEquals(ids.subList(20, 40), segunda.getContenido().stream().map(PedidoDto::getId).toList());
+
+        // Solo una pagina vacia consulta si el usuario existe
+        assertThrows(UserNotFoundException.class, () -> contarConsultas(2,
+                () -> pedidoService.getPedidosByMail("nadie@mail.com", 0, 20, ConteoTotal.NINGUNO)));
+    }
+
+    // Ejecuta la lectura en una transaccion, como lo hace el servicio, y verifica que hizo una sola consulta
+    private <T> T contarConsultas(Supplier<T> lectura) {
+        return contarConsultas(1, lectura);
+    }
+
+    private <T> T contarConsultas(long consultas, Supplier<T> lectura) {
+        estadisticas.clear();
+        try {
+            return transactionTemplate.execute(status -> lectura.get());
+        } finally {
+            assertEquals(consultas, estadisticas.getPrepareStatementCount());
+        }
+    }
+
+    private UsuarioModel crearUsuario(String email) {
+        return usuarioRepository.save(UsuarioModel.builder()
+                .nombre("Usuario Test")
+                .email(email)
+                .password("psswrd")
+                .habilitado(true)
+                .build());
+    }
+
+    private List<ProductoModel> crearProductos(int cantidad) {
+        return productoRepository.saveAll(IntStream.rangeClosed(1, cantidad)
+                .mapToObj(i -> ProductoModel.builder()
+                        .nombre("Producto " + i)
+                        .descripcion("Descripcion del producto " + i)
+                        .precio(100.0 * i)
+                        .stockDisponible(10)
+                        .build())
+                .toList());
+    }
+
+    // Crea los pedidos del usuario, cada uno con una linea por producto, y devuelve sus IDs en orden
+    private List<Long> crearPedidos(UsuarioModel usuario, List<ProductoModel> productos, int cantidad) {
+        List<PedidoModel> pedidos = IntStream.range(0, cantidad)
+                .mapToObj(i -> {
+                    PedidoModel pedido = PedidoModel.builder()
+                            .usuario(usuario)
+                            .precio(0.0)
+                            .fechaDeCreacion(LocalDateTime.now())
+                            .build();
+                    pedido.setDetalles(productos.stream()
+                            .map(producto -> DetalleModel.builder().producto(producto).cantidad(1).pedido(pedido).build())
+                            .toList());
+                    return pedido;
+                })
+                .toList();
+        return pedidoRepository.saveAll(pedidos).stream().map(PedidoModel::getId).toList();
+    }
+}
@@ -0,0 +1,182 @@
+package com.ulises.javasemiseniorcommerce.service;
+
+import com.ulises.javasemiseniorcommerce.cache.TotalesAproximados;
+import com.ulises.javasemiseniorcommerce.dto.DetalleRequest;
+import com.ulises.javasemiseniorcommerce.dto.DisponibilidadLinea;
+import com.ulises.javasemiseniorcommerce.dto.DisponibilidadResponse;
+import com.ulises.javasemiseniorcommerce.dto.PedidoDto;
+import com.ulises.javasemiseniorcommerce.dto.PedidoRequest;
+import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+import com.ulises.javasemiseniorcommerce.model.UsuarioModel;
+import com.ulises.javasemiseniorcommerce.repository.PedidoRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import com.ulises.javasemiseniorcommerce.repository.UsuarioRepository;
+import com.ulises.javasemiseniorcommerce.stock.ConditionalStockReservation;
+import com.ulises.javasemiseniorcommerce.stock.PessimisticStockReservation;
+import com.ulises.javasemiseniorcommerce.stock.StockReservationStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifica contra una base H2 que crear un pedido ejecuta las mismas sentencias sin importar la cantidad de lineas:
+ * los productos se leen con una sola consulta, el pedido se guarda una vez y Hibernate inserta los detalles (y con
+ * bloqueo pesimista actualiza el stock) en lote al hacer flush. La estrategia condicional descuenta el stock con un
+ * UPDATE por producto distinto, porque la cantidad de filas afectadas de cada uno indica si alcanzo el stock.
+ * <p>
+ * Cada test usa un contexto nuevo y empieza con un pedido sin medir, que toma el primer bloque de IDs de los detalles:
+ * se reservan de a 100, asi ningun pedido medido le pide otro bloque a la secuencia.
+ *
+ * @author ulide
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "spring.jpa.properties.hibernate.order_updates=true"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class PedidoServiceQueryCountTest {
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private TransactionTemplate transactionTemplate;
+    private Statistics estadisticas;
+    private List<ProductoModel> productos;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        usuarioRepository.save(UsuarioModel.builder()
+                .nombre("Usuario Test")
+                .email("test@mail.com")
+                .password("psswrd")
+                .habilitado(true)
+                .build());
+        productos = productoRepository.saveAll(IntStream.rangeClosed(1, 50)
+                .mapToObj(i -> ProductoModel.builder()
+                        .nombre("Producto " + i)
+                        .descripcion("Descripcion del producto " + i)
+                        .precio(100.0 * i)
+                        .stockDisponible(1000)
+                        .build())
+                .toList());
+    }
+
+    @AfterEach
+    void tearDown() {
+        pedidoRepository.deleteAll();
+        productoRepository.deleteAll();
+        usuarioRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Con bloqueo pesimista un pedido de 50 lineas deberia ejecutar las mismas sentencias que uno de 1")
+    void testCreatePedidoPesimistaSentenciasConstantes() {
+        PedidoService pedidoService = conEstrategia(new PessimisticStockReservation(productoRepository));
+        crear(pedidoService, pedido(productos.subList(0, 2)));
+
+        long unaLinea = contarSentencias(() -> crear(pedidoService, pedido(productos.subList(0, 1))));
+        long cincuentaLineas = contarSentencias(() -> crear(pedidoService, pedido(productos)));
+
+        assertEquals(unaLinea, cincuentaLineas);
+        assertEquals(1000 - 3 * 2, productoRepository.findById(productos.get(0).getId()).orElseThrow().getStockDisponible());
+        assertEquals(1000 - 2, productoRepository.findById(productos.get(49).getId()).orElseThrow().getStockDisponible());
+    }
+
+    @Test
+    @DisplayName("Con la estrategia condicional solo deberia sumarse un UPDATE por producto distinto")
+    void testCreatePedidoCondicionalUnUpdatePorProducto() {
+        PedidoService pedidoService = conEstrategia(new ConditionalStockReservation(productoRepository));
+        crear(pedidoService, pedido(productos.subList(0, 2)));
+
+        long unaLinea = contarSentencias(() -> crear(pedidoService, pedido(productos.subList(0, 1))));
+        // Las lineas repetidas de un producto se agrupan en un solo descuento
+        long lineasRepetidas = contarSentencias(() ->
+                crear(pedidoService, pedido(Collections.nCopies(40, productos.get(0)))));
+        long cincuentaProductos = contarSentencias(() -> crear(pedidoService, pedido(productos)));
+
+        assertEquals(unaLinea, lineasRepetidas);
+        assertEquals(unaLinea + 49, cincuentaProductos);
+        assertEquals(1000 - 43 * 2, productoRepository.findById(productos.get(0).getId()).orElseThrow().getStockDisponible());
+    }
+
+    @Test
+    @DisplayName("La disponibilidad deberia consultarse con una sola lectura, sin bloquear ni escribir")
+    void testVerificarDisponibilidadUnaSolaConsulta() {
+        PedidoService pedidoService = conEstrategia(new PessimisticStockReservation(productoRepository));
+        PedidoRequest pedidoRequest = pedido(productos);
+        pedidoRequest.getDetalles().get(49).setCantidad(1001);
+
+        estadisticas.clear();
+        DisponibilidadResponse disponibilidad = pedidoService.verificarDisponibilidad(pedidoRequest);
+
+        assertEquals(1, estadisticas.getPrepareStatementCount());
+        assertFalse(disponibilidad.isDisponible());
+        assertEquals(49, disponibilidad.getLineas().stream().filter(DisponibilidadLinea::isDisponible).count());
+        assertFalse(disponibilidad.getLineas().get(49).isDisponible());
+    }
+
+    // Crea el pedido en una transaccion, como lo hace el servicio
+    private PedidoDto crear(PedidoService pedidoService, PedidoRequest pedidoRequest) {
+        return transactionTemplate.execute(status -> pedidoService.createPedido(pedidoRequest));
+    }
+
+    private long contarSentencias(Runnable operacion) {
+        estadisticas.clear();
+        operacion.run();
+        return estadisticas.getPrepareStatementCount();
+    }
+
+    // Un pedido con una linea de 2 unidades por cada producto
+    private static PedidoRequest pedido(List<ProductoModel> productos) {
+        return PedidoRequest.builder()
+                .username("test@mail.com")
+                .detalles(productos.stream()
+                        .map(producto -> DetalleRequest.builder()
+                                .productoId(producto.getId())
+                                .cantidad(2)
+                                .build())
+                        .toList())
+                .build();
+    }
+
+    private PedidoService conEstrategia(StockReservationStrategy estrategia) {
+        return new PedidoService(pedidoRepository, usuarioRepository, estrategia,
+                new TotalesAproximados(productoRepository, pedidoRepository, 100, Duration.ofSeconds(30),
+                        new SimpleMeterRegistry()), evento -> { }, transactionManager);
+    }
+}
@@ -1,7 +1,9 @@
 package com.ulises.javasemiseniorcommerce.service;
 
+import com.ulises.javasemiseniorcommerce.dto.PaginaCursor;
 import com.ulises.javasemiseniorcommerce.dto.PedidoDto;
 import com.ulises.javasemiseniorcommerce.dto.PedidoRequest;
+import com.ulises.javasemiseniorcommerce.event.PedidoEliminadoEvent;
 import com.ulises.javasemiseniorcommerce.exception.PedidoSinProductosException;
 import com.ulises.javasemiseniorcommerce.exception.StockInsuficienteException;
 import com.ulises.javasemiseniorcommerce.exception.PedidoNotFoundException;
@@ -12,8 +14,8 @@ import com.ulises.javasemiseniorcommerce.model.PedidoModel;
 import com.ulises.javasemiseniorcommerce.model.ProductoModel;
 import com.ulises.javasemiseniorcommerce.model.UsuarioModel;
 import com.ulises.javasemiseniorcommerce.repository.PedidoRepository;
-import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
 import com.ulises.javasemiseniorcommerce.repository.UsuarioRepository;
+import com.ulises.javasemiseniorcommerce.stock.StockReservationStrategy;
 import com.ulises.javasemiseniorcommerce.testUtils.TestDataFactory;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -22,9 +24,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -46,7 +54,13 @@ public class PedidoServiceTest {
     private UsuarioRepository usuarioRepository;
 
     @Mock
-    private ProductoRepository productoRepository;
+    private StockReservationStrategy stockReservationStrategy;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
     @Nested
     @DisplayName("PedidoService Get Tests")
@@ -63,7 +77,7 @@ public class PedidoServiceTest {
                     .build();
             PedidoModel pedido = TestDataFactory.crearPedido(usuario, List.of(detalle));
 
-            when(pedidoRepository.findById(pedido.getId()))
+            when(pedidoRepository.findConDetallesById(pedido.getId()))
                     .thenReturn(Optional.of(pedido));
 
             // Ejecucion
@@ -73,7 +87,7 @@ public class PedidoServiceTest {
             assertNotNull(resultado);
             assertEquals(pedido.getId(), resultado.getId());
             assertEquals(usuario.getId(), resultado.getUsuarioId());
-            verify(pedidoRepository, times(1)).findById(pedido.getId());
+            verify(pedidoRepository, times(1)).findConDetallesById(pedido.getId());
         }
 
         @Test
@@ -86,14 +100,41 @@ public class PedidoServiceTest {
                     .cantidad(2)
                     .build();
             PedidoModel pedido = TestDataFactory.crearPedido(usuario, List.of(detalle));
-            when(pedidoRepository.findById(pedido.getId()))
+            when(pedidoRepository.findConDetallesById(pedido.getId()))
                     .thenReturn(Optional.empty());
 
             PedidoNotFoundException exception = assertThrows(PedidoNotFoundException.class,
                     () -> pedidoService.getPedidoById(pedido.getId()));
 
             assertEquals("Pedido no encontrado con ID: " + pedido.getId(), exception.getMessage());
-            verify(pedidoRepository, times(1)).findById(pedido.getId());
+            verify(pedidoRepository, times(1)).findConDetallesById(pedido.getId());
+        }
+
+        @Test
+        @DisplayName("Deberia obtener los pedidos de un usuario con cursor, siguiendo despues del ultimo pedido")
+        void testGetPedidosByMailConCursor() {
+            UsuarioModel usuario = TestDataFactory.crearUsuarioModel();
+            PedidoModel primero = TestDataFactory.crearPedido();
+            PedidoModel segundo = TestDataFactory.crearPedido();
+            segundo.setId(2L);
+            PedidoModel tercero = TestDataFactory.crearPedido();
+            tercero.setId(3L);
+            when(pedidoRepository.findIdsByUsuarioEmailDesde(usuario.getEmail(), 0L, PageRequest.of(0, 2)))
+                    .thenReturn(new SliceImpl<>(List.of(1L, 2L), PageRequest.of(0, 2), true));
+            when(pedidoRepository.findIdsByUsuarioEmailDesde(usuario.getEmail(), 2L, PageRequest.of(0, 2)))
+                    .thenReturn(new SliceImpl<>(List.of(3L), PageRequest.of(0, 2), false));
+            when(pedidoRepository.findConDetallesByIdIn(List.of(1L, 2L))).thenReturn(List.of(segundo, primero));
+            when(pedidoRepository.findConDetallesByIdIn(List.of(3L))).thenReturn(List.of(tercero));
+
+            PaginaCursor<PedidoDto> primeraPagina = pedidoService.getPedidosByMailConCursor(usuario.getEmail(), null, 2);
+            PaginaCursor<PedidoDto> segundaPagina = pedidoService.getPedidosByMailConCursor(usuario.getEmail(),
+                    primeraPagina.getSiguienteCursor(), 2);
+
+            assertEquals(List.of(1L, 2L), primeraPagina.getContenido().stream().map(PedidoDto::getId).toList());
+            assertTrue(primeraPagina.isHaySiguiente());
+            assertEquals(List.of(3L), segundaPagina.getContenido().stream().map(PedidoDto::getId).toList());
+            assertFalse(segundaPagina.isHaySiguiente());
+            assertNull(segundaPagina.getSiguienteCursor());
         }
     }
 
@@ -115,8 +156,8 @@ public class PedidoServiceTest {
 
             when(usuarioRepository.findByEmail(usuario.getEmail()))
                     .thenReturn(Optional.of(usuario));
-            when(productoRepository.findById(producto.getId()))
-                    .thenReturn(Optional.of(producto));
+            when(stockReservationStrategy.reservar(new TreeMap<>(Map.of(producto.getId(), 2))))
+                    .thenReturn(Map.of(producto.getId(), producto));
             when(pedidoRepository.save(any()))
                     .thenReturn(pedido);
 
@@ -127,8 +168,8 @@ public class PedidoServiceTest {
             assertNotNull(resultado, "El resultado no debe ser nulo.");
             assertEquals(usuario.getId(), resultado.getUsuarioId());
             assertEquals(pedido.getPrecio(), resultado.getPrecio());
-            verify(pedidoRepository, times(2)).save(any(PedidoModel.class));
-            verify(productoRepository, times(1)).save(producto);
+            verify(pedidoRepository, times(1)).save(any(PedidoModel.class));
+            verify(stockReservationStrategy, times(1)).reservar(any());
         }
 
         @Test
@@ -183,8 +224,8 @@ public class PedidoServiceTest {
             when(usuarioRepository.findByEmail(usuario.getEmail()))
                     .thenReturn(Optional.of(usuario));
 
-            when(productoRepository.findById(producto.getId()))
-                    .thenReturn(Optional.empty());
+            when(stockReservationStrategy.reservar(any()))
+                    .thenThrow(new ProductoNotFoundException("No se ha encontrado el producto"));
 
             // Ejecucion
             ProductoNotFoundException exception = assertThrows(ProductoNotFoundException.class,
@@ -192,7 +233,8 @@ public class PedidoServiceTest {
 
             // Verificacion
             assertEquals("No se ha encontrado el producto", exception.getMessage());
-            verify(productoRepository, times(1)).findById(producto.getId());
+            verify(stockReservationStrategy, times(1)).reservar(new TreeMap<>(Map.of(producto.getId(), 2)));
+            verify(pedidoRepository, never()).save(any(PedidoModel.class));
         }
 
         @Test
@@ -212,13 +254,15 @@ public class PedidoServiceTest {
             when(usuarioRepository.findByEmail(usuario.getEmail()))
                     .thenReturn(Optional.of(usuario));
 
-            when(productoRepository.findById(productoStockInsuficiente.getId()))
-                    .thenReturn(Optional.of(productoStockInsuficiente));
+            when(stockReservationStrategy.reservar(any()))
+                    .thenThrow(new StockInsuficienteException("Stock insuficiente para el producto: "
+                            + productoStockInsuficiente.getNombre()));
 
             StockInsuficienteException exception = assertThrows(StockInsuficienteException.class,
                     () -> pedidoService.createPedido(pedidoRequest));
 
             assertEquals("Stock insuficiente para el producto: " + productoStockInsuficiente.getNombre(), exception.getMessage());
+            verify(pedidoRepository, never()).save(any(PedidoModel.class));
         }
     }
 
@@ -239,6 +283,7 @@ public class PedidoServiceTest {
             // Verificacion
             verify(pedidoRepository, times(1)).findById(pedido.getId());
             verify(pedidoRepository, times(1)).delete(pedido);
+            verify(eventPublisher).publishEvent(any(PedidoEliminadoEvent.class));
         }
     }
 }
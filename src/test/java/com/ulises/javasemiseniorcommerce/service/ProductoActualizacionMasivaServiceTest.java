@@ -0,0 +1,135 @@
+package com.ulises.javasemiseniorcommerce.service;
+
+import com.ulises.javasemiseniorcommerce.dto.ActualizacionProducto;
+import com.ulises.javasemiseniorcommerce.dto.ResultadoActualizacionMasiva;
+import com.ulises.javasemiseniorcommerce.event.ProductoEvent;
+import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+import com.ulises.javasemiseniorcommerce.repository.ProductoBatchRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Aplica actualizaciones masivas contra una base H2, en lotes chicos para que haya varios lotes por pedido.
+ *
+ * @author ulide
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ProductoActualizacionMasivaServiceTest {
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private List<ProductoEvent> eventos;
+    private ProductoActualizacionMasivaService service;
+
+    @BeforeEach
+    void setUp() {
+        productoRepository.deleteAll();
+        eventos = new ArrayList<>();
+        service = new ProductoActualizacionMasivaService(
+                new ProductoBatchRepository(new JdbcTemplate(dataSource), entityManagerFactory), productoRepository,
+                transactionManager, evento -> eventos.add((ProductoEvent) evento), 2, 100);
+    }
+
+    @Test
+    @DisplayName("Deberia actualizar solo los campos indicados, incrementar la version e informar los IDs inexistentes")
+    void testActualizar() {
+        ProductoModel camisa = guardar("Camisa de lino", 100.0, 10);
+        ProductoModel pantalon = guardar("Pantalon cargo", 200.0, 5);
+        ProductoModel campera = guardar("Campera de jean", 300.0, 7);
+
+        ResultadoActualizacionMasiva resultado = service.actualizar(List.of(
+                cambio(camisa.getId(), 150.0, null),
+                cambio(pantalon.getId(), null, 3),
+                cambio(999L, 10.0, 1),
+                cambio(campera.getId(), 350.0, 20)));
+
+        assertEquals(3, resultado.getActualizados());
+        assertEquals(List.of(999L), resultado.getNoEncontrados());
+
+        ProductoModel camisaActualizada = productoRepository.findById(camisa.getId()).orElseThrow();
+        assertEquals(150.0, camisaActualizada.getPrecio());
+        assertEquals(10, camisaActualizada.getStockDisponible());
+        assertEquals(camisa.getVersion() + 1, camisaActualizada.getVersion());
+        ProductoModel pantalonActualizado = productoRepository.findById(pantalon.getId()).orElseThrow();
+        assertEquals(200.0, pantalonActualizado.getPrecio());
+        assertEquals(3, pantalonActualizado.getStockDisponible());
+        ProductoModel camperaActualizada = productoRepository.findById(campera.getId()).orElseThrow();
+        assertEquals(350.0, camperaActualizada.getPrecio());
+        assertEquals(20, camperaActualizada.getStockDisponible());
+
+        // Los cambios de precio llevan los datos que usan los indices; los de stock solo el ID
+        assertEquals(List.of(ProductoEvent.Tipo.ACTUALIZADO, ProductoEvent.Tipo.ACTUALIZADO, ProductoEvent.Tipo.STOCK),
+                eventos.stream().map(ProductoEvent::getTipo).sorted().toList());
+        ProductoEvent eventoCamisa = eventos.stream()
+                .filter(evento -> evento.getProductoId().equals(camisa.getId()))
+                .findFirst().orElseThrow();
+        assertEquals(ProductoEvent.Tipo.ACTUALIZADO, eventoCamisa.getTipo());
+        assertEquals("Camisa de lino", eventoCamisa.getProducto().getNombre());
+        assertEquals(150.0, eventoCamisa.getProducto().getPrecio());
+    }
+
+    @Test
+    @DisplayName("Deberia rechazar un cambio sin precio ni stock sin actualizar nada")
+    void testCambioVacio() {
+        ProductoModel camisa = guardar("Camisa de lino", 100.0, 10);
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> service.actualizar(List.of(cambio(camisa.getId(), 150.0, null), cambio(camisa.getId(), null, null))));
+
+        assertTrue(exception.getMessage().endsWith("tiene que indicar el precio o el stock."));
+        assertEquals(100.0, productoRepository.findById(camisa.getId()).orElseThrow().getPrecio());
+        assertTrue(eventos.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Deberia rechazar un stock en cero igual que al actualizar un producto de a uno")
+    void testStockEnCero() {
+        ProductoModel camisa = guardar("Camisa de lino", 100.0, 10);
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> service.actualizar(List.of(cambio(camisa.getId(), null, 0))));
+
+        assertEquals("El stock debe ser mayor que cero.", exception.getMessage());
+        assertEquals(10, productoRepository.findById(camisa.getId()).orElseThrow().getStockDisponible());
+        assertTrue(eventos.isEmpty());
+    }
+
+    private ProductoModel guardar(String nombre, double precio, int stock) {
+        return productoRepository.save(ProductoModel.builder()
+                .nombre(nombre)
+                .descripcion("Descripcion de " + nombre)
+                .precio(precio)
+                .stockDisponible(stock)
+                .build());
+    }
+
+    private static ActualizacionProducto cambio(Long id, Double precio, Integer stock) {
+        return ActualizacionProducto.builder().id(id).precio(precio).stockDisponible(stock).build();
+    }
+}
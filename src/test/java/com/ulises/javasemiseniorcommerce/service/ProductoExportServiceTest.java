@@ -0,0 +1,133 @@
+package com.ulises.javasemiseniorcommerce.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ulises.javasemiseniorcommerce.importacion.FormatoImportacion;
+import com.ulises.javasemiseniorcommerce.importacion.LectorProductos;
+import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+import com.ulises.javasemiseniorcommerce.repository.ProductoBatchRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exporta el catalogo de una base H2 con un fetch size chico, para que el cursor haga varios viajes.
+ *
+ * @author ulide
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ProductoExportServiceTest {
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private SimpleMeterRegistry registry;
+    private ProductoExportService service;
+    private List<ProductoModel> productos;
+
+    @BeforeEach
+    void setUp() {
+        productoRepository.deleteAll();
+        registry = new SimpleMeterRegistry();
+        service = new ProductoExportService(
+                new ProductoBatchRepository(new JdbcTemplate(dataSource), entityManagerFactory), transactionManager,
+                objectMapper, registry, 2);
+        productos = productoRepository.saveAll(List.of(
+                producto("Camisa de lino", "Camisa blanca, de manga larga", 100.5, 10),
+                producto("Pantalon \"cargo\"", "Pantalon con\nbolsillos laterales", 12000000.0, 5),
+                producto("Campera de jean", "Campera azul oscuro", 300.0, 7)));
+    }
+
+    @Test
+    @DisplayName("Deberia exportar un CSV que se pueda volver a importar")
+    void testExportarCsv() throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        service.exportar(salida, FormatoImportacion.CSV, false);
+
+        String csv = salida.toString(StandardCharsets.UTF_8);
+        assertTrue(csv.startsWith("id,nombre,descripcion,precio,stockDisponible\r\n" + productos.get(0).getId() +
+                ",Camisa de lino,\"Camisa blanca, de manga larga\",100.5,10\r\n"));
+        assertTrue(csv.contains(",12000000,"));
+
+        List<LectorProductos.Fila> filas = new ArrayList<>();
+        try (LectorProductos lector = LectorProductos.de(FormatoImportacion.CSV, new StringReader(csv), objectMapper)) {
+            LectorProductos.Fila fila;
+            while ((fila = lector.siguiente()) != null) {
+                filas.add(fila);
+            }
+        }
+        assertEquals(productos.stream().map(ProductoModel::getNombre).toList(),
+                filas.stream().map(fila -> fila.producto().getNombre()).toList());
+        assertEquals("Pantalon con\nbolsillos laterales", filas.get(1).producto().getDescripcion());
+        assertEquals(12000000.0, filas.get(1).producto().getPrecio());
+        assertEquals(3.0, registry.get("productos.exportacion.filas").counter().count());
+    }
+
+    @Test
+    @DisplayName("Deberia exportar un NDJSON comprimido con un producto por linea, ordenado por ID")
+    void testExportarNdjsonGzip() throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        service.exportar(salida, FormatoImportacion.NDJSON, true);
+
+        String ndjson;
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(salida.toByteArray()))) {
+            ndjson = new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        List<String> lineas = ndjson.lines().toList();
+        assertEquals(3, lineas.size());
+        assertTrue(ndjson.endsWith("\n"));
+
+        List<JsonNode> exportados = new ArrayList<>();
+        for (String linea : lineas) {
+            exportados.add(objectMapper.readTree(linea));
+        }
+        assertEquals(productos.stream().map(ProductoModel::getId).toList(),
+                exportados.stream().map(producto -> producto.get("id").asLong()).toList());
+        assertEquals("Pantalon \"cargo\"", exportados.get(1).get("nombre").asText());
+        assertEquals(7, exportados.get(2).get("stockDisponible").asInt());
+    }
+
+    private static ProductoModel producto(String nombre, String descripcion, double precio, int stock) {
+        return ProductoModel.builder()
+                .nombre(nombre)
+                .descripcion(descripcion)
+                .precio(precio)
+                .stockDisponible(stock)
+                .build();
+    }
+}
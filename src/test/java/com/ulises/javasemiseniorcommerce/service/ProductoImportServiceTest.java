@@ -0,0 +1,181 @@
+package com.ulises.javasemiseniorcommerce.service;
+
+import com.ulises.javasemiseniorcommerce.dto.ErrorImportacion;
+import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+import com.ulises.javasemiseniorcommerce.dto.ResultadoImportacion;
+import com.ulises.javasemiseniorcommerce.event.ProductosCreadosEvent;
+import com.ulises.javasemiseniorcommerce.importacion.FormatoImportacion;
+import com.ulises.javasemiseniorcommerce.importacion.LectorProductos;
+import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+import com.ulises.javasemiseniorcommerce.repository.ProductoBatchRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Importa archivos CSV y NDJSON contra una base H2, en lotes chicos para que haya varios lotes por archivo.
+ *
+ * @author ulide
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ProductoImportServiceTest {
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private SimpleMeterRegistry registry;
+    private List<Object> eventos;
+
+    @BeforeEach
+    void setUp() {
+        productoRepository.deleteAll();
+        registry = new SimpleMeterRegistry();
+        eventos = new ArrayList<>();
+    }
+
+    @Test
+    @DisplayName("Deberia importar las filas validas de un CSV en lotes e informar las invalidas")
+    void testImportarCsv() {
+        String csv = """
+                precio,nombre,descripcion,stockDisponible
+                100.5,Camisa de lino,"Camisa blanca, de manga larga",10
+                200,"Pantalon \"\"cargo\"\"","Pantalon con
+                bolsillos laterales",5
+                -3,Producto negativo,Descripcion valida,5
+                abc,Producto sin precio,Descripcion valida,5
+                300,Campera de jean,Campera azul oscuro,7,extra
+
+                400,Zapatillas urbanas,Zapatillas de lona,3
+                500,Mochila de cuero,Mochila marron grande,2
+                """;
+
+        ResultadoImportacion resultado = crearServicio(2, 100).importar(archivo(csv), FormatoImportacion.CSV);
+
+        assertEquals(7, resultado.getFilasLeidas());
+        assertEquals(4, resultado.getImportadas());
+        assertEquals(3, resultado.getRechazadas());
+        assertEquals(List.of(3L, 4L, 5L), resultado.getErrores().stream().map(ErrorImportacion::getFila).toList());
+        assertEquals("El precio tiene que ser mayor que cero.", resultado.getErrores().get(0).getMensaje());
+        assertEquals(0, resultado.getErroresOmitidos());
+
+        List<ProductoModel> productos = productoRepository.findAll().stream()
+                .sorted(Comparator.comparing(ProductoModel::getId))
+                .toList();
+        assertEquals(List.of("Camisa de lino", "Pantalon \"cargo\"", "Zapatillas urbanas", "Mochila de cuero"),
+                productos.stream().map(ProductoModel::getNombre).toList());
+        assertEquals("Camisa blanca, de manga larga", productos.get(0).getDescripcion());
+        assertEquals("Pantalon con\nbolsillos laterales", productos.get(1).getDescripcion());
+        assertEquals(0L, productos.get(0).getVersion());
+
+        // Un evento de alta por lote, con los IDs generados, para los indices y caches
+        assertEquals(2, eventos.size());
+        assertEquals(productos.stream().map(ProductoModel::getId).toList(), eventos.stream()
+                .flatMap(evento -> ((ProductosCreadosEvent) evento).getProductos().stream())
+                .map(ProductoDto::getId)
+                .toList());
+        assertEquals(2, registry.get("productos.importacion.lote").timer().count());
+        assertEquals(3.0, registry.get("productos.importacion.filas").tag("resultado", "rechazada").counter().count());
+    }
+
+    @Test
+    @DisplayName("Deberia importar un NDJSON y limitar la cantidad de errores detallados")
+    void testImportarNdjson() {
+        String ndjson = """
+                {"nombre":"Camisa de lino","descripcion":"Camisa blanca de verano","precio":100.0,"stockDisponible":10}
+                {"nombre":"Corto","descripcion":"Descripcion valida","precio":100.0,"stockDisponible":10}
+                {"nombre":"Pantalon de lana"
+                {"nombre":"Campera de jean","descripcion":"Campera azul oscuro","precio":300.0,"stockDisponible":7}
+                """;
+
+        ResultadoImportacion resultado = crearServicio(10, 1).importar(archivo(ndjson), FormatoImportacion.NDJSON);
+
+        assertEquals(4, resultado.getFilasLeidas());
+        assertEquals(2, resultado.getImportadas());
+        assertEquals(2, resultado.getRechazadas());
+        assertEquals(1, resultado.getErrores().size());
+        assertEquals(2, resultado.getErrores().get(0).getFila());
+        assertEquals(1, resultado.getErroresOmitidos());
+        assertEquals(2, productoRepository.count());
+    }
+
+    @Test
+    @DisplayName("Una fila demasiado larga deberia informarse como rechazada y seguir con las siguientes")
+    void testFilaDemasiadoLarga() {
+        String larga = "x".repeat(LectorProductos.MAX_CARACTERES_REGISTRO);
+        String csv = "nombre,descripcion,precio,stockDisponible\n"
+                + "Camisa de lino,Camisa blanca de verano,100,10\n"
+                + "Sin cerrar,\"" + larga + ",200,5\n"
+                + "Campera de jean,Campera azul oscuro,300,7\n";
+        String ndjson = "{\"nombre\":\"Camisa de lino\",\"descripcion\":\"Camisa blanca de verano\",\"precio\":100.0,\"stockDisponible\":10}\n"
+                + "{\"nombre\":\"" + larga + "\"}\n"
+                + "{\"nombre\":\"Campera de jean\",\"descripcion\":\"Campera azul oscuro\",\"precio\":300.0,\"stockDisponible\":7}\n";
+
+        for (String[] archivo : new String[][]{{csv, "CSV"}, {ndjson, "NDJSON"}}) {
+            productoRepository.deleteAll();
+            ResultadoImportacion resultado = crearServicio(1, 100)
+                    .importar(archivo(archivo[0]), FormatoImportacion.valueOf(archivo[1]));
+
+            assertEquals(3, resultado.getFilasLeidas(), archivo[1]);
+            assertEquals(2, resultado.getImportadas(), archivo[1]);
+            assertEquals(2, resultado.getErrores().get(0).getFila(), archivo[1]);
+            assertEquals("La fila supera los " + LectorProductos.MAX_CARACTERES_REGISTRO + " caracteres.",
+                    resultado.getErrores().get(0).getMensaje(), archivo[1]);
+        }
+    }
+
+    @Test
+    @DisplayName("Deberia rechazar un CSV sin las columnas esperadas sin importar nada")
+    void testCsvSinEncabezado() {
+        String csv = """
+                nombre,precio,stockDisponible
+                Camisa de lino,100,10
+                """;
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> crearServicio(2, 100).importar(archivo(csv), FormatoImportacion.CSV));
+
+        assertTrue(exception.getMessage().startsWith("Falta la columna descripcion"));
+        assertEquals(0, productoRepository.count());
+    }
+
+    private ProductoImportService crearServicio(int tamanioLote, int maxErrores) {
+        return new ProductoImportService(new ProductoBatchRepository(new JdbcTemplate(dataSource), entityManagerFactory),
+                transactionManager,
+                Validation.buildDefaultValidatorFactory().getValidator(), Jackson2ObjectMapperBuilder.json().build(),
+                eventos::add, registry, tamanioLote, maxErrores);
+    }
+
+    private static ByteArrayInputStream archivo(String contenido) {
+        return new ByteArrayInputStream(contenido.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,230 @@
+package com.ulises.javasemiseniorcommerce.service;
+
+import com.ulises.javasemiseniorcommerce.cache.BusquedaCache;
+import com.ulises.javasemiseniorcommerce.cache.ProductoCache;
+import com.ulises.javasemiseniorcommerce.cache.TotalesAproximados;
+import com.ulises.javasemiseniorcommerce.dto.ConteoTotal;
+import com.ulises.javasemiseniorcommerce.dto.FacetaPrecio;
+import com.ulises.javasemiseniorcommerce.dto.PaginaConFacetas;
+import com.ulises.javasemiseniorcommerce.dto.PaginaCursor;
+import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+import com.ulises.javasemiseniorcommerce.repository.DetalleRepository;
+import com.ulises.javasemiseniorcommerce.repository.PedidoRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import com.ulises.javasemiseniorcommerce.search.ConsultaBusqueda;
+import com.ulises.javasemiseniorcommerce.search.HistogramaPrecios;
+import com.ulises.javasemiseniorcommerce.search.IndicePrecios;
+import com.ulises.javasemiseniorcommerce.search.IndiceProductos;
+import com.ulises.javasemiseniorcommerce.search.OrdenBusqueda;
+import com.ulises.javasemiseniorcommerce.search.SugerenciasProductos;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Recorre con cursor, y pagina por pagina sin total exacto, los listados y busquedas de productos contra una base H2,
+ * con y sin los indices en memoria, y verifica que se obtienen los mismos productos en el mismo orden que pagina por
+ * pagina con OFFSET y COUNT.
+ *
+ * @author ulide
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ProductoServiceCursorTest {
+
+    private static final int TAMANIO = 4;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @BeforeEach
+    void setUp() {
+        productoRepository.deleteAll();
+        // Varios precios repetidos, para que el ID tenga que desempatar
+        productoRepository.saveAll(IntStream.range(0, 23)
+                .mapToObj(i -> ProductoModel.builder()
+                        .nombre((i % 2 == 0 ? "Camisa de lino " : "Pantalon de lana ") + i)
+                        .descripcion("Descripcion del producto " + i)
+                        .precio(100.0 + (i % 5) * 50)
+                        .stockDisponible(10)
+                        .build())
+                .toList());
+    }
+
+    @Test
+    @DisplayName("Con cursor y sin indices deberia devolver lo mismo que con OFFSET")
+    void testCursorEnBaseDeDatos() {
+        ProductoService productoService = crearServicio(false);
+        comparar(productoService);
+    }
+
+    @Test
+    @DisplayName("Con cursor y con los indices en memoria deberia devolver lo mismo que con OFFSET")
+    void testCursorConIndices() {
+        ProductoService productoService = crearServicio(true);
+        comparar(productoService);
+
+        ConsultaBusqueda porRelevancia = ConsultaBusqueda.builder().texto("lino camisa").orden(OrdenBusqueda.RELEVANCIA)
+                .build();
+        assertEquals(ids(paginas(page -> productoService.getProductosBySearch(porRelevancia, page, TAMANIO))),
+                recorrer(cursor -> productoService.getProductosBySearchConCursor(porRelevancia, cursor, TAMANIO)));
+    }
+
+    @Test
+    @DisplayName("Sin total o con total aproximado deberia devolver las mismas paginas que con el total exacto")
+    void testSinTotalExacto() {
+        ProductoService productoService = crearServicio(false);
+        ConsultaBusqueda consulta = ConsultaBusqueda.builder().texto("lino").precioMax(200.0).build();
+        List<Long> esperados = ids(paginas(page -> productoService.getProductosBySearch(consulta, page, TAMANIO)));
+
+        for (ConteoTotal conteo : List.of(ConteoTotal.APROXIMADO, ConteoTotal.NINGUNO)) {
+            List<Long> obtenidos = new ArrayList<>();
+            Slice<ProductoDto> pagina;
+            int numero = 0;
+            do {
+                pagina = productoService.getProductosBySearch(consulta, numero++, TAMANIO, conteo);
+                pagina.getContent().forEach(producto -> obtenidos.add(producto.getId()));
+                assertEquals(conteo == ConteoTotal.APROXIMADO, pagina instanceof Page);
+                if (pagina instanceof Page<ProductoDto> conTotal) {
+                    assertEquals(esperados.size(), conTotal.getTotalElements());
+                }
+            } while (pagina.hasNext());
+            assertEquals(esperados, obtenidos);
+        }
+
+        Page<ProductoDto> todos = (Page<ProductoDto>) productoService.getAllProductos(null, null, 0, TAMANIO,
+                ConteoTotal.APROXIMADO);
+        assertEquals(23, todos.getTotalElements());
+    }
+
+    @Test
+    @DisplayName("Los rangos de precio de la base de datos deberian coincidir con los de los indices en memoria")
+    void testFacetasPrecio() {
+        ProductoService enBase = crearServicio(false);
+        ProductoService conIndices = crearServicio(true);
+
+        for (String texto : List.of("lino", "")) {
+            ConsultaBusqueda consulta = ConsultaBusqueda.builder().texto(texto).precioMax(200.0).anchoRangoPrecio(100.0)
+                    .build();
+            PaginaConFacetas<ProductoDto> esperada = (PaginaConFacetas<ProductoDto>)
+                    conIndices.getProductosBySearch(consulta, 1, TAMANIO);
+            PaginaConFacetas<ProductoDto> obtenida = (PaginaConFacetas<ProductoDto>)
+                    enBase.getProductosBySearch(consulta, 1, TAMANIO, ConteoTotal.NINGUNO);
+
+            assertEquals(ids(esperada.getContent()), ids(obtenida.getContent()));
+            assertEquals(esperada.getTotalElements(), obtenida.getTotalElements());
+            assertEquals(esperada.getFacetasPrecio(), obtenida.getFacetasPrecio());
+            assertEquals(enBase.getProductosBySearch(consulta.toBuilder().anchoRangoPrecio(null).build(), 1, TAMANIO)
+                    .getTotalElements(), obtenida.getTotalElements());
+            // Los rangos no aplican el precio maximo: cada precio de 100 a 300 queda en su propio rango
+            assertEquals(3, obtenida.getFacetasPrecio().size());
+            assertEquals(texto.isEmpty() ? 23 : 12,
+                    obtenida.getFacetasPrecio().stream().mapToLong(FacetaPrecio::getCantidad).sum());
+        }
+    }
+
+    @Test
+    @DisplayName("Con un ancho muy chico la base de datos y los indices deberian agrandarlo igual")
+    void testFacetasPrecioAnchoMinimo() {
+        ProductoService enBase = crearServicio(false);
+        ProductoService conIndices = crearServicio(true);
+
+        for (String texto : List.of("lino", "")) {
+            ConsultaBusqueda consulta = ConsultaBusqueda.builder().texto(texto).anchoRangoPrecio(0.001).build();
+            List<FacetaPrecio> esperadas = ((PaginaConFacetas<ProductoDto>)
+                    conIndices.getProductosBySearch(consulta, 0, TAMANIO)).getFacetasPrecio();
+            List<FacetaPrecio> obtenidas = ((PaginaConFacetas<ProductoDto>)
+                    enBase.getProductosBySearch(consulta, 0, TAMANIO)).getFacetasPrecio();
+
+            assertEquals(esperadas, obtenidas);
+            assertTrue(obtenidas.size() <= HistogramaPrecios.MAXIMO_RANGOS);
+        }
+    }
+
+    @Test
+    @DisplayName("Deberia rechazar un cursor de otro orden o mal formado")
+    void testCursorInvalido() {
+        ProductoService productoService = crearServicio(false);
+        String cursorPorId = productoService.getAllProductosConCursor(null, null, null, TAMANIO).getSiguienteCursor();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> productoService.getAllProductosConCursor(100.0, null, cursorPorId, TAMANIO));
+        assertThrows(IllegalArgumentException.class,
+                () -> productoService.getAllProductosConCursor(null, null, "no-es-un-cursor", TAMANIO));
+    }
+
+    private void comparar(ProductoService productoService) {
+        assertEquals(productoRepository.findAll().stream().map(ProductoModel::getId).sorted().toList(),
+                recorrer(cursor -> productoService.getAllProductosConCursor(null, null, cursor, TAMANIO)));
+
+        assertEquals(ids(paginas(page -> productoService.getAllProductos(150.0, 250.0, page, TAMANIO))),
+                recorrer(cursor -> productoService.getAllProductosConCursor(150.0, 250.0, cursor, TAMANIO)));
+
+        ConsultaBusqueda consulta = ConsultaBusqueda.builder().texto("lino").precioMax(200.0).build();
+        assertEquals(ids(paginas(page -> productoService.getProductosBySearch(consulta, page, TAMANIO))),
+                recorrer(cursor -> productoService.getProductosBySearchConCursor(consulta, cursor, TAMANIO)));
+    }
+
+    private ProductoService crearServicio(boolean conIndices) {
+        IndiceProductos indiceProductos = new IndiceProductos(productoRepository, conIndices);
+        IndicePrecios indicePrecios = new IndicePrecios(productoRepository, conIndices);
+        indiceProductos.construir();
+        indicePrecios.construir();
+        return new ProductoService(productoRepository,
+                new ProductoCache(100, Duration.ofMinutes(10), new SimpleMeterRegistry()),
+                new BusquedaCache(100, Duration.ofMinutes(10), new SimpleMeterRegistry()),
+                indiceProductos, indicePrecios,
+                new SugerenciasProductos(productoRepository, mock(DetalleRepository.class), false),
+                new TotalesAproximados(productoRepository, mock(PedidoRepository.class), 100, Duration.ofSeconds(30),
+                        new SimpleMeterRegistry()),
+                evento -> { });
+    }
+
+    // Pide paginas siguiendo el cursor hasta la ultima
+    private static List<Long> recorrer(Function<String, PaginaCursor<ProductoDto>> pedirPagina) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        PaginaCursor<ProductoDto> pagina;
+        do {
+            pagina = pedirPagina.apply(cursor);
+            assertTrue(pagina.getContenido().size() <= TAMANIO);
+            pagina.getContenido().forEach(producto -> ids.add(producto.getId()));
+            cursor = pagina.getSiguienteCursor();
+            assertEquals(pagina.isHaySiguiente(), cursor != null);
+        } while (cursor != null);
+        return ids;
+    }
+
+    private static List<ProductoDto> paginas(IntFunction<Page<ProductoDto>> pedirPagina) {
+        List<ProductoDto> productos = new ArrayList<>();
+        Page<ProductoDto> pagina;
+        int numero = 0;
+        do {
+            pagina = pedirPagina.apply(numero++);
+            productos.addAll(pagina.getContent());
+        } while (pagina.hasNext());
+        return productos;
+    }
+
+    private static List<Long> ids(List<ProductoDto> productos) {
+        return productos.stream().map(ProductoDto::getId).toList();
+    }
+}
@@ -1,25 +1,44 @@
 package com.ulises.javasemiseniorcommerce.service;
 
+import com.ulises.javasemiseniorcommerce.cache.BusquedaCache;
+import com.ulises.javasemiseniorcommerce.cache.ProductoCache;
+import com.ulises.javasemiseniorcommerce.cache.TotalesAproximados;
+import com.ulises.javasemiseniorcommerce.dto.ConteoTotal;
 import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+import com.ulises.javasemiseniorcommerce.dto.ProductoPorIdDto;
 import com.ulises.javasemiseniorcommerce.dto.ProductoRequest;
+import com.ulises.javasemiseniorcommerce.event.ProductoEvent;
 import com.ulises.javasemiseniorcommerce.exception.ProductoNotFoundException;
 import com.ulises.javasemiseniorcommerce.model.ProductoModel;
 import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import com.ulises.javasemiseniorcommerce.search.ConsultaBusqueda;
+import com.ulises.javasemiseniorcommerce.search.IndicePrecios;
+import com.ulises.javasemiseniorcommerce.search.IndiceProductos;
+import com.ulises.javasemiseniorcommerce.search.SugerenciasProductos;
+import com.ulises.javasemiseniorcommerce.search.OrdenBusqueda;
+import com.ulises.javasemiseniorcommerce.search.ResultadoBusqueda;
 import com.ulises.javasemiseniorcommerce.testUtils.TestDataFactory;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.ArgumentCaptor;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -36,6 +55,27 @@ public class ProductoServiceTest {
     @Mock
     private ProductoRepository productoRepository;
 
+    @Mock
+    private ProductoCache productoCache;
+
+    @Mock
+    private BusquedaCache busquedaCache;
+
+    @Mock
+    private IndiceProductos indiceProductos;
+
+    @Mock
+    private IndicePrecios indicePrecios;
+
+    @Mock
+    private SugerenciasProductos sugerenciasProductos;
+
+    @Mock
+    private TotalesAproximados totalesAproximados;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @Nested
     @DisplayName("ProductoService Create Tests")
     class productoServiceCreateTests {
@@ -83,6 +123,24 @@ public class ProductoServiceTest {
             assertEquals(productoModel.getStockDisponible(), result.getStockDisponible());
             assertEquals(productoModel.getPrecio(), result.getPrecio());
             verify(productoRepository, times(1)).findById(productoModel.getId());
+            verify(productoCache, times(1)).put(eq(result), anyLong());
+        }
+
+        @Test
+        @DisplayName("Deberia retornar el producto cacheado sin consultar la base de datos")
+        void testGetProductoDesdeCache() {
+            // Preparacion
+            ProductoDto productoDto = TestDataFactory.crearProductoDto();
+            when(productoCache.get(productoDto.getId()))
+                    .thenReturn(productoDto);
+
+            // Ejecucion
+            ProductoDto result = productoService.getProductoById(productoDto.getId());
+
+            // Verificacion
+            assertSame(productoDto, result);
+            verify(productoRepository, never()).findById(any());
+            verify(productoCache, never()).put(any(), anyLong());
         }
 
         @Test
@@ -102,6 +160,59 @@ public class ProductoServiceTest {
             verify(productoRepository, times(1)).findById(productoId);
         }
 
+        @Test
+        @DisplayName("Deberia retornar la version del producto de la base de datos sin cargarlo")
+        void testGetVersionProducto() {
+            // Preparacion
+            when(productoRepository.findVersionById(2L)).thenReturn(Optional.of(7L));
+            when(productoRepository.findVersionById(3L)).thenReturn(Optional.empty());
+
+            // Ejecucion y verificacion
+            assertEquals(7L, productoService.getVersionProducto(2L));
+            assertThrows(ProductoNotFoundException.class, () -> productoService.getVersionProducto(3L));
+            // Aunque este cacheado, el cache puede tener una version vieja
+            verify(productoCache, never()).get(any());
+            verify(productoRepository, never()).findById(any());
+        }
+
+        @Test
+        @DisplayName("Deberia retornar varios productos en el orden pedido con una sola consulta")
+        void testGetProductosByIds() {
+            // Preparacion
+            ProductoDto cacheado = TestDataFactory.crearProductoDto();
+            ProductoModel productoModel = TestDataFactory.crearProductoModel();
+            productoModel.setId(3L);
+            when(productoCache.get(anyLong())).thenAnswer(inv -> inv.<Long>getArgument(0) == 1L ? cacheado : null);
+            when(productoRepository.findAllById(List.of(3L, 7L))).thenReturn(List.of(productoModel));
+
+            // Ejecucion
+            List<ProductoPorIdDto> result = productoService.getProductosByIds(List.of(3L, 1L, 7L, 3L));
+
+            // Verificacion
+            assertEquals(List.of(3L, 1L, 7L, 3L), result.stream().map(ProductoPorIdDto::getId).toList());
+            assertEquals(List.of(true, true, false, true), result.stream().map(ProductoPorIdDto::isEncontrado).toList());
+            assertSame(cacheado, result.get(1).getProducto());
+            assertEquals(3L, result.get(0).getProducto().getId());
+            assertNull(result.get(2).getProducto());
+            verify(productoRepository, times(1)).findAllById(List.of(3L, 7L));
+            verify(productoRepository, never()).findById(any());
+            verify(productoCache, times(1)).put(eq(result.get(0).getProducto()), anyLong());
+        }
+
+        @Test
+        @DisplayName("Deberia rechazar una consulta sin IDs o con demasiados IDs")
+        void testGetProductosByIdsInvalidos() {
+            List<Long> demasiados = LongStream.rangeClosed(1, ProductoService.MAX_PRODUCTOS_POR_ID + 1).boxed().toList();
+
+            assertThrows(IllegalArgumentException.class, () -> productoService.getProductosByIds(List.of()));
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                    () -> productoService.getProductosByIds(demasiados));
+
+            assertEquals("No se pueden pedir mas de " + ProductoService.MAX_PRODUCTOS_POR_ID + " productos por vez.",
+                    exception.getMessage());
+            verifyNoInteractions(productoRepository);
+        }
+
         @Test
         @DisplayName("Deberia retornar todos los productos de la base de datos correctamente")
         void testGetAllProductos() {
@@ -145,6 +256,48 @@ public class ProductoServiceTest {
             assertTrue(resultado.isEmpty());
             verify(productoRepository, times(1)).findAll(pageable);
         }
+
+        @Test
+        @DisplayName("Deberia filtrar por precio con el indice y cargar solo los productos de la pagina")
+        void testGetAllProductosPorPrecio() {
+            // Preparacion
+            ProductoModel barato = TestDataFactory.crearProductoModel();
+            barato.setId(2L);
+            barato.setPrecio(150.0);
+            ProductoModel caro = TestDataFactory.crearProductoModel();
+            caro.setId(1L);
+            caro.setPrecio(400.0);
+            when(indicePrecios.isDisponible()).thenReturn(true);
+            when(indicePrecios.buscar(100.0, 500.0, 0, 2))
+                    .thenReturn(new ResultadoBusqueda(List.of(2L, 1L), 9));
+            when(productoRepository.findAllById(List.of(2L, 1L))).thenReturn(List.of(caro, barato));
+
+            // Ejecucion
+            Page<ProductoDto> resultado = productoService.getAllProductos(100.0, 500.0, 0, 2);
+
+            // Verificacion
+            assertEquals(9, resultado.getTotalElements());
+            assertEquals(List.of(2L, 1L), resultado.getContent().stream().map(ProductoDto::getId).toList());
+            verify(productoRepository, never()).findAll(any(Pageable.class));
+            verify(productoRepository, never()).searchProductosByPalabrasClave(any(), any(), any(), any());
+        }
+
+        @Test
+        @DisplayName("Deberia filtrar por precio en la base de datos si el indice no esta disponible")
+        void testGetAllProductosPorPrecioSinIndice() {
+            // Preparacion
+            Pageable pageable = PageRequest.of(0, 5);
+            when(indicePrecios.isDisponible()).thenReturn(false);
+            when(productoRepository.searchProductosByPalabrasClave(null, 100.0, null, pageable))
+                    .thenReturn(new PageImpl<>(List.of(TestDataFactory.crearProductoModel())));
+
+            // Ejecucion
+            Page<ProductoDto> resultado = productoService.getAllProductos(100.0, null, 0, 5);
+
+            // Verificacion
+            assertEquals(1, resultado.getTotalElements());
+            verify(productoRepository, never()).findAll(pageable);
+        }
     }
 
     @Nested
@@ -160,6 +313,11 @@ public class ProductoServiceTest {
 
             when(productoRepository.findById(productoId))
                     .thenReturn(Optional.of(productoModel));
+            // Al hacer flush Hibernate incrementa la version
+            when(productoRepository.saveAndFlush(productoModel)).thenAnswer(invocation -> {
+                productoModel.setVersion(5L);
+                return productoModel;
+            });
 
             // Ejecucion
             ProductoDto result = productoService.updateProducto(productoId, productoRequest);
@@ -169,7 +327,13 @@ public class ProductoServiceTest {
             assertEquals(result.getDescripcion(), productoModel.getDescripcion());
             assertEquals(result.getStockDisponible(), productoModel.getStockDisponible());
             assertEquals(result.getPrecio(), productoModel.getPrecio());
-            verify(productoRepository, times(1)).save(productoModel);
+            assertEquals(5L, result.getVersion());
+            verify(productoRepository, times(1)).saveAndFlush(productoModel);
+
+            ArgumentCaptor<ProductoEvent> evento = ArgumentCaptor.forClass(ProductoEvent.class);
+            verify(eventPublisher, times(1)).publishEvent(evento.capture());
+            assertEquals(ProductoEvent.Tipo.ACTUALIZADO, evento.getValue().getTipo());
+            assertEquals(productoId, evento.getValue().getProductoId());
         }
 
         @Test
@@ -187,7 +351,7 @@ public class ProductoServiceTest {
 
             // Verificacion
             assertEquals("Producto no encontrado con ID: " + productoId, exception.getMessage());
-            verify(productoRepository, never()).save(any());
+            verify(productoRepository, never()).saveAndFlush(any());
         }
     }
 
@@ -208,6 +372,101 @@ public class ProductoServiceTest {
 
             // Verificacion
             verify(productoRepository, times(1)).delete(productoModel);
+
+            ArgumentCaptor<ProductoEvent> evento = ArgumentCaptor.forClass(ProductoEvent.class);
+            verify(eventPublisher, times(1)).publishEvent(evento.capture());
+            assertEquals(ProductoEvent.Tipo.ELIMINADO, evento.getValue().getTipo());
+            assertEquals(productoId, evento.getValue().getProductoId());
+        }
+    }
+
+    @Nested
+    @DisplayName("ProductoService Search Tests")
+    class ProductoServiceSearchTests {
+        @BeforeEach
+        void setUp() {
+            // El cache de busquedas siempre busca, como si no tuviera nada cacheado
+            lenient().when(busquedaCache.obtener(any(), anyInt(), anyInt(), any()))
+                    .thenAnswer(invocacion -> invocacion.<Supplier<ResultadoBusqueda>>getArgument(3).get());
+        }
+
+        @Test
+        @DisplayName("Deberia buscar en el indice y cargar solo los productos de la pagina en orden")
+        void testSearchConIndice() {
+            // Preparacion
+            List<ProductoModel> productos = TestDataFactory.crearProductosModel(2);
+            when(indiceProductos.isDisponible()).thenReturn(true);
+            ConsultaBusqueda consulta = ConsultaBusqueda.builder()
+                    .texto("algodon")
+                    .orden(OrdenBusqueda.RELEVANCIA)
+                    .build();
+            when(indiceProductos.buscar(consulta, 0, 5))
+                    .thenReturn(new ResultadoBusqueda(List.of(2L, 1L), 7));
+            when(productoRepository.findAllById(List.of(2L, 1L)))
+                    .thenReturn(productos);
+
+            // Ejecucion
+            Page<ProductoDto> resultado = productoService.getProductosBySearch(consulta, 0, 5);
+
+            // Verificacion
+            assertEquals(7, resultado.getTotalElements());
+            assertEquals(List.of(2L, 1L), resultado.getContent().stream().map(ProductoDto::getId).toList());
+            verify(productoRepository, never()).searchProductosByPalabrasClave(any(), any(), any(), any());
+        }
+
+        @Test
+        @DisplayName("Deberia buscar en la base de datos si el indice no esta disponible")
+        void testSearchSinIndice() {
+            // Preparacion
+            Pageable pageable = PageRequest.of(0, 5);
+            when(indiceProductos.isDisponible()).thenReturn(false);
+            when(productoRepository.searchProductosByPalabrasClave("algodon", null, null, pageable))
+                    .thenReturn(new PageImpl<>(List.of(TestDataFactory.crearProductoModel())));
+
+            // Ejecucion
+            Page<ProductoDto> resultado = productoService.getProductosBySearch(
+                    ConsultaBusqueda.builder().texto("algodon").difuso(true).build(), 0, 5);
+
+            // Verificacion
+            assertEquals(1, resultado.getTotalElements());
+            verify(indiceProductos, never()).buscar(any(), anyInt(), anyInt());
+        }
+
+        @Test
+        @DisplayName("Deberia buscar y cachear con el texto normalizado")
+        void testSearchNormalizada() {
+            // Preparacion
+            ConsultaBusqueda normalizada = ConsultaBusqueda.builder().texto("camisa de lino").build();
+            when(indiceProductos.isDisponible()).thenReturn(true);
+            when(indiceProductos.buscar(normalizada, 0, 5)).thenReturn(new ResultadoBusqueda(List.of(), 0));
+
+            // Ejecucion
+            productoService.getProductosBySearch(ConsultaBusqueda.builder().texto("  Camisa   DE lino ").build(), 0, 5);
+
+            // Verificacion
+            verify(busquedaCache, times(1)).obtener(eq(normalizada), eq(0), eq(5), any());
+            verify(indiceProductos, times(1)).buscar(normalizada, 0, 5);
+        }
+
+        @Test
+        @DisplayName("Deberia buscar en la base de datos sin COUNT si no se pide el total")
+        void testSearchSinTotal() {
+            // Preparacion
+            Pageable pageable = PageRequest.of(0, 5);
+            when(indiceProductos.isDisponible()).thenReturn(false);
+            when(productoRepository.searchProductosByPalabrasClaveSinTotal("algodon", null, null, pageable))
+                    .thenReturn(new SliceImpl<>(List.of(TestDataFactory.crearProductoModel()), pageable, true));
+            when(totalesAproximados.productos(any(), eq(ConteoTotal.NINGUNO), eq("algodon"), isNull(), isNull()))
+                    .thenAnswer(invocacion -> invocacion.getArgument(0));
+
+            // Ejecucion
+            Slice<ProductoDto> resultado = productoService.getProductosBySearch(
+                    ConsultaBusqueda.builder().texto("algodon").build(), 0, 5, ConteoTotal.NINGUNO);
+
+            // Verificacion
+            assertEquals(1, resultado.getNumberOfElements());
+            assertTrue(resultado.hasNext());
+            verify(productoRepository, never()).searchProductosByPalabrasClave(any(), any(), any(), any());
         }
     }
 }
@@ -0,0 +1,151 @@
+package com.ulises.javasemiseniorcommerce.service;
+
+import com.ulises.javasemiseniorcommerce.cache.BusquedaCache;
+import com.ulises.javasemiseniorcommerce.cache.ProductoCache;
+import com.ulises.javasemiseniorcommerce.cache.TotalesAproximados;
+import com.ulises.javasemiseniorcommerce.dto.PedidoDto;
+import com.ulises.javasemiseniorcommerce.dto.ProductoDto;
+import com.ulises.javasemiseniorcommerce.exception.ProductoNotFoundException;
+import com.ulises.javasemiseniorcommerce.model.DetalleModel;
+import com.ulises.javasemiseniorcommerce.model.PedidoModel;
+import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+import com.ulises.javasemiseniorcommerce.repository.PedidoRepository;
+import com.ulises.javasemiseniorcommerce.repository.DetalleRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import com.ulises.javasemiseniorcommerce.repository.UsuarioRepository;
+import com.ulises.javasemiseniorcommerce.search.IndicePrecios;
+import com.ulises.javasemiseniorcommerce.search.IndiceProductos;
+import com.ulises.javasemiseniorcommerce.search.SugerenciasProductos;
+import com.ulises.javasemiseniorcommerce.stock.StockReservationStrategy;
+import com.ulises.javasemiseniorcommerce.testUtils.TestDataFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Verifica que lecturas concurrentes del mismo ID compartan una sola consulta al repositorio.
+ *
+ * @author ulide
+ */
+public class SingleFlightServiceTest {
+
+    private static final int HILOS = 50;
+
+    @Nested
+    @DisplayName("ProductoService Concurrent Get Tests")
+    class ProductoServiceConcurrentGetTests {
+
+        private final ProductoRepository productoRepository = mock(ProductoRepository.class);
+        private final ProductoService productoService = new ProductoService(productoRepository,
+                new ProductoCache(100, Duration.ofMinutes(10), new SimpleMeterRegistry()),
+                new BusquedaCache(100, Duration.ofMinutes(10), new SimpleMeterRegistry()),
+                new IndiceProductos(productoRepository, false), new IndicePrecios(productoRepository, false),
+                new SugerenciasProductos(productoRepository, mock(DetalleRepository.class), false),
+                mock(TotalesAproximados.class), evento -> { });
+
+        @Test
+        @DisplayName("Deberia consultar una sola vez el repositorio para lecturas concurrentes del mismo producto")
+        void testUnaSolaConsulta() throws Exception {
+            ProductoModel producto = TestDataFactory.crearProductoModel();
+            when(productoRepository.findById(producto.getId()))
+                    .thenAnswer(demorar(Optional.of(producto)));
+
+            List<Future<ProductoDto>> resultados = ejecutarEnParalelo(
+                    () -> productoService.getProductoById(producto.getId()));
+
+            for (Future<ProductoDto> resultado : resultados) {
+                assertEquals(producto.getNombre(), resultado.get().getNombre());
+            }
+            verify(productoRepository, times(1)).findById(producto.getId());
+        }
+
+        @Test
+        @DisplayName("Deberia lanzar ProductoNotFoundException a todos los hilos con una sola consulta")
+        void testNotFoundCompartido() throws Exception {
+            when(productoRepository.findById(1L))
+                    .thenAnswer(demorar(Optional.empty()));
+
+            List<Future<ProductoDto>> resultados = ejecutarEnParalelo(() -> productoService.getProductoById(1L));
+
+            for (Future<ProductoDto> resultado : resultados) {
+                ExecutionException exception = assertThrows(ExecutionException.class, resultado::get);
+                assertInstanceOf(ProductoNotFoundException.class, exception.getCause());
+            }
+            verify(productoRepository, times(1)).findById(1L);
+        }
+    }
+
+    @Nested
+    @DisplayName("PedidoService Concurrent Get Tests")
+    class PedidoServiceConcurrentGetTests {
+
+        private final PedidoRepository pedidoRepository = mock(PedidoRepository.class);
+        private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        private final PedidoService pedidoService = new PedidoService(pedidoRepository,
+                mock(UsuarioRepository.class), mock(StockReservationStrategy.class), mock(TotalesAproximados.class),
+                evento -> { }, transactionManager);
+
+        @Test
+        @DisplayName("Deberia consultar una sola vez el repositorio, en una sola transaccion, para lecturas concurrentes del mismo pedido")
+        void testUnaSolaConsulta() throws Exception {
+            DetalleModel detalle = DetalleModel.builder()
+                    .producto(TestDataFactory.crearProductoModel())
+                    .cantidad(2)
+                    .build();
+            PedidoModel pedido = TestDataFactory.crearPedido(TestDataFactory.crearUsuarioModel(), List.of(detalle));
+            when(pedidoRepository.findConDetallesById(pedido.getId()))
+                    .thenAnswer(demorar(Optional.of(pedido)));
+
+            List<Future<PedidoDto>> resultados = ejecutarEnParalelo(() -> pedidoService.getPedidoById(pedido.getId()));
+
+            for (Future<PedidoDto> resultado : resultados) {
+                assertEquals(pedido.getId(), resultado.get().getId());
+            }
+            verify(pedidoRepository, times(1)).findConDetallesById(pedido.getId());
+            // Las lecturas que esperan el resultado no abren transacciones
+            verify(transactionManager, times(1)).getTransaction(any());
+        }
+    }
+
+    // Demora la respuesta del repositorio para que todos los hilos lleguen mientras la consulta esta en curso
+    private static <T> Answer<T> demorar(T respuesta) {
+        return invocacion -> {
+            Thread.sleep(300);
+            return respuesta;
+        };
+    }
+
+    private static <T> List<Future<T>> ejecutarEnParalelo(Callable<T> llamada) throws InterruptedException {
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        List<Future<T>> resultados = new ArrayList<>();
+        for (int i = 0; i < HILOS; i++) {
+            resultados.add(executor.submit(() -> {
+                largada.await();
+                return llamada.call();
+            }));
+        }
+        largada.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        return resultados;
+    }
+}
@@ -2,6 +2,7 @@ package com.ulises.javasemiseniorcommerce.service;
 
 import com.ulises.javasemiseniorcommerce.dto.UsuarioDto;
 import com.ulises.javasemiseniorcommerce.dto.UsuarioRequest;
+import com.ulises.javasemiseniorcommerce.event.UsuarioEvent;
 import com.ulises.javasemiseniorcommerce.exception.UserNotFoundException;
 import com.ulises.javasemiseniorcommerce.model.UsuarioModel;
 import com.ulises.javasemiseniorcommerce.repository.UsuarioRepository;
@@ -14,6 +15,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.Optional;
 
@@ -32,6 +34,9 @@ public class UsuarioServiceTest {
     @Mock
     private UsuarioRepository usuarioRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @Nested
     @DisplayName("UsuarioService Get Tests")
     class UsuarioServiceGetTests {
@@ -96,6 +101,7 @@ public class UsuarioServiceTest {
             // Verificacion
             ArgumentCaptor<UsuarioModel> captor = ArgumentCaptor.forClass(UsuarioModel.class);
             verify(usuarioRepository).save(captor.capture());
+            verify(eventPublisher).publishEvent(any(UsuarioEvent.class));
             UsuarioModel updatedUser = captor.getValue();
 
             assertEquals(usuarioRequest.getNombre(), updatedUser.getNombre());
@@ -142,6 +148,7 @@ public class UsuarioServiceTest {
             // Verificacion
             verify(usuarioRepository, times(1)).findByEmail(usuario.getEmail());
             verify(usuarioRepository, times(1)).delete(usuario);
+            verify(eventPublisher).publishEvent(any(UsuarioEvent.class));
         }
     }
 }
@@ -0,0 +1,347 @@
+package com.ulises.javasemiseniorcommerce.stock;
+
+import com.ulises.javasemiseniorcommerce.cache.ProductoCache;
+import com.ulises.javasemiseniorcommerce.event.ProductoEvent;
+import com.ulises.javasemiseniorcommerce.model.MovimientoStockModel;
+import com.ulises.javasemiseniorcommerce.repository.MovimientoStockRepository;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import com.ulises.javasemiseniorcommerce.testUtils.TestDataFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author ulide
+ */
+@ExtendWith(MockitoExtension.class)
+public class StockLedgerTest {
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    @Mock
+    private MovimientoStockRepository movimientoStockRepository;
+
+    @Mock
+    private ProductoCache productoCache;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private StockLedger stockLedger;
+
+    @BeforeEach
+    void setUp() {
+        stockLedger = new StockLedger(productoRepository, movimientoStockRepository, productoCache, transactionManager);
+        when(productoRepository.findAllStock())
+                .thenReturn(List.of(stock(1L, 10), stock(2L, 5)));
+        stockLedger.reconciliar();
+    }
+
+    @Test
+    @DisplayName("Deberia consultar la disponibilidad del libro y leer de la base solo los productos que no estan")
+    void testConsultarDisponible() {
+        // Preparacion
+        stockLedger.reservar(new TreeMap<>(Map.of(1L, 3)));
+        when(productoRepository.findStockByIdIn(List.of(3L, 4L)))
+                .thenReturn(List.of(stock(3L, 8)));
+
+        // Ejecucion
+        Map<Long, Integer> disponibles = new LedgerStockReservation(productoRepository, stockLedger)
+                .consultarDisponible(List.of(1L, 2L, 3L, 4L));
+
+        // Verificacion
+        assertEquals(Map.of(1L, 7, 2L, 5, 3L, 8), disponibles);
+        verify(productoRepository, never()).findStockVersionById(anyLong());
+        assertEquals(Map.of(1L, 7, 2L, 5), stockLedger.getDisponibles(List.of(1L, 2L, 3L, 4L)));
+    }
+
+    @Test
+    @DisplayName("Deberia reservar stock sin escribir en la base de datos")
+    void testReservarSinTocarLaBase() {
+        // Ejecucion
+        Long sinStock = stockLedger.reservar(new TreeMap<>(Map.of(1L, 3, 2L, 2)));
+
+        // Verificacion
+        assertNull(sinStock);
+        assertEquals(7, stockLedger.getDisponible(1L));
+        assertEquals(3, stockLedger.getDisponible(2L));
+        verify(productoRepository, never()).aplicarDescuentoStock(anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Si un producto no alcanza, no deberia quedar reservado ningun producto del pedido")
+    void testReservarTodoONada() {
+        // Ejecucion
+        Long sinStock = stockLedger.reservar(new TreeMap<>(Map.of(1L, 3, 2L, 6)));
+
+        // Verificacion
+        assertEquals(2L, sinStock);
+        assertEquals(10, stockLedger.getDisponible(1L));
+        assertEquals(5, stockLedger.getDisponible(2L));
+    }
+
+    @Test
+    @DisplayName("Deberia registrar los descuentos del pedido en movimientos_stock")
+    void testRegistrar() {
+        // Ejecucion
+        stockLedger.registrar(9L, new TreeMap<>(Map.of(1L, 3, 2L, 2)));
+
+        // Verificacion
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<MovimientoStockModel>> captor = ArgumentCaptor.forClass(List.class);
+        verify(movimientoStockRepository).saveAll(captor.capture());
+        assertEquals(List.of("9-1-3", "9-2-2"), captor.getValue().stream()
+                .map(m -> m.getPedidoId() + "-" + m.getProductoId() + "-" + m.getCantidad())
+                .toList());
+    }
+
+    @Test
+    @DisplayName("Deberia aplicar un solo descuento neto por producto y borrar los movimientos aplicados")
+    void testEscribirPendientesNetos() {
+        // Preparacion
+        stockLedger.reservar(new TreeMap<>(Map.of(1L, 3)));
+        stockLedger.reservar(new TreeMap<>(Map.of(1L, 2)));
+        stockLedger.reservar(new TreeMap<>(Map.of(2L, 4)));
+        when(movimientoStockRepository.findAll(any(Sort.class)))
+                .thenReturn(List.of(movimiento(10L, 1L, 3), movimiento(11L, 1L, 2), movimiento(12L, 2L, 4)))
+                .thenReturn(List.of());
+
+        // Ejecucion
+        stockLedger.escribirPendientes();
+
+        // Verificacion: lo aplicado deja de estar pendiente y el disponible no cambia
+        verify(productoRepository, times(1)).aplicarDescuentoStock(1L, 5);
+        verify(productoRepository, times(1)).aplicarDescuentoStock(2L, 4);
+        verify(movimientoStockRepository).deleteAllByIdInBatch(List.of(10L, 11L, 12L));
+        verify(productoCache).invalidate(1L);
+        verify(productoCache).invalidate(2L);
+        assertEquals(5, stockLedger.getDisponible(1L));
+        assertEquals(1, stockLedger.getDisponible(2L));
+        when(productoRepository.findAllStock()).thenReturn(List.of(stock(1L, 5), stock(2L, 1)));
+        stockLedger.reconciliar();
+        assertEquals(5, stockLedger.getDisponible(1L));
+        assertEquals(1, stockLedger.getDisponible(2L));
+    }
+
+    @Test
+    @DisplayName("Si falla la escritura los movimientos deberian quedar para el proximo intento")
+    void testEscribirPendientesFalla() {
+        // Preparacion
+        stockLedger.reservar(new TreeMap<>(Map.of(1L, 3)));
+        when(movimientoStockRepository.findAll(any(Sort.class))).thenReturn(List.of(movimiento(10L, 1L, 3)));
+        when(productoRepository.aplicarDescuentoStock(1L, 3))
+                .thenThrow(new IllegalStateException("Base de datos no disponible"))
+                .thenReturn(1);
+
+        // Ejecucion
+        stockLedger.escribirPendientes();
+        verify(movimientoStockRepository, never()).deleteAllByIdInBatch(any());
+        verify(productoCache, never()).invalidate(anyLong());
+        stockLedger.escribirPendientes();
+
+        // Verificacion
+        verify(productoRepository, times(2)).aplicarDescuentoStock(1L, 3);
+        verify(movimientoStockRepository, times(1)).deleteAllByIdInBatch(List.of(10L));
+        assertEquals(7, stockLedger.getDisponible(1L));
+    }
+
+    @Test
+    @DisplayName("Despues de una caida no deberia volver a vender lo que quedo sin aplicar")
+    void testDescuentosDeAntesDeUnaCaida() {
+        // Preparacion: un libro nuevo, con 4 unidades del producto 1 registradas y sin aplicar a la tabla
+        StockLedger despuesDeLaCaida = new StockLedger(productoRepository, movimientoStockRepository, productoCache, transactionManager);
+        when(productoRepository.findStockVersionById(1L)).thenReturn(stockVersion(10));
+        when(movimientoStockRepository.sumarCantidadByProductoId(1L)).thenReturn(4L);
+
+        // Ejecucion y verificacion
+        assertEquals(6, despuesDeLaCaida.getDisponible(1L));
+        assertEquals(1L, despuesDeLaCaida.reservar(new TreeMap<>(Map.of(1L, 7))));
+    }
+
+    @Test
+    @DisplayName("Al reconciliar deberia tomar el stock de la tabla menos lo que no se escribio")
+    void testReconciliarConservaPendientes() {
+        // Preparacion: el stock del producto 1 se actualizo a 50 por fuera del libro
+        when(productoRepository.aplicarDescuentoStock(anyLong(), anyInt()))
+                .thenThrow(new IllegalStateException("Base de datos no disponible"));
+        stockLedger.reservar(new TreeMap<>(Map.of(1L, 3)));
+        when(movimientoStockRepository.findAll(any(Sort.class))).thenReturn(List.of(movimiento(10L, 1L, 3)));
+        when(productoRepository.findAllStock())
+                .thenReturn(List.of(stock(1L, 50)));
+
+        // Ejecucion
+        stockLedger.reconciliar();
+
+        // Verificacion
+        assertEquals(47, stockLedger.getDisponible(1L));
+    }
+
+    @Test
+    @DisplayName("Un producto que no estaba en el libro se deberia leer de la tabla")
+    void testProductoNuevo() {
+        // Preparacion
+        when(productoRepository.findStockVersionById(3L)).thenReturn(stockVersion(4));
+
+        // Ejecucion
+        Long sinStock = stockLedger.reservar(new TreeMap<>(Map.of(3L, 4)));
+
+        // Verificacion
+        assertNull(sinStock);
+        assertEquals(0, stockLedger.getDisponible(3L));
+        verify(productoRepository, times(1)).findStockVersionById(3L);
+    }
+
+    @Test
+    @DisplayName("Leer un producto nuevo no deberia esperar a una escritura que todavia trabaja en la base")
+    void testProductoNuevoDuranteUnaEscritura() throws Exception {
+        // Preparacion: la escritura queda trabada leyendo los movimientos
+        CountDownLatch leyendoMovimientos = new CountDownLatch(1);
+        CountDownLatch continuar = new CountDownLatch(1);
+        when(movimientoStockRepository.findAll(any(Sort.class))).thenAnswer(invocation -> {
+            leyendoMovimientos.countDown();
+            continuar.await();
+            return List.of(movimiento(10L, 1L, 3));
+        });
+        when(productoRepository.findStockVersionById(3L)).thenReturn(stockVersion(4));
+        stockLedger.reservar(new TreeMap<>(Map.of(1L, 3)));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> escritura = executor.submit(stockLedger::escribirPendientes);
+        leyendoMovimientos.await();
+
+        // Ejecucion y verificacion
+        try {
+            assertNull(stockLedger.reservar(new TreeMap<>(Map.of(3L, 1))));
+            assertEquals(3, stockLedger.getDisponible(3L));
+        } finally {
+            continuar.countDown();
+            escritura.get();
+            executor.shutdown();
+        }
+        verify(productoRepository, times(1)).aplicarDescuentoStock(1L, 3);
+        assertEquals(7, stockLedger.getDisponible(1L));
+    }
+
+    @Test
+    @DisplayName("Un producto que no existe no deberia quedar en el libro")
+    void testProductoInexistente() {
+        // Ejecucion
+        Long sinStock = stockLedger.reservar(new TreeMap<>(Map.of(9L, 1)));
+
+        // Verificacion
+        assertEquals(9L, sinStock);
+        assertEquals(Map.of(), stockLedger.getDisponibles(List.of(9L)));
+        assertEquals(0, stockLedger.getDisponible(9L));
+        verify(productoRepository, times(2)).findStockVersionById(9L);
+    }
+
+    @Test
+    @DisplayName("Un cambio de stock por fuera del libro deberia verse sin esperar a la reconciliacion")
+    void testCambioDeProducto() {
+        // Preparacion: hay 3 unidades reservadas y sin aplicar, y el stock se actualizo a 20
+        stockLedger.reservar(new TreeMap<>(Map.of(1L, 3)));
+        when(productoRepository.findStockVersionById(1L)).thenReturn(stockVersion(20));
+
+        // Ejecucion y verificacion
+        stockLedger.onProductoEvent(ProductoEvent.venta(1L, 3));
+        verify(productoRepository, never()).findStockVersionById(anyLong());
+        assertEquals(7, stockLedger.getDisponible(1L));
+
+        stockLedger.onProductoEvent(ProductoEvent.stock(1L));
+        assertEquals(17, stockLedger.getDisponible(1L));
+
+        stockLedger.onProductoEvent(ProductoEvent.actualizado(TestDataFactory.crearProductoDto()));
+        assertEquals(17, stockLedger.getDisponible(1L));
+
+        stockLedger.onProductoEvent(ProductoEvent.eliminado(2L));
+        assertEquals(Map.of(1L, 17), stockLedger.getDisponibles(List.of(1L, 2L)));
+    }
+
+    @Test
+    @DisplayName("Reservas concurrentes sobre el mismo producto no deberian sobrevender")
+    void testReservarConcurrente() throws Exception {
+        // Preparacion
+        int hilos = 200;
+        AtomicInteger exitosos = new AtomicInteger();
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        List<Future<?>> resultados = new ArrayList<>();
+
+        // Ejecucion
+        for (int i = 0; i < hilos; i++) {
+            resultados.add(executor.submit(() -> {
+                largada.await();
+                if (stockLedger.reservar(new TreeMap<>(Map.of(1L, 1))) == null) {
+                    exitosos.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        largada.countDown();
+        for (Future<?> resultado : resultados) {
+            resultado.get();
+        }
+        executor.shutdown();
+        when(movimientoStockRepository.findAll(any(Sort.class))).thenReturn(List.of(movimiento(10L, 1L, 10)));
+        stockLedger.escribirPendientes();
+
+        // Verificacion
+        assertEquals(10, exitosos.get());
+        assertEquals(0, stockLedger.getDisponible(1L));
+        verify(productoRepository, times(1)).aplicarDescuentoStock(1L, 10);
+    }
+
+    private static MovimientoStockModel movimiento(Long id, Long productoId, int cantidad) {
+        return MovimientoStockModel.builder().id(id).pedidoId(1L).productoId(productoId).cantidad(cantidad).build();
+    }
+
+    private static ProductoRepository.StockVersion stockVersion(Integer stockDisponible) {
+        return new ProductoRepository.StockVersion() {
+            @Override
+            public Integer getStockDisponible() {
+                return stockDisponible;
+            }
+
+            @Override
+            public Long getVersion() {
+                return 0L;
+            }
+        };
+    }
+
+    private ProductoRepository.StockProducto stock(Long id, Integer stockDisponible) {
+        return new ProductoRepository.StockProducto() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Integer getStockDisponible() {
+                return stockDisponible;
+            }
+        };
+    }
+}
@@ -0,0 +1,258 @@
+package com.ulises.javasemiseniorcommerce.stock;
+
+import com.ulises.javasemiseniorcommerce.exception.ProductoNotFoundException;
+import com.ulises.javasemiseniorcommerce.exception.StockEnConflictoException;
+import com.ulises.javasemiseniorcommerce.exception.StockInsuficienteException;
+import com.ulises.javasemiseniorcommerce.model.ProductoModel;
+import com.ulises.javasemiseniorcommerce.repository.ProductoRepository;
+import com.ulises.javasemiseniorcommerce.testUtils.TestDataFactory;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author ulide
+ */
+@ExtendWith(MockitoExtension.class)
+public class StockReservationStrategyTest {
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    private static SortedMap<Long, Integer> cantidades(Long productoId, Integer cantidad) {
+        return new TreeMap<>(Map.of(productoId, cantidad));
+    }
+
+    @Nested
+    @DisplayName("ConditionalStockReservation Tests")
+    class ConditionalTests {
+        @Test
+        @DisplayName("Deberia descontar el stock con un UPDATE condicional")
+        void testReservarSuccess() {
+            // Preparacion
+            ProductoModel producto = TestDataFactory.crearProductoModel();
+            when(productoRepository.findAllById(Set.of(producto.getId())))
+                    .thenReturn(List.of(producto));
+            when(productoRepository.descontarStock(producto.getId(), 2))
+                    .thenReturn(1);
+
+            // Ejecucion
+            Map<Long, ProductoModel> resultado = new ConditionalStockReservation(productoRepository)
+                    .reservar(cantidades(producto.getId(), 2));
+
+            // Verificacion
+            assertSame(producto, resultado.get(producto.getId()));
+            verify(productoRepository, times(1)).descontarStock(producto.getId(), 2);
+        }
+
+        @Test
+        @DisplayName("Deberia lanzar una StockInsuficienteException si el UPDATE no afecta filas")
+        void testReservarStockInsuficiente() {
+            // Preparacion
+            ProductoModel producto = TestDataFactory.crearProductoModel();
+            when(productoRepository.findAllById(Set.of(producto.getId())))
+                    .thenReturn(List.of(producto));
+            when(productoRepository.descontarStock(producto.getId(), 2))
+                    .thenReturn(0);
+
+            // Ejecucion
+            StockInsuficienteException exception = assertThrows(StockInsuficienteException.class,
+                    () -> new ConditionalStockReservation(productoRepository).reservar(cantidades(producto.getId(), 2)));
+
+            // Verificacion
+            assertEquals("Stock insuficiente para el producto: " + producto.getNombre(), exception.getMessage());
+        }
+
+        @Test
+        @DisplayName("Deberia lanzar una ProductoNotFoundException sin descontar stock")
+        void testReservarProductoNotFound() {
+            // Preparacion
+            when(productoRepository.findAllById(Set.of(1L)))
+                    .thenReturn(List.of());
+
+            // Ejecucion
+            ProductoNotFoundException exception = assertThrows(ProductoNotFoundException.class,
+                    () -> new ConditionalStockReservation(productoRepository).reservar(cantidades(1L, 2)));
+
+            // Verificacion
+            assertEquals("No se ha encontrado el producto", exception.getMessage());
+            verify(productoRepository, never()).descontarStock(anyLong(), anyInt());
+        }
+    }
+
+    @Nested
+    @DisplayName("PessimisticStockReservation Tests")
+    class PessimisticTests {
+        @Test
+        @DisplayName("Deberia bloquear los productos y descontar el stock en memoria")
+        void testReservarSuccess() {
+            // Preparacion
+            ProductoModel producto = TestDataFactory.crearProductoModel();
+            when(productoRepository.findAllByIdForUpdate(Set.of(producto.getId())))
+                    .thenReturn(List.of(producto));
+
+            // Ejecucion
+            new PessimisticStockReservation(productoRepository).reservar(cantidades(producto.getId(), 2));
+
+            // Verificacion
+            assertEquals(98, producto.getStockDisponible());
+            verify(productoRepository, times(1)).findAllByIdForUpdate(Set.of(producto.getId()));
+            verifyNoMoreInteractions(productoRepository);
+        }
+
+        @Test
+        @DisplayName("Deberia lanzar una StockInsuficienteException sin modificar el producto")
+        void testReservarStockInsuficiente() {
+            // Preparacion
+            ProductoModel producto = TestDataFactory.crearProductoModel();
+            producto.setStockDisponible(1);
+            when(productoRepository.findAllByIdForUpdate(Set.of(producto.getId())))
+                    .thenReturn(List.of(producto));
+
+            // Ejecucion
+            assertThrows(StockInsuficienteException.class,
+                    () -> new PessimisticStockReservation(productoRepository).reservar(cantidades(producto.getId(), 2)));
+
+            // Verificacion
+            assertEquals(1, producto.getStockDisponible());
+        }
+    }
+
+    @Nested
+    @DisplayName("OptimisticStockReservation Tests")
+    class OptimisticTests {
+        @Test
+        @DisplayName("Deberia reintentar con la version actual si hubo un conflicto")
+        void testReservarReintentaConflicto() {
+            // Preparacion
+            ProductoModel producto = TestDataFactory.crearProductoModel();
+            when(productoRepository.findAllById(Set.of(producto.getId())))
+                    .thenReturn(List.of(producto));
+            // El primer intento falla porque otro pedido cambio la version
+            when(productoRepository.actualizarStockSiVersion(producto.getId(), 98, 0L))
+                    .thenReturn(0);
+            when(productoRepository.findStockVersionById(producto.getId()))
+                    .thenReturn(stockVersion(90, 1L));
+            when(productoRepository.actualizarStockSiVersion(producto.getId(), 88, 1L))
+                    .thenReturn(1);
+
+            // Ejecucion
+            new OptimisticStockReservation(productoRepository, 3).reservar(cantidades(producto.getId(), 2));
+
+            // Verificacion
+            verify(productoRepository, times(2)).actualizarStockSiVersion(eq(producto.getId()), anyInt(), anyLong());
+        }
+
+        @Test
+        @DisplayName("Deberia lanzar una StockEnConflictoException al agotar los reintentos")
+        void testReservarAgotaReintentos() {
+            // Preparacion
+            ProductoModel producto = TestDataFactory.crearProductoModel();
+            when(productoRepository.findAllById(Set.of(producto.getId())))
+                    .thenReturn(List.of(producto));
+            when(productoRepository.actualizarStockSiVersion(anyLong(), anyInt(), anyLong()))
+                    .thenReturn(0);
+            when(productoRepository.findStockVersionById(producto.getId()))
+                    .thenReturn(stockVersion(100, 1L));
+
+            // Ejecucion
+            assertThrows(StockEnConflictoException.class,
+                    () -> new OptimisticStockReservation(productoRepository, 3).reservar(cantidades(producto.getId(), 2)));
+
+            // Verificacion
+            verify(productoRepository, times(3)).actualizarStockSiVersion(anyLong(), anyInt(), anyLong());
+        }
+
+        @Test
+        @DisplayName("Deberia lanzar una StockInsuficienteException si al releer ya no alcanza el stock")
+        void testReservarStockInsuficienteAlReintentar() {
+            // Preparacion
+            ProductoModel producto = TestDataFactory.crearProductoModel();
+            when(productoRepository.findAllById(Set.of(producto.getId())))
+                    .thenReturn(List.of(producto));
+            when(productoRepository.actualizarStockSiVersion(producto.getId(), 98, 0L))
+                    .thenReturn(0);
+            when(productoRepository.findStockVersionById(producto.getId()))
+                    .thenReturn(stockVersion(1, 1L));
+
+            // Ejecucion
+            assertThrows(StockInsuficienteException.class,
+                    () -> new OptimisticStockReservation(productoRepository, 3).reservar(cantidades(producto.getId(), 2)));
+
+            // Verificacion
+            verify(productoRepository, times(1)).actualizarStockSiVersion(anyLong(), anyInt(), anyLong());
+        }
+
+        private ProductoRepository.StockVersion stockVersion(Integer stock, Long version) {
+            return new ProductoRepository.StockVersion() {
+                @Override
+                public Integer getStockDisponible() {
+                    return stock;
+                }
+
+                @Override
+                public Long getVersion() {
+                    return version;
+                }
+            };
+        }
+    }
+
+    @Nested
+    @DisplayName("LedgerStockReservation Tests")
+    class LedgerTests {
+        @Mock
+        private StockLedger stockLedger;
+
+        @Test
+        @DisplayName("Deberia reservar en el libro de stock sin escribir en la tabla")
+        void testReservarSuccess() {
+            // Preparacion
+            ProductoModel producto = TestDataFactory.crearProductoModel();
+            when(productoRepository.findAllById(Set.of(producto.getId())))
+                    .thenReturn(List.of(producto));
+            when(stockLedger.reservar(cantidades(producto.getId(), 2)))
+                    .thenReturn(null);
+
+            // Ejecucion
+            Map<Long, ProductoModel> resultado = new LedgerStockReservation(productoRepository, stockLedger)
+                    .reservar(cantidades(producto.getId(), 2));
+
+            // Verificacion
+            assertSame(producto, resultado.get(producto.getId()));
+            verify(productoRepository, never()).descontarStock(anyLong(), anyInt());
+        }
+
+        @Test
+        @DisplayName("Deberia lanzar una StockInsuficienteException si el libro no tiene stock")
+        void testReservarStockInsuficiente() {
+            // Preparacion
+            ProductoModel producto = TestDataFactory.crearProductoModel();
+            when(productoRepository.findAllById(Set.of(producto.getId())))
+                    .thenReturn(List.of(producto));
+            when(stockLedger.reservar(cantidades(producto.getId(), 2)))
+                    .thenReturn(producto.getId());
+
+            // Ejecucion
+            StockInsuficienteException exception = assertThrows(StockInsuficienteException.class,
+                    () -> new LedgerStockReservation(productoRepository, stockLedger).reservar(cantidades(producto.getId(), 2)));
+
+            // Verificacion
+            assertEquals("Stock insuficiente para el producto: " + producto.getNombre(), exception.getMessage());
+        }
+    }
+}
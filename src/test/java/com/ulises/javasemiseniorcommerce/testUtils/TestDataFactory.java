@@ -9,6 +9,7 @@ import lombok.Data;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.LongStream;
 
 /**
  * @author ulide
@@ -51,6 +52,30 @@ public class TestDataFactory {
 
     public static ProductoModel crearProductoModel() {
         return ProductoModel.builder()
+                .id(1L)
+                .nombre("Producto Test")
+                .descripcion("Descripcion Test")
+                .precio(100.0)
+                .stockDisponible(100)
+                .version(0L)
+                .build();
+    }
+
+    public static List<ProductoModel> crearProductosModel(int cantidad) {
+        return LongStream.rangeClosed(1, cantidad)
+                .mapToObj(id -> ProductoModel.builder()
+                        .id(id)
+                        .nombre("Producto Test " + id)
+                        .descripcion("Descripcion Test " + id)
+                        .precio(100.0)
+                        .stockDisponible(100)
+                        .version(0L)
+                        .build())
+                .toList();
+    }
+
+    public static ProductoDto crearProductoDto() {
+        return ProductoDto.builder()
                 .id(1L)
                 .nombre("Producto Test")
                 .descripcion("Descripcion Test")
@@ -79,6 +104,18 @@ public class TestDataFactory {
                 )).build();
     }
 
+    public static PedidoRequest crearPedidoRequest(int lineas) {
+        return PedidoRequest.builder()
+                .username("test@mail.com")
+                .detalles(LongStream.rangeClosed(1, lineas)
+                        .mapToObj(id -> DetalleRequest.builder()
+                                .productoId(id)
+                                .cantidad(2)
+                                .build())
+                        .toList())
+                .build();
+    }
+
     public static PedidoModel crearPedido(UsuarioModel usuario, List<DetalleModel> detalles) {
         return PedidoModel.builder()
                 .id(1L)